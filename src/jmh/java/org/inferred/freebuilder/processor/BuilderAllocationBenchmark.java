@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Benchmarks {@code new Builder().setX(...)...build()} on a generated builder with only required
+ * properties, to measure the garbage created tracking which of them are unset.
+ *
+ * <p>Run with {@code ./gradlew jmh -Pjmh.include=BuilderAllocationBenchmark} and read
+ * {@code gc.alloc.rate.norm}, the bytes allocated per builder and value. The property counts
+ * cover unset masks held in an {@code int}, a {@code long}, and several {@code long}s.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BuilderAllocationBenchmark {
+
+  @Param({"2", "10", "40", "70"})
+  public int properties;
+
+  private Supplier<?> driver;
+
+  @Setup
+  public void setUp() throws Exception {
+    File sourceDirectory = Files.createTempDirectory("allocation-src").toFile();
+    File outputDirectory = Files.createTempDirectory("allocation-out").toFile();
+    List<String> dataType = new ArrayList<>();
+    dataType.add("package com.example;");
+    dataType.add("@org.inferred.freebuilder.FreeBuilder");
+    dataType.add("public abstract class DataType {");
+    for (int i = 0; i < properties; i++) {
+      dataType.add("  public abstract int getProperty" + i + "();");
+    }
+    dataType.add("  public static class Builder extends DataType_Builder {}");
+    dataType.add("}");
+    List<String> driverSource = new ArrayList<>();
+    driverSource.add("package com.example;");
+    driverSource.add("public class Driver implements java.util.function.Supplier<Object> {");
+    driverSource.add("  private int i;");
+    driverSource.add("  @Override public Object get() {");
+    driverSource.add("    i++;");
+    driverSource.add("    return new DataType.Builder()");
+    for (int i = 0; i < properties; i++) {
+      driverSource.add("        .setProperty" + i + "(i)");
+    }
+    driverSource.add("        .build();");
+    driverSource.add("  }");
+    driverSource.add("}");
+    File dataTypeFile = new File(sourceDirectory, "DataType.java");
+    File driverFile = new File(sourceDirectory, "Driver.java");
+    Files.write(dataTypeFile.toPath(), dataType, UTF_8);
+    Files.write(driverFile.toPath(), driverSource, UTF_8);
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, UTF_8);
+    try {
+      CompilationTask task = compiler.getTask(
+          null,
+          fileManager,
+          null,
+          Arrays.asList("-d", outputDirectory.getPath(), "-s", outputDirectory.getPath()),
+          null,
+          fileManager.getJavaFileObjects(dataTypeFile, driverFile));
+      task.setProcessors(Collections.singletonList(new Processor()));
+      if (!task.call()) {
+        throw new IllegalStateException("Compilation failed");
+      }
+    } finally {
+      fileManager.close();
+    }
+    ClassLoader loader = new URLClassLoader(
+        new URL[] {outputDirectory.toURI().toURL()}, getClass().getClassLoader());
+    driver = (Supplier<?>) loader.loadClass("com.example.Driver").newInstance();
+  }
+
+  @Benchmark
+  public Object buildValue() {
+    return driver.get();
+  }
+}
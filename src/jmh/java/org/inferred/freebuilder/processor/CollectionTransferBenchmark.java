@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.inferred.freebuilder.processor.util.feature.CollectionOwnership;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Benchmarks filling a generated builder's list and set properties and building it once, with
+ * collections copied on build, and transferred with {@code -Afreebuilder.transferCollections}.
+ *
+ * <p>Run with {@code ./gradlew jmh -Pjmh.include=CollectionTransferBenchmark}; the {@code gc}
+ * profiler's {@code gc.alloc.rate.norm} shows the garbage the copy creates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CollectionTransferBenchmark {
+
+  @Param({"10", "1000", "100000"})
+  public int elements;
+
+  /** Whether collections are copied on build ({@code copy}) or transferred ({@code transfer}). */
+  @Param({"copy", "transfer"})
+  public String ownership;
+
+  private IntFunction<?> driver;
+
+  @Setup
+  public void setUp() throws Exception {
+    File sourceDirectory = Files.createTempDirectory("transfer-src").toFile();
+    File outputDirectory = Files.createTempDirectory("transfer-out").toFile();
+    File dataTypeFile = new File(sourceDirectory, "DataType.java");
+    File driverFile = new File(sourceDirectory, "Driver.java");
+    Files.write(dataTypeFile.toPath(), Arrays.asList(
+        "package com.example;",
+        "@org.inferred.freebuilder.FreeBuilder",
+        "public interface DataType {",
+        "  java.util.List<Integer> getItems();",
+        "  java.util.Set<Integer> getKeys();",
+        "  class Builder extends DataType_Builder {}",
+        "}"), UTF_8);
+    Files.write(driverFile.toPath(), Arrays.asList(
+        "package com.example;",
+        "public class Driver implements java.util.function.IntFunction<Object> {",
+        "  @Override public Object apply(int elements) {",
+        "    DataType.Builder builder = new DataType.Builder();",
+        "    for (int i = 0; i < elements; i++) {",
+        "      builder.addItems(i).addKeys(i);",
+        "    }",
+        "    return builder.build();",
+        "  }",
+        "}"), UTF_8);
+
+    List<String> options = new ArrayList<>(
+        Arrays.asList("-d", outputDirectory.getPath(), "-s", outputDirectory.getPath()));
+    if (ownership.equals("transfer")) {
+      options.add("-A" + CollectionOwnership.OPTION);
+    }
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, UTF_8);
+    try {
+      CompilationTask task = compiler.getTask(
+          null,
+          fileManager,
+          null,
+          options,
+          null,
+          fileManager.getJavaFileObjects(dataTypeFile, driverFile));
+      task.setProcessors(Collections.singletonList(new Processor()));
+      if (!task.call()) {
+        throw new IllegalStateException("Compilation failed");
+      }
+    } finally {
+      fileManager.close();
+    }
+    ClassLoader loader = new URLClassLoader(
+        new URL[] {outputDirectory.toURI().toURL()}, getClass().getClassLoader());
+    driver = (IntFunction<?>) loader.loadClass("com.example.Driver").newInstance();
+  }
+
+  @Benchmark
+  public Object fillAndBuild() {
+    return driver.apply(elements);
+  }
+}
@@ -0,0 +1,501 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.tools.StandardLocation.CLASS_OUTPUT;
+import static javax.tools.StandardLocation.SOURCE_OUTPUT;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.inferred.freebuilder.processor.SyntheticType.PropertyKind;
+import org.inferred.freebuilder.processor.util.feature.BuilderBackend;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Measures how a whole compilation scales with the number of &#64;FreeBuilder types in it.
+ *
+ * <p>For each type count, synthesises that many {@link SyntheticType types}, compiles them
+ * in-process into a temporary directory, and records the javac wall time, the share of it
+ * spent in the processor, the peak heap usage and the size of the generated source. A scaling
+ * exponent is then fitted to the times: 1.0 means compilation time grows linearly with the number
+ * of types, and anything much higher is a regression.
+ *
+ * <p>Run once per {@code backend} to compare the two: the class file backend needs javac 9 or
+ * later, and falls back to source (with a warning) on javac 8.
+ *
+ * <p>Run with {@code ./gradlew scalingBenchmark}, which writes its results to
+ * {@code build/reports/scaling/results.json}. Options are passed as {@code name=value} arguments,
+ * or as {@code -Pscaling.name=value} project properties to Gradle:
+ *
+ * <ul>
+ * <li>{@code types}: comma-separated type counts to compile (default {@value #DEFAULT_TYPES})
+ * <li>{@code width}: properties per type (default {@value #DEFAULT_WIDTH})
+ * <li>{@code depth}: nesting depth of buildable properties (default {@value #DEFAULT_DEPTH})
+ * <li>{@code kinds}: comma-separated {@link PropertyKind property kinds} (default
+ *     {@value #DEFAULT_KINDS})
+ * <li>{@code guava}: whether Guava types are used (default {@value #DEFAULT_GUAVA})
+ * <li>{@code packageSize}: types per package (default {@value #DEFAULT_PACKAGE_SIZE})
+ * <li>{@code repetitions}: measured compilations per type count, of which the median is
+ *     reported (default {@value #DEFAULT_REPETITIONS})
+ * <li>{@code backend}: the {@link BuilderBackend} to generate builders with, {@code source} or
+ *     {@code classfile} (default {@value #DEFAULT_BACKEND})
+ * <li>{@code output}: file to write the JSON results to (default: none)
+ * </ul>
+ */
+public class CompileScalingBenchmark {
+
+  private static final String DEFAULT_TYPES = "10,100,1000,10000";
+  private static final int DEFAULT_WIDTH = 10;
+  private static final int DEFAULT_DEPTH = 1;
+  private static final String DEFAULT_KINDS = "DEFAULT,PRIMITIVE,LIST,SET,MAP,OPTIONAL,BUILDABLE";
+  private static final boolean DEFAULT_GUAVA = true;
+  private static final int DEFAULT_PACKAGE_SIZE = 100;
+  private static final int DEFAULT_REPETITIONS = 3;
+  private static final String DEFAULT_BACKEND = "source";
+
+  private static final Set<String> OPTIONS = ImmutableSet.of(
+      "types", "width", "depth", "kinds", "guava", "packageSize", "repetitions", "backend",
+      "output");
+
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = new LinkedHashMap<String, String>();
+    options.put("types", DEFAULT_TYPES);
+    options.put("width", Integer.toString(DEFAULT_WIDTH));
+    options.put("depth", Integer.toString(DEFAULT_DEPTH));
+    options.put("kinds", DEFAULT_KINDS);
+    options.put("guava", Boolean.toString(DEFAULT_GUAVA));
+    options.put("packageSize", Integer.toString(DEFAULT_PACKAGE_SIZE));
+    options.put("repetitions", Integer.toString(DEFAULT_REPETITIONS));
+    options.put("backend", DEFAULT_BACKEND);
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      String name = (equals < 0) ? arg : arg.substring(0, equals);
+      if (equals < 0 || !OPTIONS.contains(name)) {
+        throw new IllegalArgumentException("Unrecognized argument '" + arg
+            + "': expected name=value, with name one of " + OPTIONS);
+      }
+      options.put(name, arg.substring(equals + 1));
+    }
+
+    CompileScalingBenchmark benchmark = new CompileScalingBenchmark(
+        Integer.parseInt(options.get("width")),
+        Integer.parseInt(options.get("depth")),
+        PropertyKind.parse(options.get("kinds")),
+        Boolean.parseBoolean(options.get("guava")),
+        Integer.parseInt(options.get("packageSize")),
+        Integer.parseInt(options.get("repetitions")),
+        options.get("backend"));
+    List<Integer> typeCounts = new ArrayList<Integer>();
+    for (String count : Splitter.on(',').trimResults().omitEmptyStrings()
+        .split(options.get("types"))) {
+      typeCounts.add(Integer.parseInt(count));
+    }
+    Collections.sort(typeCounts);
+
+    List<Result> results = benchmark.run(typeCounts);
+    System.out.println(table(results));
+    String output = options.get("output");
+    if (output != null && !output.isEmpty()) {
+      File file = new File(output);
+      File parent = file.getAbsoluteFile().getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      Files.write(file.toPath(), benchmark.json(results).getBytes(UTF_8));
+      System.out.println("Results written to " + file);
+    }
+  }
+
+  /** Measurements for one type count, each the median over all repetitions. */
+  static class Result {
+    final int types;
+    final long javacNanos;
+    final long processorNanos;
+    final long peakHeapBytes;
+    final long generatedSourceBytes;
+    final int generatedSourceFiles;
+
+    Result(
+        int types,
+        long javacNanos,
+        long processorNanos,
+        long peakHeapBytes,
+        long generatedSourceBytes,
+        int generatedSourceFiles) {
+      this.types = types;
+      this.javacNanos = javacNanos;
+      this.processorNanos = processorNanos;
+      this.peakHeapBytes = peakHeapBytes;
+      this.generatedSourceBytes = generatedSourceBytes;
+      this.generatedSourceFiles = generatedSourceFiles;
+    }
+
+    double processorShare() {
+      return (double) processorNanos / javacNanos;
+    }
+  }
+
+  private final int width;
+  private final int depth;
+  private final List<PropertyKind> kinds;
+  private final boolean guava;
+  private final int packageSize;
+  private final int repetitions;
+  private final String backend;
+
+  CompileScalingBenchmark(
+      int width,
+      int depth,
+      List<PropertyKind> kinds,
+      boolean guava,
+      int packageSize,
+      int repetitions,
+      String backend) {
+    this.width = width;
+    this.depth = depth;
+    this.kinds = ImmutableList.copyOf(kinds);
+    this.guava = guava;
+    this.packageSize = packageSize;
+    this.repetitions = repetitions;
+    this.backend = backend;
+  }
+
+  /** Compiles each number of types in turn, after a warm-up compilation of the first. */
+  List<Result> run(List<Integer> typeCounts) throws IOException {
+    if (!typeCounts.isEmpty()) {
+      compile(sources(typeCounts.get(0)));
+    }
+    List<Result> results = new ArrayList<Result>();
+    for (int typeCount : typeCounts) {
+      List<JavaFileObject> sources = sources(typeCount);
+      List<Result> measurements = new ArrayList<Result>();
+      for (int i = 0; i < repetitions; i++) {
+        measurements.add(compile(sources));
+      }
+      results.add(median(typeCount, measurements));
+      System.out.println(table(results.subList(results.size() - 1, results.size())));
+    }
+    return results;
+  }
+
+  private List<JavaFileObject> sources(int typeCount) {
+    List<JavaFileObject> sources = new ArrayList<JavaFileObject>();
+    for (int i = 0; i < typeCount; i++) {
+      SyntheticType type = new SyntheticType(
+          "com.example.scaling.p" + (i / packageSize),
+          "DataType" + i,
+          width,
+          kinds,
+          guava,
+          depth);
+      SourceBuilder source = new SourceBuilder();
+      for (String line : type.source()) {
+        source.addLine("%s", line);
+      }
+      sources.add(source.build());
+    }
+    return sources;
+  }
+
+  private Result compile(List<JavaFileObject> sources) throws IOException {
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    Path output = Files.createTempDirectory("scaling");
+    StandardJavaFileManager fileManager =
+        ToolProvider.getSystemJavaCompiler().getStandardFileManager(null, null, UTF_8);
+    try {
+      fileManager.setLocation(CLASS_OUTPUT, ImmutableList.of(output.toFile()));
+      fileManager.setLocation(SOURCE_OUTPUT, ImmutableList.of(output.toFile()));
+      CompilationTask task = ToolProvider.getSystemJavaCompiler().getTask(
+          null,
+          fileManager,
+          diagnostics,
+          ImmutableList.of("-A" + BuilderBackend.OPTION + "=" + backend),
+          null,
+          sources);
+      TimedProcessor processor = new TimedProcessor(new Processor());
+      task.setProcessors(Collections.singletonList(processor));
+      System.gc();
+      resetPeakHeap();
+      long start = System.nanoTime();
+      boolean success = task.call();
+      long javacNanos = System.nanoTime() - start;
+      long peakHeapBytes = peakHeap();
+      if (!success) {
+        throw new IllegalStateException("Compilation failed: " + errors(diagnostics));
+      }
+      long generatedSourceBytes = 0;
+      int generatedSourceFiles = 0;
+      for (JavaFileObject generated : fileManager.list(
+          SOURCE_OUTPUT, "com.example.scaling", Collections.singleton(Kind.SOURCE), true)) {
+        generatedSourceBytes += generated.getCharContent(true).toString().getBytes(UTF_8).length;
+        generatedSourceFiles++;
+      }
+      return new Result(
+          sources.size(),
+          javacNanos,
+          processor.nanos,
+          peakHeapBytes,
+          generatedSourceBytes,
+          generatedSourceFiles);
+    } finally {
+      fileManager.close();
+      delete(output);
+    }
+  }
+
+  private static void delete(Path directory) throws IOException {
+    List<Path> paths = new ArrayList<Path>();
+    try (Stream<Path> walk = Files.walk(directory)) {
+      walk.forEach(paths::add);
+    }
+    Collections.sort(paths, Comparator.reverseOrder());
+    for (Path path : paths) {
+      Files.delete(path);
+    }
+  }
+
+  private static String errors(DiagnosticCollector<JavaFileObject> diagnostics) {
+    StringBuilder errors = new StringBuilder();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        errors.append("\n").append(diagnostic);
+      }
+    }
+    return errors.toString();
+  }
+
+  private static void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  /**
+   * Returns the sum of each heap pool's peak usage. The pools need not peak at the same moment,
+   * so this is an upper bound, but it is consistent between runs, which is what matters here.
+   */
+  private static long peakHeap() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  private static Result median(int types, List<Result> measurements) {
+    long[] javacNanos = new long[measurements.size()];
+    long[] processorNanos = new long[measurements.size()];
+    long[] peakHeapBytes = new long[measurements.size()];
+    for (int i = 0; i < measurements.size(); i++) {
+      javacNanos[i] = measurements.get(i).javacNanos;
+      processorNanos[i] = measurements.get(i).processorNanos;
+      peakHeapBytes[i] = measurements.get(i).peakHeapBytes;
+    }
+    Result first = measurements.get(0);
+    return new Result(
+        types,
+        median(javacNanos),
+        median(processorNanos),
+        median(peakHeapBytes),
+        first.generatedSourceBytes,
+        first.generatedSourceFiles);
+  }
+
+  private static long median(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+
+  /**
+   * Returns the least-squares slope of log(nanos) against log(types): 1.0 for linear scaling, 2.0
+   * for quadratic. Returns NaN if fewer than two type counts were measured.
+   */
+  static double scalingExponent(List<Result> results, boolean processorOnly) {
+    if (results.size() < 2) {
+      return Double.NaN;
+    }
+    double sumX = 0;
+    double sumY = 0;
+    double sumXX = 0;
+    double sumXY = 0;
+    for (Result result : results) {
+      double x = Math.log(result.types);
+      double y = Math.log(processorOnly ? result.processorNanos : result.javacNanos);
+      sumX += x;
+      sumY += y;
+      sumXX += x * x;
+      sumXY += x * y;
+    }
+    int n = results.size();
+    return (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+  }
+
+  private static String table(List<Result> results) {
+    StringBuilder table = new StringBuilder();
+    for (Result result : results) {
+      table.append(String.format(
+          "%6d types: javac %9.1fms (%6.3fms/type), processor %9.1fms (%4.1f%%), "
+              + "peak heap %6dMB, generated %8dkB in %d files%n",
+          result.types,
+          millis(result.javacNanos),
+          millis(result.javacNanos) / result.types,
+          millis(result.processorNanos),
+          100 * result.processorShare(),
+          result.peakHeapBytes >> 20,
+          result.generatedSourceBytes >> 10,
+          result.generatedSourceFiles));
+    }
+    if (results.size() > 1) {
+      table.append(String.format(
+          "Scaling exponent: javac %.2f, processor %.2f (1.0 is linear)%n",
+          scalingExponent(results, false),
+          scalingExponent(results, true)));
+    }
+    return table.toString();
+  }
+
+  private String json(List<Result> results) {
+    StringBuilder json = new StringBuilder("{\n");
+    json.append("  \"width\": ").append(width).append(",\n");
+    json.append("  \"depth\": ").append(depth).append(",\n");
+    json.append("  \"kinds\": \"").append(kinds.toString().replaceAll("[\\[\\] ]", ""))
+        .append("\",\n");
+    json.append("  \"guava\": ").append(guava).append(",\n");
+    json.append("  \"packageSize\": ").append(packageSize).append(",\n");
+    json.append("  \"repetitions\": ").append(repetitions).append(",\n");
+    json.append("  \"backend\": \"").append(backend).append("\",\n");
+    json.append("  \"javacScalingExponent\": ")
+        .append(jsonNumber(scalingExponent(results, false))).append(",\n");
+    json.append("  \"processorScalingExponent\": ")
+        .append(jsonNumber(scalingExponent(results, true))).append(",\n");
+    json.append("  \"results\": [");
+    String separator = "\n";
+    for (Result result : results) {
+      json.append(separator)
+          .append("    {\"types\": ").append(result.types)
+          .append(", \"javacMillis\": ").append(jsonNumber(millis(result.javacNanos)))
+          .append(", \"processorMillis\": ").append(jsonNumber(millis(result.processorNanos)))
+          .append(", \"processorShare\": ").append(jsonNumber(result.processorShare()))
+          .append(", \"peakHeapBytes\": ").append(result.peakHeapBytes)
+          .append(", \"generatedSourceBytes\": ").append(result.generatedSourceBytes)
+          .append(", \"generatedSourceFiles\": ").append(result.generatedSourceFiles)
+          .append("}");
+      separator = ",\n";
+    }
+    json.append("\n  ]\n}\n");
+    return json.toString();
+  }
+
+  private static double millis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  private static String jsonNumber(double value) {
+    return Double.isNaN(value) ? "null" : String.format("%.3f", value);
+  }
+
+  /** Delegates to another processor, recording the total time spent in it. */
+  private static class TimedProcessor implements javax.annotation.processing.Processor {
+
+    private final javax.annotation.processing.Processor delegate;
+    long nanos = 0;
+
+    TimedProcessor(javax.annotation.processing.Processor delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+      return delegate.getSupportedOptions();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+      return delegate.getSupportedAnnotationTypes();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+      return delegate.getSupportedSourceVersion();
+    }
+
+    @Override
+    public void init(ProcessingEnvironment processingEnv) {
+      long start = System.nanoTime();
+      delegate.init(processingEnv);
+      nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+      long start = System.nanoTime();
+      boolean claimed = delegate.process(annotations, roundEnv);
+      nanos += System.nanoTime() - start;
+      return claimed;
+    }
+
+    @Override
+    public Iterable<? extends Completion> getCompletions(
+        Element element,
+        AnnotationMirror annotation,
+        ExecutableElement member,
+        String userText) {
+      return delegate.getCompletions(element, annotation, member, userText);
+    }
+  }
+}
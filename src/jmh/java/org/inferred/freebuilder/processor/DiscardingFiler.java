@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import java.io.Writer;
+import java.net.URI;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.FileObject;
+import javax.tools.JavaFileManager.Location;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * {@link Filer} that counts, then discards, all characters written to source files, so benchmarks
+ * measure the cost of producing output rather than of storing it.
+ */
+class DiscardingFiler implements Filer {
+
+  private long charsWritten;
+
+  long charsWritten() {
+    return charsWritten;
+  }
+
+  @Override
+  public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements) {
+    URI uri = URI.create("mem:///" + name.toString().replace('.', '/') + Kind.SOURCE.extension);
+    return new SimpleJavaFileObject(uri, Kind.SOURCE) {
+      @Override
+      public Writer openWriter() {
+        return new CountingWriter();
+      }
+    };
+  }
+
+  @Override
+  public JavaFileObject createClassFile(CharSequence name, Element... originatingElements) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public FileObject createResource(
+      Location location,
+      CharSequence pkg,
+      CharSequence relativeName,
+      Element... originatingElements) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public FileObject getResource(
+      Location location,
+      CharSequence pkg,
+      CharSequence relativeName) {
+    throw new UnsupportedOperationException();
+  }
+
+  private class CountingWriter extends Writer {
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+      charsWritten += len;
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
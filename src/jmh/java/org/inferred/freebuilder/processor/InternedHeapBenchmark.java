@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Measures the heap retained by many values built from a few distinct inputs, with
+ * {@code build()} and with {@code buildInterned()} on an {@link org.inferred.freebuilder.Interned}
+ * type.
+ *
+ * <p>Run with {@code ./gradlew jmh -Pjmh.include=InternedHeapBenchmark} and read the
+ * {@code retainedBytesPerValue} counter. The score includes the forced garbage collections used
+ * to measure the heap, so is only a rough guide to build time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InternedHeapBenchmark {
+
+  private static final int VALUES = 200_000;
+
+  /** Whether to retain values returned by {@code build} or {@code buildInterned}. */
+  @Param({"build", "buildInterned"})
+  public String method;
+
+  /** How many distinct values are built. */
+  @Param({"100"})
+  public int distinctValues;
+
+  private IntFunction<?> factory;
+  private Object[] retained;
+
+  /** Heap retained by the values built in an iteration, reported alongside the score. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Heap {
+    public long retainedBytesPerValue;
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    File sourceDirectory = Files.createTempDirectory("interned-src").toFile();
+    File outputDirectory = Files.createTempDirectory("interned-out").toFile();
+    File dataTypeFile = new File(sourceDirectory, "Address.java");
+    File factoryFile = new File(sourceDirectory, "Factory.java");
+    Files.write(dataTypeFile.toPath(), Arrays.asList(
+        "package com.example;",
+        "@org.inferred.freebuilder.FreeBuilder",
+        "@org.inferred.freebuilder.Interned",
+        "public interface Address {",
+        "  int getNumber();",
+        "  String getStreet();",
+        "  String getCity();",
+        "  java.util.List<String> getLines();",
+        "  class Builder extends Address_Builder {}",
+        "}"), UTF_8);
+    // Builds fresh strings each time, as if parsing them from input.
+    Files.write(factoryFile.toPath(), Arrays.asList(
+        "package com.example;",
+        "public class Factory implements java.util.function.IntFunction<Object> {",
+        "  private final int distinctValues;",
+        "  private final boolean interned;",
+        "  public Factory(int distinctValues, boolean interned) {",
+        "    this.distinctValues = distinctValues;",
+        "    this.interned = interned;",
+        "  }",
+        "  @Override public Object apply(int i) {",
+        "    int key = i % distinctValues;",
+        "    Address.Builder builder = new Address.Builder()",
+        "        .setNumber(key)",
+        "        .setStreet(\"Street \" + key)",
+        "        .setCity(\"City \" + (key % 10))",
+        "        .addLines(\"Flat \" + key, \"Building \" + key);",
+        "    return interned ? builder.buildInterned() : builder.build();",
+        "  }",
+        "}"), UTF_8);
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, UTF_8);
+    try {
+      CompilationTask task = compiler.getTask(
+          null,
+          fileManager,
+          null,
+          Arrays.asList("-d", outputDirectory.getPath(), "-s", outputDirectory.getPath()),
+          null,
+          fileManager.getJavaFileObjects(dataTypeFile, factoryFile));
+      task.setProcessors(Collections.singletonList(new Processor()));
+      if (!task.call()) {
+        throw new IllegalStateException("Compilation failed");
+      }
+    } finally {
+      fileManager.close();
+    }
+    ClassLoader loader = new URLClassLoader(
+        new URL[] {outputDirectory.toURI().toURL()}, getClass().getClassLoader());
+    factory = (IntFunction<?>) loader.loadClass("com.example.Factory")
+        .getConstructor(int.class, boolean.class)
+        .newInstance(distinctValues, method.equals("buildInterned"));
+  }
+
+  @Benchmark
+  public Object[] buildValues(Heap heap) {
+    retained = null;
+    long before = usedHeapAfterGc();
+    retained = new Object[VALUES];
+    for (int i = 0; i < VALUES; i++) {
+      retained[i] = factory.apply(i);
+    }
+    heap.retainedBytesPerValue = (usedHeapAfterGc() - before) / VALUES;
+    return retained;
+  }
+
+  private static long usedHeapAfterGc() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    System.gc();
+    System.gc();
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import com.google.common.collect.ImmutableSet;
+
+import org.inferred.freebuilder.processor.util.CompilationUnitBuilder;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+import org.inferred.freebuilder.processor.util.QualifiedNameCache;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.feature.StaticFeatureSet;
+import org.inferred.freebuilder.processor.util.testing.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks creating a {@link CompilationUnitBuilder} for every type in one large package, as a
+ * round generating a builder for each of them would.
+ *
+ * <p>Each compilation unit needs the package's other types to detect import collisions.
+ * {@link #sharedRoundCache()} scans the package once per round, as the processor does;
+ * {@link #cachePerCompilationUnit()} scans it again for each compilation unit, so the round's cost
+ * grows quadratically with the package size.
+ *
+ * <p>Run with {@code ./gradlew jmh -Pjmh.include=PackageSiblingsBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackageSiblingsBenchmark {
+
+  private static final String PACKAGE = "com.example.bench";
+
+  /** Number of types in the package. */
+  @Param({"50", "500"})
+  public int packageSize;
+
+  private Model model;
+  private final FeatureSet features = new StaticFeatureSet();
+  private final List<QualifiedName> builders = new ArrayList<QualifiedName>();
+
+  @Setup
+  public void setUp() {
+    model = Model.create();
+    // Declare every type in one compilation unit, as compiling each separately is slow
+    StringBuilder code = new StringBuilder("package " + PACKAGE + ";\n");
+    for (int i = 0; i < packageSize; i++) {
+      code.append("interface DataType").append(i).append(" {\n")
+          .append("  String getName();\n")
+          .append("}\n");
+      builders.add(QualifiedName.of(PACKAGE, "DataType" + i + "_Builder"));
+    }
+    model.newType(code.toString());
+  }
+
+  @TearDown
+  public void tearDown() {
+    model.destroy();
+  }
+
+  /** Creates a compilation unit per type, sharing one cache across the round. */
+  @Benchmark
+  public void sharedRoundCache(Blackhole blackhole) {
+    QualifiedNameCache qualifiedNames = new QualifiedNameCache();
+    for (QualifiedName builder : builders) {
+      blackhole.consume(newCompilationUnit(builder, qualifiedNames));
+    }
+  }
+
+  /** Creates a compilation unit per type, scanning the package afresh for each. */
+  @Benchmark
+  public void cachePerCompilationUnit(Blackhole blackhole) {
+    for (QualifiedName builder : builders) {
+      blackhole.consume(newCompilationUnit(builder, new QualifiedNameCache()));
+    }
+  }
+
+  private CompilationUnitBuilder newCompilationUnit(
+      QualifiedName builder, QualifiedNameCache qualifiedNames) {
+    return new CompilationUnitBuilder(
+        model.environment(),
+        builder,
+        ImmutableSet.<QualifiedName>of(),
+        features,
+        qualifiedNames);
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.inferred.freebuilder.processor.util.feature.GuavaLibrary;
+import org.inferred.freebuilder.processor.util.feature.SourceLevel;
+import org.inferred.freebuilder.processor.util.feature.StaticFeatureSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Benchmarks {@code value.toBuilder().addItems(...).build()} on a value type with a large list
+ * property, with the list copied on every rebuild, and backed by a persistent list with
+ * {@code @PersistentCollections}, as well as filling a builder from empty and building it.
+ *
+ * <p>Run with {@code ./gradlew jmh -Pjmh.include=PersistentListBenchmark}; with the {@code gc}
+ * profiler, {@code gc.alloc.rate.norm} should only grow logarithmically with {@code elements}
+ * for the persistent list when rebuilding, and linearly, like the copied list, when filling.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PersistentListBenchmark {
+
+  @Param({"10", "10000", "100000"})
+  public int elements;
+
+  /** Whether the list is copied on rebuild ({@code copy}) or persistent ({@code persistent}). */
+  @Param({"copy", "persistent"})
+  public String backing;
+
+  private IntFunction<?> driver;
+  private IntFunction<?> filler;
+
+  @Setup
+  public void setUp() throws Exception {
+    File sourceDirectory = Files.createTempDirectory("persistent-src").toFile();
+    File outputDirectory = Files.createTempDirectory("persistent-out").toFile();
+    File dataTypeFile = new File(sourceDirectory, "DataType.java");
+    File driverFile = new File(sourceDirectory, "Driver.java");
+    File fillerFile = new File(sourceDirectory, "Filler.java");
+    Files.write(dataTypeFile.toPath(), Arrays.asList(
+        "package com.example;",
+        "@org.inferred.freebuilder.FreeBuilder",
+        backing.equals("persistent") ? "@org.inferred.freebuilder.PersistentCollections" : "",
+        "public interface DataType {",
+        "  java.util.List<Integer> getItems();",
+        "  Builder toBuilder();",
+        "  class Builder extends DataType_Builder {}",
+        "}"), UTF_8);
+    Files.write(driverFile.toPath(), Arrays.asList(
+        "package com.example;",
+        "public class Driver implements java.util.function.IntFunction<Object> {",
+        "  private DataType value;",
+        "  @Override public Object apply(int elements) {",
+        "    if (value == null) {",
+        "      DataType.Builder builder = new DataType.Builder();",
+        "      for (int i = 0; i < elements; i++) {",
+        "        builder.addItems(i);",
+        "      }",
+        "      value = builder.build();",
+        "    }",
+        "    return value.toBuilder().addItems(elements).build();",
+        "  }",
+        "}"), UTF_8);
+    Files.write(fillerFile.toPath(), Arrays.asList(
+        "package com.example;",
+        "public class Filler implements java.util.function.IntFunction<Object> {",
+        "  @Override public Object apply(int elements) {",
+        "    DataType.Builder builder = new DataType.Builder();",
+        "    for (int i = 0; i < elements; i++) {",
+        "      builder.addItems(i);",
+        "    }",
+        "    return builder.build();",
+        "  }",
+        "}"), UTF_8);
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, UTF_8);
+    try {
+      CompilationTask task = compiler.getTask(
+          null,
+          fileManager,
+          null,
+          Arrays.asList("-d", outputDirectory.getPath(), "-s", outputDirectory.getPath()),
+          null,
+          fileManager.getJavaFileObjects(dataTypeFile, driverFile, fillerFile));
+      task.setProcessors(Collections.singletonList(
+          new Processor(new StaticFeatureSet(SourceLevel.JAVA_8, GuavaLibrary.AVAILABLE))));
+      if (!task.call()) {
+        throw new IllegalStateException("Compilation failed");
+      }
+    } finally {
+      fileManager.close();
+    }
+    ClassLoader loader = new URLClassLoader(
+        new URL[] {outputDirectory.toURI().toURL()}, getClass().getClassLoader());
+    driver = (IntFunction<?>) loader.loadClass("com.example.Driver").newInstance();
+    driver.apply(elements);
+    filler = (IntFunction<?>) loader.loadClass("com.example.Filler").newInstance();
+  }
+
+  @Benchmark
+  public Object toBuilderAddBuild() {
+    return driver.apply(elements);
+  }
+
+  @Benchmark
+  public Object fillAndBuild() {
+    return filler.apply(elements);
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.processor.Analyser.CannotGenerateCodeException;
+import org.inferred.freebuilder.processor.util.CompilationUnitBuilder;
+import org.inferred.freebuilder.processor.util.FilerUtils;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.SourceStringBuilder;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.feature.FormatStyle;
+import org.inferred.freebuilder.processor.util.feature.GuavaLibrary;
+import org.inferred.freebuilder.processor.util.feature.SourceLevel;
+import org.inferred.freebuilder.processor.util.feature.StaticFeatureSet;
+import org.inferred.freebuilder.processor.util.testing.FakeMessager;
+import org.inferred.freebuilder.processor.util.testing.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Benchmarks each phase of the processor pipeline in isolation, over a synthetic
+ * &#64;FreeBuilder type.
+ *
+ * <p>Run with {@code ./gradlew jmh}; pass e.g.
+ * {@code -Pjmh.include=ProcessorPhasesBenchmark.analyse} to select a subset. The {@code gc}
+ * profiler is enabled by default, so allocation rates are reported alongside throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessorPhasesBenchmark {
+
+  /** Number of properties on the synthetic type. */
+  @Param({"10", "100"})
+  public int propertyCount;
+
+  /** Comma-separated {@link SyntheticType.PropertyKind} names, cycled through in order. */
+  @Param({"DEFAULT,LIST,MAP,MULTIMAP,OPTIONAL,BUILDABLE"})
+  public String kinds;
+
+  /** Whether Guava is available to generated code. */
+  @Param({"true", "false"})
+  public boolean guava;
+
+  @Param({"JAVA_6", "JAVA_7", "JAVA_8"})
+  public SourceLevel sourceLevel;
+
+  /** How {@link #render()} lays out the generated source. */
+  @Param({"FULL", "FAST", "NONE"})
+  public FormatStyle formatStyle;
+
+  private Model model;
+  private Analyser analyser;
+  private final CodeGenerator generator = new CodeGenerator();
+  private final DiscardingFiler filer = new DiscardingFiler();
+  private TypeElement type;
+  private FeatureSet features;
+  private Metadata metadata;
+  private CompilationUnitBuilder generated;
+  private String unformattedSource;
+  private String source;
+
+  @Setup
+  public void setUp() throws CannotGenerateCodeException {
+    model = Model.create();
+    analyser = new Analyser(
+        model.elementUtils(),
+        new FakeMessager(),
+        MethodIntrospector.instance(model.environment()),
+        model.typeUtils());
+    SyntheticType syntheticType = new SyntheticType(
+        "com.example.bench",
+        "DataType",
+        propertyCount,
+        SyntheticType.PropertyKind.parse(kinds),
+        guava);
+    type = model.newType(syntheticType.source());
+    GuavaLibrary guavaLibrary = guava ? GuavaLibrary.AVAILABLE : GuavaLibrary.UNAVAILABLE;
+    features = new StaticFeatureSet(sourceLevel, guavaLibrary, formatStyle);
+    metadata = analyser.analyse(type);
+    generated = generate();
+    SourceBuilder unformatted = SourceStringBuilder.simple(sourceLevel, guavaLibrary);
+    generator.writeBuilderSource(unformatted, metadata);
+    unformattedSource = unformatted.toString();
+    source = generated.toString();
+  }
+
+  @TearDown
+  public void tearDown() {
+    model.destroy();
+  }
+
+  /** Analyses the type into {@link Metadata}. */
+  @Benchmark
+  public Metadata analyse() throws CannotGenerateCodeException {
+    return analyser.analyse(type);
+  }
+
+  /** Generates the builder source into a new compilation unit, without rendering it. */
+  @Benchmark
+  public CompilationUnitBuilder generate() {
+    CompilationUnitBuilder code = new CompilationUnitBuilder(
+        model.environment(),
+        metadata.getGeneratedBuilder().getQualifiedName(),
+        metadata.getVisibleNestedTypes(),
+        features);
+    generator.writeBuilderSource(code, metadata);
+    return code;
+  }
+
+  /** Renders a generated compilation unit to a string, including imports and formatting. */
+  @Benchmark
+  public String render() {
+    return generated.toString();
+  }
+
+  /** Formats generated source code. */
+  @Benchmark
+  public String formatSource() {
+    return CompilationUnitBuilder.formatSource(unformattedSource);
+  }
+
+  /** Writes rendered source code to the {@link javax.annotation.processing.Filer}. */
+  @Benchmark
+  public long write() throws IOException {
+    FilerUtils.writeCompilationUnit(
+        filer, metadata.getGeneratedBuilder().getQualifiedName(), type, source);
+    return filer.charsWritten();
+  }
+
+  /**
+   * Streams a generated compilation unit to the {@link javax.annotation.processing.Filer},
+   * rendering and writing it without first building the whole file as a string.
+   */
+  @Benchmark
+  public long renderAndWrite() throws IOException {
+    FilerUtils.writeCompilationUnit(
+        filer, metadata.getGeneratedBuilder().getQualifiedName(), type, generated);
+    return filer.charsWritten();
+  }
+}
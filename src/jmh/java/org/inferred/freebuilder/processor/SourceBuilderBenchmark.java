@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.SourceStringBuilder;
+import org.inferred.freebuilder.processor.util.feature.GuavaLibrary;
+import org.inferred.freebuilder.processor.util.feature.SourceLevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks rendering builder source through a {@link SourceBuilder}, without formatting, over
+ * the {@link Metadata} used by the {@code *SourceTest} golden tests.
+ *
+ * <p>Run with {@code ./gradlew jmh -Pjmh.include=SourceBuilderBenchmark}; the {@code gc} profiler's
+ * {@code gc.alloc.rate.norm} gives the bytes allocated per rendered builder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceBuilderBenchmark {
+
+  /** Golden test whose metadata is rendered, and the name of its metadata factory method. */
+  public enum Input {
+    DEFAULTED_PROPERTIES(DefaultedPropertiesSourceTest.class, "createMetadata"),
+    GUAVA_OPTIONAL(GuavaOptionalSourceTest.class, "createMetadataWithOptionalProperties"),
+    LIST(ListSourceTest.class, "createMetadata"),
+    MAP(MapSourceTest.class, "createMetadata"),
+    NULLABLE(NullableSourceTest.class, "metadata"),
+    REQUIRED_PROPERTIES(RequiredPropertiesSourceTest.class, "createMetadata"),
+    SET(SetSourceTest.class, "createMetadata");
+
+    private final Class<?> test;
+    private final String factoryMethod;
+
+    Input(Class<?> test, String factoryMethod) {
+      this.test = test;
+      this.factoryMethod = factoryMethod;
+    }
+
+    Metadata metadata() throws ReflectiveOperationException {
+      Method method = test.getDeclaredMethod(factoryMethod, boolean.class);
+      method.setAccessible(true);
+      return (Metadata) method.invoke(null, true);
+    }
+  }
+
+  @Param
+  public Input input;
+
+  @Param({"JAVA_7", "JAVA_8"})
+  public SourceLevel sourceLevel;
+
+  private final CodeGenerator generator = new CodeGenerator();
+  private Metadata metadata;
+
+  @Setup
+  public void setUp() throws ReflectiveOperationException {
+    metadata = input.metadata();
+  }
+
+  /** Renders the builder source to a string. */
+  @Benchmark
+  public String render() {
+    SourceBuilder code = SourceStringBuilder.simple(sourceLevel, GuavaLibrary.AVAILABLE);
+    generator.writeBuilderSource(code, metadata);
+    return code.toString();
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.inferred.freebuilder.processor.util.feature.FormatStyle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Benchmarks the fixed cost a fresh javac pays to generate its first builder: the time to compile
+ * a single &#64;FreeBuilder type, and the number of classes loaded doing so.
+ *
+ * <p>Each fork compiles the type once, after a compilation without annotation processing has
+ * loaded javac itself, so the results cover loading and running the processor and compiling the
+ * generated builder. The benchmark deliberately avoids Guava, so none of the processor's
+ * dependencies are loaded before the measurement starts.
+ *
+ * <p>Run with {@code ./gradlew startupBenchmark}, which compares the processor on the classpath
+ * with the shaded and minimized jars, or with {@code ./gradlew jmh -Pjmh.include=StartupBenchmark}
+ * for the classpath alone; add {@code -prof cl} for the number of classes loaded per compilation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+
+  /** Jar to load the processor from, or empty to use the processor on the classpath. */
+  @Param("")
+  public String processorJar;
+
+  /** Value of the {@value FormatStyle#OPTION} processor option. */
+  @Param({"full", "none"})
+  public String format;
+
+  private JavaCompiler compiler;
+  private File source;
+  private File outputDirectory;
+
+  @Setup
+  public void setUp() throws IOException {
+    compiler = ToolProvider.getSystemJavaCompiler();
+    File sourceDirectory = Files.createTempDirectory("startup-src").toFile();
+    outputDirectory = Files.createTempDirectory("startup-out").toFile();
+    source = new File(sourceDirectory, "DataType.java");
+    Files.write(source.toPath(), Arrays.asList(
+        "package com.example;",
+        "@org.inferred.freebuilder.FreeBuilder",
+        "public interface DataType {",
+        "  String getName();",
+        "  java.util.List<Integer> getValues();",
+        "  class Builder extends DataType_Builder {}",
+        "}"), UTF_8);
+    // Load javac, so only the cost of processing and of compiling the builder is measured
+    File plainSource = new File(sourceDirectory, "Plain.java");
+    Files.write(plainSource.toPath(), Arrays.asList(
+        "package com.example;",
+        "public interface Plain {",
+        "  String getName();",
+        "}"), UTF_8);
+    compile(plainSource, Arrays.asList("-proc:none"), null);
+  }
+
+  /** Compiles the &#64;FreeBuilder type with a freshly loaded processor. */
+  @Benchmark
+  public boolean compileOneType() throws IOException {
+    List<String> options = new ArrayList<String>();
+    options.add("-A" + FormatStyle.OPTION + "=" + format);
+    if (!processorJar.isEmpty()) {
+      // Compile against the jar's annotations, not those on the benchmark's classpath
+      options.add("-classpath");
+      options.add(processorJar);
+    }
+    boolean success = compile(source, options, loadProcessor());
+    if (!success) {
+      throw new IllegalStateException("Compilation failed");
+    }
+    return success;
+  }
+
+  private javax.annotation.processing.Processor loadProcessor() throws IOException {
+    if (processorJar.isEmpty()) {
+      return new Processor();
+    }
+    ClassLoader loader = new JarFirstClassLoader(
+        new File(processorJar).toURI().toURL(), getClass().getClassLoader());
+    return ServiceLoader.load(javax.annotation.processing.Processor.class, loader)
+        .iterator()
+        .next();
+  }
+
+  private boolean compile(
+      File file, List<String> options, javax.annotation.processing.Processor processor)
+      throws IOException {
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, UTF_8);
+    try {
+      List<String> allOptions = new ArrayList<String>(options);
+      allOptions.addAll(Arrays.asList("-d", outputDirectory.getPath()));
+      allOptions.addAll(Arrays.asList("-s", outputDirectory.getPath()));
+      CompilationTask task = compiler.getTask(
+          null, fileManager, null, allOptions, null, fileManager.getJavaFileObjects(file));
+      if (processor != null) {
+        task.setProcessors(Collections.singletonList(processor));
+      }
+      return task.call();
+    } finally {
+      fileManager.close();
+    }
+  }
+
+  /**
+   * Loads classes from a jar in preference to its parent, so the jar's copy of the processor is
+   * used rather than the one on the benchmark's classpath.
+   */
+  private static class JarFirstClassLoader extends URLClassLoader {
+
+    JarFirstClassLoader(URL jar, ClassLoader parent) {
+      super(new URL[] {jar}, parent);
+    }
+
+    @Override
+    protected synchronized Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+      Class<?> loaded = findLoadedClass(name);
+      if (loaded == null && !name.startsWith("java.") && !name.startsWith("javax.")) {
+        try {
+          loaded = findClass(name);
+        } catch (ClassNotFoundException e) {
+          // Not in the jar
+        }
+      }
+      if (loaded == null) {
+        return super.loadClass(name, resolve);
+      }
+      if (resolve) {
+        resolveClass(loaded);
+      }
+      return loaded;
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.FreeBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Source code for a synthetic &#64;{@link FreeBuilder} type, for benchmarking the processor.
+ *
+ * <p>Properties cycle through the configured {@link PropertyKind kinds}, so a type with 100
+ * properties and kinds {@code LIST,MAP} will have 50 list properties and 50 map properties.
+ * Buildable properties reference a nested &#64;FreeBuilder type, {@code Item}; with a nesting
+ * depth greater than one, {@code Item} has a buildable {@code Item2} child, and so on.
+ */
+class SyntheticType {
+
+  /** The kinds of property a synthetic type can contain. */
+  enum PropertyKind {
+    DEFAULT(false) {
+      @Override String type(boolean guava) {
+        return "String";
+      }
+    },
+    PRIMITIVE(false) {
+      @Override String type(boolean guava) {
+        return "int";
+      }
+    },
+    LIST(false) {
+      @Override String type(boolean guava) {
+        return "java.util.List<String>";
+      }
+    },
+    SET(false) {
+      @Override String type(boolean guava) {
+        return "java.util.Set<String>";
+      }
+    },
+    MAP(false) {
+      @Override String type(boolean guava) {
+        return "java.util.Map<String, Integer>";
+      }
+    },
+    MULTIMAP(true) {
+      @Override String type(boolean guava) {
+        return "com.google.common.collect.ListMultimap<String, Integer>";
+      }
+    },
+    OPTIONAL(false) {
+      @Override String type(boolean guava) {
+        return guava ? "com.google.common.base.Optional<String>" : "java.util.Optional<String>";
+      }
+    },
+    BUILDABLE(false) {
+      @Override String type(boolean guava) {
+        return "Item";
+      }
+    };
+
+    private final boolean requiresGuava;
+
+    PropertyKind(boolean requiresGuava) {
+      this.requiresGuava = requiresGuava;
+    }
+
+    abstract String type(boolean guava);
+
+    /** Parses a comma-separated list of kinds, e.g. "LIST,MAP". */
+    static List<PropertyKind> parse(String kinds) {
+      ImmutableList.Builder<PropertyKind> result = ImmutableList.builder();
+      for (String kind : Splitter.on(',').trimResults().omitEmptyStrings().split(kinds)) {
+        result.add(PropertyKind.valueOf(kind));
+      }
+      return result.build();
+    }
+  }
+
+  private final String packageName;
+  private final String simpleName;
+  private final List<PropertyKind> kinds;
+  private final boolean guava;
+  private final int nestingDepth;
+
+  SyntheticType(String packageName, String simpleName, int propertyCount,
+      List<PropertyKind> kinds, boolean guava) {
+    this(packageName, simpleName, propertyCount, kinds, guava, 1);
+  }
+
+  SyntheticType(String packageName, String simpleName, int propertyCount,
+      List<PropertyKind> kinds, boolean guava, int nestingDepth) {
+    checkArgument(!kinds.isEmpty(), "No property kinds specified");
+    checkArgument(nestingDepth >= 1, "Nesting depth must be positive");
+    this.packageName = packageName;
+    this.simpleName = simpleName;
+    List<PropertyKind> propertyKinds = new ArrayList<PropertyKind>();
+    for (PropertyKind kind : kinds) {
+      if (guava || !kind.requiresGuava) {
+        propertyKinds.add(kind);
+      }
+    }
+    if (propertyKinds.isEmpty()) {
+      propertyKinds.add(PropertyKind.DEFAULT);
+    }
+    ImmutableList.Builder<PropertyKind> properties = ImmutableList.builder();
+    for (int i = 0; i < propertyCount; i++) {
+      properties.add(propertyKinds.get(i % propertyKinds.size()));
+    }
+    this.kinds = properties.build();
+    this.guava = guava;
+    this.nestingDepth = nestingDepth;
+  }
+
+  String getQualifiedName() {
+    return packageName + "." + simpleName;
+  }
+
+  /** Returns the source code of the type, one line per array element. */
+  String[] source() {
+    List<String> lines = new ArrayList<String>();
+    lines.add("package " + packageName + ";");
+    lines.add("");
+    lines.add("@" + FreeBuilder.class.getName());
+    lines.add("public interface " + simpleName + " {");
+    for (int i = 0; i < kinds.size(); i++) {
+      lines.add("  " + kinds.get(i).type(guava) + " getProperty" + i + "();");
+    }
+    if (kinds.contains(PropertyKind.BUILDABLE)) {
+      for (int level = 1; level <= nestingDepth; level++) {
+        String item = itemName(level);
+        lines.add("");
+        lines.add("  @" + FreeBuilder.class.getName());
+        lines.add("  interface " + item + " {");
+        lines.add("    String getName();");
+        lines.add("    int getCount();");
+        if (level < nestingDepth) {
+          lines.add("    " + itemName(level + 1) + " getChild();");
+        }
+        lines.add("");
+        lines.add("    class Builder extends " + simpleName + "_" + item + "_Builder {}");
+        lines.add("  }");
+      }
+    }
+    lines.add("");
+    lines.add("  class Builder extends " + simpleName + "_Builder {}");
+    lines.add("}");
+    return lines.toArray(new String[lines.size()]);
+  }
+
+  private static String itemName(int level) {
+    return (level == 1) ? "Item" : "Item" + level;
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.inferred.freebuilder.processor.util.feature.GuavaLibrary;
+import org.inferred.freebuilder.processor.util.feature.SourceLevel;
+import org.inferred.freebuilder.processor.util.feature.StaticFeatureSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Benchmarks {@code value.toBuilder().setCount(...).build()} on a value type whose list, set and
+ * map properties are left untouched, which should not copy them however large they are.
+ *
+ * <p>Run with {@code ./gradlew jmh -Pjmh.include=ToBuilderRebuildBenchmark}; with the {@code gc}
+ * profiler, {@code gc.alloc.rate.norm} should not grow with {@code elements}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ToBuilderRebuildBenchmark {
+
+  @Param({"10", "10000"})
+  public int elements;
+
+  /** Whether the value type is generated with Guava available ({@code guava}) or not. */
+  @Param({"guava", "jdk"})
+  public String library;
+
+  private IntUnaryOperator driver;
+
+  @Setup
+  public void setUp() throws Exception {
+    File sourceDirectory = Files.createTempDirectory("rebuild-src").toFile();
+    File outputDirectory = Files.createTempDirectory("rebuild-out").toFile();
+    File dataTypeFile = new File(sourceDirectory, "DataType.java");
+    File driverFile = new File(sourceDirectory, "Driver.java");
+    Files.write(dataTypeFile.toPath(), Arrays.asList(
+        "package com.example;",
+        "@org.inferred.freebuilder.FreeBuilder",
+        "public interface DataType {",
+        "  int getCount();",
+        "  java.util.List<Integer> getItems();",
+        "  java.util.Set<Integer> getKeys();",
+        "  java.util.Map<Integer, String> getNames();",
+        "  Builder toBuilder();",
+        "  class Builder extends DataType_Builder {}",
+        "}"), UTF_8);
+    Files.write(driverFile.toPath(), Arrays.asList(
+        "package com.example;",
+        "public class Driver implements java.util.function.IntUnaryOperator {",
+        "  private DataType value;",
+        "  @Override public int applyAsInt(int elements) {",
+        "    if (value == null) {",
+        "      DataType.Builder builder = new DataType.Builder().setCount(0);",
+        "      for (int i = 0; i < elements; i++) {",
+        "        builder.addItems(i).addKeys(i).putNames(i, \"name\");",
+        "      }",
+        "      value = builder.build();",
+        "    }",
+        "    value = value.toBuilder().setCount(value.getCount() + 1).build();",
+        "    return value.getCount();",
+        "  }",
+        "}"), UTF_8);
+
+    GuavaLibrary guava =
+        library.equals("guava") ? GuavaLibrary.AVAILABLE : GuavaLibrary.UNAVAILABLE;
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, UTF_8);
+    try {
+      CompilationTask task = compiler.getTask(
+          null,
+          fileManager,
+          null,
+          Arrays.asList("-d", outputDirectory.getPath(), "-s", outputDirectory.getPath()),
+          null,
+          fileManager.getJavaFileObjects(dataTypeFile, driverFile));
+      task.setProcessors(Collections.singletonList(
+          new Processor(new StaticFeatureSet(SourceLevel.JAVA_8, guava))));
+      if (!task.call()) {
+        throw new IllegalStateException("Compilation failed");
+      }
+    } finally {
+      fileManager.close();
+    }
+    ClassLoader loader = new URLClassLoader(
+        new URL[] {outputDirectory.toURI().toURL()}, getClass().getClassLoader());
+    driver = (IntUnaryOperator) loader.loadClass("com.example.Driver").newInstance();
+    driver.applyAsInt(elements);
+  }
+
+  @Benchmark
+  public int toBuilderSetCountBuild() {
+    return driver.applyAsInt(elements);
+  }
+}
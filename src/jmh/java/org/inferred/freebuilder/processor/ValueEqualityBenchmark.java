@@ -0,0 +1,212 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Benchmarks the {@code equals} and {@code hashCode} methods of a generated value type, as used
+ * by hash-based collections, against the {@link java.util.Objects}-based methods previously
+ * generated, and against a value type caching its hash code with
+ * {@link org.inferred.freebuilder.Memoized}.
+ *
+ * <p>Run with {@code ./gradlew jmh -Pjmh.include=ValueEqualityBenchmark}; the {@code gc} profiler
+ * shows the boxing done by the {@code objects} implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValueEqualityBenchmark {
+
+  /**
+   * Whether to benchmark the {@code generated} value type, the same type with a {@code memoized}
+   * hash code, or the {@code objects} baseline.
+   */
+  @Param({"generated", "memoized", "objects"})
+  public String implementation;
+
+  private Object value;
+  private Object equalValue;
+  private Object unequalValue;
+
+  @Setup
+  public void setUp() throws Exception {
+    Function<Object[], Object> factory;
+    if (implementation.equals("objects")) {
+      factory = ObjectsValue::new;
+    } else {
+      factory = compileGeneratedValueFactory(implementation.equals("memoized"));
+    }
+    List<String> tags = Arrays.asList("alpha", "beta", "gamma", "delta");
+    value = factory.apply(new Object[] {"name", 42, 1L << 40, 0.5, Colour.GREEN, tags});
+    equalValue = factory.apply(new Object[] {
+        new String("name"), 42, 1L << 40, 0.5, Colour.GREEN, Arrays.asList(tags.toArray())});
+    unequalValue = factory.apply(new Object[] {
+        new String("name"), 43, 1L << 40, 0.5, Colour.GREEN, Arrays.asList(tags.toArray())});
+    // As for keys in a hash-based collection, which lets memoized values reject on hash mismatch.
+    value.hashCode();
+    equalValue.hashCode();
+    unequalValue.hashCode();
+  }
+
+  @Benchmark
+  public int hashCodeOfValue() {
+    return value.hashCode();
+  }
+
+  @Benchmark
+  public boolean equalsEqualValue() {
+    return value.equals(equalValue);
+  }
+
+  @Benchmark
+  public boolean equalsUnequalValue() {
+    return value.equals(unequalValue);
+  }
+
+  public enum Colour { RED, GREEN }
+
+  /**
+   * Compiles a &#64;FreeBuilder type with the same properties as {@link ObjectsValue}, returning a
+   * function that builds instances of it.
+   *
+   * @param memoized whether the type should cache its hash code
+   */
+  private Function<Object[], Object> compileGeneratedValueFactory(boolean memoized)
+      throws Exception {
+    File sourceDirectory = Files.createTempDirectory("equality-src").toFile();
+    File outputDirectory = Files.createTempDirectory("equality-out").toFile();
+    File dataTypeFile = new File(sourceDirectory, "DataType.java");
+    File factoryFile = new File(sourceDirectory, "Factory.java");
+    String colour = Colour.class.getCanonicalName();
+    Files.write(dataTypeFile.toPath(), Arrays.asList(
+        "package com.example;",
+        "@org.inferred.freebuilder.FreeBuilder",
+        "public interface DataType {",
+        "  String getName();",
+        "  int getCount();",
+        "  long getSize();",
+        "  double getRatio();",
+        "  " + colour + " getColour();",
+        "  java.util.List<String> getTags();",
+        memoized ? "  @org.inferred.freebuilder.Memoized @Override int hashCode();" : "",
+        "  class Builder extends DataType_Builder {}",
+        "}"), UTF_8);
+    Files.write(factoryFile.toPath(), Arrays.asList(
+        "package com.example;",
+        "@SuppressWarnings(\"unchecked\")",
+        "public class Factory implements java.util.function.Function<Object[], Object> {",
+        "  @Override public Object apply(Object[] values) {",
+        "    return new DataType.Builder()",
+        "        .setName((String) values[0])",
+        "        .setCount((Integer) values[1])",
+        "        .setSize((Long) values[2])",
+        "        .setRatio((Double) values[3])",
+        "        .setColour((" + colour + ") values[4])",
+        "        .addAllTags((java.util.List<String>) values[5])",
+        "        .build();",
+        "  }",
+        "}"), UTF_8);
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, UTF_8);
+    try {
+      CompilationTask task = compiler.getTask(
+          null,
+          fileManager,
+          null,
+          Arrays.asList("-d", outputDirectory.getPath(), "-s", outputDirectory.getPath()),
+          null,
+          fileManager.getJavaFileObjects(dataTypeFile, factoryFile));
+      task.setProcessors(Collections.singletonList(new Processor()));
+      if (!task.call()) {
+        throw new IllegalStateException("Compilation failed");
+      }
+    } finally {
+      fileManager.close();
+    }
+    ClassLoader loader = new URLClassLoader(
+        new URL[] {outputDirectory.toURI().toURL()}, getClass().getClassLoader());
+    @SuppressWarnings("unchecked")
+    Function<Object[], Object> factory =
+        (Function<Object[], Object>) loader.loadClass("com.example.Factory").newInstance();
+    return factory;
+  }
+
+  /** A value type with the {@code equals} and {@code hashCode} methods previously generated. */
+  private static final class ObjectsValue {
+    private final String name;
+    private final int count;
+    private final long size;
+    private final double ratio;
+    private final Colour colour;
+    private final List<String> tags;
+
+    @SuppressWarnings("unchecked")
+    ObjectsValue(Object[] values) {
+      name = (String) values[0];
+      count = (Integer) values[1];
+      size = (Long) values[2];
+      ratio = (Double) values[3];
+      colour = (Colour) values[4];
+      tags = Collections.unmodifiableList((List<String>) values[5]);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof ObjectsValue)) {
+        return false;
+      }
+      ObjectsValue other = (ObjectsValue) obj;
+      return Objects.equals(name, other.name)
+          && Objects.equals(count, other.count)
+          && Objects.equals(size, other.size)
+          && Objects.equals(ratio, other.ratio)
+          && Objects.equals(colour, other.colour)
+          && Objects.equals(tags, other.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(name, count, size, ratio, colour, tags);
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotates a &#64;{@link FreeBuilder} type whose equal values should share a single canonical
+ * instance.
+ *
+ * <p>The generated builder gains a {@code buildInterned()} method, which returns an existing
+ * value equal to the one {@code build()} would return, if one is still reachable. Canonical
+ * values are only weakly held, so they are garbage collected as normal. Serializable values are
+ * also canonicalized on deserialization.
+ *
+ * <blockquote><pre>&#64;FreeBuilder
+ * &#64;Interned
+ * public interface Address {
+ *   String getStreet();
+ *   String getCity();
+ *
+ *   class Builder extends Address_Builder { }
+ * }</pre></blockquote>
+ *
+ * <p>This is only worthwhile for types with many equal values retained for a long time, as each
+ * call to {@code buildInterned()} hashes the value and looks it up in a shared table.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Interned {}
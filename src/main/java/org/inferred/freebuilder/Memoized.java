@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotates an abstract {@code hashCode} or {@code toString} declaration on a &#64;{@link
+ * FreeBuilder} type, to have the generated value type compute the result once and cache it.
+ *
+ * <blockquote><pre>&#64;FreeBuilder
+ * public interface Catalogue {
+ *   ImmutableMap&lt;String, Item&gt; getItems();
+ *
+ *   &#64;Memoized &#64;Override int hashCode();
+ *   &#64;Memoized &#64;Override String toString();
+ *
+ *   class Builder extends Catalogue_Builder { }
+ * }</pre></blockquote>
+ *
+ * <p>Caching {@code hashCode} also lets {@code equals} reject values whose hash codes are both
+ * known and differ without comparing their properties. Partial values are never cached.
+ *
+ * <p>This is only worthwhile for values with large or many properties that are hashed or printed
+ * repeatedly, e.g. keys of long-lived maps, as each value grows by a field per cached method.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.SOURCE)
+public @interface Memoized {}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotates a &#64;{@link FreeBuilder} type, or one of its list properties, to have the generated
+ * builder back list properties with a persistent list that shares structure with the values it
+ * builds.
+ *
+ * <blockquote><pre>&#64;FreeBuilder
+ * public interface EventLog {
+ *   &#64;PersistentCollections List&lt;Event&gt; getEvents();
+ *
+ *   Builder toBuilder();
+ *   class Builder extends EventLog_Builder { }
+ * }</pre></blockquote>
+ *
+ * <p>Appending to a list taken from a value, e.g. {@code log.toBuilder().addEvents(event).build()},
+ * then takes time and space logarithmic in the size of the list, rather than copying it. Reading
+ * an element is also logarithmic, and only appending is cheap: removing, replacing or inserting
+ * elements with {@code mutateEvents} still copies the list.
+ *
+ * <p>Only {@code List} and {@code Collection} properties are supported. Set and map properties
+ * of an annotated type keep their usual, insertion-ordered backing.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.SOURCE)
+public @interface PersistentCollections {}
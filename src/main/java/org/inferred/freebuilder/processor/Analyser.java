@@ -18,6 +18,8 @@ package org.inferred.freebuilder.processor;
 import static com.google.common.base.Functions.toStringFunction;
 import static com.google.common.base.Objects.equal;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Predicates.instanceOf;
+import static com.google.common.base.Predicates.not;
 import static com.google.common.collect.Iterables.any;
 import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Iterables.tryFind;
@@ -30,30 +32,40 @@ import static javax.tools.Diagnostic.Kind.NOTE;
 import static org.inferred.freebuilder.processor.BuilderFactory.NO_ARGS_CONSTRUCTOR;
 import static org.inferred.freebuilder.processor.GwtSupport.gwtMetadata;
 import static org.inferred.freebuilder.processor.MethodFinder.methodsOn;
+import static org.inferred.freebuilder.processor.Util.erasedName;
 import static org.inferred.freebuilder.processor.naming.NamingConventions.determineNamingConvention;
 import static org.inferred.freebuilder.processor.util.ModelUtils.asElement;
+import static org.inferred.freebuilder.processor.util.ModelUtils.findAnnotationMirror;
 import static org.inferred.freebuilder.processor.util.ModelUtils.getReturnType;
-import static org.inferred.freebuilder.processor.util.ModelUtils.maybeAsTypeElement;
-import static org.inferred.freebuilder.processor.util.ModelUtils.maybeType;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
 
+import com.google.common.annotations.GwtCompatible;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
+import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
+import org.inferred.freebuilder.Interned;
+import org.inferred.freebuilder.Memoized;
+import org.inferred.freebuilder.PersistentCollections;
 import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.Metadata.StandardMethod;
 import org.inferred.freebuilder.processor.Metadata.UnderrideLevel;
 import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.TypeSpecificFactory;
 import org.inferred.freebuilder.processor.naming.NamingConvention;
 import org.inferred.freebuilder.processor.util.ModelUtils;
 import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.QualifiedName;
 
 import java.io.Serializable;
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -112,6 +124,20 @@ class Analyser {
       new BuildableProperty.Factory(),
       new DefaultProperty.Factory()); // Must be last, as it will always return a CodeGenerator
 
+  /**
+   * {@link #PROPERTY_FACTORIES} that may support a property, keyed by the erasure of its type.
+   * Each list keeps the original order, but omits {@link TypeSpecificFactory type-specific
+   * factories} that do not support the key; types not listed use {@link #GENERAL_FACTORIES}.
+   */
+  private static final ImmutableListMultimap<String, PropertyCodeGenerator.Factory>
+      FACTORIES_BY_ERASED_TYPE = factoriesByErasedType();
+
+  /** {@link #PROPERTY_FACTORIES} that may support properties of any type. */
+  private static final ImmutableList<PropertyCodeGenerator.Factory> GENERAL_FACTORIES =
+      FluentIterable.from(PROPERTY_FACTORIES)
+          .filter(not(instanceOf(TypeSpecificFactory.class)))
+          .toList();
+
   private static final String BUILDER_SIMPLE_NAME_TEMPLATE = "%s_Builder";
   private static final String USER_BUILDER_NAME = "Builder";
 
@@ -119,13 +145,38 @@ class Analyser {
   private final Messager messager;
   private final MethodIntrospector methodIntrospector;
   private final Types types;
+  private final TypeHierarchyCache typeHierarchy;
+  private final PropertyTypeCache propertyTypes;
 
   Analyser(
       Elements elements, Messager messager, MethodIntrospector methodIntrospector, Types types) {
+    this(
+        elements,
+        messager,
+        methodIntrospector,
+        types,
+        new TypeHierarchyCache(),
+        new PropertyTypeCache(elements, types));
+  }
+
+  /**
+   * Returns an {@link Analyser} looking up supertypes in {@code typeHierarchy}, and facts about
+   * property types in {@code propertyTypes}, both of which the caller must invalidate at the start
+   * of each round.
+   */
+  Analyser(
+      Elements elements,
+      Messager messager,
+      MethodIntrospector methodIntrospector,
+      Types types,
+      TypeHierarchyCache typeHierarchy,
+      PropertyTypeCache propertyTypes) {
     this.elements = elements;
     this.messager = messager;
     this.methodIntrospector = methodIntrospector;
     this.types = types;
+    this.typeHierarchy = typeHierarchy;
+    this.propertyTypes = propertyTypes;
   }
 
   /**
@@ -136,7 +187,7 @@ class Analyser {
   Metadata analyse(TypeElement type) throws CannotGenerateCodeException {
     PackageElement pkg = elements.getPackageOf(type);
     verifyType(type, pkg);
-    ImmutableSet<ExecutableElement> methods = methodsOn(type, elements);
+    ImmutableSet<ExecutableElement> methods = methodsOn(type, elements, typeHierarchy);
     QualifiedName generatedBuilder = QualifiedName.of(
         pkg.getQualifiedName().toString(), generatedBuilderSimpleName(type));
     Optional<TypeElement> builder = tryFindBuilder(generatedBuilder, type);
@@ -159,39 +210,23 @@ class Analyser {
         .addVisibleNestedTypes(valueType)
         .addVisibleNestedTypes(partialType)
         .addVisibleNestedTypes(propertyType)
-        .addAllVisibleNestedTypes(visibleTypesIn(type))  // Because we inherit from type
+        .addAllVisibleNestedTypes(typeHierarchy.visibleNestedTypes(type))  // We inherit from type
         .putAllStandardMethodUnderrides(findUnderriddenMethods(methods))
+        .addAllMemoizedMethods(findMemoizedMethods(methods))
         .setHasToBuilderMethod(hasToBuilderMethod(builder, builderFactory, methods))
         .setBuilderSerializable(shouldBuilderBeSerializable(builder))
+        .setInterned(isInterned(type))
         .addAllProperties(properties.values());
     Metadata baseMetadata = metadataBuilder.build();
     metadataBuilder.mergeFrom(gwtMetadata(type, baseMetadata));
     if (builder.isPresent()) {
       metadataBuilder
           .clearProperties()
-          .addAllProperties(codeGenerators(properties, baseMetadata, builder.get()));
+          .addAllProperties(codeGenerators(properties, type, baseMetadata, builder.get()));
     }
     return metadataBuilder.build();
   }
 
-  private static Set<QualifiedName> visibleTypesIn(TypeElement type) {
-    ImmutableSet.Builder<QualifiedName> visibleTypes = ImmutableSet.builder();
-    for (TypeElement nestedType : typesIn(type.getEnclosedElements())) {
-      visibleTypes.add(QualifiedName.of(nestedType));
-    }
-    visibleTypes.addAll(visibleTypesIn(maybeType(type.getEnclosingElement())));
-    visibleTypes.addAll(visibleTypesIn(maybeAsTypeElement(type.getSuperclass())));
-    return visibleTypes.build();
-  }
-
-  private static Set<QualifiedName> visibleTypesIn(Optional<TypeElement> type) {
-    if (!type.isPresent()) {
-      return ImmutableSet.of();
-    } else {
-      return visibleTypesIn(type.get());
-    }
-  }
-
   /** Basic sanity-checking to ensure we can fulfil the &#64;FreeBuilder contract for this type. */
   private void verifyType(TypeElement type, PackageElement pkg) throws CannotGenerateCodeException {
     if (pkg.isUnnamed()) {
@@ -310,6 +345,27 @@ class Analyser {
     return result.build();
   }
 
+  /** Find any standard methods the user has asked the value type to cache the result of. */
+  private Set<StandardMethod> findMemoizedMethods(Iterable<ExecutableElement> methods) {
+    Set<StandardMethod> memoizedMethods = EnumSet.noneOf(StandardMethod.class);
+    for (ExecutableElement method : methods) {
+      if (!findAnnotationMirror(method, Memoized.class).isPresent()) {
+        continue;
+      }
+      Optional<StandardMethod> standardMethod = maybeStandardMethod(method);
+      if (!standardMethod.isPresent() || standardMethod.get() == StandardMethod.EQUALS) {
+        messager.printMessage(
+            ERROR, "@Memoized can only be applied to hashCode and toString", method);
+      } else if (isUnderride(method)) {
+        messager.printMessage(
+            ERROR, "@Memoized methods must be abstract, to be implemented by FreeBuilder", method);
+      } else {
+        memoizedMethods.add(standardMethod.get());
+      }
+    }
+    return memoizedMethods;
+  }
+
   /** Find a toBuilder method, if the user has provided one.
    * @param builderFactory */
   private boolean hasToBuilderMethod(
@@ -436,20 +492,35 @@ class Analyser {
 
   private List<Property> codeGenerators(
       Map<ExecutableElement, Property> properties,
+      TypeElement type,
       Metadata metadata,
       TypeElement builder) {
     ImmutableList.Builder<Property> codeGenerators = ImmutableList.builder();
     Set<String> methodsInvokedInBuilderConstructor = getMethodsInvokedInBuilderConstructor(builder);
+    BuilderMethodIndex builderMethodIndex = BuilderMethodIndex.of(builder, types);
+    boolean persistentType = usesPersistentCollections(type, type);
     for (Map.Entry<ExecutableElement, Property> entry : properties.entrySet()) {
+      boolean persistentProperty = usesPersistentCollections(type, entry.getKey());
       Config config = new ConfigImpl(
           builder,
           metadata,
           entry.getValue(),
           entry.getKey(),
-          methodsInvokedInBuilderConstructor);
+          methodsInvokedInBuilderConstructor,
+          builderMethodIndex,
+          persistentType || persistentProperty);
+      PropertyCodeGenerator codeGenerator = createCodeGenerator(config);
+      if (persistentProperty
+          && !(codeGenerator instanceof ListProperty
+              && ((ListProperty) codeGenerator).isPersistent())) {
+        messager.printMessage(
+            ERROR,
+            "@PersistentCollections is only supported on List and Collection properties",
+            entry.getKey());
+      }
       codeGenerators.add(new Property.Builder()
           .mergeFrom(entry.getValue())
-          .setCodeGenerator(createCodeGenerator(config))
+          .setCodeGenerator(codeGenerator)
           .build());
     }
     return codeGenerators.build();
@@ -492,7 +563,13 @@ class Analyser {
   }
 
   private static PropertyCodeGenerator createCodeGenerator(Config config) {
-    for (PropertyCodeGenerator.Factory factory : PROPERTY_FACTORIES) {
+    DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
+    List<PropertyCodeGenerator.Factory> factories =
+        (type == null) ? GENERAL_FACTORIES : FACTORIES_BY_ERASED_TYPE.get(erasedName(type));
+    if (factories.isEmpty()) {
+      factories = GENERAL_FACTORIES;
+    }
+    for (PropertyCodeGenerator.Factory factory : factories) {
       Optional<? extends PropertyCodeGenerator> codeGenerator = factory.create(config);
       if (codeGenerator.isPresent()) {
         return codeGenerator.get();
@@ -501,6 +578,27 @@ class Analyser {
     throw new AssertionError("DefaultPropertyFactory not registered");
   }
 
+  private static ImmutableListMultimap<String, PropertyCodeGenerator.Factory>
+      factoriesByErasedType() {
+    Set<String> erasedTypes = new LinkedHashSet<String>();
+    for (PropertyCodeGenerator.Factory factory : PROPERTY_FACTORIES) {
+      if (factory instanceof TypeSpecificFactory) {
+        erasedTypes.addAll(((TypeSpecificFactory) factory).erasedTypes());
+      }
+    }
+    ImmutableListMultimap.Builder<String, PropertyCodeGenerator.Factory> factoriesByErasedType =
+        ImmutableListMultimap.builder();
+    for (String erasedType : erasedTypes) {
+      for (PropertyCodeGenerator.Factory factory : PROPERTY_FACTORIES) {
+        if (!(factory instanceof TypeSpecificFactory)
+            || ((TypeSpecificFactory) factory).erasedTypes().contains(erasedType)) {
+          factoriesByErasedType.put(erasedType, factory);
+        }
+      }
+    }
+    return factoriesByErasedType.build();
+  }
+
   private class ConfigImpl implements Config {
 
     private final TypeElement builder;
@@ -508,18 +606,24 @@ class Analyser {
     private final Property property;
     private final ExecutableElement getterMethod;
     private final Set<String> methodsInvokedInBuilderConstructor;
+    private final BuilderMethodIndex builderMethodIndex;
+    private final boolean usesPersistentCollections;
 
     ConfigImpl(
         TypeElement builder,
         Metadata metadata,
         Property property,
         ExecutableElement getterMethod,
-        Set<String> methodsInvokedInBuilderConstructor) {
+        Set<String> methodsInvokedInBuilderConstructor,
+        BuilderMethodIndex builderMethodIndex,
+        boolean usesPersistentCollections) {
       this.builder = builder;
       this.metadata = metadata;
       this.property = property;
       this.getterMethod = getterMethod;
       this.methodsInvokedInBuilderConstructor = methodsInvokedInBuilderConstructor;
+      this.builderMethodIndex = builderMethodIndex;
+      this.usesPersistentCollections = usesPersistentCollections;
     }
 
     @Override
@@ -527,6 +631,11 @@ class Analyser {
       return builder;
     }
 
+    @Override
+    public BuilderMethodIndex getBuilderMethodIndex() {
+      return builderMethodIndex;
+    }
+
     @Override
     public Metadata getMetadata() {
       return metadata;
@@ -556,6 +665,16 @@ class Analyser {
     public Types getTypes() {
       return types;
     }
+
+    @Override
+    public PropertyTypeCache getPropertyTypeCache() {
+      return propertyTypes;
+    }
+
+    @Override
+    public boolean usesPersistentCollections() {
+      return usesPersistentCollections;
+    }
   }
 
   /**
@@ -625,6 +744,31 @@ class Analyser {
     return any(builder.get().getInterfaces(), isEqualTo(Serializable.class));
   }
 
+  private boolean isInterned(TypeElement type) {
+    if (!findAnnotationMirror(type, Interned.class).isPresent()) {
+      return false;
+    }
+    if (findAnnotationMirror(type, GwtCompatible.class).isPresent()) {
+      // GWT supports neither weak references nor readResolve.
+      messager.printMessage(ERROR, "@Interned types cannot be @GwtCompatible", type);
+      return false;
+    }
+    return true;
+  }
+
+  private boolean usesPersistentCollections(TypeElement type, Element element) {
+    if (!findAnnotationMirror(element, PersistentCollections.class).isPresent()) {
+      return false;
+    }
+    if (findAnnotationMirror(type, GwtCompatible.class).isPresent()) {
+      // GWT cannot serialize the generated persistent list.
+      messager.printMessage(
+          ERROR, "@PersistentCollections cannot be used on @GwtCompatible types", element);
+      return false;
+    }
+    return true;
+  }
+
   /** Returns whether a method is one of the {@link StandardMethod}s, and if so, which. */
   private static Optional<StandardMethod> maybeStandardMethod(ExecutableElement method) {
     String methodName = method.getSimpleName().toString();
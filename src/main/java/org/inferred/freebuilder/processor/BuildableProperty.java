@@ -187,6 +187,11 @@ class BuildableProperty extends PropertyCodeGenerator {
     this.partialToBuilderMethod = partialToBuilderMethod;
   }
 
+  @Override
+  public boolean isCostlyToCompare() {
+    return true;
+  }
+
   @Override
   public void addBuilderFieldDeclaration(SourceBuilder code) {
     code.addLine("private final %s %s = %s;",
@@ -237,7 +242,8 @@ class BuildableProperty extends PropertyCodeGenerator {
             metadata.getBuilder(),
             setter(property),
             builderType)
-        .addLine("  return %s(builder.build());", setter(property))
+        .add(methodBody(code, "builder")
+            .addLine("  return %s(builder.build());", setter(property)))
         .addLine("}");
   }
 
@@ -276,7 +282,8 @@ class BuildableProperty extends PropertyCodeGenerator {
             metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
         .addLine(" */")
         .addLine("public %s %s() {", builderType, getBuilderMethod(property))
-        .addLine("  return %s;", property.getField())
+        .add(methodBody(code)
+            .addLine("  return %s;", property.getField()))
         .addLine("}");
   }
 
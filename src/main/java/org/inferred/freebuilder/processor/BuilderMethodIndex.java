@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static javax.lang.model.util.ElementFilter.methodsIn;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+/**
+ * The erased parameter types of the methods declared on a user's Builder, indexed by method name.
+ *
+ * <p>Built once per Builder and shared by every property's {@link PropertyCodeGenerator.Factory},
+ * so checking whether a method is overridden only compares against the methods with that name,
+ * rather than scanning the whole Builder again.
+ */
+class BuilderMethodIndex {
+
+  /** Indexes the methods declared on {@code builder}. */
+  static BuilderMethodIndex of(TypeElement builder, Types types) {
+    ImmutableListMultimap.Builder<String, ImmutableList<TypeMirror>> signatures =
+        ImmutableListMultimap.builder();
+    for (ExecutableElement method : methodsIn(builder.getEnclosedElements())) {
+      ImmutableList.Builder<TypeMirror> erasedParameters = ImmutableList.builder();
+      for (VariableElement parameter : method.getParameters()) {
+        erasedParameters.add(types.erasure(parameter.asType()));
+      }
+      signatures.put(method.getSimpleName().toString(), erasedParameters.build());
+    }
+    return new BuilderMethodIndex(signatures.build(), types);
+  }
+
+  private final ImmutableListMultimap<String, ImmutableList<TypeMirror>> signatures;
+  private final Types types;
+
+  private BuilderMethodIndex(
+      ImmutableListMultimap<String, ImmutableList<TypeMirror>> signatures, Types types) {
+    this.signatures = signatures;
+    this.types = types;
+  }
+
+  /**
+   * Returns whether the Builder declares method {@code methodName(params)}, comparing erased
+   * parameter types.
+   */
+  boolean overrides(String methodName, TypeMirror... params) {
+    for (ImmutableList<TypeMirror> erasedParameters : signatures.get(methodName)) {
+      if (parametersMatch(erasedParameters, params)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean parametersMatch(ImmutableList<TypeMirror> erasedParameters, TypeMirror[] params) {
+    if (erasedParameters.size() != params.length) {
+      return false;
+    }
+    for (int i = 0; i < params.length; ++i) {
+      if (!types.isSameType(types.erasure(params[i]), erasedParameters.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
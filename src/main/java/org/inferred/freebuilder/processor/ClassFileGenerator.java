@@ -0,0 +1,566 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.PropertyBytecodeGenerator.UNSET_PROPERTIES;
+import static org.inferred.freebuilder.processor.util.ClassFileBuilder.ACC_ABSTRACT;
+import static org.inferred.freebuilder.processor.util.ClassFileBuilder.ACC_FINAL;
+import static org.inferred.freebuilder.processor.util.ClassFileBuilder.ACC_PRIVATE;
+import static org.inferred.freebuilder.processor.util.ClassFileBuilder.ACC_PUBLIC;
+import static org.inferred.freebuilder.processor.util.ClassFileBuilder.ACC_STATIC;
+import static org.inferred.freebuilder.processor.util.ClassFileBuilder.internalName;
+import static org.inferred.freebuilder.processor.util.ClassFileBuilder.slots;
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+import static org.inferred.freebuilder.processor.util.feature.GenerationMode.GENERATION_MODE;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.Metadata.StandardMethod;
+import org.inferred.freebuilder.processor.Metadata.UnderrideLevel;
+import org.inferred.freebuilder.processor.Metadata.Visibility;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.Type;
+import org.inferred.freebuilder.processor.util.ClassFileBuilder;
+import org.inferred.freebuilder.processor.util.ClassFileBuilder.Code;
+import org.inferred.freebuilder.processor.util.ClassFileBuilder.Label;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Experimental counterpart of {@link CodeGenerator}, writing builders directly as class files.
+ *
+ * <p>Only simple types are supported: a nested {@code Builder} with a no-args constructor, no
+ * type parameters, no customization of the value type, and properties that all have bytecode
+ * generators. Unset required properties are tracked in the same {@code int} bitmask as the
+ * source backend, so at most 32 properties may be required.
+ */
+class ClassFileGenerator {
+
+  private static final QualifiedName OBJECT = QualifiedName.of(Object.class);
+  private static final String OBJECTS = "java/util/Objects";
+  private static final String STRING_BUILDER = "java/lang/StringBuilder";
+  private static final int NESTED_VALUE_ACCESS = ACC_PRIVATE | ACC_STATIC | ACC_FINAL;
+
+  /**
+   * Returns the class files of the builder for {@code metadata}, keyed by binary name, or absent
+   * if they can only be generated as source.
+   */
+  Optional<Map<String, byte[]>> generate(Metadata metadata, FeatureSet features) {
+    Optional<List<PropertyBytecodeGenerator>> generators = bytecodeGenerators(metadata, features);
+    if (!generators.isPresent()) {
+      return Optional.absent();
+    }
+    return Optional.<Map<String, byte[]>>of(new Generation(metadata, generators.get()).write());
+  }
+
+  /** Returns the bytecode generators for every property, or absent if any is unsupported. */
+  private static Optional<List<PropertyBytecodeGenerator>> bytecodeGenerators(
+      Metadata metadata, FeatureSet features) {
+    if (!metadata.hasBuilder()
+        || !metadata.getBuilderFactory().equals(Optional.of(BuilderFactory.NO_ARGS_CONSTRUCTOR))
+        || metadata.getType().isParameterized()
+        || metadata.isBuilderSerializable()
+        || metadata.getHasToBuilderMethod()
+        || !metadata.getGeneratedBuilderAnnotations().isEmpty()
+        || !metadata.getValueTypeAnnotations().isEmpty()
+        || metadata.getValueTypeVisibility() != Visibility.PRIVATE
+        || !metadata.getNestedClasses().isEmpty()
+        || !metadata.getMemoizedMethods().isEmpty()
+        || metadata.isInterned()
+        || !features.get(FUNCTION_PACKAGE).unaryOperator().isPresent()
+        || features.get(GENERATION_MODE).isAbiOnly()) {
+      return Optional.absent();
+    }
+    for (StandardMethod standardMethod : StandardMethod.values()) {
+      if (metadata.standardMethodUnderride(standardMethod) != UnderrideLevel.ABSENT) {
+        return Optional.absent();
+      }
+    }
+    ImmutableList.Builder<PropertyBytecodeGenerator> generators = ImmutableList.builder();
+    int requiredProperties = 0;
+    for (Property property : metadata.getProperties()) {
+      int unsetBit = 0;
+      if (property.getCodeGenerator().getType() == Type.REQUIRED) {
+        if (requiredProperties == Integer.SIZE) {
+          return Optional.absent();
+        }
+        unsetBit = 1 << requiredProperties++;
+      }
+      Optional<PropertyBytecodeGenerator> generator =
+          property.getCodeGenerator().getBytecodeGenerator(unsetBit);
+      if (!generator.isPresent()) {
+        return Optional.absent();
+      }
+      generators.add(generator.get());
+    }
+    return Optional.<List<PropertyBytecodeGenerator>>of(generators.build());
+  }
+
+  /** The class files of a single builder. */
+  private static class Generation {
+
+    private final Metadata metadata;
+    private final List<PropertyBytecodeGenerator> generators;
+    private final QualifiedName generatedBuilderName;
+    private final String generatedBuilder;
+    private final String builder;
+    private final String builderDescriptor;
+    private final String type;
+    private final String typeDescriptor;
+    /** Bits of every property that may be unset, or 0 if all have defaults. */
+    private final int allUnset;
+
+    Generation(Metadata metadata, List<PropertyBytecodeGenerator> generators) {
+      this.metadata = metadata;
+      this.generators = generators;
+      generatedBuilderName = metadata.getGeneratedBuilder().getQualifiedName();
+      generatedBuilder = internalName(generatedBuilderName);
+      builder = internalName(metadata.getBuilder().getQualifiedName());
+      builderDescriptor = ClassFileBuilder.descriptor(metadata.getBuilder().getQualifiedName());
+      type = internalName(metadata.getType().getQualifiedName());
+      typeDescriptor = ClassFileBuilder.descriptor(metadata.getType().getQualifiedName());
+      int bits = 0;
+      for (PropertyBytecodeGenerator generator : generators) {
+        bits |= generator.getUnsetBit();
+      }
+      allUnset = bits;
+    }
+
+    Map<String, byte[]> write() {
+      QualifiedName value = metadata.getValueType().getQualifiedName();
+      QualifiedName partial = metadata.getPartialType().getQualifiedName();
+      return ImmutableMap.of(
+          binaryName(generatedBuilderName), builderClass(value, partial),
+          binaryName(value), valueClass(value, false),
+          binaryName(partial), valueClass(partial, true));
+    }
+
+    private byte[] builderClass(QualifiedName value, QualifiedName partial) {
+      ClassFileBuilder cls = new ClassFileBuilder(ACC_ABSTRACT, generatedBuilderName, OBJECT)
+          .addNestedClass(value, NESTED_VALUE_ACCESS)
+          .addNestedClass(partial, NESTED_VALUE_ACCESS);
+      addStaticFromMethod(cls);
+      addConstructor(cls);
+      for (PropertyBytecodeGenerator generator : generators) {
+        generator.addBuilderField(cls);
+      }
+      if (allUnset != 0) {
+        cls.addField(ACC_PRIVATE, UNSET_PROPERTIES, "I");
+      }
+      for (PropertyBytecodeGenerator generator : generators) {
+        generator.addBuilderFieldAccessors(cls);
+      }
+      addMergeFromValueMethod(cls);
+      addMergeFromBuilderMethod(cls);
+      addClearMethod(cls);
+      addBuildMethod(cls, internalName(value));
+      addBuildPartialMethod(cls, internalName(partial));
+      return cls.toByteArray();
+    }
+
+    private void addStaticFromMethod(ClassFileBuilder cls) {
+      Code code = cls.addMethod(
+          ACC_PUBLIC | ACC_STATIC, "from", "(" + typeDescriptor + ")" + builderDescriptor);
+      newBuilder(code);
+      code.load(typeDescriptor, 0)
+          .invokeVirtual(
+              generatedBuilder, "mergeFrom", "(" + typeDescriptor + ")" + builderDescriptor)
+          .op(Code.ARETURN, -1);
+    }
+
+    private void addConstructor(ClassFileBuilder cls) {
+      Code code = cls.addMethod(0, "<init>", "()V");
+      code.load("L", 0)
+          .invokeSpecial("java/lang/Object", "<init>", "()V");
+      if (allUnset != 0) {
+        code.load("L", 0)
+            .pushInt(allUnset)
+            .putField(generatedBuilder, UNSET_PROPERTIES, "I");
+      }
+      code.op(Code.RETURN, 0);
+    }
+
+    private void addMergeFromValueMethod(ClassFileBuilder cls) {
+      Code code = cls.addMethod(
+          ACC_PUBLIC, "mergeFrom", "(" + typeDescriptor + ")" + builderDescriptor);
+      int defaults = freshBuilder(code);
+      for (PropertyBytecodeGenerator generator : generators) {
+        generator.addMergeFromValue(code, 1, defaults);
+      }
+      returnThis(code);
+    }
+
+    private void addMergeFromBuilderMethod(ClassFileBuilder cls) {
+      Code code = cls.addMethod(
+          ACC_PUBLIC, "mergeFrom", "(" + builderDescriptor + ")" + builderDescriptor);
+      int defaults = freshBuilder(code);
+      for (PropertyBytecodeGenerator generator : generators) {
+        generator.addMergeFromBuilder(code, 1, defaults);
+      }
+      returnThis(code);
+    }
+
+    private void addClearMethod(ClassFileBuilder cls) {
+      Code code = cls.addMethod(ACC_PUBLIC, "clear", "()" + builderDescriptor);
+      int defaults = freshBuilder(code);
+      for (PropertyBytecodeGenerator generator : generators) {
+        generator.addClearField(code, defaults);
+      }
+      if (allUnset != 0) {
+        code.load("L", 0)
+            .load("L", defaults)
+            .getField(generatedBuilder, UNSET_PROPERTIES, "I")
+            .putField(generatedBuilder, UNSET_PROPERTIES, "I");
+      }
+      returnThis(code);
+    }
+
+    private void addBuildMethod(ClassFileBuilder cls, String value) {
+      Code code = cls.addMethod(ACC_PUBLIC, "build", "()" + typeDescriptor);
+      if (allUnset != 0) {
+        // Lists the unset properties like the source backend, which prints an EnumSet
+        Label allSet = code.newLabel();
+        code.load("L", 0)
+            .getField(generatedBuilder, UNSET_PROPERTIES, "I")
+            .jump(Code.IFEQ, allSet);
+        int unset = code.newLocal("L");
+        code.newInstance("java/util/ArrayList")
+            .op(Code.DUP, 1)
+            .invokeSpecial("java/util/ArrayList", "<init>", "()V")
+            .store("L", unset);
+        for (PropertyBytecodeGenerator generator : generators) {
+          if (generator.getUnsetBit() != 0) {
+            Label isSet = code.newLabel();
+            code.load("L", 0);
+            jumpIfUnset(code, generator.getUnsetBit(), Code.IFEQ, isSet);
+            code.load("L", unset)
+                .pushString(generator.property.getName())
+                .invokeVirtual("java/util/ArrayList", "add", "(Ljava/lang/Object;)Z")
+                .op(Code.POP, -1)
+                .bind(isSet);
+          }
+        }
+        int message = code.newLocal("L");
+        code.pushString("Not set: ")
+            .load("L", unset)
+            .invokeStatic("java/lang/String", "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;")
+            .invokeVirtual("java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;")
+            .store("L", message)
+            .newInstance("java/lang/IllegalStateException")
+            .op(Code.DUP, 1)
+            .load("L", message)
+            .invokeSpecial("java/lang/IllegalStateException", "<init>", "(Ljava/lang/String;)V")
+            .op(Code.ATHROW, -1)
+            .bind(allSet);
+      }
+      code.newInstance(value)
+          .op(Code.DUP, 1);
+      for (PropertyBytecodeGenerator generator : generators) {
+        loadBuilderField(code, generator);
+      }
+      code.invokeSpecial(value, "<init>", constructorDescriptor(false))
+          .op(Code.ARETURN, -1);
+    }
+
+    private void addBuildPartialMethod(ClassFileBuilder cls, String partial) {
+      Code code = cls.addMethod(ACC_PUBLIC, "buildPartial", "()" + typeDescriptor);
+      code.newInstance(partial)
+          .op(Code.DUP, 1);
+      for (PropertyBytecodeGenerator generator : generators) {
+        loadBuilderField(code, generator);
+      }
+      if (allUnset != 0) {
+        code.load("L", 0)
+            .getField(generatedBuilder, UNSET_PROPERTIES, "I");
+      }
+      code.invokeSpecial(partial, "<init>", constructorDescriptor(true))
+          .op(Code.ARETURN, -1);
+    }
+
+    /**
+     * Returns the class file of the value type, or of the partial type if {@code isPartial} is
+     * true. Partials additionally store the bitmask of unset properties, which their getters,
+     * {@code equals}, {@code hashCode} and {@code toString} methods respect.
+     */
+    private byte[] valueClass(QualifiedName name, boolean isPartial) {
+      QualifiedName superclass = metadata.isInterfaceType()
+          ? OBJECT
+          : metadata.getType().getQualifiedName();
+      ClassFileBuilder cls = metadata.isInterfaceType()
+          ? new ClassFileBuilder(ACC_FINAL, name, superclass, metadata.getType().getQualifiedName())
+          : new ClassFileBuilder(ACC_FINAL, name, superclass);
+      cls.addNestedClass(name, NESTED_VALUE_ACCESS);
+      String self = internalName(name);
+      boolean hasMask = isPartial && allUnset != 0;
+      for (PropertyBytecodeGenerator generator : generators) {
+        cls.addField(
+            ACC_PRIVATE | ACC_FINAL, generator.property.getName(), generator.getDescriptor());
+      }
+      if (hasMask) {
+        cls.addField(ACC_PRIVATE | ACC_FINAL, UNSET_PROPERTIES, "I");
+      }
+
+      Code constructor = cls.addMethod(0, "<init>", constructorDescriptor(isPartial));
+      constructor.load("L", 0)
+          .invokeSpecial(internalName(superclass), "<init>", "()V");
+      int slot = 1;
+      for (PropertyBytecodeGenerator generator : generators) {
+        constructor.load("L", 0)
+            .load(generator.getDescriptor(), slot)
+            .putField(self, generator.property.getName(), generator.getDescriptor());
+        slot += slots(generator.getDescriptor());
+      }
+      if (hasMask) {
+        constructor.load("L", 0)
+            .load("I", slot)
+            .putField(self, UNSET_PROPERTIES, "I");
+      }
+      constructor.op(Code.RETURN, 0);
+
+      for (PropertyBytecodeGenerator generator : generators) {
+        String descriptor = generator.getDescriptor();
+        Code getter =
+            cls.addMethod(ACC_PUBLIC, generator.property.getGetterName(), "()" + descriptor);
+        if (isPartial && generator.getUnsetBit() != 0) {
+          Label isSet = getter.newLabel();
+          getter.load("L", 0)
+              .getField(self, UNSET_PROPERTIES, "I")
+              .pushInt(generator.getUnsetBit())
+              .op(Code.IAND, -1)
+              .jump(Code.IFEQ, isSet)
+              .throwNew(
+                  "java/lang/UnsupportedOperationException",
+                  generator.property.getName() + " not set")
+              .bind(isSet);
+        }
+        getter.load("L", 0)
+            .getField(self, generator.property.getName(), descriptor)
+            .returnValue(descriptor);
+      }
+
+      addEquals(cls, self, hasMask);
+      addHashCode(cls, self, hasMask);
+      if (isPartial) {
+        addPartialToString(cls, self);
+      } else {
+        addValueToString(cls, self);
+      }
+      return cls.toByteArray();
+    }
+
+    private void addEquals(ClassFileBuilder cls, String self, boolean hasMask) {
+      Code code = cls.addMethod(ACC_PUBLIC, "equals", "(Ljava/lang/Object;)Z");
+      Label notEqual = code.newLabel();
+      code.load("L", 1)
+          .instanceOf(self)
+          .jump(Code.IFEQ, notEqual);
+      int other = code.newLocal("L");
+      code.load("L", 1)
+          .checkCast(self)
+          .store("L", other);
+      for (PropertyBytecodeGenerator generator : generators) {
+        String descriptor = generator.getDescriptor();
+        code.load("L", 0)
+            .getField(self, generator.property.getName(), descriptor)
+            .box(descriptor)
+            .load("L", other)
+            .getField(self, generator.property.getName(), descriptor)
+            .box(descriptor);
+        jumpIfNotEqual(code, notEqual);
+      }
+      if (hasMask) {
+        code.load("L", 0)
+            .getField(self, UNSET_PROPERTIES, "I")
+            .box("I")
+            .load("L", other)
+            .getField(self, UNSET_PROPERTIES, "I")
+            .box("I");
+        jumpIfNotEqual(code, notEqual);
+      }
+      code.pushInt(1)
+          .returnValue("Z")
+          .bind(notEqual)
+          .pushInt(0)
+          .returnValue("Z");
+    }
+
+    private static void jumpIfNotEqual(Code code, Label notEqual) {
+      code.invokeStatic(OBJECTS, "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z")
+          .jump(Code.IFEQ, notEqual);
+    }
+
+    private void addHashCode(ClassFileBuilder cls, String self, boolean hasMask) {
+      Code code = cls.addMethod(ACC_PUBLIC, "hashCode", "()I");
+      code.pushInt(generators.size() + (hasMask ? 1 : 0))
+          .newArray("java/lang/Object");
+      int index = 0;
+      for (PropertyBytecodeGenerator generator : generators) {
+        code.op(Code.DUP, 1)
+            .pushInt(index++)
+            .load("L", 0)
+            .getField(self, generator.property.getName(), generator.getDescriptor())
+            .box(generator.getDescriptor())
+            .storeArrayElement();
+      }
+      if (hasMask) {
+        code.op(Code.DUP, 1)
+            .pushInt(index)
+            .load("L", 0)
+            .getField(self, UNSET_PROPERTIES, "I")
+            .box("I")
+            .storeArrayElement();
+      }
+      code.invokeStatic(OBJECTS, "hash", "([Ljava/lang/Object;)I")
+          .returnValue("I");
+    }
+
+    private void addValueToString(ClassFileBuilder cls, String self) {
+      Code code = cls.addMethod(ACC_PUBLIC, "toString", "()Ljava/lang/String;");
+      code.newInstance(STRING_BUILDER)
+          .op(Code.DUP, 1)
+          .pushString(metadata.getType().getSimpleName() + "{")
+          .invokeSpecial(STRING_BUILDER, "<init>", "(Ljava/lang/String;)V");
+      String separator = "";
+      for (PropertyBytecodeGenerator generator : generators) {
+        code.pushString(separator + generator.property.getName() + "=");
+        append(code, "Ljava/lang/String;");
+        code.load("L", 0)
+            .getField(self, generator.property.getName(), generator.getDescriptor());
+        append(code, generator.getDescriptor());
+        separator = ", ";
+      }
+      code.pushString("}");
+      append(code, "Ljava/lang/String;");
+      code.invokeVirtual(STRING_BUILDER, "toString", "()Ljava/lang/String;")
+          .op(Code.ARETURN, -1);
+    }
+
+    private void addPartialToString(ClassFileBuilder cls, String self) {
+      Code code = cls.addMethod(ACC_PUBLIC, "toString", "()Ljava/lang/String;");
+      int result = code.newLocal("L");
+      int separator = code.newLocal("L");
+      code.newInstance(STRING_BUILDER)
+          .op(Code.DUP, 1)
+          .pushString("partial " + metadata.getType().getSimpleName() + "{")
+          .invokeSpecial(STRING_BUILDER, "<init>", "(Ljava/lang/String;)V")
+          .store("L", result)
+          .pushString("")
+          .store("L", separator);
+      for (PropertyBytecodeGenerator generator : generators) {
+        Label skip = code.newLabel();
+        if (generator.getUnsetBit() != 0) {
+          code.load("L", 0)
+              .getField(self, UNSET_PROPERTIES, "I")
+              .pushInt(generator.getUnsetBit())
+              .op(Code.IAND, -1)
+              .jump(Code.IFNE, skip);
+        }
+        code.load("L", result)
+            .load("L", separator);
+        append(code, "Ljava/lang/String;");
+        code.pushString(generator.property.getName() + "=");
+        append(code, "Ljava/lang/String;");
+        code.load("L", 0)
+            .getField(self, generator.property.getName(), generator.getDescriptor());
+        append(code, generator.getDescriptor());
+        code.op(Code.POP, -1)
+            .pushString(", ")
+            .store("L", separator)
+            .bind(skip);
+      }
+      code.load("L", result)
+          .pushString("}");
+      append(code, "Ljava/lang/String;");
+      code.invokeVirtual(STRING_BUILDER, "toString", "()Ljava/lang/String;")
+          .op(Code.ARETURN, -1);
+    }
+
+    /** Appends the value of type {@code descriptor} to the StringBuilder beneath it. */
+    private static void append(Code code, String descriptor) {
+      String argument;
+      switch (descriptor.charAt(0)) {
+        case 'B':
+        case 'S':
+          argument = "I";
+          break;
+        case 'L':
+          argument = descriptor.equals("Ljava/lang/String;") ? descriptor : "Ljava/lang/Object;";
+          break;
+        case '[':
+          argument = "Ljava/lang/Object;";
+          break;
+        default:
+          argument = descriptor;
+      }
+      code.invokeVirtual(STRING_BUILDER, "append", "(" + argument + ")L" + STRING_BUILDER + ";");
+    }
+
+    /** Returns the descriptor of the value type's constructor, or the partial type's. */
+    private String constructorDescriptor(boolean isPartial) {
+      StringBuilder descriptor = new StringBuilder("(");
+      for (PropertyBytecodeGenerator generator : generators) {
+        descriptor.append(generator.getDescriptor());
+      }
+      if (isPartial && allUnset != 0) {
+        descriptor.append("I");
+      }
+      return descriptor.append(")V").toString();
+    }
+
+    private void loadBuilderField(Code code, PropertyBytecodeGenerator generator) {
+      code.load("L", 0)
+          .getField(generatedBuilder, generator.property.getName(), generator.getDescriptor());
+    }
+
+    /** Pushes a new instance of the user's builder. */
+    private void newBuilder(Code code) {
+      code.newInstance(builder)
+          .op(Code.DUP, 1)
+          .invokeSpecial(builder, "<init>", "()V");
+    }
+
+    /** Stores a new instance of the user's builder in a new local, returning its slot. */
+    private int freshBuilder(Code code) {
+      int defaults = code.newLocal("L");
+      newBuilder(code);
+      code.store("L", defaults);
+      return defaults;
+    }
+
+    private void returnThis(Code code) {
+      code.load("L", 0)
+          .checkCast(builder)
+          .op(Code.ARETURN, -1);
+    }
+
+    /** Pops a builder, jumping to {@code target} as {@code opcode} tests its {@code bit}. */
+    private void jumpIfUnset(Code code, int bit, int opcode, Label target) {
+      code.getField(generatedBuilder, UNSET_PROPERTIES, "I")
+          .pushInt(bit)
+          .op(Code.IAND, -1)
+          .jump(opcode, target);
+    }
+
+    private static String binaryName(QualifiedName name) {
+      return internalName(name).replace('/', '.');
+    }
+  }
+}
@@ -26,8 +26,11 @@ import static org.inferred.freebuilder.processor.util.Block.methodBody;
 import static org.inferred.freebuilder.processor.util.LazyName.addLazyDefinitions;
 import static org.inferred.freebuilder.processor.util.ObjectsExcerpts.Nullability.NOT_NULLABLE;
 import static org.inferred.freebuilder.processor.util.ObjectsExcerpts.Nullability.NULLABLE;
+import static org.inferred.freebuilder.processor.util.feature.GenerationMode.GENERATION_MODE;
 import static org.inferred.freebuilder.processor.util.feature.GuavaLibrary.GUAVA;
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.SOURCE_LEVEL;
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.diamondOperator;
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.nestedDiamondOperator;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
@@ -35,8 +38,11 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
 
 import org.inferred.freebuilder.FreeBuilder;
 import org.inferred.freebuilder.processor.Metadata.Property;
@@ -47,20 +53,50 @@ import org.inferred.freebuilder.processor.util.Excerpt;
 import org.inferred.freebuilder.processor.util.Excerpts;
 import org.inferred.freebuilder.processor.util.FieldAccess;
 import org.inferred.freebuilder.processor.util.ObjectsExcerpts;
-import org.inferred.freebuilder.processor.util.PreconditionExcerpts;
+import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.SourceBuilder;
 
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.util.Arrays;
-import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
 
 /**
  * Code generation for the &#64;{@link FreeBuilder} annotation.
  */
 public class CodeGenerator {
 
-  static final FieldAccess UNSET_PROPERTIES = new FieldAccess("_unsetProperties");
+  /** Field caching the hash code of a value, or 0 if it has not been computed yet. */
+  private static final FieldAccess HASH_CODE_CACHE = new FieldAccess("_hashCode");
+  /** Field caching the string representation of a value, or null if not computed yet. */
+  private static final FieldAccess TO_STRING_CACHE = new FieldAccess("_toString");
+
+  /**
+   * Orders properties so {@code equals} compares primitives first, then enums, then any other
+   * properties that are cheap to compare, leaving collections until last.
+   */
+  private static final Ordering<Property> EQUALS_ORDER = Ordering.natural().onResultOf(
+      new Function<Property, Integer>() {
+        @Override
+        public Integer apply(Property property) {
+          if (property.getType().getKind().isPrimitive()) {
+            return 0;
+          } else if (isEnum(property.getType())) {
+            return 1;
+          } else if (!property.getCodeGenerator().isCostlyToCompare()) {
+            return 2;
+          } else {
+            return 3;
+          }
+        }
+      });
 
   /** Write the source code for a generated builder. */
   void writeBuilderSource(SourceBuilder code, Metadata metadata) {
@@ -68,6 +104,11 @@ public class CodeGenerator {
       writeStubSource(code, metadata);
       return;
     }
+    UnsetProperties.declare(code, metadata);
+    if (code.feature(GENERATION_MODE).isAbiOnly()) {
+      writeAbiSource(code, metadata);
+      return;
+    }
 
     addBuilderTypeDeclaration(code, metadata);
     code.addLine(" {");
@@ -84,6 +125,9 @@ public class CodeGenerator {
     addMergeFromBuilderMethod(code, metadata);
     addClearMethod(code, metadata);
     addBuildMethod(code, metadata);
+    if (metadata.isInterned()) {
+      addBuildInternedMethod(code, metadata);
+    }
     addBuildPartialMethod(code, metadata);
 
     addValueType(code, metadata);
@@ -123,8 +167,9 @@ public class CodeGenerator {
             metadata.getBuilder().declarationParameters(),
             metadata.getBuilder(),
             metadata.getType())
-        .addLine("  return %s.mergeFrom(value);",
-            builderFactory.newBuilder(metadata.getBuilder(), EXPLICIT_TYPES))
+        .add(methodBody(code, "value")
+            .addLine("  return %s.mergeFrom(value);",
+                builderFactory.newBuilder(metadata.getBuilder(), EXPLICIT_TYPES)))
         .addLine("}");
   }
 
@@ -144,9 +189,7 @@ public class CodeGenerator {
     }
     // Unset properties
     if (any(metadata.getProperties(), IS_REQUIRED)) {
-      code.addLine("private final %s<%s> %s =",
-              EnumSet.class, metadata.getPropertyEnum(), UNSET_PROPERTIES)
-          .addLine("    %s.allOf(%s.class);", EnumSet.class, metadata.getPropertyEnum());
+      UnsetProperties.in(code).addBuilderFieldDeclarations(code);
     }
   }
 
@@ -168,11 +211,42 @@ public class CodeGenerator {
     }
     code.addLine(" */")
         .addLine("public %s build() {", metadata.getType());
+    Block body = methodBody(code);
     if (hasRequiredProperties) {
-      code.add(PreconditionExcerpts.checkState(
-          Excerpts.add("%s.isEmpty()", UNSET_PROPERTIES), "Not set: %s", UNSET_PROPERTIES));
+      // Only decode the property names on failure
+      UnsetProperties unsetProperties = UnsetProperties.in(code);
+      body.addLine("  if (%s) {", unsetProperties.anyUnset())
+          .addLine("    throw new %s(\"Not set: \" + %s);",
+              IllegalStateException.class, unsetProperties.names())
+          .addLine("  }");
+    }
+    body.addLine("  return %s(this);", metadata.getValueType().constructor());
+    code.add(body)
+        .addLine("}");
+  }
+
+  private static void addBuildInternedMethod(SourceBuilder code, Metadata metadata) {
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * Returns a %s based on the contents of the {@code %s}, reusing an equal",
+            metadata.getType().javadocLink(), metadata.getBuilder().getSimpleName())
+        .addLine(" * instance built the same way if one is still reachable.");
+    if (any(metadata.getProperties(), IS_REQUIRED)) {
+      code.addLine(" *")
+          .addLine(" * @throws IllegalStateException if any field has not been set");
+    }
+    code.addLine(" */");
+    Block body = methodBody(code);
+    if (metadata.getType().isParameterized()) {
+      // Equal values are interchangeable whatever their type parameters, as they are immutable.
+      code.addLine("@%s(\"unchecked\")", SuppressWarnings.class);
+      body.addLine("  return (%s) %s.intern(build());",
+          metadata.getType(), metadata.getValueType().getQualifiedName());
+    } else {
+      body.addLine("  return %s.intern(build());", metadata.getValueType().getQualifiedName());
     }
-    code.addLine("  return %s(this);", metadata.getValueType().constructor())
+    code.addLine("public %s buildInterned() {", metadata.getType())
+        .add(body)
         .addLine("}");
   }
 
@@ -221,15 +295,14 @@ public class CodeGenerator {
     for (PropertyCodeGenerator codeGenerator : codeGenerators) {
       codeGenerator.addClearField(body);
     }
-    code.add(body);
     if (any(metadata.getProperties(), IS_REQUIRED)) {
       Optional<Excerpt> defaults = Declarations.freshBuilder(body, metadata);
       if (defaults.isPresent()) {
-        code.addLine("  %s.clear();", UNSET_PROPERTIES)
-            .addLine("  %s.addAll(%s);", UNSET_PROPERTIES, UNSET_PROPERTIES.on(defaults.get()));
+        UnsetProperties.in(code).addCopyFrom(body, "  ", defaults.get());
       }
     }
-    code.addLine("  return (%s) this;", metadata.getBuilder())
+    body.addLine("  return (%s) this;", metadata.getBuilder());
+    code.add(body)
         .addLine("}");
   }
 
@@ -262,31 +335,37 @@ public class CodeGenerator {
       code.addLine("@%s()", VisibleForTesting.class);
     }
     code.addLine("public %s buildPartial() {", metadata.getType())
-        .addLine("  return %s(this);", metadata.getPartialType().constructor())
+        .add(methodBody(code)
+            .addLine("  return %s(this);", metadata.getPartialType().constructor()))
         .addLine("}");
   }
 
   private static void addPropertyEnum(Metadata metadata, SourceBuilder code) {
+    UnsetProperties unsetProperties = UnsetProperties.in(code);
     code.addLine("")
         .addLine("private enum %s {", metadata.getPropertyEnum().getSimpleName());
     for (Property property : metadata.getProperties()) {
       if (property.getCodeGenerator().getType() == Type.REQUIRED) {
-        code.addLine("  %s(\"%s\"),", property.getAllCapsName(), property.getName());
+        code.addLine("  %s(\"%s\", %s),",
+            property.getAllCapsName(), property.getName(), unsetProperties.bitIndex(property));
       }
     }
     code.addLine("  ;")
         .addLine("")
         .addLine("  private final %s name;", String.class)
+        .addLine("  private final int bit;")
         .addLine("")
-        .addLine("  private %s(%s name) {",
+        .addLine("  private %s(%s name, int bit) {",
             metadata.getPropertyEnum().getSimpleName(), String.class)
         .addLine("    this.name = name;")
+        .addLine("    this.bit = bit;")
         .addLine("  }")
         .addLine("")
         .addLine("  @%s public %s toString() {", Override.class, String.class)
         .addLine("    return name;")
-        .addLine("  }")
-        .addLine("}");
+        .addLine("  }");
+    unsetProperties.addDecodeMethod(code);
+    code.addLine("}");
   }
 
   private static void addValueType(SourceBuilder code, Metadata metadata) {
@@ -302,6 +381,12 @@ public class CodeGenerator {
     for (Property property : metadata.getProperties()) {
       property.getCodeGenerator().addValueFieldDeclaration(code, property.getField());
     }
+    if (isMemoized(metadata, StandardMethod.HASH_CODE)) {
+      code.addLine("private transient int %s;", HASH_CODE_CACHE);
+    }
+    if (isMemoized(metadata, StandardMethod.TO_STRING)) {
+      code.addLine("private transient %s %s;", String.class, TO_STRING_CACHE);
+    }
     // Constructor
     code.addLine("")
         .addLine("  private %s(%s builder) {",
@@ -362,68 +447,191 @@ public class CodeGenerator {
     }
     // Hash code
     if (metadata.standardMethodUnderride(StandardMethod.HASH_CODE) == ABSENT) {
-      FieldAccessList properties = getFields(metadata.getProperties());
-      code.addLine("")
-          .addLine("  @%s", Override.class)
-          .addLine("  public int hashCode() {");
-      if (code.feature(SOURCE_LEVEL).javaUtilObjects().isPresent()) {
-        code.addLine("    return %s.hash(%s);",
-            code.feature(SOURCE_LEVEL).javaUtilObjects().get(), properties);
-      } else {
-        code.addLine("    return %s.hashCode(new Object[] { %s });", Arrays.class, properties);
-      }
-      code.addLine("  }");
+      addValueTypeHashCode(code, metadata);
     }
     // toString
     if (metadata.standardMethodUnderride(StandardMethod.TO_STRING) == ABSENT) {
-      addValueTypeToString(code, metadata);
+      if (isMemoized(metadata, StandardMethod.TO_STRING)) {
+        // Racy single-check idiom: Strings are immutable, so safe to publish without locking.
+        code.addLine("")
+            .addLine("  @%s", Override.class)
+            .addLine("  public %s toString() {", String.class)
+            .addLine("    %s result = %s;", String.class, TO_STRING_CACHE)
+            .addLine("    if (result == null) {")
+            .addLine("      result = _toStringUncached();")
+            .addLine("      %s = result;", TO_STRING_CACHE)
+            .addLine("    }")
+            .addLine("    return result;")
+            .addLine("  }");
+        addValueTypeToString(code, metadata, "private %s _toStringUncached()");
+      } else {
+        addValueTypeToString(code, metadata, "@%2$s public %1$s toString()");
+      }
+    }
+    if (metadata.isInterned()) {
+      addValueTypeInterner(code, metadata);
     }
     code.addLine("}");
   }
 
+  /**
+   * Adds a weakly-held table of canonical values to the value type, and uses it to canonicalize
+   * deserialized values.
+   */
+  private static void addValueTypeInterner(SourceBuilder code, Metadata metadata) {
+    ParameterizedType type = metadata.getType().withWildcards();
+    code.addLine("");
+    if (code.feature(GUAVA).isAvailable()) {
+      code.addLine("  private static final %s<%s> INTERNER = %s.newWeakInterner();",
+              Interner.class, type, Interners.class)
+          .addLine("")
+          .addLine("  static %1$s intern(%1$s value) {", type)
+          .addLine("    return INTERNER.intern(value);")
+          .addLine("  }");
+    } else {
+      // Values are held weakly by both the keys and the values of the map, so are not retained.
+      code.addLine("  private static final %s<%s, %s<%s>> INTERNER =",
+              Map.class, type, WeakReference.class, type)
+          .addLine("      new %s%s();",
+              WeakHashMap.class,
+              diamondOperator(Excerpts.add("%s, %s<%s>", type, WeakReference.class, type)))
+          .addLine("")
+          .addLine("  static %1$s intern(%1$s value) {", type)
+          .addLine("    synchronized (INTERNER) {")
+          .addLine("      %s<%s> reference = INTERNER.get(value);", WeakReference.class, type)
+          .addLine("      %s canonical = (reference == null) ? null : reference.get();", type)
+          .addLine("      if (canonical == null) {")
+          .addLine("        INTERNER.put(value, new %s%s(value));",
+              WeakReference.class, nestedDiamondOperator(type))
+          .addLine("        canonical = value;")
+          .addLine("      }")
+          .addLine("      return canonical;")
+          .addLine("    }")
+          .addLine("  }");
+    }
+    code.addLine("")
+        .addLine("  private %s readResolve() {", Object.class)
+        .addLine("    return intern(this);")
+        .addLine("  }");
+  }
+
+  /** Returns whether the value type should cache the result of {@code standardMethod}. */
+  private static boolean isMemoized(Metadata metadata, StandardMethod standardMethod) {
+    // Without properties, the results are constant anyway.
+    return metadata.getMemoizedMethods().contains(standardMethod)
+        && !metadata.getProperties().isEmpty();
+  }
+
   private static void addValueTypeEquals(SourceBuilder code, Metadata metadata) {
     // Default implementation if no user implementation exists.
     code.addLine("")
         .addLine("  @%s", Override.class)
         .addLine("  public boolean equals(Object obj) {");
     Block body = methodBody(code, "obj");
-    body.addLine("    if (!(obj instanceof %s)) {", metadata.getValueType().getQualifiedName())
+    body.addLine("    if (obj == this) {")
+        .addLine("      return true;")
+        .addLine("    }")
+        .addLine("    if (!(obj instanceof %s)) {", metadata.getValueType().getQualifiedName())
         .addLine("      return false;")
         .addLine("    }")
         .addLine("    %1$s other = (%1$s) obj;", metadata.getValueType().withWildcards());
+    if (isMemoized(metadata, StandardMethod.HASH_CODE)) {
+      body.addLine("    if (%1$s != 0 && %2$s != 0 && %1$s != %2$s) {",
+              HASH_CODE_CACHE, HASH_CODE_CACHE.on("other"))
+          .addLine("      return false;")
+          .addLine("    }");
+    }
     if (metadata.getProperties().isEmpty()) {
       body.addLine("    return true;");
-    } else if (body.feature(SOURCE_LEVEL).javaUtilObjects().isPresent()) {
+    } else {
       String prefix = "    return ";
-      for (Property property : metadata.getProperties()) {
+      for (Property property : EQUALS_ORDER.sortedCopy(metadata.getProperties())) {
         body.add(prefix);
-        body.add("%s.equals(%s, %s)",
-            body.feature(SOURCE_LEVEL).javaUtilObjects().get(),
-            property.getField(),
-            property.getField().on("other"));
+        body.add(valueFieldEquals(body, property, "other"));
         prefix = "\n        && ";
       }
       body.add(";\n");
+    }
+    code.add(body)
+        .addLine("  }");
+  }
+
+  /** Returns an expression comparing a field of the value type without boxing it. */
+  private static Excerpt valueFieldEquals(SourceBuilder code, Property property, String other) {
+    FieldAccess field = property.getField();
+    switch (property.getType().getKind()) {
+      case FLOAT:
+        return Excerpts.add("%1$s.floatToIntBits(%2$s) == %1$s.floatToIntBits(%3$s)",
+            Float.class, field, field.on(other));
+
+      case DOUBLE:
+        return Excerpts.add("%1$s.doubleToLongBits(%2$s) == %1$s.doubleToLongBits(%3$s)",
+            Double.class, field, field.on(other));
+
+      default:
+        if (property.getType().getKind().isPrimitive() || isEnum(property.getType())) {
+          return Excerpts.add("%s == %s", field, field.on(other));
+        } else if (property.getCodeGenerator().getType() != Type.OPTIONAL) {
+          return Excerpts.add("%s.equals(%s)", field, field.on(other));
+        }
+        Excerpt equals = ObjectsExcerpts.equals(
+            field, field.on(other), property.getType().getKind(), NULLABLE);
+        if (code.feature(SOURCE_LEVEL).javaUtilObjects().isPresent()) {
+          return equals;
+        }
+        // Without Objects, this is a disjunction, so must be parenthesized to be joined with &&
+        return Excerpts.add("(%s)", equals);
+    }
+  }
+
+  private static void addValueTypeHashCode(SourceBuilder code, Metadata metadata) {
+    code.addLine("")
+        .addLine("  @%s", Override.class)
+        .addLine("  public int hashCode() {");
+    if (metadata.getProperties().isEmpty()) {
+      code.addLine("    return 1;");
     } else {
+      // Mix hash codes as Arrays.hashCode does, without boxing primitives into an array.
+      Block body = methodBody(code);
+      boolean memoized = isMemoized(metadata, StandardMethod.HASH_CODE);
+      String indent = memoized ? "      " : "    ";
+      Excerpt result = body.declare(
+          Excerpts.add("int"), "result", memoized ? HASH_CODE_CACHE : Excerpts.add("1"));
+      if (memoized) {
+        // Racy single-check idiom: int writes are atomic, so at worst the hash is recomputed.
+        body.addLine("    if (%s == 0) {", result)
+            .addLine("      %s = 1;", result);
+      }
       for (Property property : metadata.getProperties()) {
-        body.addLine("    if (%s) {", ObjectsExcerpts.notEquals(
-                property.getField(),
-                property.getField().on("other"),
-                property.getType().getKind(),
-                (property.getCodeGenerator().getType() == Type.OPTIONAL) ? NULLABLE : NOT_NULLABLE))
-            .addLine("      return false;")
+        body.addLine("%1$s%2$s = 31 * %2$s + %3$s;", indent, result, ObjectsExcerpts.hashCode(
+            property.getField(),
+            property.getType().getKind(),
+            (property.getCodeGenerator().getType() == Type.OPTIONAL) ? NULLABLE : NOT_NULLABLE));
+      }
+      if (memoized) {
+        body.addLine("      %s = %s;", HASH_CODE_CACHE, result)
             .addLine("    }");
       }
-      body.addLine("    return true;");
+      body.addLine("    return %s;", result);
+      code.add(body);
     }
-    code.add(body)
-        .addLine("  }");
+    code.addLine("  }");
+  }
+
+  private static boolean isEnum(TypeMirror type) {
+    return type.getKind() == TypeKind.DECLARED
+        && ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM;
   }
 
-  private static void addValueTypeToString(SourceBuilder code, Metadata metadata) {
+  /**
+   * Adds a method returning the string representation of a value.
+   *
+   * @param signature the method signature, formatted with String and Override
+   */
+  private static void addValueTypeToString(
+      SourceBuilder code, Metadata metadata, String signature) {
     code.addLine("")
-        .addLine("  @%s", Override.class)
-        .addLine("  public %s toString() {", String.class);
+        .addLine("  " + signature + " {", String.class, Override.class);
     Block body = methodBody(code);
     switch (metadata.getProperties().size()) {
       case 0: {
@@ -490,6 +698,7 @@ public class CodeGenerator {
 
   private static void addPartialType(SourceBuilder code, Metadata metadata) {
     boolean hasRequiredProperties = any(metadata.getProperties(), IS_REQUIRED);
+    UnsetProperties unsetProperties = UnsetProperties.in(code);
     code.addLine("")
         .addLine("private static final class %s %s {",
             metadata.getPartialType().declaration(),
@@ -499,8 +708,7 @@ public class CodeGenerator {
       property.getCodeGenerator().addValueFieldDeclaration(code, property.getField());
     }
     if (hasRequiredProperties) {
-      code.addLine("  private final %s<%s> %s;",
-          EnumSet.class, metadata.getPropertyEnum(), UNSET_PROPERTIES);
+      unsetProperties.addFinalFieldDeclarations(code);
     }
     // Constructor
     code.addLine("")
@@ -512,8 +720,7 @@ public class CodeGenerator {
           .addPartialFieldAssignment(code, property.getField().on("this"), "builder");
     }
     if (hasRequiredProperties) {
-      code.addLine("    %s = %s.clone();",
-          UNSET_PROPERTIES.on("this"), UNSET_PROPERTIES.on("builder"));
+      unsetProperties.addCopy(code, "    ", "this", "builder");
     }
     code.addLine("  }");
     // Getters
@@ -524,8 +731,7 @@ public class CodeGenerator {
       property.getCodeGenerator().addGetterAnnotations(code);
       code.addLine("  public %s %s() {", property.getType(), property.getGetterName());
       if (property.getCodeGenerator().getType() == Type.REQUIRED) {
-        code.addLine("    if (%s.contains(%s.%s)) {",
-                UNSET_PROPERTIES, metadata.getPropertyEnum(), property.getAllCapsName())
+        code.addLine("    if (%s) {", unsetProperties.isUnset(property))
             .addLine("      throw new %s(\"%s not set\");",
                 UnsupportedOperationException.class, property.getName())
             .addLine("    }");
@@ -560,10 +766,7 @@ public class CodeGenerator {
         }
         if (hasRequiredProperties) {
           body.add(prefix);
-          body.add("%s.equals(%s, %s)",
-              body.feature(SOURCE_LEVEL).javaUtilObjects().get(),
-              UNSET_PROPERTIES,
-              UNSET_PROPERTIES.on("other"));
+          body.add("%s", unsetProperties.equalTo("other"));
         }
         body.add(";\n");
       } else {
@@ -594,8 +797,7 @@ public class CodeGenerator {
               .addLine("    }");
         }
         if (hasRequiredProperties) {
-          body.addLine("    return %s.equals(%s);",
-              UNSET_PROPERTIES, UNSET_PROPERTIES.on("other"));
+          body.addLine("    return %s;", unsetProperties.equalTo("other"));
         } else {
           body.addLine("    return true;");
         }
@@ -611,7 +813,9 @@ public class CodeGenerator {
 
       FieldAccessList properties = getFields(metadata.getProperties());
       if (hasRequiredProperties) {
-        properties = properties.plus(UNSET_PROPERTIES);
+        for (FieldAccess word : unsetProperties.getFields()) {
+          properties = properties.plus(word);
+        }
       }
 
       if (code.feature(SOURCE_LEVEL).javaUtilObjects().isPresent()) {
@@ -672,6 +876,7 @@ public class CodeGenerator {
   }
 
   private static void writeToStringWithBuilder(Block code, Metadata metadata, boolean isPartial) {
+    UnsetProperties unsetProperties = UnsetProperties.in(code);
     Excerpt result = code.declare(
         Excerpts.add("%s", StringBuilder.class),
         "result",
@@ -699,8 +904,7 @@ public class CodeGenerator {
 
         case REQUIRED:
           if (isPartial) {
-            code.addLine("if (!%s.contains(%s.%s)) {",
-                    UNSET_PROPERTIES, metadata.getPropertyEnum(), property.getAllCapsName());
+            code.addLine("if (%s) {", unsetProperties.isSet(property));
           }
           break;
       }
@@ -736,6 +940,7 @@ public class CodeGenerator {
   }
 
   private static void writePartialToStringWithConcatenation(SourceBuilder code, Metadata metadata) {
+    UnsetProperties unsetProperties = UnsetProperties.in(code);
     code.add("    return \"partial %s{", metadata.getType().getSimpleName());
     switch (metadata.getProperties().size()) {
       case 0: {
@@ -759,8 +964,7 @@ public class CodeGenerator {
 
           case REQUIRED:
             code.add("\"\n")
-                .addLine("        + (!%s.contains(%s.%s)",
-                    UNSET_PROPERTIES, metadata.getPropertyEnum(), property.getAllCapsName())
+                .addLine("        + (%s", unsetProperties.isSet(property))
                 .addLine("            ? \"%s=\" + %s : \"\")",
                     property.getName(), property.getField())
                 .addLine("        + \"}\";");
@@ -786,8 +990,7 @@ public class CodeGenerator {
               break;
 
             case REQUIRED:
-              code.add("(!%s.contains(%s.%s)",
-                      UNSET_PROPERTIES, metadata.getPropertyEnum(), property.getAllCapsName())
+              code.add("(%s", unsetProperties.isSet(property))
                   .add(" ? \"%s=\" + %s : null)", property.getName(), property.getField());
               break;
           }
@@ -812,6 +1015,28 @@ public class CodeGenerator {
         .addLine("abstract class %s {}", metadata.getGeneratedBuilder().declaration());
   }
 
+  /**
+   * Writes a builder with the same API as the full one, for header compilation. The public
+   * methods are written by the same code as the full builder's, but their {@link Block} bodies
+   * throw in this mode. Private members, including the value types, are skipped, as are the
+   * package-private types GWT support adds.
+   */
+  private void writeAbiSource(SourceBuilder code, Metadata metadata) {
+    addBuilderTypeDeclaration(code, metadata);
+    code.addLine(" {");
+    addStaticFromMethod(code, metadata);
+    addAccessors(metadata, code);
+    addMergeFromValueMethod(code, metadata);
+    addMergeFromBuilderMethod(code, metadata);
+    addClearMethod(code, metadata);
+    addBuildMethod(code, metadata);
+    if (metadata.isInterned()) {
+      addBuildInternedMethod(code, metadata);
+    }
+    addBuildPartialMethod(code, metadata);
+    code.addLine("}");
+  }
+
   /** Returns an {@link Excerpt} of "implements/extends {@code type}". */
   private static Excerpt extending(final Object type, final boolean isInterface) {
     return Excerpts.add(isInterface ? "implements %s" : "extends %s", type);
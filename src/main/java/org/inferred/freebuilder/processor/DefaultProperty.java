@@ -19,7 +19,6 @@ import static com.google.common.base.MoreObjects.firstNonNull;
 import static org.inferred.freebuilder.processor.BuilderMethods.getter;
 import static org.inferred.freebuilder.processor.BuilderMethods.mapper;
 import static org.inferred.freebuilder.processor.BuilderMethods.setter;
-import static org.inferred.freebuilder.processor.CodeGenerator.UNSET_PROPERTIES;
 import static org.inferred.freebuilder.processor.util.Block.methodBody;
 import static org.inferred.freebuilder.processor.util.ObjectsExcerpts.Nullability.NOT_NULLABLE;
 import static org.inferred.freebuilder.processor.util.PreconditionExcerpts.checkNotNullInline;
@@ -103,8 +102,7 @@ class DefaultProperty extends PropertyCodeGenerator {
           .addLine("  %s = %s;", property.getField(), checkNotNullInline(property.getName()));
     }
     if (!hasDefault) {
-      body.addLine("  %s.remove(%s.%s);",
-          UNSET_PROPERTIES, metadata.getPropertyEnum(), property.getAllCapsName());
+      body.addLine("  %s;", UnsetProperties.in(code).markSet(property));
     }
     if ((metadata.getBuilder() == metadata.getGeneratedBuilder())) {
       body.addLine("  return this;");
@@ -138,10 +136,12 @@ class DefaultProperty extends PropertyCodeGenerator {
             metadata.getBuilder(),
             mapper(property),
             unaryOperator.withParameters(typeParam));
+    Block body = methodBody(code, "mapper");
     if (!hasDefault) {
-      code.add(PreconditionExcerpts.checkNotNull("mapper"));
+      body.add(PreconditionExcerpts.checkNotNull("mapper"));
     }
-    code.addLine("  return %s(mapper.apply(%s()));", setter(property), getter(property))
+    body.addLine("  return %s(mapper.apply(%s()));", setter(property), getter(property));
+    code.add(body)
         .addLine("}");
   }
 
@@ -156,12 +156,15 @@ class DefaultProperty extends PropertyCodeGenerator {
     }
     code.addLine(" */")
         .addLine("public %s %s() {", property.getType(), getter(property));
+    Block body = methodBody(code);
     if (!hasDefault) {
-      Excerpt propertyIsSet = Excerpts.add("!%s.contains(%s.%s)",
-              UNSET_PROPERTIES, metadata.getPropertyEnum(), property.getAllCapsName());
-      code.add(PreconditionExcerpts.checkState(propertyIsSet, property.getName() + " not set"));
+      body.addLine("  if (%s) {", UnsetProperties.in(code).isUnset(property))
+          .addLine("    throw new %s(\"%s not set\");",
+              IllegalStateException.class, property.getName())
+          .addLine("  }");
     }
-    code.addLine("  return %s;", property.getField())
+    body.addLine("  return %s;", property.getField());
+    code.add(body)
         .addLine("}");
   }
 
@@ -181,8 +184,7 @@ class DefaultProperty extends PropertyCodeGenerator {
     if (defaults != null) {
       code.add("if (");
       if (!hasDefault) {
-        code.add("%s.contains(%s.%s) || ",
-            UNSET_PROPERTIES.on(defaults), metadata.getPropertyEnum(), property.getAllCapsName());
+        code.add("%s || ", UnsetProperties.in(code).isUnset(property, defaults));
       }
       code.add(ObjectsExcerpts.notEquals(
           Excerpts.add("%s.%s()", value, property.getGetterName()),
@@ -202,15 +204,12 @@ class DefaultProperty extends PropertyCodeGenerator {
     Excerpt base =
         hasDefault ? null : Declarations.upcastToGeneratedBuilder(code, metadata, builder);
     Excerpt defaults = Declarations.freshBuilder(code, metadata).orNull();
+    UnsetProperties unsetProperties = UnsetProperties.in(code);
     if (defaults != null) {
       code.add("if (");
       if (!hasDefault) {
-        code.add("!%s.contains(%s.%s) && ",
-                UNSET_PROPERTIES.on(base), metadata.getPropertyEnum(), property.getAllCapsName())
-            .add("(%s.contains(%s.%s) ||",
-                UNSET_PROPERTIES.on(defaults),
-                metadata.getPropertyEnum(),
-                property.getAllCapsName());
+        code.add("%s && ", unsetProperties.isSet(property, base))
+            .add("(%s ||", unsetProperties.isUnset(property, defaults));
       }
       code.add(ObjectsExcerpts.notEquals(
           Excerpts.add("%s.%s()", builder, getter(property)),
@@ -222,8 +221,7 @@ class DefaultProperty extends PropertyCodeGenerator {
       }
       code.add(") {%n");
     } else if (!hasDefault) {
-      code.addLine("if (!%s.contains(%s.%s)) {",
-          UNSET_PROPERTIES.on(base), metadata.getPropertyEnum(), property.getAllCapsName());
+      code.addLine("if (%s) {", unsetProperties.isSet(property, base));
     }
     code.addLine("  %s(%s.%s());", setter(property), builder, getter(property));
     if (defaults != null || !hasDefault) {
@@ -234,8 +232,7 @@ class DefaultProperty extends PropertyCodeGenerator {
   @Override
   public void addSetBuilderFromPartial(Block code, String builder) {
     if (!hasDefault) {
-      code.add("if (!%s.contains(%s.%s)) {",
-          UNSET_PROPERTIES, metadata.getPropertyEnum(), property.getAllCapsName());
+      code.add("if (%s) {", UnsetProperties.in(code).isSet(property));
     }
     code.addLine("  %s.%s(%s);", builder, setter(property), property.getField());
     if (!hasDefault) {
@@ -248,6 +245,20 @@ class DefaultProperty extends PropertyCodeGenerator {
     code.addLine("%s.%s(%s);", builder, setter(property), variable);
   }
 
+  @Override
+  Optional<PropertyBytecodeGenerator> getBytecodeGenerator(int unsetBit) {
+    Optional<String> descriptor = PropertyBytecodeGenerator.descriptor(property.getType());
+    if (!descriptor.isPresent() || !property.getAccessorAnnotations().isEmpty()) {
+      return Optional.absent();
+    }
+    if (descriptor.get().equals("[C")) {
+      // Source toString methods render char arrays inconsistently, so stay with them
+      return Optional.absent();
+    }
+    return Optional.<PropertyBytecodeGenerator>of(new DefaultPropertyBytecodeGenerator(
+        metadata, property, descriptor.get(), hasDefault ? 0 : unsetBit));
+  }
+
   @Override
   public void addClearField(Block code) {
     Optional<Excerpt> defaults = Declarations.freshBuilder(code, metadata);
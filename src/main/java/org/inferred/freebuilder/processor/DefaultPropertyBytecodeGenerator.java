@@ -0,0 +1,213 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderMethods.getter;
+import static org.inferred.freebuilder.processor.BuilderMethods.mapper;
+import static org.inferred.freebuilder.processor.BuilderMethods.setter;
+import static org.inferred.freebuilder.processor.util.ClassFileBuilder.ACC_PRIVATE;
+import static org.inferred.freebuilder.processor.util.ClassFileBuilder.ACC_PUBLIC;
+import static org.inferred.freebuilder.processor.util.ClassFileBuilder.internalName;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.util.ClassFileBuilder;
+import org.inferred.freebuilder.processor.util.ClassFileBuilder.Code;
+import org.inferred.freebuilder.processor.util.ClassFileBuilder.Label;
+
+/** Bytecode counterpart of {@link DefaultProperty}. */
+class DefaultPropertyBytecodeGenerator extends PropertyBytecodeGenerator {
+
+  private static final String OBJECTS = "java/util/Objects";
+  private static final String UNARY_OPERATOR = "java/util/function/UnaryOperator";
+
+  DefaultPropertyBytecodeGenerator(
+      Metadata metadata, Property property, String descriptor, int unsetBit) {
+    super(metadata, property, descriptor, unsetBit);
+  }
+
+  @Override
+  void addBuilderField(ClassFileBuilder builder) {
+    builder.addField(ACC_PRIVATE, property.getName(), descriptor);
+  }
+
+  @Override
+  void addBuilderFieldAccessors(ClassFileBuilder builder) {
+    addSetter(builder);
+    addMapper(builder);
+    addGetter(builder);
+  }
+
+  private void addSetter(ClassFileBuilder builder) {
+    Code code = builder.addMethod(
+        ACC_PUBLIC, setter(property), "(" + descriptor + ")" + builderDescriptor);
+    if (!isPrimitive()) {
+      code.load(descriptor, 1);
+      requireNonNull(code);
+      code.op(Code.POP, -1);
+    }
+    code.load("L", 0)
+        .load(descriptor, 1)
+        .putField(generatedBuilder, property.getName(), descriptor);
+    if (unsetBit != 0) {
+      code.load("L", 0)
+          .op(Code.DUP, 1)
+          .getField(generatedBuilder, UNSET_PROPERTIES, "I")
+          .pushInt(~unsetBit)
+          .op(Code.IAND, -1)
+          .putField(generatedBuilder, UNSET_PROPERTIES, "I");
+    }
+    returnThis(code);
+  }
+
+  private void addMapper(ClassFileBuilder builder) {
+    String boxedDescriptor = boxedDescriptor();
+    Code code = builder.addMethod(
+        ACC_PUBLIC,
+        mapper(property),
+        "(L" + UNARY_OPERATOR + ";)" + builderDescriptor,
+        "(L" + UNARY_OPERATOR + "<" + boxedDescriptor + ">;)" + builderDescriptor);
+    code.load("L", 1);
+    requireNonNull(code);
+    code.op(Code.POP, -1)
+        .load("L", 0)
+        .load("L", 1)
+        .load("L", 0)
+        .invokeVirtual(generatedBuilder, getter(property), "()" + descriptor)
+        .box(descriptor)
+        .invokeInterface(UNARY_OPERATOR, "apply", "(Ljava/lang/Object;)Ljava/lang/Object;")
+        .castAndUnbox(descriptor)
+        .invokeVirtual(generatedBuilder, setter(property), setterDescriptor())
+        .op(Code.ARETURN, -1);
+  }
+
+  private void addGetter(ClassFileBuilder builder) {
+    Code code = builder.addMethod(ACC_PUBLIC, getter(property), "()" + descriptor);
+    if (unsetBit != 0) {
+      Label isSet = code.newLabel();
+      code.load("L", 0);
+      jumpIfUnset(code, Code.IFEQ, isSet);
+      code.throwNew("java/lang/IllegalStateException", property.getName() + " not set");
+      code.bind(isSet);
+    }
+    code.load("L", 0)
+        .getField(generatedBuilder, property.getName(), descriptor)
+        .returnValue(descriptor);
+  }
+
+  @Override
+  void addMergeFromValue(Code code, int value, int defaults) {
+    String type = internalName(metadata.getType().getQualifiedName());
+    Label set = code.newLabel();
+    Label skip = code.newLabel();
+    if (unsetBit != 0) {
+      code.load("L", defaults);
+      jumpIfUnset(code, Code.IFNE, set);
+    }
+    code.load("L", value);
+    invokeValueGetter(code, type);
+    code.box(descriptor);
+    code.load("L", defaults)
+        .invokeVirtual(generatedBuilder, getter(property), "()" + descriptor)
+        .box(descriptor)
+        .invokeStatic(OBJECTS, "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z")
+        .jump(Code.IFNE, skip)
+        .bind(set)
+        .load("L", 0)
+        .load("L", value);
+    invokeValueGetter(code, type);
+    code.invokeVirtual(generatedBuilder, setter(property), setterDescriptor())
+        .op(Code.POP, -1)
+        .bind(skip);
+  }
+
+  @Override
+  void addMergeFromBuilder(Code code, int template, int defaults) {
+    Label set = code.newLabel();
+    Label skip = code.newLabel();
+    if (unsetBit != 0) {
+      code.load("L", template);
+      jumpIfUnset(code, Code.IFNE, skip);
+      code.load("L", defaults);
+      jumpIfUnset(code, Code.IFNE, set);
+    }
+    code.load("L", template)
+        .invokeVirtual(generatedBuilder, getter(property), "()" + descriptor)
+        .box(descriptor)
+        .load("L", defaults)
+        .invokeVirtual(generatedBuilder, getter(property), "()" + descriptor)
+        .box(descriptor)
+        .invokeStatic(OBJECTS, "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z")
+        .jump(Code.IFNE, skip)
+        .bind(set)
+        .load("L", 0)
+        .load("L", template)
+        .invokeVirtual(generatedBuilder, getter(property), "()" + descriptor)
+        .invokeVirtual(generatedBuilder, setter(property), setterDescriptor())
+        .op(Code.POP, -1)
+        .bind(skip);
+  }
+
+  @Override
+  void addClearField(Code code, int defaults) {
+    code.load("L", 0)
+        .load("L", defaults)
+        .getField(generatedBuilder, property.getName(), descriptor)
+        .putField(generatedBuilder, property.getName(), descriptor);
+  }
+
+  private boolean isPrimitive() {
+    return ClassFileBuilder.boxedType(descriptor) != null;
+  }
+
+  private String boxedDescriptor() {
+    String boxedType = ClassFileBuilder.boxedType(descriptor);
+    return (boxedType == null) ? descriptor : "L" + boxedType + ";";
+  }
+
+  private String setterDescriptor() {
+    return "(" + descriptor + ")" + builderDescriptor;
+  }
+
+  /** Calls the property's getter on the value on the top of the stack. */
+  private void invokeValueGetter(Code code, String type) {
+    if (metadata.isInterfaceType()) {
+      code.invokeInterface(type, property.getGetterName(), "()" + descriptor);
+    } else {
+      code.invokeVirtual(type, property.getGetterName(), "()" + descriptor);
+    }
+  }
+
+  /**
+   * Pops the builder on the top of the stack, jumping to {@code target} if the property is unset
+   * in it ({@link Code#IFNE}) or set in it ({@link Code#IFEQ}).
+   */
+  private void jumpIfUnset(Code code, int opcode, Label target) {
+    code.getField(generatedBuilder, UNSET_PROPERTIES, "I")
+        .pushInt(unsetBit)
+        .op(Code.IAND, -1)
+        .jump(opcode, target);
+  }
+
+  private void returnThis(Code code) {
+    code.load("L", 0)
+        .checkCast(internalName(metadata.getBuilder().getQualifiedName()))
+        .op(Code.ARETURN, -1);
+  }
+
+  private static void requireNonNull(Code code) {
+    code.invokeStatic(OBJECTS, "requireNonNull", "(Ljava/lang/Object;)Ljava/lang/Object;");
+  }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static javax.lang.model.util.ElementFilter.typesIn;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.util.feature.CollectionOwnership;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.feature.FeatureType;
+import org.inferred.freebuilder.processor.util.feature.FormatStyle;
+import org.inferred.freebuilder.processor.util.feature.FunctionPackage;
+import org.inferred.freebuilder.processor.util.feature.GenerationMode;
+import org.inferred.freebuilder.processor.util.feature.GuavaLibrary;
+import org.inferred.freebuilder.processor.util.feature.JavaxPackage;
+import org.inferred.freebuilder.processor.util.feature.SourceLevel;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Opt-in on-disk cache of generated source, enabled with the {@value #DIRECTORY_OPTION} processor
+ * option.
+ *
+ * <p>Entries are keyed by a fingerprint of everything that determines a builder's source: the
+ * analysed {@link Metadata}, the active features, the other types in the package (which affect
+ * imports), and the processor build itself. A hit skips code generation and formatting entirely.
+ * The least recently used entries are evicted once there are more than {@value #SIZE_OPTION}.
+ */
+class GenerationCache {
+
+  /** Processor option setting the cache directory. The cache is disabled if unset. */
+  public static final String DIRECTORY_OPTION = "freebuilder.cacheDir";
+
+  /** Processor option setting the maximum number of cached sources. */
+  public static final String SIZE_OPTION = "freebuilder.cacheSize";
+
+  private static final int DEFAULT_SIZE = 1000;
+  private static final String EXTENSION = ".java.cache";
+
+  /**
+   * Every feature that can influence generated source. A feature missing from this list would let
+   * the cache return stale source when it changes.
+   */
+  private static final List<FeatureType<?>> FEATURE_TYPES = ImmutableList.<FeatureType<?>>of(
+      SourceLevel.SOURCE_LEVEL,
+      GuavaLibrary.GUAVA,
+      JavaxPackage.JAVAX,
+      FunctionPackage.FUNCTION_PACKAGE,
+      FormatStyle.FORMAT_STYLE,
+      GenerationMode.GENERATION_MODE,
+      CollectionOwnership.COLLECTION_OWNERSHIP);
+
+  /**
+   * Result of {@link #processorVersion()}, which cannot change while this class is loaded, so is
+   * shared by every compilation in the JVM.
+   */
+  private static volatile String sharedProcessorVersion;
+
+  private static final FileFilter CACHE_ENTRIES = new FileFilter() {
+    @Override
+    public boolean accept(File file) {
+      return file.isFile() && file.getName().endsWith(EXTENSION);
+    }
+  };
+
+  private static final Comparator<File> LEAST_RECENTLY_USED = new Comparator<File>() {
+    @Override
+    public int compare(File a, File b) {
+      long aModified = a.lastModified();
+      long bModified = b.lastModified();
+      return (aModified < bModified) ? -1 : ((aModified == bModified) ? 0 : 1);
+    }
+  };
+
+  /**
+   * Returns the cache configured in {@code env}, or {@link Optional#absent()} if the cache is not
+   * enabled or cannot be used.
+   */
+  public static Optional<GenerationCache> forEnvironment(ProcessingEnvironment env) {
+    String directoryOption = env.getOptions().get(DIRECTORY_OPTION);
+    if (directoryOption == null || directoryOption.trim().isEmpty()) {
+      return Optional.absent();
+    }
+    File directory = new File(directoryOption.trim());
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      env.getMessager().printMessage(
+          Kind.WARNING,
+          "Cannot create -A" + DIRECTORY_OPTION + " directory '" + directory
+              + "'; generation cache disabled");
+      return Optional.absent();
+    }
+    String processorVersion = sharedProcessorVersion;
+    if (processorVersion == null) {
+      processorVersion = processorVersion();
+      sharedProcessorVersion = processorVersion;
+    }
+    if (processorVersion == null) {
+      env.getMessager().printMessage(
+          Kind.WARNING,
+          "Cannot identify the FreeBuilder processor build; generation cache disabled");
+      return Optional.absent();
+    }
+    return Optional.of(new GenerationCache(directory, size(env), processorVersion));
+  }
+
+  private final File directory;
+  private final int size;
+  private final String processorVersion;
+  private int hits = 0;
+  private int misses = 0;
+
+  private GenerationCache(File directory, int size, String processorVersion) {
+    this.directory = directory;
+    this.size = size;
+    this.processorVersion = processorVersion;
+  }
+
+  /**
+   * Returns the key under which source generated for {@code metadata} is cached.
+   *
+   * <p>Must be called on the processor thread, as the features and package contents may query the
+   * compiler.
+   */
+  public String key(ProcessingEnvironment env, Metadata metadata, FeatureSet features) {
+    StringBuilder fingerprint = new StringBuilder();
+    fingerprint.append(processorVersion).append('\n');
+    for (FeatureType<?> featureType : FEATURE_TYPES) {
+      fingerprint.append(features.get(featureType)).append('\n');
+    }
+    PackageElement pkg = env.getElementUtils()
+        .getPackageElement(metadata.getGeneratedBuilder().getQualifiedName().getPackage());
+    for (TypeElement sibling : typesIn(pkg.getEnclosedElements())) {
+      fingerprint.append(sibling.getQualifiedName()).append('\n');
+    }
+    // Every code generator holds the same property-less Metadata; fingerprinting it once per
+    // generator would make the fingerprint quadratic in the number of properties.
+    fingerprint.append(metadata.toBuilder().clearProperties().build()).append('\n');
+    Metadata generatorMetadata = null;
+    for (Property property : metadata.getProperties()) {
+      PropertyCodeGenerator codeGenerator = property.getCodeGenerator();
+      fingerprint.append(property.toBuilder().setCodeGenerator(null).build()).append('\n');
+      if (codeGenerator != null) {
+        fingerprint.append(codeGenerator.configurationString()).append('\n');
+        if (codeGenerator.metadata != generatorMetadata) {
+          generatorMetadata = codeGenerator.metadata;
+          fingerprint.append(generatorMetadata).append('\n');
+        }
+      }
+    }
+    return Hashing.sha256().hashString(fingerprint, UTF_8).toString();
+  }
+
+  /** Returns the source cached under {@code key}, if any, marking it as recently used. */
+  public Optional<String> get(String key) {
+    File entry = entry(key);
+    try {
+      if (entry.isFile()) {
+        String source = Files.toString(entry, UTF_8);
+        entry.setLastModified(System.currentTimeMillis());
+        hits++;
+        return Optional.of(source);
+      }
+    } catch (IOException e) {
+      // Treat an unreadable entry as a miss; it will be overwritten
+    }
+    misses++;
+    return Optional.absent();
+  }
+
+  /**
+   * Caches {@code source} under {@code key}. The entry is written to a temporary file and then
+   * renamed, so concurrent builds sharing the directory never see a partial entry.
+   */
+  public void put(String key, String source) throws IOException {
+    File temp = File.createTempFile(key, ".tmp", directory);
+    try {
+      Files.write(source, temp, UTF_8);
+      File entry = entry(key);
+      if (!temp.renameTo(entry) && !entry.isFile()) {
+        throw new IOException("Cannot rename " + temp + " to " + entry);
+      }
+    } finally {
+      temp.delete();
+    }
+  }
+
+  /** Deletes the least recently used entries until at most {@value #SIZE_OPTION} remain. */
+  public void evict() {
+    File[] entries = directory.listFiles(CACHE_ENTRIES);
+    if (entries == null || entries.length <= size) {
+      return;
+    }
+    Arrays.sort(entries, LEAST_RECENTLY_USED);
+    for (int i = 0; i < entries.length - size; i++) {
+      entries[i].delete();
+    }
+  }
+
+  /** Returns a NOTE-severity summary of cache effectiveness. */
+  public String statistics() {
+    return "FreeBuilder generation cache: " + hits + (hits == 1 ? " hit, " : " hits, ")
+        + misses + (misses == 1 ? " miss" : " misses");
+  }
+
+  private File entry(String key) {
+    return new File(directory, key + EXTENSION);
+  }
+
+  private static int size(ProcessingEnvironment env) {
+    String option = env.getOptions().get(SIZE_OPTION);
+    if (option == null) {
+      return DEFAULT_SIZE;
+    }
+    try {
+      int size = Integer.parseInt(option.trim());
+      if (size > 0) {
+        return size;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to the warning below
+    }
+    env.getMessager().printMessage(
+        Kind.WARNING,
+        "Invalid value for -A" + SIZE_OPTION + ": '" + option
+            + "' (expected a positive integer); using " + DEFAULT_SIZE);
+    return DEFAULT_SIZE;
+  }
+
+  /**
+   * Returns a string identifying the processor build, so a new release of FreeBuilder never reuses
+   * source cached by an old one, or null if the build cannot be identified.
+   */
+  private static String processorVersion() {
+    try {
+      CodeSource codeSource = Processor.class.getProtectionDomain().getCodeSource();
+      if (codeSource == null || codeSource.getLocation() == null) {
+        return null;
+      }
+      File location = new File(codeSource.getLocation().toURI());
+      long lastModified = 0;
+      long length = 0;
+      if (location.isDirectory()) {
+        // Running from unpackaged classes, e.g. FreeBuilder's own tests
+        for (File file : Files.fileTreeTraverser().preOrderTraversal(location)) {
+          lastModified = Math.max(lastModified, file.lastModified());
+          length += file.length();
+        }
+      } else if (location.isFile()) {
+        lastModified = location.lastModified();
+        length = location.length();
+      } else {
+        return null;
+      }
+      return location.getAbsolutePath() + ":" + length + ":" + lastModified;
+    } catch (URISyntaxException e) {
+      return null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    } catch (SecurityException e) {
+      return null;
+    }
+  }
+}
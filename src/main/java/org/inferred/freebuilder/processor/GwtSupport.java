@@ -59,6 +59,11 @@ class GwtSupport {
     public Excerpt apply(final Metadata metadata) {
       return new CustomValueSerializerExcerpt(metadata);
     }
+
+    @Override
+    public String toString() {
+      return "CustomValueSerializer";
+    }
   }
 
   private static final class CustomValueSerializerExcerpt extends Excerpt {
@@ -194,6 +199,11 @@ class GwtSupport {
     public Excerpt apply(final Metadata metadata) {
       return new GwtWhitelistExcerpt(metadata);
     }
+
+    @Override
+    public String toString() {
+      return "GwtWhitelist";
+    }
   }
 
   private static final class GwtWhitelistExcerpt extends Excerpt {
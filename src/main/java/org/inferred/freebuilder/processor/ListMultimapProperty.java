@@ -22,18 +22,17 @@ import static org.inferred.freebuilder.processor.BuilderMethods.putAllMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.putMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.removeAllMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.removeMethod;
-import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
-import static org.inferred.freebuilder.processor.Util.upperBound;
+import static org.inferred.freebuilder.processor.Util.erasedName;
+import static org.inferred.freebuilder.processor.Util.unshadedNames;
 import static org.inferred.freebuilder.processor.util.Block.methodBody;
 import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
-import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
-import static org.inferred.freebuilder.processor.util.ModelUtils.overrides;
 import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
@@ -43,11 +42,13 @@ import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.excerpt.CheckedListMultimap;
 import org.inferred.freebuilder.processor.util.Block;
 import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
 import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.SourceBuilder;
 
 import java.util.Collection;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
@@ -57,26 +58,31 @@ import javax.lang.model.type.TypeMirror;
  */
 class ListMultimapProperty extends PropertyCodeGenerator {
 
-  static class Factory implements PropertyCodeGenerator.Factory {
+  static class Factory implements TypeSpecificFactory {
+
+    private static final ImmutableSet<String> ERASED_TYPES = unshadedNames(
+        Multimap.class,
+        ImmutableMultimap.class,
+        ListMultimap.class,
+        ImmutableListMultimap.class);
+
+    @Override
+    public Set<String> erasedTypes() {
+      return ERASED_TYPES;
+    }
 
     @Override
     public Optional<ListMultimapProperty> create(Config config) {
       DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
-      if (type == null) {
-        return Optional.absent();
-      }
-      if (!erasesToAnyOf(type,
-          Multimap.class,
-          ImmutableMultimap.class,
-          ListMultimap.class,
-          ImmutableListMultimap.class)) {
+      if (type == null || !ERASED_TYPES.contains(erasedName(type))) {
         return Optional.absent();
       }
 
-      TypeMirror keyType = upperBound(config.getElements(), type.getTypeArguments().get(0));
-      TypeMirror valueType = upperBound(config.getElements(), type.getTypeArguments().get(1));
-      Optional<TypeMirror> unboxedKeyType = maybeUnbox(keyType, config.getTypes());
-      Optional<TypeMirror> unboxedValueType = maybeUnbox(valueType, config.getTypes());
+      PropertyTypeCache propertyTypes = config.getPropertyTypeCache();
+      TypeMirror keyType = propertyTypes.upperBound(type.getTypeArguments().get(0));
+      TypeMirror valueType = propertyTypes.upperBound(type.getTypeArguments().get(1));
+      Optional<TypeMirror> unboxedKeyType = propertyTypes.unboxedType(keyType);
+      Optional<TypeMirror> unboxedValueType = propertyTypes.unboxedType(valueType);
       boolean overridesPutMethod =
           hasPutMethodOverride(config, unboxedKeyType.or(keyType), unboxedValueType.or(valueType));
       return Optional.of(new ListMultimapProperty(
@@ -91,9 +97,7 @@ class ListMultimapProperty extends PropertyCodeGenerator {
 
     private static boolean hasPutMethodOverride(
         Config config, TypeMirror keyType, TypeMirror valueType) {
-      return overrides(
-          config.getBuilder(),
-          config.getTypes(),
+      return config.getBuilderMethodIndex().overrides(
           putMethod(config.getProperty()),
           keyType,
           valueType);
@@ -122,10 +126,15 @@ class ListMultimapProperty extends PropertyCodeGenerator {
     this.unboxedValueType = unboxedValueType;
   }
 
+  @Override
+  public boolean isCostlyToCompare() {
+    return true;
+  }
+
   @Override
   public void addBuilderFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %1$s<%2$s, %3$s> %4$s = %1$s.create();",
-        LinkedListMultimap.class, keyType, valueType, property.getField());
+    code.addLine("private %s<%s, %s> %s = %s.of();",
+        ListMultimap.class, keyType, valueType, property.getField(), ImmutableListMultimap.class);
   }
 
   @Override
@@ -172,7 +181,10 @@ class ListMultimapProperty extends PropertyCodeGenerator {
     if (!unboxedValueType.isPresent()) {
       body.addLine("  %s.checkNotNull(value);", Preconditions.class);
     }
-    body.addLine("  %s.put(key, value);", property.getField())
+    body.addLine("  if (%s) {", isShared())
+        .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedListMultimap.class)
+        .addLine("  }")
+        .addLine("  %s.put(key, value);", property.getField())
         .addLine("  return (%s) this;", metadata.getBuilder());
     code.add(body)
         .addLine("}");
@@ -200,10 +212,11 @@ class ListMultimapProperty extends PropertyCodeGenerator {
             unboxedKeyType.or(keyType),
             Iterable.class,
             valueType)
-        .addLine("  for (%s value : values) {", unboxedValueType.or(valueType))
-        .addLine("    %s(key, value);", putMethod(property))
-        .addLine("  }")
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "key", "values")
+            .addLine("  for (%s value : values) {", unboxedValueType.or(valueType))
+            .addLine("    %s(key, value);", putMethod(property))
+            .addLine("  }")
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -224,12 +237,13 @@ class ListMultimapProperty extends PropertyCodeGenerator {
             Multimap.class,
             keyType,
             valueType)
-        .addLine("  for (%s<? extends %s, ? extends %s<? extends %s>> entry",
-            Entry.class, keyType, Collection.class, valueType)
-        .addLine("      : multimap.asMap().entrySet()) {")
-        .addLine("    %s(entry.getKey(), entry.getValue());", putAllMethod(property))
-        .addLine("  }")
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "multimap")
+            .addLine("  for (%s<? extends %s, ? extends %s<? extends %s>> entry",
+                Entry.class, keyType, Collection.class, valueType)
+            .addLine("      : multimap.asMap().entrySet()) {")
+            .addLine("    %s(entry.getKey(), entry.getValue());", putAllMethod(property))
+            .addLine("  }")
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -268,7 +282,10 @@ class ListMultimapProperty extends PropertyCodeGenerator {
     if (!unboxedValueType.isPresent()) {
       body.addLine("  %s.checkNotNull(value);", Preconditions.class);
     }
-    body.addLine("  %s.remove(key, value);", property.getField())
+    body.addLine("  if (%s) {", isShared())
+        .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedListMultimap.class)
+        .addLine("  }")
+        .addLine("  %s.remove(key, value);", property.getField())
         .addLine("  return (%s) this;", metadata.getBuilder());
     code.add(body)
         .addLine("}");
@@ -294,7 +311,10 @@ class ListMultimapProperty extends PropertyCodeGenerator {
     if (!unboxedKeyType.isPresent()) {
       body.addLine("  %s.checkNotNull(key);", Preconditions.class);
     }
-    body.addLine("  %s.removeAll(key);", property.getField())
+    body.addLine("  if (%s) {", isShared())
+        .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedListMultimap.class)
+        .addLine("  }")
+        .addLine("  %s.removeAll(key);", property.getField())
         .addLine("  return (%s) this;", metadata.getBuilder());
     code.add(body)
         .addLine("}");
@@ -324,6 +344,9 @@ class ListMultimapProperty extends PropertyCodeGenerator {
             keyType,
             valueType);
     Block body = methodBody(code, "mutator");
+    body.addLine("  if (%s) {", isShared())
+        .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedListMultimap.class)
+        .addLine("  }");
     if (overridesPutMethod) {
       body.addLine("  mutator.accept(new %s<>(%s, this::%s));",
           CheckedListMultimap.TYPE, property.getField(), putMethod(property));
@@ -346,8 +369,13 @@ class ListMultimapProperty extends PropertyCodeGenerator {
         .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
         .addLine(" */")
         .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
-        .addLine("  %s.clear();", property.getField())
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code)
+            .addLine("  if (%s) {", isShared())
+            .addLine("    %s = %s.of();", property.getField(), ImmutableListMultimap.class)
+            .addLine("  } else {")
+            .addLine("    %s.clear();", property.getField())
+            .addLine("  }")
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -363,11 +391,23 @@ class ListMultimapProperty extends PropertyCodeGenerator {
             keyType,
             valueType,
             getter(property))
-        .addLine("  return %s.unmodifiableListMultimap(%s);",
-            Multimaps.class, property.getField())
+        .add(methodBody(code)
+            .addLine("  if (%s) {", isShared())
+            .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedListMultimap.class)
+            .addLine("  }")
+            .addLine("  return %s.unmodifiableListMultimap(%s);",
+                Multimaps.class, property.getField()))
         .addLine("}");
   }
 
+  /**
+   * Returns an excerpt testing whether the builder's multimap may be shared with a value, so must
+   * be copied before it is mutated.
+   */
+  private Excerpt isShared() {
+    return Excerpts.add("%s instanceof %s", property.getField(), ImmutableListMultimap.class);
+  }
+
   @Override
   public void addFinalFieldAssignment(SourceBuilder code, Excerpt finalField, String builder) {
     code.addLine("%s = %s.copyOf(%s);",
@@ -376,7 +416,18 @@ class ListMultimapProperty extends PropertyCodeGenerator {
 
   @Override
   public void addMergeFromValue(Block code, String value) {
-    code.addLine("%s(%s.%s());", putAllMethod(property), value, property.getGetterName());
+    code.addLine("if (%s instanceof %s && %s == %s.<%s, %s>of()) {",
+            value,
+            metadata.getValueType().getQualifiedName(),
+            property.getField(),
+            ImmutableListMultimap.class,
+            keyType,
+            valueType)
+        .addLine("  %s = %s.copyOf(%s.%s());",
+            property.getField(), ImmutableListMultimap.class, value, property.getGetterName())
+        .addLine("} else {")
+        .addLine("  %s(%s.%s());", putAllMethod(property), value, property.getGetterName())
+        .addLine("}");
   }
 
   @Override
@@ -392,6 +443,6 @@ class ListMultimapProperty extends PropertyCodeGenerator {
 
   @Override
   public void addClearField(Block code) {
-    code.addLine("%s.clear();", property.getField());
+    code.addLine("%s();", clearMethod(property));
   }
 }
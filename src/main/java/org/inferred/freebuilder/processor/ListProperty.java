@@ -20,15 +20,14 @@ import static org.inferred.freebuilder.processor.BuilderMethods.addMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.clearMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.getter;
 import static org.inferred.freebuilder.processor.BuilderMethods.mutator;
-import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
-import static org.inferred.freebuilder.processor.Util.upperBound;
+import static org.inferred.freebuilder.processor.Util.erasedName;
+import static org.inferred.freebuilder.processor.Util.unshadedNames;
 import static org.inferred.freebuilder.processor.util.Block.methodBody;
 import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
-import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
-import static org.inferred.freebuilder.processor.util.ModelUtils.needsSafeVarargs;
-import static org.inferred.freebuilder.processor.util.ModelUtils.overrides;
 import static org.inferred.freebuilder.processor.util.PreconditionExcerpts.checkNotNullInline;
 import static org.inferred.freebuilder.processor.util.PreconditionExcerpts.checkNotNullPreamble;
+import static org.inferred.freebuilder.processor.util.Shading.unshadedName;
+import static org.inferred.freebuilder.processor.util.feature.CollectionOwnership.COLLECTION_OWNERSHIP;
 import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
 import static org.inferred.freebuilder.processor.util.feature.GuavaLibrary.GUAVA;
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.SOURCE_LEVEL;
@@ -37,12 +36,15 @@ import static org.inferred.freebuilder.processor.util.feature.SourceLevel.diamon
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.excerpt.CheckedList;
+import org.inferred.freebuilder.processor.excerpt.PersistentList;
 import org.inferred.freebuilder.processor.util.Block;
 import org.inferred.freebuilder.processor.util.Excerpt;
 import org.inferred.freebuilder.processor.util.Excerpts;
+import org.inferred.freebuilder.processor.util.FieldAccess;
 import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.QualifiedName;
 import org.inferred.freebuilder.processor.util.SourceBuilder;
@@ -54,6 +56,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
@@ -62,21 +65,33 @@ import javax.lang.model.type.TypeMirror;
  * {@link PropertyCodeGenerator} providing fluent methods for {@link List} properties.
  */
 class ListProperty extends PropertyCodeGenerator {
-  static class Factory implements PropertyCodeGenerator.Factory {
+  static class Factory implements TypeSpecificFactory {
+
+    private static final ImmutableSet<String> ERASED_TYPES =
+        unshadedNames(Collection.class, List.class, ImmutableList.class);
+
+    @Override
+    public Set<String> erasedTypes() {
+      return ERASED_TYPES;
+    }
 
     @Override
     public Optional<ListProperty> create(Config config) {
       DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
-      if (type == null || !erasesToAnyOf(type, Collection.class, List.class, ImmutableList.class)) {
+      if (type == null || !ERASED_TYPES.contains(erasedName(type))) {
         return Optional.absent();
       }
 
-      TypeMirror elementType = upperBound(config.getElements(), type.getTypeArguments().get(0));
-      Optional<TypeMirror> unboxedType = maybeUnbox(elementType, config.getTypes());
-      boolean needsSafeVarargs = needsSafeVarargs(unboxedType.or(elementType));
+      PropertyTypeCache propertyTypes = config.getPropertyTypeCache();
+      TypeMirror elementType = propertyTypes.upperBound(type.getTypeArguments().get(0));
+      Optional<TypeMirror> unboxedType = propertyTypes.unboxedType(elementType);
+      boolean needsSafeVarargs = propertyTypes.needsSafeVarargs(unboxedType.or(elementType));
       boolean overridesAddMethod = hasAddMethodOverride(config, unboxedType.or(elementType));
       boolean overridesVarargsAddMethod =
           hasVarargsAddMethodOverride(config, unboxedType.or(elementType));
+      // ImmutableList properties must be copied into one on build, so gain nothing from it
+      boolean persistent = config.usesPersistentCollections()
+          && !erasedName(type).equals(IMMUTABLE_LIST_NAME);
       return Optional.of(new ListProperty(
           config.getMetadata(),
           config.getProperty(),
@@ -84,21 +99,18 @@ class ListProperty extends PropertyCodeGenerator {
           overridesAddMethod,
           overridesVarargsAddMethod,
           elementType,
-          unboxedType));
+          unboxedType,
+          persistent));
     }
 
     private static boolean hasAddMethodOverride(Config config, TypeMirror elementType) {
-      return overrides(
-          config.getBuilder(),
-          config.getTypes(),
+      return config.getBuilderMethodIndex().overrides(
           addMethod(config.getProperty()),
           elementType);
     }
 
     private static boolean hasVarargsAddMethodOverride(Config config, TypeMirror elementType) {
-      return overrides(
-          config.getBuilder(),
-          config.getTypes(),
+      return config.getBuilderMethodIndex().overrides(
           addMethod(config.getProperty()),
           config.getTypes().getArrayType(elementType));
     }
@@ -107,11 +119,15 @@ class ListProperty extends PropertyCodeGenerator {
   private static final ParameterizedType COLLECTION =
       QualifiedName.of(Collection.class).withParameters("E");
 
+  private static final String IMMUTABLE_LIST_NAME = unshadedName(ImmutableList.class.getName());
+  private static final String COLLECTION_NAME = unshadedName(Collection.class.getName());
+
   private final boolean needsSafeVarargs;
   private final boolean overridesAddMethod;
   private final boolean overridesVarargsAddMethod;
   private final TypeMirror elementType;
   private final Optional<TypeMirror> unboxedType;
+  private final boolean persistent;
 
   @VisibleForTesting
   ListProperty(
@@ -121,29 +137,50 @@ class ListProperty extends PropertyCodeGenerator {
       boolean overridesAddMethod,
       boolean overridesVarargsAddMethod,
       TypeMirror elementType,
-      Optional<TypeMirror> unboxedType) {
+      Optional<TypeMirror> unboxedType,
+      boolean persistent) {
     super(metadata, property);
     this.needsSafeVarargs = needsSafeVarargs;
     this.overridesAddMethod = overridesAddMethod;
     this.overridesVarargsAddMethod = overridesVarargsAddMethod;
     this.elementType = elementType;
     this.unboxedType = unboxedType;
+    this.persistent = persistent;
+  }
+
+  /** Returns whether the builder's list is a {@link PersistentList} until it is mutated. */
+  boolean isPersistent() {
+    return persistent;
+  }
+
+  @Override
+  public boolean isCostlyToCompare() {
+    return true;
   }
 
   @Override
   public void addBuilderFieldDeclaration(SourceBuilder code) {
-    if (code.feature(GUAVA).isAvailable()) {
+    if (persistent) {
+      code.addLine("private %s<%s> %s = %s.of();",
+          List.class,
+          elementType,
+          property.getField(),
+          PersistentList.TYPE);
+    } else if (code.feature(GUAVA).isAvailable()) {
       code.addLine("private %s<%s> %s = %s.of();",
           List.class,
           elementType,
           property.getField(),
           ImmutableList.class);
+      if (transfersOnBuild(code)) {
+        code.addLine("private boolean %s;", escapedField());
+      }
     } else {
-      code.addLine("private final %1$s<%2$s> %3$s = new %1$s%4$s();",
-          ArrayList.class,
+      code.addLine("private %s<%s> %s = %s.emptyList();",
+          List.class,
           elementType,
           property.getField(),
-          diamondOperator(elementType));
+          Collections.class);
     }
   }
 
@@ -171,14 +208,18 @@ class ListProperty extends PropertyCodeGenerator {
         .addLine("public %s %s(%s element) {",
             metadata.getBuilder(), addMethod(property), unboxedType.or(elementType));
     Block body = methodBody(code, "element");
-    if (body.feature(GUAVA).isAvailable()) {
-      body.addLine("  if (%s instanceof %s) {", property.getField(), ImmutableList.class)
-          .addLine("    %1$s = new %2$s%3$s(%1$s);",
-              property.getField(),
-              ArrayList.class,
-              diamondOperator(elementType))
-          .addLine("  }");
+    if (persistent) {
+      addPersistentAdd(body);
+      code.add(body)
+          .addLine("}");
+      return;
     }
+    body.addLine("  if (%s) {", isShared(body))
+        .addLine("    %1$s = new %2$s%3$s(%1$s);",
+            property.getField(),
+            ArrayList.class,
+            diamondOperator(elementType))
+        .addLine("  }");
     if (unboxedType.isPresent()) {
       body.addLine("  %s.add(element);", property.getField());
     } else {
@@ -190,6 +231,28 @@ class ListProperty extends PropertyCodeGenerator {
         .addLine("}");
   }
 
+  private void addPersistentAdd(Block body) {
+    Excerpt element = unboxedType.isPresent()
+        ? Excerpts.add("element")
+        : checkNotNullInline("element");
+    if (!unboxedType.isPresent()) {
+      body.add(checkNotNullPreamble("element"));
+    }
+    body.addLine("  if (%s && !%s.isEmpty()) {", isShared(body), property.getField())
+        .addLine("    // Append without copying, sharing the list with any values built from it")
+        .addLine("    %1$s = ((%2$s<%3$s>) %1$s).plus(%4$s);",
+            property.getField(), PersistentList.TYPE, elementType, element)
+        .addLine("  } else {")
+        .addLine("    if (%s) {", isShared(body))
+        .addLine("      // Nothing to share yet, so fill a mutable list until build()")
+        .addLine("      %s = new %s%s();",
+            property.getField(), ArrayList.class, diamondOperator(elementType))
+        .addLine("    }")
+        .addLine("    %s.add(%s);", property.getField(), element)
+        .addLine("  }")
+        .addLine("  return (%s) this;", metadata.getBuilder());
+  }
+
   private void addVarargsAdd(SourceBuilder code, Metadata metadata) {
     code.addLine("")
         .addLine("/**")
@@ -225,8 +288,15 @@ class ListProperty extends PropertyCodeGenerator {
       body.addLine("  return %s(%s.asList(elements));", addAllMethod(property), arrayUtils.get());
     } else {
       // Primitive type, Guava not available
-      body.addLine("  %1$s.ensureCapacity(%1$s.size() + elements.length);", property.getField())
-          .addLine("  for (%s element : elements) {", unboxedType.get())
+      if (!persistent) {
+        body.addLine("  if (%s) {", isShared(body))
+            .addLine("    %1$s = new %2$s%3$s(%1$s);",
+                property.getField(), ArrayList.class, diamondOperator(elementType))
+            .addLine("  }")
+            .addLine("  ((%s<?>) %s).ensureCapacity(%s.size() + elements.length);",
+                ArrayList.class, property.getField(), property.getField());
+      }
+      body.addLine("  for (%s element : elements) {", unboxedType.get())
           .addLine("    %s(element);", addMethod(property))
           .addLine("  }")
           .addLine("  return (%s) this;", metadata.getBuilder());
@@ -254,22 +324,18 @@ class ListProperty extends PropertyCodeGenerator {
         Iterable.class,
         elementType);
     Block body = methodBody(code, "elements");
-    body.addLine("  if (elements instanceof %s) {", Collection.class)
-        .addLine("    int elementsSize = ((%s<?>) elements).size();", Collection.class);
-    if (body.feature(GUAVA).isAvailable()) {
-      body.addLine("    if (elementsSize != 0) {")
-          .addLine("      if (%s instanceof %s) {", property.getField(), ImmutableList.class)
+    if (!persistent) {
+      body.addLine("  if (elements instanceof %s) {", Collection.class)
+          .addLine("    int elementsSize = ((%s<?>) elements).size();", Collection.class)
+          .addLine("    if (elementsSize != 0) {")
+          .addLine("      if (%s) {", isShared(body))
           .addLine("        %1$s = new %2$s%3$s(%1$s);",
               property.getField(), ArrayList.class, diamondOperator(elementType))
           .addLine("      }")
-          .add("      ((%s<?>) %s)", ArrayList.class, property.getField());
-    } else {
-      body.add("    %s", property.getField());
-    }
-    body.add(".ensureCapacity(%s.size() + elementsSize);%n", property.getField())
-        .addLine("  }");
-    if (body.feature(GUAVA).isAvailable()) {
-      body.addLine("  }");
+          .addLine("      ((%s<?>) %s).ensureCapacity(%s.size() + elementsSize);",
+              ArrayList.class, property.getField(), property.getField())
+          .addLine("    }")
+          .addLine("  }");
     }
     body.add(Excerpts.forEach(unboxedType.or(elementType), "elements", addMethod(property)))
         .addLine("  return (%s) this;", metadata.getBuilder());
@@ -286,22 +352,20 @@ class ListProperty extends PropertyCodeGenerator {
             spliterator,
             elementType);
     Block body = methodBody(code, "elements");
-    body.addLine("  if ((elements.characteristics() & %s.SIZED) != 0) {", spliterator)
-        .addLine("    long elementsSize = elements.estimateSize();")
-        .addLine("    if (elementsSize > 0 && elementsSize <= Integer.MAX_VALUE) {");
-    if (body.feature(GUAVA).isAvailable()) {
-      body.addLine("      if (%s instanceof %s) {", property.getField(), ImmutableList.class)
+    if (!persistent) {
+      body.addLine("  if ((elements.characteristics() & %s.SIZED) != 0) {", spliterator)
+          .addLine("    long elementsSize = elements.estimateSize();")
+          .addLine("    if (elementsSize > 0 && elementsSize <= Integer.MAX_VALUE) {")
+          .addLine("      if (%s) {", isShared(body))
           .addLine("        %1$s = new %2$s%3$s(%1$s);",
               property.getField(), ArrayList.class, diamondOperator(elementType))
           .addLine("      }")
-          .add("      ((%s<?>) %s)", ArrayList.class, property.getField());
-    } else {
-      body.add("      %s", property.getField());
+          .addLine("      ((%s<?>) %s).ensureCapacity(%s.size() + (int) elementsSize);",
+              ArrayList.class, property.getField(), property.getField())
+          .addLine("    }")
+          .addLine("  }");
     }
-    body.add(".ensureCapacity(%s.size() + (int) elementsSize);%n", property.getField())
-        .addLine("    }")
-        .addLine("  }")
-        .addLine("  elements.forEachRemaining(this::%s);", addMethod(property))
+    body.addLine("  elements.forEachRemaining(this::%s);", addMethod(property))
         .addLine("  return (%s) this;", metadata.getBuilder());
     code.add(body)
         .addLine("}");
@@ -315,7 +379,8 @@ class ListProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             Iterable.class,
             elementType)
-        .addLine("  return %s(elements.spliterator());", addAllMethod(property))
+        .add(methodBody(code, "elements")
+            .addLine("  return %s(elements.spliterator());", addAllMethod(property)))
         .addLine("}");
   }
 
@@ -327,7 +392,8 @@ class ListProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             baseStream,
             elementType)
-        .addLine("  return %s(elements.spliterator());", addAllMethod(property))
+        .add(methodBody(code, "elements")
+            .addLine("  return %s(elements.spliterator());", addAllMethod(property)))
         .addLine("}");
   }
 
@@ -368,14 +434,12 @@ class ListProperty extends PropertyCodeGenerator {
             List.class,
             elementType);
     Block body = methodBody(code, "mutator");
-    if (body.feature(GUAVA).isAvailable()) {
-      body.addLine("  if (%s instanceof %s) {", property.getField(), ImmutableList.class)
-          .addLine("    %1$s = new %2$s%3$s(%1$s);",
-              property.getField(),
-              ArrayList.class,
-              diamondOperator(elementType))
-          .addLine("  }");
-    }
+    body.addLine("  if (%s) {", isShared(body))
+        .addLine("    %1$s = new %2$s%3$s(%1$s);",
+            property.getField(),
+            ArrayList.class,
+            diamondOperator(elementType))
+        .addLine("  }");
     if (overridesAddMethod) {
       body.addLine("  mutator.accept(new %s<>(%s, this::%s));",
           CheckedList.TYPE, property.getField(), addMethod(property));
@@ -384,6 +448,9 @@ class ListProperty extends PropertyCodeGenerator {
               addMethod(property))
           .addLine("  mutator.accept(%s);", property.getField());
     }
+    if (transfersOnBuild(code)) {
+      body.addLine("  %s = true;", escapedField());
+    }
     body.addLine("  return (%s) this;", metadata.getBuilder());
     code.add(body)
         .addLine("}");
@@ -398,16 +465,20 @@ class ListProperty extends PropertyCodeGenerator {
         .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
         .addLine(" */")
         .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property));
-    if (code.feature(GUAVA).isAvailable()) {
-      code.addLine("  if (%s instanceof %s) {", property.getField(), ImmutableList.class)
-          .addLine("    %s = %s.of();", property.getField(), ImmutableList.class)
-          .addLine("  } else {");
-    }
-    code.addLine("    %s.clear();", property.getField());
-    if (code.feature(GUAVA).isAvailable()) {
-      code.addLine("  }");
+    Block body = methodBody(code);
+    body.addLine("  if (%s) {", isShared(body));
+    if (persistent) {
+      body.addLine("    %s = %s.of();", property.getField(), PersistentList.TYPE);
+    } else if (code.feature(GUAVA).isAvailable()) {
+      body.addLine("    %s = %s.of();", property.getField(), ImmutableList.class);
+    } else {
+      body.addLine("    %s = %s.emptyList();", property.getField(), Collections.class);
     }
-    code.addLine("  return (%s) this;", metadata.getBuilder())
+    body.addLine("  } else {")
+        .addLine("    %s.clear();", property.getField())
+        .addLine("  }")
+        .addLine("  return (%s) this;", metadata.getBuilder());
+    code.add(body)
         .addLine("}");
   }
 
@@ -419,18 +490,79 @@ class ListProperty extends PropertyCodeGenerator {
         .addLine(" * Changes to this builder will be reflected in the view.")
         .addLine(" */")
         .addLine("public %s<%s> %s() {", List.class, elementType, getter(property));
-    if (code.feature(GUAVA).isAvailable()) {
-      code.addLine("  if (%s instanceof %s) {", property.getField(), ImmutableList.class)
-          .addLine("    %1$s = new %2$s%3$s(%1$s);",
-              property.getField(), ArrayList.class, diamondOperator(elementType))
-          .addLine("  }");
+    Block body = methodBody(code);
+    body.addLine("  if (%s) {", isShared(body))
+        .addLine("    %1$s = new %2$s%3$s(%1$s);",
+            property.getField(), ArrayList.class, diamondOperator(elementType))
+        .addLine("  }");
+    if (transfersOnBuild(code)) {
+      body.addLine("  %s = true;", escapedField());
     }
-    code.addLine("  return %s.unmodifiableList(%s);", Collections.class, property.getField())
+    body.addLine("  return %s.unmodifiableList(%s);", Collections.class, property.getField());
+    code.add(body)
         .addLine("}");
   }
 
+  /**
+   * Returns an excerpt testing whether the builder's list may be shared, so must be copied
+   * before it is mutated.
+   */
+  private Excerpt isShared(SourceBuilder code) {
+    if (persistent) {
+      return Excerpts.add("%s instanceof %s", property.getField(), PersistentList.TYPE);
+    }
+    if (code.feature(GUAVA).isAvailable()
+        && !code.feature(COLLECTION_OWNERSHIP).transfersOnBuild()) {
+      return Excerpts.add("%s instanceof %s", property.getField(), ImmutableList.class);
+    }
+    // The builder's list may be a value's, or have been handed to a value behind a view
+    return Excerpts.add("!(%s instanceof %s)", property.getField(), ArrayList.class);
+  }
+
+  /**
+   * Returns whether {@code build()} should transfer the builder's list to the value. Properties
+   * declared as {@link ImmutableList} must still be copied into one.
+   */
+  private boolean transfersOnBuild(SourceBuilder code) {
+    return !persistent
+        && code.feature(GUAVA).isAvailable()
+        && code.feature(COLLECTION_OWNERSHIP).transfersOnBuild()
+        && !erasedName((DeclaredType) property.getType()).equals(IMMUTABLE_LIST_NAME);
+  }
+
+  /**
+   * Returns the builder field recording that the list has been handed out by the mutate method
+   * or the getter, so {@code build()} must copy it rather than transfer it.
+   */
+  private FieldAccess escapedField() {
+    return new FieldAccess("_" + property.getName() + "Escaped");
+  }
+
   @Override
   public void addFinalFieldAssignment(SourceBuilder code, Excerpt finalField, String builder) {
+    if (persistent) {
+      // A persistent list is shared as-is; the builder keeps any list a view may be wrapping
+      code.addLine("%s = %s.copyOf(%s);",
+          finalField,
+          PersistentList.TYPE,
+          property.getField().on(builder));
+      return;
+    }
+    if (transfersOnBuild(code)) {
+      code.addLine("if (%s) {", escapedField().on(builder))
+          .addLine("  // The list may still be reachable from outside the builder, so copy it")
+          .addLine("  %s = %s.copyOf(%s);",
+              finalField, ImmutableList.class, property.getField().on(builder))
+          .addLine("} else {")
+          .addLine("  // Hand the builder's list to the value, rather than copying it")
+          .addLine("  %s = %s = %s(%s);",
+              finalField,
+              property.getField().on(builder),
+              TransferredListMethod.REFERENCE,
+              property.getField().on(builder))
+          .addLine("}");
+      return;
+    }
     Excerpt immutableListMethod;
     if (code.feature(GUAVA).isAvailable()) {
       immutableListMethod = Excerpts.add("%s.copyOf", ImmutableList.class);
@@ -442,19 +574,51 @@ class ListProperty extends PropertyCodeGenerator {
 
   @Override
   public void addMergeFromValue(Block code, String value) {
-    if (code.feature(GUAVA).isAvailable()) {
+    if (persistent) {
       code.addLine("if (%s instanceof %s && %s == %s.<%s>of()) {",
               value,
               metadata.getValueType().getQualifiedName(),
               property.getField(),
-              ImmutableList.class,
+              PersistentList.TYPE,
               elementType)
-          .addLine("  %s = %s.copyOf(%s.%s());",
-              property.getField(), ImmutableList.class, value, property.getGetterName())
-          .addLine("} else {");
+          .addLine("  %s = %s.<%s>copyOf(%s.%s());",
+              property.getField(),
+              PersistentList.TYPE,
+              elementType,
+              value,
+              property.getGetterName())
+          .addLine("} else {")
+          .addLine("  %s(%s.%s());", addAllMethod(property), value, property.getGetterName())
+          .addLine("}");
+      return;
+    }
+    boolean guava = code.feature(GUAVA).isAvailable();
+    // Generic values are merged from as wildcard types, so their lists cannot be shared as-is
+    boolean sharesList = (!guava || transfersOnBuild(code))
+        && !metadata.getType().isParameterized();
+    if (guava || sharesList) {
+      code.addLine("if (%s instanceof %s && %s == %s.<%s>%s()) {",
+              value,
+              metadata.getValueType().getQualifiedName(),
+              property.getField(),
+              guava ? ImmutableList.class : Collections.class,
+              elementType,
+              guava ? "of" : "emptyList");
+      if (sharesList) {
+        // Values' lists are never mutated, even if transferred from a builder, so can be shared
+        Excerpt cast = erasedName((DeclaredType) property.getType()).equals(COLLECTION_NAME)
+            ? Excerpts.add("(%s<%s>) ", List.class, elementType)
+            : Excerpts.add("");
+        code.addLine("  %s = %s%s.%s();",
+            property.getField(), cast, value, property.getGetterName());
+      } else {
+        code.addLine("  %s = %s.copyOf(%s.%s());",
+            property.getField(), ImmutableList.class, value, property.getGetterName());
+      }
+      code.addLine("} else {");
     }
     code.addLine("%s(%s.%s());", addAllMethod(property), value, property.getGetterName());
-    if (code.feature(GUAVA).isAvailable()) {
+    if (guava || sharesList) {
       code.addLine("}");
     }
   }
@@ -475,6 +639,35 @@ class ListProperty extends PropertyCodeGenerator {
     code.addLine("%s();", clearMethod(property));
   }
 
+  private static class TransferredListMethod extends Excerpt {
+
+    static final LazyName REFERENCE =
+        new LazyName("transferredList", new TransferredListMethod());
+
+    private TransferredListMethod() {}
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Returns an immutable list of a builder's {@code elements}, which the")
+          .addLine(" * builder must copy rather than mutate from now on.")
+          .addLine(" */")
+          .addLine("private static <E> %1$s<E> %2$s(%1$s<E> elements) {", List.class, REFERENCE)
+          .addLine("  if (!(elements instanceof %s)) {", ArrayList.class)
+          .addLine("    // Already immutable, or already transferred to another value")
+          .addLine("    return elements;")
+          .addLine("  } else if (elements.isEmpty()) {")
+          .addLine("    return %s.of();", ImmutableList.class)
+          .addLine("  }")
+          .addLine("  return %s.unmodifiableList(elements);", Collections.class)
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
   private static class ImmutableListMethod extends Excerpt {
 
     static final LazyName REFERENCE = new LazyName("immutableList", new ImmutableListMethod());
@@ -486,6 +679,10 @@ class ListProperty extends PropertyCodeGenerator {
       code.addLine("")
           .addLine("@%s(\"unchecked\")", SuppressWarnings.class)
           .addLine("private static <E> %1$s<E> %2$s(%1$s<E> elements) {", List.class, REFERENCE)
+          .addLine("  if (!(elements instanceof %s)) {", ArrayList.class)
+          .addLine("    // Already immutable, having been shared from a value")
+          .addLine("    return elements;")
+          .addLine("  }")
           .addLine("  switch (elements.size()) {")
           .addLine("  case 0:")
           .addLine("    return %s.emptyList();", Collections.class)
@@ -21,18 +21,17 @@ import static org.inferred.freebuilder.processor.BuilderMethods.mutator;
 import static org.inferred.freebuilder.processor.BuilderMethods.putAllMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.putMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.removeMethod;
-import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
-import static org.inferred.freebuilder.processor.Util.upperBound;
+import static org.inferred.freebuilder.processor.Util.erasedName;
+import static org.inferred.freebuilder.processor.Util.unshadedNames;
 import static org.inferred.freebuilder.processor.util.Block.methodBody;
 import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
-import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
-import static org.inferred.freebuilder.processor.util.ModelUtils.overrides;
 import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
 import static org.inferred.freebuilder.processor.util.feature.GuavaLibrary.GUAVA;
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.diamondOperator;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.excerpt.CheckedMap;
@@ -49,6 +48,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
@@ -58,18 +58,27 @@ import javax.lang.model.type.TypeMirror;
  */
 class MapProperty extends PropertyCodeGenerator {
 
-  static class Factory implements PropertyCodeGenerator.Factory {
+  static class Factory implements TypeSpecificFactory {
+
+    private static final ImmutableSet<String> ERASED_TYPES =
+        unshadedNames(Map.class, ImmutableMap.class);
+
+    @Override
+    public Set<String> erasedTypes() {
+      return ERASED_TYPES;
+    }
 
     @Override
     public Optional<MapProperty> create(Config config) {
       DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
-      if (type == null || !erasesToAnyOf(type, Map.class, ImmutableMap.class)) {
+      if (type == null || !ERASED_TYPES.contains(erasedName(type))) {
         return Optional.absent();
       }
-      TypeMirror keyType = upperBound(config.getElements(), type.getTypeArguments().get(0));
-      TypeMirror valueType = upperBound(config.getElements(), type.getTypeArguments().get(1));
-      Optional<TypeMirror> unboxedKeyType = maybeUnbox(keyType, config.getTypes());
-      Optional<TypeMirror> unboxedValueType = maybeUnbox(valueType, config.getTypes());
+      PropertyTypeCache propertyTypes = config.getPropertyTypeCache();
+      TypeMirror keyType = propertyTypes.upperBound(type.getTypeArguments().get(0));
+      TypeMirror valueType = propertyTypes.upperBound(type.getTypeArguments().get(1));
+      Optional<TypeMirror> unboxedKeyType = propertyTypes.unboxedType(keyType);
+      Optional<TypeMirror> unboxedValueType = propertyTypes.unboxedType(valueType);
       boolean overridesPutMethod = hasPutMethodOverride(
           config, unboxedKeyType.or(keyType), unboxedValueType.or(valueType));
       return Optional.of(new MapProperty(
@@ -84,9 +93,7 @@ class MapProperty extends PropertyCodeGenerator {
 
     private static boolean hasPutMethodOverride(
         Config config, TypeMirror keyType, TypeMirror valueType) {
-      return overrides(
-          config.getBuilder(),
-          config.getTypes(),
+      return config.getBuilderMethodIndex().overrides(
           putMethod(config.getProperty()),
           keyType,
           valueType);
@@ -118,14 +125,15 @@ class MapProperty extends PropertyCodeGenerator {
     this.unboxedValueType = unboxedValueType;
   }
 
+  @Override
+  public boolean isCostlyToCompare() {
+    return true;
+  }
+
   @Override
   public void addBuilderFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %1$s<%2$s, %3$s> %4$s = new %1$s%5$s();",
-        LinkedHashMap.class,
-        keyType,
-        valueType,
-        property.getField(),
-        diamondOperator(Excerpts.add("%s, %s", keyType, valueType)));
+    code.addLine("private %s<%s, %s> %s = %s;",
+        Map.class, keyType, valueType, property.getField(), emptyMap(code));
   }
 
   @Override
@@ -171,6 +179,12 @@ class MapProperty extends PropertyCodeGenerator {
     if (!unboxedValueType.isPresent()) {
       body.add(PreconditionExcerpts.checkNotNull("value"));
     }
+    body.addLine("  if (%s) {", isShared(body))
+        .addLine("    %1$s = new %2$s%3$s(%1$s);",
+            property.getField(),
+            LinkedHashMap.class,
+            diamondOperator(Excerpts.add("%s, %s", keyType, valueType)))
+        .addLine("  }");
     body.addLine("  %s.put(key, value);", property.getField())
         .addLine("  return (%s) this;", metadata.getBuilder());
     code.add(body)
@@ -194,11 +208,12 @@ class MapProperty extends PropertyCodeGenerator {
             Map.class,
             keyType,
             valueType)
-        .addLine("  for (%s<? extends %s, ? extends %s> entry : map.entrySet()) {",
-            Map.Entry.class, keyType, valueType)
-        .addLine("    %s(entry.getKey(), entry.getValue());", putMethod(property))
-        .addLine("  }")
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "map")
+            .addLine("  for (%s<? extends %s, ? extends %s> entry : map.entrySet()) {",
+                Map.Entry.class, keyType, valueType)
+            .addLine("    %s(entry.getKey(), entry.getValue());", putMethod(property))
+            .addLine("  }")
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -222,6 +237,12 @@ class MapProperty extends PropertyCodeGenerator {
     if (!unboxedKeyType.isPresent()) {
       body.add(PreconditionExcerpts.checkNotNull("key"));
     }
+    body.addLine("  if (%s) {", isShared(body))
+        .addLine("    %1$s = new %2$s%3$s(%1$s);",
+            property.getField(),
+            LinkedHashMap.class,
+            diamondOperator(Excerpts.add("%s, %s", keyType, valueType)))
+        .addLine("  }");
     body.addLine("  %s.remove(key);", property.getField())
         .addLine("  return (%s) this;", metadata.getBuilder());
     code.add(body)
@@ -254,6 +275,12 @@ class MapProperty extends PropertyCodeGenerator {
             keyType,
             valueType);
     Block body = methodBody(code, "mutator");
+    body.addLine("  if (%s) {", isShared(body))
+        .addLine("    %1$s = new %2$s%3$s(%1$s);",
+            property.getField(),
+            LinkedHashMap.class,
+            diamondOperator(Excerpts.add("%s, %s", keyType, valueType)))
+        .addLine("  }");
     if (overridesPutMethod) {
       body.addLine("  mutator.accept(new %s<>(%s, this::%s));",
           CheckedMap.TYPE, property.getField(), putMethod(property));
@@ -276,8 +303,13 @@ class MapProperty extends PropertyCodeGenerator {
         .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
         .addLine(" */")
         .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
-        .addLine("  %s.clear();", property.getField())
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code)
+            .addLine("  if (%s) {", isShared(code))
+            .addLine("    %s = %s;", property.getField(), emptyMap(code))
+            .addLine("  } else {")
+            .addLine("    %s.clear();", property.getField())
+            .addLine("  }")
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -289,10 +321,36 @@ class MapProperty extends PropertyCodeGenerator {
         .addLine(" * Changes to this builder will be reflected in the view.")
         .addLine(" */")
         .addLine("public %s<%s, %s> %s() {", Map.class, keyType, valueType, getter(property))
-        .addLine("  return %s.unmodifiableMap(%s);", Collections.class, property.getField())
+        .add(methodBody(code)
+            .addLine("  if (%s) {", isShared(code))
+            .addLine("    %1$s = new %2$s%3$s(%1$s);",
+                property.getField(),
+                LinkedHashMap.class,
+                diamondOperator(Excerpts.add("%s, %s", keyType, valueType)))
+            .addLine("  }")
+            .addLine("  return %s.unmodifiableMap(%s);", Collections.class, property.getField()))
         .addLine("}");
   }
 
+  /** Returns an excerpt of the empty map the builder starts with, and reverts to when cleared. */
+  private static Excerpt emptyMap(SourceBuilder code) {
+    if (code.feature(GUAVA).isAvailable()) {
+      return Excerpts.add("%s.of()", ImmutableMap.class);
+    }
+    return Excerpts.add("%s.emptyMap()", Collections.class);
+  }
+
+  /**
+   * Returns an excerpt testing whether the builder's map may be shared with a value, so must be
+   * copied before it is mutated.
+   */
+  private Excerpt isShared(SourceBuilder code) {
+    if (code.feature(GUAVA).isAvailable()) {
+      return Excerpts.add("%s instanceof %s", property.getField(), ImmutableMap.class);
+    }
+    return Excerpts.add("!(%s instanceof %s)", property.getField(), LinkedHashMap.class);
+  }
+
   @Override
   public void addFinalFieldAssignment(SourceBuilder code, Excerpt finalField, String builder) {
     Excerpt immutableMapMethod;
@@ -306,7 +364,31 @@ class MapProperty extends PropertyCodeGenerator {
 
   @Override
   public void addMergeFromValue(Block code, String value) {
+    boolean guava = code.feature(GUAVA).isAvailable();
+    // Generic values are merged from as wildcard types, so their maps cannot be shared as-is
+    boolean sharesMap = guava || !metadata.getType().isParameterized();
+    if (sharesMap) {
+      code.addLine("if (%s instanceof %s && %s == %s.<%s, %s>%s()) {",
+          value,
+          metadata.getValueType().getQualifiedName(),
+          property.getField(),
+          guava ? ImmutableMap.class : Collections.class,
+          keyType,
+          valueType,
+          guava ? "of" : "emptyMap");
+      if (guava) {
+        code.addLine("  %s = %s.copyOf(%s.%s());",
+            property.getField(), ImmutableMap.class, value, property.getGetterName());
+      } else {
+        // Values' maps are never mutated, so can be shared
+        code.addLine("  %s = %s.%s();", property.getField(), value, property.getGetterName());
+      }
+      code.addLine("} else {");
+    }
     code.addLine("%s(%s.%s());", putAllMethod(property), value, property.getGetterName());
+    if (sharesMap) {
+      code.addLine("}");
+    }
   }
 
   @Override
@@ -322,7 +404,7 @@ class MapProperty extends PropertyCodeGenerator {
 
   @Override
   public void addClearField(Block code) {
-    code.addLine("%s.clear();", property.getField());
+    code.addLine("%s();", clearMethod(property));
   }
 
   private static class ImmutableMapMethod extends Excerpt {
@@ -336,6 +418,10 @@ class MapProperty extends PropertyCodeGenerator {
       code.addLine("")
           .addLine("private static <K, V> %1$s<K, V> %2$s(%1$s<K, V> entries) {",
               Map.class, REFERENCE)
+          .addLine("  if (!(entries instanceof %s)) {", LinkedHashMap.class)
+          .addLine("    // Already immutable, having been shared from a value")
+          .addLine("    return entries;")
+          .addLine("  }")
           .addLine("  switch (entries.size()) {")
           .addLine("  case 0:")
           .addLine("    return %s.emptyMap();", Collections.class)
@@ -143,12 +143,18 @@ public abstract class Metadata {
 
   public abstract ImmutableMap<StandardMethod, UnderrideLevel> getStandardMethodUnderrides();
 
+  /** Returns the standard methods whose results the value type should cache. */
+  public abstract ImmutableSet<StandardMethod> getMemoizedMethods();
+
   /** Returns whether the builder type should be serializable. */
   public abstract boolean isBuilderSerializable();
 
   /** Returns whether the value type has a toBuilder method that needs to be generated. */
   public abstract boolean getHasToBuilderMethod();
 
+  /** Returns whether equal values should be interned to a single canonical instance. */
+  public abstract boolean isInterned();
+
   /** Returns a list of annotations that should be applied to the generated builder class. */
   public abstract ImmutableList<Excerpt> getGeneratedBuilderAnnotations();
 
@@ -237,6 +243,7 @@ public abstract class Metadata {
     public Builder() {
       super.setValueTypeVisibility(Visibility.PRIVATE);
       super.setHasToBuilderMethod(false);
+      super.setInterned(false);
     }
 
     /**
@@ -52,6 +52,7 @@ abstract class Metadata_Builder {
     PROPERTY_ENUM("propertyEnum"),
     BUILDER_SERIALIZABLE("builderSerializable"),
     HAS_TO_BUILDER_METHOD("hasToBuilderMethod"),
+    INTERNED("interned"),
     VALUE_TYPE_VISIBILITY("valueTypeVisibility"),
     ;
 
@@ -87,8 +88,11 @@ abstract class Metadata_Builder {
   private final LinkedHashMap<Metadata.StandardMethod, Metadata.UnderrideLevel>
       standardMethodUnderrides =
           new LinkedHashMap<Metadata.StandardMethod, Metadata.UnderrideLevel>();
+  private final LinkedHashSet<Metadata.StandardMethod> memoizedMethods =
+      new LinkedHashSet<Metadata.StandardMethod>();
   private boolean builderSerializable;
   private boolean hasToBuilderMethod;
+  private boolean interned;
   private final ArrayList<Excerpt> generatedBuilderAnnotations = new ArrayList<Excerpt>();
   private final ArrayList<Excerpt> valueTypeAnnotations = new ArrayList<Excerpt>();
   private Metadata.Visibility valueTypeVisibility;
@@ -555,6 +559,83 @@ abstract class Metadata_Builder {
     return Collections.unmodifiableMap(standardMethodUnderrides);
   }
 
+  /**
+   * Adds {@code element} to the set to be returned from {@link Metadata#getMemoizedMethods()}.
+   * If the set already contains {@code element}, then {@code addMemoizedMethods}
+   * has no effect (only the previously added element is retained).
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code element} is null
+   */
+  public Metadata.Builder addMemoizedMethods(Metadata.StandardMethod element) {
+    this.memoizedMethods.add(Preconditions.checkNotNull(element));
+    return (Metadata.Builder) this;
+  }
+
+  /**
+   * Adds each element of {@code elements} to the set to be returned from
+   * {@link Metadata#getMemoizedMethods()}, ignoring duplicate elements
+   * (only the first duplicate element is added).
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a
+   *     null element
+   */
+  public Metadata.Builder addMemoizedMethods(Metadata.StandardMethod... elements) {
+    for (Metadata.StandardMethod element : elements) {
+      addMemoizedMethods(element);
+    }
+    return (Metadata.Builder) this;
+  }
+
+  /**
+   * Adds each element of {@code elements} to the set to be returned from
+   * {@link Metadata#getMemoizedMethods()}, ignoring duplicate elements
+   * (only the first duplicate element is added).
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code elements} is null or contains a
+   *     null element
+   */
+  public Metadata.Builder addAllMemoizedMethods(
+      Iterable<? extends Metadata.StandardMethod> elements) {
+    for (Metadata.StandardMethod element : elements) {
+      addMemoizedMethods(element);
+    }
+    return (Metadata.Builder) this;
+  }
+
+  /**
+   * Removes {@code element} from the set to be returned from {@link Metadata#getMemoizedMethods()}.
+   * Does nothing if {@code element} is not a member of the set.
+   *
+   * @return this {@code Builder} object
+   * @throws NullPointerException if {@code element} is null
+   */
+  public Metadata.Builder removeMemoizedMethods(Metadata.StandardMethod element) {
+    this.memoizedMethods.remove(Preconditions.checkNotNull(element));
+    return (Metadata.Builder) this;
+  }
+
+  /**
+   * Clears the set to be returned from {@link Metadata#getMemoizedMethods()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Metadata.Builder clearMemoizedMethods() {
+    memoizedMethods.clear();
+    return (Metadata.Builder) this;
+  }
+
+  /**
+   * Returns an unmodifiable view of the set that will be returned by
+   * {@link Metadata#getMemoizedMethods()}.
+   * Changes to this builder will be reflected in the view.
+   */
+  public Set<Metadata.StandardMethod> getMemoizedMethods() {
+    return Collections.unmodifiableSet(memoizedMethods);
+  }
+
   /**
    * Sets the value to be returned by {@link Metadata#isBuilderSerializable()}.
    *
@@ -601,6 +682,29 @@ abstract class Metadata_Builder {
     return hasToBuilderMethod;
   }
 
+  /**
+   * Sets the value to be returned by {@link Metadata#isInterned()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Metadata.Builder setInterned(boolean interned) {
+    this.interned = interned;
+    _unsetProperties.remove(Metadata_Builder.Property.INTERNED);
+    return (Metadata.Builder) this;
+  }
+
+  /**
+   * Returns the value that will be returned by {@link Metadata#isInterned()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean isInterned() {
+    Preconditions.checkState(
+        !_unsetProperties.contains(Metadata_Builder.Property.INTERNED),
+        "interned not set");
+    return interned;
+  }
+
   /**
    * Adds {@code element} to the list to be returned from {@link Metadata#getGeneratedBuilderAnnotations()}.
    *
@@ -859,6 +963,7 @@ abstract class Metadata_Builder {
     }
     addAllProperties(value.getProperties());
     putAllStandardMethodUnderrides(value.getStandardMethodUnderrides());
+    addAllMemoizedMethods(value.getMemoizedMethods());
     if (_defaults._unsetProperties.contains(Metadata_Builder.Property.BUILDER_SERIALIZABLE)
         || value.isBuilderSerializable() != _defaults.isBuilderSerializable()) {
       setBuilderSerializable(value.isBuilderSerializable());
@@ -867,6 +972,10 @@ abstract class Metadata_Builder {
         || value.getHasToBuilderMethod() != _defaults.getHasToBuilderMethod()) {
       setHasToBuilderMethod(value.getHasToBuilderMethod());
     }
+    if (_defaults._unsetProperties.contains(Metadata_Builder.Property.INTERNED)
+        || value.isInterned() != _defaults.isInterned()) {
+      setInterned(value.isInterned());
+    }
     addAllGeneratedBuilderAnnotations(value.getGeneratedBuilderAnnotations());
     addAllValueTypeAnnotations(value.getValueTypeAnnotations());
     if (_defaults._unsetProperties.contains(Metadata_Builder.Property.VALUE_TYPE_VISIBILITY)
@@ -924,6 +1033,7 @@ abstract class Metadata_Builder {
     }
     addAllProperties(((Metadata_Builder) template).properties);
     putAllStandardMethodUnderrides(((Metadata_Builder) template).standardMethodUnderrides);
+    addAllMemoizedMethods(((Metadata_Builder) template).memoizedMethods);
     if (!base._unsetProperties.contains(Metadata_Builder.Property.BUILDER_SERIALIZABLE)
         && (_defaults._unsetProperties.contains(Metadata_Builder.Property.BUILDER_SERIALIZABLE)
             || template.isBuilderSerializable() != _defaults.isBuilderSerializable())) {
@@ -934,6 +1044,11 @@ abstract class Metadata_Builder {
             || template.getHasToBuilderMethod() != _defaults.getHasToBuilderMethod())) {
       setHasToBuilderMethod(template.getHasToBuilderMethod());
     }
+    if (!base._unsetProperties.contains(Metadata_Builder.Property.INTERNED)
+        && (_defaults._unsetProperties.contains(Metadata_Builder.Property.INTERNED)
+            || template.isInterned() != _defaults.isInterned())) {
+      setInterned(template.isInterned());
+    }
     addAllGeneratedBuilderAnnotations(((Metadata_Builder) template).generatedBuilderAnnotations);
     addAllValueTypeAnnotations(((Metadata_Builder) template).valueTypeAnnotations);
     if (!base._unsetProperties.contains(Metadata_Builder.Property.VALUE_TYPE_VISIBILITY)
@@ -961,8 +1076,10 @@ abstract class Metadata_Builder {
     propertyEnum = _defaults.propertyEnum;
     properties.clear();
     standardMethodUnderrides.clear();
+    memoizedMethods.clear();
     builderSerializable = _defaults.builderSerializable;
     hasToBuilderMethod = _defaults.hasToBuilderMethod;
+    interned = _defaults.interned;
     generatedBuilderAnnotations.clear();
     valueTypeAnnotations.clear();
     valueTypeVisibility = _defaults.valueTypeVisibility;
@@ -1015,8 +1132,10 @@ abstract class Metadata_Builder {
     private final ImmutableList<Metadata.Property> properties;
     private final ImmutableMap<Metadata.StandardMethod, Metadata.UnderrideLevel>
         standardMethodUnderrides;
+    private final ImmutableSet<Metadata.StandardMethod> memoizedMethods;
     private final boolean builderSerializable;
     private final boolean hasToBuilderMethod;
+    private final boolean interned;
     private final ImmutableList<Excerpt> generatedBuilderAnnotations;
     private final ImmutableList<Excerpt> valueTypeAnnotations;
     private final Metadata.Visibility valueTypeVisibility;
@@ -1034,8 +1153,10 @@ abstract class Metadata_Builder {
       this.propertyEnum = builder.propertyEnum;
       this.properties = ImmutableList.copyOf(builder.properties);
       this.standardMethodUnderrides = ImmutableMap.copyOf(builder.standardMethodUnderrides);
+      this.memoizedMethods = ImmutableSet.copyOf(builder.memoizedMethods);
       this.builderSerializable = builder.builderSerializable;
       this.hasToBuilderMethod = builder.hasToBuilderMethod;
+      this.interned = builder.interned;
       this.generatedBuilderAnnotations = ImmutableList.copyOf(builder.generatedBuilderAnnotations);
       this.valueTypeAnnotations = ImmutableList.copyOf(builder.valueTypeAnnotations);
       this.valueTypeVisibility = builder.valueTypeVisibility;
@@ -1098,6 +1219,11 @@ abstract class Metadata_Builder {
       return standardMethodUnderrides;
     }
 
+    @Override
+    public ImmutableSet<Metadata.StandardMethod> getMemoizedMethods() {
+      return memoizedMethods;
+    }
+
     @Override
     public boolean isBuilderSerializable() {
       return builderSerializable;
@@ -1108,6 +1234,11 @@ abstract class Metadata_Builder {
       return hasToBuilderMethod;
     }
 
+    @Override
+    public boolean isInterned() {
+      return interned;
+    }
+
     @Override
     public ImmutableList<Excerpt> getGeneratedBuilderAnnotations() {
       return generatedBuilderAnnotations;
@@ -1169,12 +1300,18 @@ abstract class Metadata_Builder {
       if (!standardMethodUnderrides.equals(other.standardMethodUnderrides)) {
         return false;
       }
+      if (!memoizedMethods.equals(other.memoizedMethods)) {
+        return false;
+      }
       if (builderSerializable != other.builderSerializable) {
         return false;
       }
       if (hasToBuilderMethod != other.hasToBuilderMethod) {
         return false;
       }
+      if (interned != other.interned) {
+        return false;
+      }
       if (!generatedBuilderAnnotations.equals(other.generatedBuilderAnnotations)) {
         return false;
       }
@@ -1205,8 +1342,10 @@ abstract class Metadata_Builder {
             propertyEnum,
             properties,
             standardMethodUnderrides,
+            memoizedMethods,
             builderSerializable,
             hasToBuilderMethod,
+            interned,
             generatedBuilderAnnotations,
             valueTypeAnnotations,
             valueTypeVisibility,
@@ -1229,8 +1368,10 @@ abstract class Metadata_Builder {
               "propertyEnum=" + propertyEnum,
               "properties=" + properties,
               "standardMethodUnderrides=" + standardMethodUnderrides,
+              "memoizedMethods=" + memoizedMethods,
               "builderSerializable=" + builderSerializable,
               "hasToBuilderMethod=" + hasToBuilderMethod,
+              "interned=" + interned,
               "generatedBuilderAnnotations=" + generatedBuilderAnnotations,
               "valueTypeAnnotations=" + valueTypeAnnotations,
               "valueTypeVisibility=" + valueTypeVisibility,
@@ -1258,8 +1399,10 @@ abstract class Metadata_Builder {
     private final ImmutableList<Metadata.Property> properties;
     private final ImmutableMap<Metadata.StandardMethod, Metadata.UnderrideLevel>
         standardMethodUnderrides;
+    private final ImmutableSet<Metadata.StandardMethod> memoizedMethods;
     private final boolean builderSerializable;
     private final boolean hasToBuilderMethod;
+    private final boolean interned;
     private final ImmutableList<Excerpt> generatedBuilderAnnotations;
     private final ImmutableList<Excerpt> valueTypeAnnotations;
     private final Metadata.Visibility valueTypeVisibility;
@@ -1278,8 +1421,10 @@ abstract class Metadata_Builder {
       this.propertyEnum = builder.propertyEnum;
       this.properties = ImmutableList.copyOf(builder.properties);
       this.standardMethodUnderrides = ImmutableMap.copyOf(builder.standardMethodUnderrides);
+      this.memoizedMethods = ImmutableSet.copyOf(builder.memoizedMethods);
       this.builderSerializable = builder.builderSerializable;
       this.hasToBuilderMethod = builder.hasToBuilderMethod;
+      this.interned = builder.interned;
       this.generatedBuilderAnnotations = ImmutableList.copyOf(builder.generatedBuilderAnnotations);
       this.valueTypeAnnotations = ImmutableList.copyOf(builder.valueTypeAnnotations);
       this.valueTypeVisibility = builder.valueTypeVisibility;
@@ -1361,6 +1506,11 @@ abstract class Metadata_Builder {
       return standardMethodUnderrides;
     }
 
+    @Override
+    public ImmutableSet<Metadata.StandardMethod> getMemoizedMethods() {
+      return memoizedMethods;
+    }
+
     @Override
     public boolean isBuilderSerializable() {
       if (_unsetProperties.contains(Metadata_Builder.Property.BUILDER_SERIALIZABLE)) {
@@ -1377,6 +1527,14 @@ abstract class Metadata_Builder {
       return hasToBuilderMethod;
     }
 
+    @Override
+    public boolean isInterned() {
+      if (_unsetProperties.contains(Metadata_Builder.Property.INTERNED)) {
+        throw new UnsupportedOperationException("interned not set");
+      }
+      return interned;
+    }
+
     @Override
     public ImmutableList<Excerpt> getGeneratedBuilderAnnotations() {
       return generatedBuilderAnnotations;
@@ -1445,12 +1603,18 @@ abstract class Metadata_Builder {
       if (!standardMethodUnderrides.equals(other.standardMethodUnderrides)) {
         return false;
       }
+      if (!memoizedMethods.equals(other.memoizedMethods)) {
+        return false;
+      }
       if (builderSerializable != other.builderSerializable) {
         return false;
       }
       if (hasToBuilderMethod != other.hasToBuilderMethod) {
         return false;
       }
+      if (interned != other.interned) {
+        return false;
+      }
       if (!generatedBuilderAnnotations.equals(other.generatedBuilderAnnotations)) {
         return false;
       }
@@ -1483,8 +1647,10 @@ abstract class Metadata_Builder {
             propertyEnum,
             properties,
             standardMethodUnderrides,
+            memoizedMethods,
             builderSerializable,
             hasToBuilderMethod,
+            interned,
             generatedBuilderAnnotations,
             valueTypeAnnotations,
             valueTypeVisibility,
@@ -1518,12 +1684,16 @@ abstract class Metadata_Builder {
                   : null),
               "properties=" + properties,
               "standardMethodUnderrides=" + standardMethodUnderrides,
+              "memoizedMethods=" + memoizedMethods,
               (!_unsetProperties.contains(Metadata_Builder.Property.BUILDER_SERIALIZABLE)
                   ? "builderSerializable=" + builderSerializable
                   : null),
               (!_unsetProperties.contains(Metadata_Builder.Property.HAS_TO_BUILDER_METHOD)
                   ? "hasToBuilderMethod=" + hasToBuilderMethod
                   : null),
+              (!_unsetProperties.contains(Metadata_Builder.Property.INTERNED)
+                  ? "interned=" + interned
+                  : null),
               "generatedBuilderAnnotations=" + generatedBuilderAnnotations,
               "valueTypeAnnotations=" + valueTypeAnnotations,
               (!_unsetProperties.contains(Metadata_Builder.Property.VALUE_TYPE_VISIBILITY)
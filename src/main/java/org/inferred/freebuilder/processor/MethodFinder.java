@@ -15,8 +15,6 @@
  */
 package org.inferred.freebuilder.processor;
 
-import static javax.lang.model.util.ElementFilter.methodsIn;
-
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.SetMultimap;
@@ -24,16 +22,10 @@ import com.google.common.collect.SetMultimap;
 import org.inferred.freebuilder.processor.Analyser.CannotGenerateCodeException;
 
 import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.Set;
 
-import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
-import javax.lang.model.type.DeclaredType;
-import javax.lang.model.type.TypeKind;
-import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 
 /**
@@ -51,10 +43,22 @@ public class MethodFinder {
    */
   public static ImmutableSet<ExecutableElement> methodsOn(TypeElement type, Elements elements)
       throws CannotGenerateCodeException {
+    return methodsOn(type, elements, new TypeHierarchyCache());
+  }
+
+  /**
+   * Returns all methods, declared and inherited, on {@code type}, except those specified by
+   * {@link Object}, looking up supertypes and their methods in {@code typeHierarchy}.
+   *
+   * @see #methodsOn(TypeElement, Elements)
+   */
+  static ImmutableSet<ExecutableElement> methodsOn(
+      TypeElement type, Elements elements, TypeHierarchyCache typeHierarchy)
+      throws CannotGenerateCodeException {
     TypeElement objectType = elements.getTypeElement(Object.class.getCanonicalName());
     SetMultimap<Signature, ExecutableElement> methods = LinkedHashMultimap.create();
-    for (TypeElement supertype : getSupertypes(type)) {
-      for (ExecutableElement method : methodsIn(supertype.getEnclosedElements())) {
+    for (TypeElement supertype : typeHierarchy.supertypes(type)) {
+      for (ExecutableElement method : typeHierarchy.declaredMethods(supertype)) {
         if (method.getEnclosingElement().equals(objectType)) {
           continue;  // Skip methods specified by Object.
         }
@@ -73,35 +77,6 @@ public class MethodFinder {
     return ImmutableSet.copyOf(methods.values());
   }
 
-  private static ImmutableSet<TypeElement> getSupertypes(TypeElement type)
-      throws CannotGenerateCodeException {
-    Set<TypeElement> supertypes = new LinkedHashSet<TypeElement>();
-    addSupertypesToSet(type, supertypes);
-    return ImmutableSet.copyOf(supertypes);
-  }
-
-  private static void addSupertypesToSet(TypeElement type, Set<TypeElement> mutableSet)
-      throws CannotGenerateCodeException {
-    for (TypeMirror iface : type.getInterfaces()) {
-      addSupertypesToSet(asTypeElement(iface), mutableSet);
-    }
-    if (type.getSuperclass().getKind() != TypeKind.NONE) {
-      addSupertypesToSet(asTypeElement(type.getSuperclass()), mutableSet);
-    }
-    mutableSet.add(type);
-  }
-
-  private static TypeElement asTypeElement(TypeMirror iface) throws CannotGenerateCodeException {
-    if (iface.getKind() != TypeKind.DECLARED) {
-      throw new CannotGenerateCodeException();
-    }
-    Element element = ((DeclaredType) iface).asElement();
-    if (!(element.getKind().isClass() || element.getKind().isInterface())) {
-      throw new CannotGenerateCodeException();
-    }
-    return (TypeElement) element;
-  }
-
   /**
    * Key type. Two methods with different {@code Signature}s will never return true when passed to
    * {@link Elements#overrides}.
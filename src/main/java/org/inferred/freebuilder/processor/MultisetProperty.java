@@ -22,19 +22,17 @@ import static org.inferred.freebuilder.processor.BuilderMethods.clearMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.getter;
 import static org.inferred.freebuilder.processor.BuilderMethods.mutator;
 import static org.inferred.freebuilder.processor.BuilderMethods.setCountMethod;
-import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
-import static org.inferred.freebuilder.processor.Util.upperBound;
+import static org.inferred.freebuilder.processor.Util.erasedName;
+import static org.inferred.freebuilder.processor.Util.unshadedNames;
 import static org.inferred.freebuilder.processor.util.Block.methodBody;
 import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
-import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
-import static org.inferred.freebuilder.processor.util.ModelUtils.needsSafeVarargs;
-import static org.inferred.freebuilder.processor.util.ModelUtils.overrides;
 import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.SOURCE_LEVEL;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedHashMultiset;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Multisets;
@@ -43,11 +41,13 @@ import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.excerpt.CheckedMultiset;
 import org.inferred.freebuilder.processor.util.Block;
 import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
 import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.QualifiedName;
 import org.inferred.freebuilder.processor.util.SourceBuilder;
 
 import java.util.Collection;
+import java.util.Set;
 
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
@@ -58,18 +58,27 @@ import javax.lang.model.type.TypeMirror;
  */
 class MultisetProperty extends PropertyCodeGenerator {
 
-  static class Factory implements PropertyCodeGenerator.Factory {
+  static class Factory implements TypeSpecificFactory {
+
+    private static final ImmutableSet<String> ERASED_TYPES =
+        unshadedNames(Multiset.class, ImmutableMultiset.class);
+
+    @Override
+    public Set<String> erasedTypes() {
+      return ERASED_TYPES;
+    }
 
     @Override
     public Optional<MultisetProperty> create(Config config) {
       DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
-      if (type == null || !erasesToAnyOf(type, Multiset.class, ImmutableMultiset.class)) {
+      if (type == null || !ERASED_TYPES.contains(erasedName(type))) {
         return Optional.absent();
       }
 
-      TypeMirror elementType = upperBound(config.getElements(), type.getTypeArguments().get(0));
-      Optional<TypeMirror> unboxedType = maybeUnbox(elementType, config.getTypes());
-      boolean needsSafeVarargs = needsSafeVarargs(unboxedType.or(elementType));
+      PropertyTypeCache propertyTypes = config.getPropertyTypeCache();
+      TypeMirror elementType = propertyTypes.upperBound(type.getTypeArguments().get(0));
+      Optional<TypeMirror> unboxedType = propertyTypes.unboxedType(elementType);
+      boolean needsSafeVarargs = propertyTypes.needsSafeVarargs(unboxedType.or(elementType));
       boolean overridesSetCountMethod =
           hasSetCountMethodOverride(config, unboxedType.or(elementType));
       boolean overridesVarargsAddMethod =
@@ -86,18 +95,14 @@ class MultisetProperty extends PropertyCodeGenerator {
 
     private static boolean hasSetCountMethodOverride(
         Config config, TypeMirror type) {
-      return overrides(
-          config.getBuilder(),
-          config.getTypes(),
+      return config.getBuilderMethodIndex().overrides(
           setCountMethod(config.getProperty()),
           type,
           config.getTypes().getPrimitiveType(TypeKind.INT));
     }
 
     private static boolean hasVarargsAddMethodOverride(Config config, TypeMirror elementType) {
-      return overrides(
-          config.getBuilder(),
-          config.getTypes(),
+      return config.getBuilderMethodIndex().overrides(
           addMethod(config.getProperty()),
           config.getTypes().getArrayType(elementType));
     }
@@ -127,10 +132,15 @@ class MultisetProperty extends PropertyCodeGenerator {
     this.unboxedType = unboxedType;
   }
 
+  @Override
+  public boolean isCostlyToCompare() {
+    return true;
+  }
+
   @Override
   public void addBuilderFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %1$s<%2$s> %3$s = %1$s.create();",
-        LinkedHashMultiset.class, elementType, property.getField());
+    code.addLine("private %s<%s> %s = %s.of();",
+        Multiset.class, elementType, property.getField(), ImmutableMultiset.class);
   }
 
   @Override
@@ -160,8 +170,9 @@ class MultisetProperty extends PropertyCodeGenerator {
             metadata.getBuilder(),
             addMethod(property),
             unboxedType.or(elementType))
-        .addLine("  %s(element, 1);", addCopiesMethod(property))
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "element")
+            .addLine("  %s(element, 1);", addCopiesMethod(property))
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -194,10 +205,11 @@ class MultisetProperty extends PropertyCodeGenerator {
            metadata.getBuilder(),
             addMethod(property),
             unboxedType.or(elementType))
-        .addLine("  for (%s element : elements) {", unboxedType.or(elementType))
-        .addLine("    %s(element, 1);", addCopiesMethod(property))
-        .addLine("  }")
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "elements")
+            .addLine("  for (%s element : elements) {", unboxedType.or(elementType))
+            .addLine("    %s(element, 1);", addCopiesMethod(property))
+            .addLine("  }")
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -219,10 +231,11 @@ class MultisetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             spliterator,
             elementType)
-        .addLine("  elements.forEachRemaining(element -> {")
-        .addLine("    %s(element, 1);", addCopiesMethod(property))
-        .addLine("  });")
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "elements")
+            .addLine("  elements.forEachRemaining(element -> {")
+            .addLine("    %s(element, 1);", addCopiesMethod(property))
+            .addLine("  });")
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -234,7 +247,8 @@ class MultisetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             baseStream,
             elementType)
-        .addLine("  return %s(elements.spliterator());", addAllMethod(property))
+        .add(methodBody(code, "elements")
+            .addLine("  return %s(elements.spliterator());", addAllMethod(property)))
         .addLine("}");
   }
 
@@ -246,7 +260,8 @@ class MultisetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             Iterable.class,
             elementType)
-        .addLine("  return %s(elements.spliterator());", addAllMethod(property))
+        .add(methodBody(code, "elements")
+            .addLine("  return %s(elements.spliterator());", addAllMethod(property)))
         .addLine("}");
   }
 
@@ -258,10 +273,11 @@ class MultisetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             Iterable.class,
             elementType)
-        .addLine("  for (%s element : elements) {", unboxedType.or(elementType))
-        .addLine("    %s(element, 1);", addCopiesMethod(property))
-        .addLine("  }")
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "elements")
+            .addLine("  for (%s element : elements) {", unboxedType.or(elementType))
+            .addLine("    %s(element, 1);", addCopiesMethod(property))
+            .addLine("  }")
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -326,6 +342,9 @@ class MultisetProperty extends PropertyCodeGenerator {
             Multiset.class,
             elementType);
     Block body = methodBody(code, "mutator");
+    body.addLine("  if (%s) {", isShared())
+        .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedHashMultiset.class)
+        .addLine("  }");
     if (overridesSetCountMethod) {
       body.addLine("  mutator.accept(new %s<>(%s, this::%s));",
           CheckedMultiset.TYPE, property.getField(), setCountMethod(property));
@@ -348,8 +367,13 @@ class MultisetProperty extends PropertyCodeGenerator {
         .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
         .addLine(" */")
         .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
-        .addLine("  %s.clear();", property.getField())
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code)
+            .addLine("  if (%s) {", isShared())
+            .addLine("    %s = %s.of();", property.getField(), ImmutableMultiset.class)
+            .addLine("  } else {")
+            .addLine("    %s.clear();", property.getField())
+            .addLine("  }")
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -373,9 +397,12 @@ class MultisetProperty extends PropertyCodeGenerator {
             unboxedType.or(elementType));
     Block body = methodBody(code, "element", "occurrences");
     if (!unboxedType.isPresent()) {
-      code.addLine("  %s.checkNotNull(element);", Preconditions.class);
+      body.addLine("  %s.checkNotNull(element);", Preconditions.class);
     }
-    code.addLine("  %s.setCount(element, occurrences);", property.getField())
+    body.addLine("  if (%s) {", isShared())
+        .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedHashMultiset.class)
+        .addLine("  }")
+        .addLine("  %s.setCount(element, occurrences);", property.getField())
         .addLine("  return (%s) this;", metadata.getBuilder());
     code.add(body)
         .addLine("}");
@@ -389,10 +416,22 @@ class MultisetProperty extends PropertyCodeGenerator {
         .addLine(" * Changes to this builder will be reflected in the view.")
         .addLine(" */")
         .addLine("public %s<%s> %s() {", Multiset.class, elementType, getter(property))
-        .addLine("  return %s.unmodifiableMultiset(%s);", Multisets.class, property.getField())
+        .add(methodBody(code)
+            .addLine("  if (%s) {", isShared())
+            .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedHashMultiset.class)
+            .addLine("  }")
+            .addLine("  return %s.unmodifiableMultiset(%s);", Multisets.class, property.getField()))
         .addLine("}");
   }
 
+  /**
+   * Returns an excerpt testing whether the builder's multiset may be shared with a value, so must
+   * be copied before it is mutated.
+   */
+  private Excerpt isShared() {
+    return Excerpts.add("%s instanceof %s", property.getField(), ImmutableMultiset.class);
+  }
+
   @Override
   public void addFinalFieldAssignment(SourceBuilder code, Excerpt finalField, String builder) {
     code.addLine("%s = %s.copyOf(%s);",
@@ -401,7 +440,17 @@ class MultisetProperty extends PropertyCodeGenerator {
 
   @Override
   public void addMergeFromValue(Block code, String value) {
-    code.addLine("%s(%s.%s());", addAllMethod(property), value, property.getGetterName());
+    code.addLine("if (%s instanceof %s && %s == %s.<%s>of()) {",
+            value,
+            metadata.getValueType().getQualifiedName(),
+            property.getField(),
+            ImmutableMultiset.class,
+            elementType)
+        .addLine("  %s = %s.copyOf(%s.%s());",
+            property.getField(), ImmutableMultiset.class, value, property.getGetterName())
+        .addLine("} else {")
+        .addLine("  %s(%s.%s());", addAllMethod(property), value, property.getGetterName())
+        .addLine("}");
   }
 
   @Override
@@ -417,6 +466,6 @@ class MultisetProperty extends PropertyCodeGenerator {
 
   @Override
   public void addClearField(Block code) {
-    code.addLine("%s.clear();", property.getField());
+    code.addLine("%s();", clearMethod(property));
   }
 }
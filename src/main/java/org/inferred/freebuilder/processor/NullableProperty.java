@@ -138,16 +138,17 @@ class NullableProperty extends PropertyCodeGenerator {
         .addLine("public %s %s(%s mapper) {",
             metadata.getBuilder(),
             mapper(property),
-            unaryOperator.withParameters(typeParam))
-        .add(PreconditionExcerpts.checkNotNull("mapper"));
+            unaryOperator.withParameters(typeParam));
     Block body = methodBody(code, "mapper");
-    Excerpt propertyValue = body.declare(new TypeMirrorExcerpt(
+    // Null-check the mapper before declaring any locals
+    Block afterCheck = body.add(PreconditionExcerpts.checkNotNull("mapper")).innerBlock();
+    Excerpt propertyValue = afterCheck.declare(new TypeMirrorExcerpt(
         property.getType()), property.getName(), Excerpts.add("%s()", getter(property)));
-    body.addLine("  if (%s != null) {", propertyValue)
+    afterCheck.addLine("  if (%s != null) {", propertyValue)
         .addLine("    %s(mapper.apply(%s));", setter(property), propertyValue)
         .addLine("  }")
         .addLine("  return (%s) this;", metadata.getBuilder());
-    code.add(body)
+    code.add(body.add(afterCheck))
         .addLine("}");
   }
 
@@ -159,7 +160,8 @@ class NullableProperty extends PropertyCodeGenerator {
         .addLine(" */");
     addGetterAnnotations(code);
     code.addLine("public %s %s() {", property.getType(), getter(property))
-        .addLine("  return %s;", property.getField())
+        .add(methodBody(code)
+            .addLine("  return %s;", property.getField()))
         .addLine("}");
   }
 
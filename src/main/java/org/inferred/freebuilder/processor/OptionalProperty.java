@@ -21,14 +21,14 @@ import static org.inferred.freebuilder.processor.BuilderMethods.mapper;
 import static org.inferred.freebuilder.processor.BuilderMethods.nullableSetter;
 import static org.inferred.freebuilder.processor.BuilderMethods.setter;
 import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
-import static org.inferred.freebuilder.processor.Util.upperBound;
 import static org.inferred.freebuilder.processor.util.Block.methodBody;
 import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
-import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
+import static org.inferred.freebuilder.processor.util.Shading.unshadedName;
 import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
 
 import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.util.Block;
@@ -39,6 +39,8 @@ import org.inferred.freebuilder.processor.util.PreconditionExcerpts;
 import org.inferred.freebuilder.processor.util.QualifiedName;
 import org.inferred.freebuilder.processor.util.SourceBuilder;
 
+import java.util.Set;
+
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.WildcardType;
@@ -102,7 +104,14 @@ class OptionalProperty extends PropertyCodeGenerator {
     protected abstract void invokeIfPresent(SourceBuilder code, String value, String method);
   }
 
-  static class Factory implements PropertyCodeGenerator.Factory {
+  static class Factory implements TypeSpecificFactory {
+
+    private static final ImmutableSet<String> ERASED_TYPES = erasedTypeNames();
+
+    @Override
+    public Set<String> erasedTypes() {
+      return ERASED_TYPES;
+    }
 
     @Override
     public Optional<OptionalProperty> create(Config config) {
@@ -116,8 +125,9 @@ class OptionalProperty extends PropertyCodeGenerator {
         return Optional.absent();
       }
 
-      TypeMirror elementType = upperBound(config.getElements(), type.getTypeArguments().get(0));
-      Optional<TypeMirror> unboxedType = maybeUnbox(elementType, config.getTypes());
+      PropertyTypeCache propertyTypes = config.getPropertyTypeCache();
+      TypeMirror elementType = propertyTypes.upperBound(type.getTypeArguments().get(0));
+      Optional<TypeMirror> unboxedType = propertyTypes.unboxedType(elementType);
 
       // Issue 29: In Java 7 and earlier, wildcards are not correctly handled when inferring the
       // type parameter of a static method (i.e. Optional.fromNullable(t)). We need to set the
@@ -133,6 +143,14 @@ class OptionalProperty extends PropertyCodeGenerator {
           requiresExplicitTypeParameters));
     }
 
+    private static ImmutableSet<String> erasedTypeNames() {
+      ImmutableSet.Builder<String> names = ImmutableSet.builder();
+      for (OptionalType optionalType : OptionalType.values()) {
+        names.add(unshadedName(optionalType.cls.toString()));
+      }
+      return names.build();
+    }
+
     private static Optional<OptionalType> maybeOptional(DeclaredType type) {
       for (OptionalType optionalType : OptionalType.values()) {
         if (erasesToAnyOf(type, optionalType.cls)) {
@@ -289,8 +307,10 @@ class OptionalProperty extends PropertyCodeGenerator {
             metadata.getBuilder(),
             mapper(property),
             unaryOperator.withParameters(elementType));
-    optional.applyMapper(code, metadata, property);
-    code.addLine("}");
+    Block body = methodBody(code, "mapper");
+    optional.applyMapper(body, metadata, property);
+    code.add(body)
+        .addLine("}");
   }
 
   private void addClear(SourceBuilder code, Metadata metadata) {
@@ -303,8 +323,9 @@ class OptionalProperty extends PropertyCodeGenerator {
         .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
         .addLine(" */")
         .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
-        .addLine("  %s = null;", property.getField())
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code)
+            .addLine("  %s = null;", property.getField())
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -315,11 +336,13 @@ class OptionalProperty extends PropertyCodeGenerator {
             metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
         .addLine(" */")
         .addLine("public %s %s() {", property.getType(), getter(property));
-    code.add("  return %s.", optional.cls);
+    Block body = methodBody(code);
+    body.add("  return %s.", optional.cls);
     if (requiresExplicitTypeParameters) {
-      code.add("<%s>", elementType);
+      body.add("<%s>", elementType);
     }
-    code.add("%s(%s);\n", optional.ofNullable, property.getField())
+    body.add("%s(%s);\n", optional.ofNullable, property.getField());
+    code.add(body)
         .addLine("}");
   }
 
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+import com.google.common.base.Optional;
+import com.google.common.io.Files;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Opt-in per-type timing and size telemetry, enabled with the {@value #OPTION} processor option.
+ *
+ * <p>For each &#64;FreeBuilder type, records the time spent in each processing phase, the number
+ * of properties of each kind, and the size of the generated source. After every round, a summary
+ * is issued as a NOTE and the report for all rounds so far is written as JSON to the file named by
+ * the option.
+ *
+ * <p>Source is always rendered to a string before being written while statistics are enabled,
+ * so that formatting and writing can be timed separately.
+ */
+class ProcessingStatistics {
+
+  /** Processor option naming the JSON report file. Statistics are not collected if unset. */
+  public static final String OPTION = "freebuilder.stats";
+
+  private static final int SLOWEST_TYPES_IN_SUMMARY = 3;
+
+  private static final Comparator<TypeStatistics> SLOWEST_FIRST =
+      new Comparator<TypeStatistics>() {
+        @Override
+        public int compare(TypeStatistics a, TypeStatistics b) {
+          long aNanos = a.totalNanos();
+          long bNanos = b.totalNanos();
+          return (aNanos > bNanos) ? -1 : ((aNanos == bNanos) ? 0 : 1);
+        }
+      };
+
+  /**
+   * Returns the statistics configured in {@code env}, or {@link Optional#absent()} if they are not
+   * enabled.
+   */
+  public static Optional<ProcessingStatistics> forEnvironment(ProcessingEnvironment env) {
+    String option = env.getOptions().get(OPTION);
+    if (option == null || option.trim().isEmpty()) {
+      return Optional.absent();
+    }
+    return Optional.of(new ProcessingStatistics(new File(option.trim())));
+  }
+
+  /** Timings and sizes for a single &#64;FreeBuilder type. */
+  static class TypeStatistics {
+    private final String type;
+    private final Map<String, Integer> propertyKinds = new TreeMap<String, Integer>();
+    private long analyseNanos = 0;
+    private long generateNanos = 0;
+    private long importNanos = 0;
+    private long formatNanos = 0;
+    private long writeNanos = 0;
+    private boolean cached = false;
+    private int sourceChars = 0;
+
+    TypeStatistics(String type) {
+      this.type = type;
+    }
+
+    /** Records the time spent in {@link Analyser#analyse}, and the properties found. */
+    void analysed(long nanos, Metadata metadata) {
+      this.analyseNanos = nanos;
+      for (Property property : metadata.getProperties()) {
+        PropertyCodeGenerator codeGenerator = property.getCodeGenerator();
+        String kind = (codeGenerator == null) ? "None" : codeGenerator.getClass().getSimpleName();
+        Integer count = propertyKinds.get(kind);
+        propertyKinds.put(kind, (count == null) ? 1 : count + 1);
+      }
+    }
+
+    /**
+     * Records the time spent in {@link CodeGenerator#writeBuilderSource}, of which
+     * {@code importNanos} was spent on import resolution.
+     */
+    void generated(long nanos, long importNanos) {
+      this.generateNanos = nanos;
+      this.importNanos = importNanos;
+    }
+
+    /** Records that the source was found in the generation cache. */
+    void cached(String source) {
+      this.cached = true;
+      this.sourceChars = source.length();
+    }
+
+    /**
+     * Records the time spent rendering and formatting the source. May be called from a render
+     * thread; the processor thread only reads the result once the rendered source is retrieved.
+     */
+    void formatted(long nanos, String source) {
+      this.formatNanos = nanos;
+      this.sourceChars = source.length();
+    }
+
+    /** Records the time spent writing the source to the Filer. */
+    void written(long nanos) {
+      this.writeNanos = nanos;
+    }
+
+    long totalNanos() {
+      return analyseNanos + generateNanos + formatNanos + writeNanos;
+    }
+
+    void appendJsonTo(StringBuilder json, String indent) {
+      json.append(indent).append("{\"type\": ").append(jsonString(type))
+          .append(", \"analyseNanos\": ").append(analyseNanos)
+          .append(", \"generateNanos\": ").append(generateNanos)
+          .append(", \"importNanos\": ").append(importNanos)
+          .append(", \"formatNanos\": ").append(formatNanos)
+          .append(", \"writeNanos\": ").append(writeNanos)
+          .append(", \"cached\": ").append(cached)
+          .append(", \"sourceChars\": ").append(sourceChars)
+          .append(", \"properties\": {");
+      String separator = "";
+      for (Map.Entry<String, Integer> kind : propertyKinds.entrySet()) {
+        json.append(separator).append(jsonString(kind.getKey())).append(": ")
+            .append(kind.getValue());
+        separator = ", ";
+      }
+      json.append("}}");
+    }
+  }
+
+  private final File report;
+  private final List<List<TypeStatistics>> rounds = new ArrayList<List<TypeStatistics>>();
+  private List<TypeStatistics> currentRound = new ArrayList<TypeStatistics>();
+
+  private ProcessingStatistics(File report) {
+    this.report = report;
+  }
+
+  /** Starts recording statistics for {@code type} in the current round. */
+  public TypeStatistics add(TypeElement type) {
+    TypeStatistics statistics = new TypeStatistics(type.getQualifiedName().toString());
+    currentRound.add(statistics);
+    return statistics;
+  }
+
+  /**
+   * Completes the current round: issues a summary NOTE, and rewrites the report with every round
+   * so far. Must only be called once all the round's sources have been written.
+   */
+  public void endRound(Messager messager) {
+    if (currentRound.isEmpty()) {
+      return;
+    }
+    rounds.add(currentRound);
+    messager.printMessage(Kind.NOTE, summary(rounds.size(), currentRound));
+    currentRound = new ArrayList<TypeStatistics>();
+    try {
+      File parent = report.getAbsoluteFile().getParentFile();
+      if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+        throw new IOException("Cannot create directory " + parent);
+      }
+      Files.write(json(), report, UTF_8);
+    } catch (IOException e) {
+      messager.printMessage(
+          Kind.WARNING,
+          "Cannot write -A" + OPTION + " report '" + report + "': " + e.getMessage());
+    }
+  }
+
+  private static String summary(int round, List<TypeStatistics> types) {
+    long totalAnalyseNanos = 0;
+    long totalGenerateNanos = 0;
+    long totalImportNanos = 0;
+    long totalFormatNanos = 0;
+    long totalWriteNanos = 0;
+    for (TypeStatistics type : types) {
+      totalAnalyseNanos += type.analyseNanos;
+      totalGenerateNanos += type.generateNanos;
+      totalImportNanos += type.importNanos;
+      totalFormatNanos += type.formatNanos;
+      totalWriteNanos += type.writeNanos;
+    }
+    StringBuilder summary = new StringBuilder()
+        .append("FreeBuilder round ").append(round).append(": ")
+        .append(types.size()).append(types.size() == 1 ? " type in " : " types in ")
+        .append(millis(totalAnalyseNanos + totalGenerateNanos + totalFormatNanos + totalWriteNanos))
+        .append(" (analyse ").append(millis(totalAnalyseNanos))
+        .append(", generate ").append(millis(totalGenerateNanos))
+        .append(" including imports ").append(millis(totalImportNanos))
+        .append(", format ").append(millis(totalFormatNanos))
+        .append(", write ").append(millis(totalWriteNanos))
+        .append("); slowest:");
+    List<TypeStatistics> slowest = new ArrayList<TypeStatistics>(types);
+    Collections.sort(slowest, SLOWEST_FIRST);
+    String separator = " ";
+    int slowestCount = Math.min(SLOWEST_TYPES_IN_SUMMARY, slowest.size());
+    for (TypeStatistics type : slowest.subList(0, slowestCount)) {
+      summary.append(separator).append(type.type).append(" (").append(millis(type.totalNanos()))
+          .append(")");
+      separator = ", ";
+    }
+    return summary.toString();
+  }
+
+  private String json() {
+    StringBuilder json = new StringBuilder("{\n  \"rounds\": [");
+    String roundSeparator = "\n";
+    for (int i = 0; i < rounds.size(); i++) {
+      json.append(roundSeparator).append("    {\"round\": ").append(i + 1).append(", \"types\": [");
+      String typeSeparator = "\n";
+      for (TypeStatistics type : rounds.get(i)) {
+        json.append(typeSeparator);
+        type.appendJsonTo(json, "      ");
+        typeSeparator = ",\n";
+      }
+      json.append("\n    ]}");
+      roundSeparator = ",\n";
+    }
+    json.append("\n  ]\n}\n");
+    return json.toString();
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.1fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  private static String jsonString(String value) {
+    StringBuilder result = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        result.append('\\').append(c);
+      } else if (c < ' ') {
+        result.append(String.format("\\u%04x", (int) c));
+      } else {
+        result.append(c);
+      }
+    }
+    return result.append('"').toString();
+  }
+}
@@ -16,6 +16,7 @@
 package org.inferred.freebuilder.processor;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
 import static javax.lang.model.util.ElementFilter.typesIn;
 import static org.inferred.freebuilder.processor.util.ModelUtils.findAnnotationMirror;
 import static org.inferred.freebuilder.processor.util.RoundEnvironments.annotatedElementsIn;
@@ -23,21 +24,41 @@ import static org.inferred.freebuilder.processor.util.RoundEnvironments.annotate
 import com.google.auto.service.AutoService;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.Callables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.ProcessingStatistics.TypeStatistics;
 import org.inferred.freebuilder.processor.util.CompilationUnitBuilder;
 import org.inferred.freebuilder.processor.util.FilerUtils;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+import org.inferred.freebuilder.processor.util.QualifiedNameCache;
+import org.inferred.freebuilder.processor.util.feature.BuilderBackend;
+import org.inferred.freebuilder.processor.util.feature.CollectionOwnership;
 import org.inferred.freebuilder.processor.util.feature.EnvironmentFeatureSet;
 import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.feature.FormatStyle;
+import org.inferred.freebuilder.processor.util.feature.GenerationMode;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
+import javax.annotation.Nullable;
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
 import javax.annotation.processing.FilerException;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
@@ -63,11 +84,23 @@ public class Processor extends AbstractProcessor {
   private static final ConcurrentMap<ProcessingEnvironment, Processor> registeredProcessors =
       new MapMaker().weakKeys().weakValues().concurrencyLevel(1).initialCapacity(1).makeMap();
 
+  /**
+   * Processor option setting how many threads render and format generated source. Analysis and
+   * code generation always run on the processor thread, as do all writes to the {@link Filer}.
+   */
+  public static final String PARALLELISM_OPTION = "freebuilder.parallelism";
+
   private Analyser analyser;
+  private final TypeHierarchyCache typeHierarchy = new TypeHierarchyCache();
   private final CodeGenerator codeGenerator = new CodeGenerator();
+  private final ClassFileGenerator classFileGenerator = new ClassFileGenerator();
   private final FeatureSet features;
 
+  private transient PropertyTypeCache propertyTypes;
   private transient FeatureSet environmentFeatures;
+  private transient ExecutorService renderExecutor;
+  private transient Optional<GenerationCache> generationCache;
+  private transient Optional<ProcessingStatistics> statistics;
 
   public Processor() {
     this.features = null;
@@ -83,6 +116,19 @@ public class Processor extends AbstractProcessor {
     return ImmutableSet.of(FreeBuilder.class.getName());
   }
 
+  @Override
+  public Set<String> getSupportedOptions() {
+    return ImmutableSet.of(
+        FormatStyle.OPTION,
+        GenerationMode.OPTION,
+        BuilderBackend.OPTION,
+        CollectionOwnership.OPTION,
+        PARALLELISM_OPTION,
+        GenerationCache.DIRECTORY_OPTION,
+        GenerationCache.SIZE_OPTION,
+        ProcessingStatistics.OPTION);
+  }
+
   @Override
   public SourceVersion getSupportedSourceVersion() {
     return SourceVersion.latestSupported();
@@ -96,14 +142,38 @@ public class Processor extends AbstractProcessor {
           Kind.NOTE, "FreeBuilder processor registered twice; disabling duplicate instance");
       return;
     }
+    propertyTypes =
+        new PropertyTypeCache(processingEnv.getElementUtils(), processingEnv.getTypeUtils());
     analyser = new Analyser(
         processingEnv.getElementUtils(),
         processingEnv.getMessager(),
         MethodIntrospector.instance(processingEnv),
-        processingEnv.getTypeUtils());
+        processingEnv.getTypeUtils(),
+        typeHierarchy,
+        propertyTypes);
     if (features == null) {
       environmentFeatures = new EnvironmentFeatureSet(processingEnv);
     }
+    // Check the options here, so the helpers are not even loaded unless they have been enabled.
+    Map<String, String> options = processingEnv.getOptions();
+    generationCache = options.containsKey(GenerationCache.DIRECTORY_OPTION)
+        ? GenerationCache.forEnvironment(processingEnv)
+        : Optional.<GenerationCache>absent();
+    statistics = options.containsKey(ProcessingStatistics.OPTION)
+        ? ProcessingStatistics.forEnvironment(processingEnv)
+        : Optional.<ProcessingStatistics>absent();
+    int parallelism = parallelism(processingEnv);
+    if (parallelism > 1) {
+      // Features may query the compiler, so must be resolved here, not on the render threads.
+      FeatureSet featureSet = firstNonNull(features, environmentFeatures);
+      featureSet.get(FormatStyle.FORMAT_STYLE);
+      featureSet.get(GenerationMode.GENERATION_MODE);
+      featureSet.get(CollectionOwnership.COLLECTION_OWNERSHIP);
+      renderExecutor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+          .setNameFormat("freebuilder-render-%d")
+          .setDaemon(true)
+          .build());
+    }
   }
 
   @Override
@@ -112,43 +182,247 @@ public class Processor extends AbstractProcessor {
       // Another FreeBuilder Processor is already registered; skip processing
       return false;
     }
+    typeHierarchy.invalidate();
+    propertyTypes.invalidate();
+    Queue<PendingSource> pendingSources = new ArrayDeque<PendingSource>();
+    QualifiedNameCache qualifiedNames = new QualifiedNameCache();
     for (TypeElement type : typesIn(annotatedElementsIn(roundEnv, FreeBuilder.class))) {
+      TypeStatistics typeStatistics = statistics.isPresent() ? statistics.get().add(type) : null;
       try {
+        long start = System.nanoTime();
         Metadata metadata = analyser.analyse(type);
-        CompilationUnitBuilder code = new CompilationUnitBuilder(
-            processingEnv,
-            metadata.getGeneratedBuilder().getQualifiedName(),
-            metadata.getVisibleNestedTypes(),
-            firstNonNull(features, environmentFeatures));
-        codeGenerator.writeBuilderSource(code, metadata);
-        FilerUtils.writeCompilationUnit(
-            processingEnv.getFiler(),
-            metadata.getGeneratedBuilder().getQualifiedName(),
-            type,
-            code.toString());
+        if (typeStatistics != null) {
+          typeStatistics.analysed(System.nanoTime() - start, metadata);
+        }
+        QualifiedName classToWrite = metadata.getGeneratedBuilder().getQualifiedName();
+        FeatureSet featureSet = firstNonNull(features, environmentFeatures);
+        Optional<Map<String, byte[]>> classFiles = Optional.absent();
+        if (featureSet.get(BuilderBackend.BUILDER_BACKEND) == BuilderBackend.CLASS_FILE) {
+          start = System.nanoTime();
+          classFiles = classFileGenerator.generate(metadata, featureSet);
+          if (classFiles.isPresent() && typeStatistics != null) {
+            typeStatistics.generated(System.nanoTime() - start, 0);
+          }
+        }
+        String cacheKey = null;
+        Optional<String> cachedSource = Optional.absent();
+        if (generationCache.isPresent() && !classFiles.isPresent()) {
+          cacheKey = generationCache.get().key(processingEnv, metadata, featureSet);
+          cachedSource = generationCache.get().get(cacheKey);
+        }
+        if (classFiles.isPresent()) {
+          writeClassFiles(type, classFiles.get());
+        } else if (cachedSource.isPresent()) {
+          if (typeStatistics != null) {
+            typeStatistics.cached(cachedSource.get());
+          }
+          pendingSources.add(new PendingSource(
+              type, classToWrite, rendered(cachedSource.get()), null, typeStatistics));
+        } else {
+          start = System.nanoTime();
+          CompilationUnitBuilder code = new CompilationUnitBuilder(
+              processingEnv,
+              classToWrite,
+              metadata.getVisibleNestedTypes(),
+              featureSet,
+              qualifiedNames);
+          codeGenerator.writeBuilderSource(code, metadata);
+          if (typeStatistics != null) {
+            typeStatistics.generated(System.nanoTime() - start, code.importResolutionNanos());
+          }
+          if (renderExecutor == null && cacheKey == null && typeStatistics == null) {
+            // Nothing needs the whole file as a string, so stream it straight to the Filer.
+            pendingSources.add(new PendingSource(type, classToWrite, code));
+          } else {
+            pendingSources.add(new PendingSource(
+                type, classToWrite, render(code, typeStatistics), cacheKey, typeStatistics));
+          }
+        }
       } catch (Analyser.CannotGenerateCodeException e) {
         // Thrown to skip writing the builder source; the error will already have been issued.
+      } catch (RuntimeException e) {
+        printMessage(Kind.ERROR, "Internal error: " + Throwables.getStackTraceAsString(e), type);
+      }
+      if (renderExecutor == null) {
+        writeAll(pendingSources);
+      }
+    }
+    writeAll(pendingSources);
+    if (statistics.isPresent()) {
+      statistics.get().endRound(processingEnv.getMessager());
+    }
+    if (roundEnv.processingOver() && renderExecutor != null) {
+      renderExecutor.shutdown();
+      renderExecutor = null;
+    }
+    if (roundEnv.processingOver() && generationCache.isPresent()) {
+      generationCache.get().evict();
+      processingEnv.getMessager().printMessage(Kind.NOTE, generationCache.get().statistics());
+    }
+    return false;
+  }
+
+  /**
+   * Returns a task rendering {@code code} to a string, timed in {@code typeStatistics} if not null.
+   * The task runs immediately, unless {@value #PARALLELISM_OPTION} is set, in which case it is
+   * queued on {@link #renderExecutor}.
+   */
+  private FutureTask<String> render(
+      final CompilationUnitBuilder code, @Nullable final TypeStatistics typeStatistics) {
+    FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+      @Override
+      public String call() {
+        long start = System.nanoTime();
+        String source = code.toString();
+        if (typeStatistics != null) {
+          typeStatistics.formatted(System.nanoTime() - start, source);
+        }
+        return source;
+      }
+    });
+    if (renderExecutor == null) {
+      task.run();
+    } else {
+      renderExecutor.execute(task);
+    }
+    return task;
+  }
+
+  /** Returns a completed task yielding {@code source}. */
+  private static FutureTask<String> rendered(String source) {
+    FutureTask<String> task = new FutureTask<String>(Callables.returning(source));
+    task.run();
+    return task;
+  }
+
+  /** Writes {@code pendingSources} to the {@link Filer} in order, on the processor thread. */
+  private void writeAll(Queue<PendingSource> pendingSources) {
+    PendingSource pendingSource;
+    while ((pendingSource = pendingSources.poll()) != null) {
+      TypeElement type = pendingSource.type;
+      try {
+        // Gradle isolating processors must give exactly one originating element per file.
+        // Everything else the builder depends on is reachable from the annotated type.
+        if (pendingSource.code != null) {
+          FilerUtils.writeCompilationUnit(
+              processingEnv.getFiler(), pendingSource.classToWrite, type, pendingSource.code);
+        } else {
+          String source = pendingSource.get();
+          long start = System.nanoTime();
+          FilerUtils.writeCompilationUnit(
+              processingEnv.getFiler(), pendingSource.classToWrite, type, source);
+          if (pendingSource.typeStatistics != null) {
+            pendingSource.typeStatistics.written(System.nanoTime() - start);
+          }
+          if (pendingSource.cacheKey != null) {
+            cache(pendingSource.cacheKey, source, type);
+          }
+        }
       } catch (FilerException e) {
-        processingEnv.getMessager().printMessage(
-            Kind.WARNING,
-            "Error producing Builder: " + e.getMessage(),
-            type,
-            findAnnotationMirror(type, "org.inferred.freebuilder.FreeBuilder").get());
+        printMessage(Kind.WARNING, "Error producing Builder: " + e.getMessage(), type);
       } catch (IOException e) {
-        processingEnv.getMessager().printMessage(
-            Kind.ERROR,
-            "I/O error: " + Throwables.getStackTraceAsString(e),
-            type,
-            findAnnotationMirror(type, "org.inferred.freebuilder.FreeBuilder").get());
+        printMessage(Kind.ERROR, "I/O error: " + Throwables.getStackTraceAsString(e), type);
       } catch (RuntimeException e) {
-        processingEnv.getMessager().printMessage(
-            Kind.ERROR,
-            "Internal error: " + Throwables.getStackTraceAsString(e),
-            type,
-            findAnnotationMirror(type, "org.inferred.freebuilder.FreeBuilder").get());
+        printMessage(Kind.ERROR, "Internal error: " + Throwables.getStackTraceAsString(e), type);
+      }
+    }
+  }
+
+  /** Writes the class files generated for {@code type} to the {@link Filer}. */
+  private void writeClassFiles(TypeElement type, Map<String, byte[]> classFiles) {
+    try {
+      for (Map.Entry<String, byte[]> classFile : classFiles.entrySet()) {
+        FilerUtils.writeClassFile(
+            processingEnv.getFiler(), classFile.getKey(), type, classFile.getValue());
+      }
+    } catch (FilerException e) {
+      printMessage(Kind.WARNING, "Error producing Builder: " + e.getMessage(), type);
+    } catch (IOException e) {
+      printMessage(Kind.ERROR, "I/O error: " + Throwables.getStackTraceAsString(e), type);
+    }
+  }
+
+  private void cache(String cacheKey, String source, TypeElement type) {
+    try {
+      generationCache.get().put(cacheKey, source);
+    } catch (IOException e) {
+      printMessage(Kind.WARNING, "Cannot write to generation cache: " + e.getMessage(), type);
+    }
+  }
+
+  private void printMessage(Kind kind, String message, TypeElement type) {
+    processingEnv.getMessager().printMessage(
+        kind,
+        message,
+        type,
+        findAnnotationMirror(type, "org.inferred.freebuilder.FreeBuilder").get());
+  }
+
+  private static int parallelism(ProcessingEnvironment env) {
+    String option = env.getOptions().get(PARALLELISM_OPTION);
+    if (option == null) {
+      return 1;
+    }
+    try {
+      int parallelism = Integer.parseInt(option.trim());
+      if (parallelism > 0) {
+        return parallelism;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to the warning below
+    }
+    env.getMessager().printMessage(
+        Kind.WARNING,
+        "Invalid value for -A" + PARALLELISM_OPTION + ": '" + option
+            + "' (expected a positive integer); formatting serially");
+    return 1;
+  }
+
+  /**
+   * Generated source for a single type, either still to be streamed from its {@link #code}, or
+   * rendered to a string, possibly still on another thread.
+   */
+  private static class PendingSource {
+    final TypeElement type;
+    final QualifiedName classToWrite;
+    /** Code to stream to the Filer, or null if the source is rendered to a string. */
+    @Nullable final CompilationUnitBuilder code;
+    /** Key to cache the source under once rendered, or null if it should not be cached. */
+    @Nullable final String cacheKey;
+    /** Statistics to record the write in, or null if statistics are not enabled. */
+    @Nullable final TypeStatistics typeStatistics;
+    @Nullable private final FutureTask<String> source;
+
+    PendingSource(TypeElement type, QualifiedName classToWrite, CompilationUnitBuilder code) {
+      this.type = type;
+      this.classToWrite = classToWrite;
+      this.code = code;
+      this.source = null;
+      this.cacheKey = null;
+      this.typeStatistics = null;
+    }
+
+    PendingSource(
+        TypeElement type,
+        QualifiedName classToWrite,
+        FutureTask<String> source,
+        @Nullable String cacheKey,
+        @Nullable TypeStatistics typeStatistics) {
+      this.type = type;
+      this.classToWrite = classToWrite;
+      this.code = null;
+      this.source = source;
+      this.cacheKey = cacheKey;
+      this.typeStatistics = typeStatistics;
+    }
+
+    String get() {
+      try {
+        return getUninterruptibly(source);
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
       }
     }
-    return false;
   }
 
   @Override
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.util.ClassFileBuilder.internalName;
+
+import com.google.common.base.Optional;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.util.ClassFileBuilder;
+import org.inferred.freebuilder.processor.util.ClassFileBuilder.Code;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Bytecode counterpart of {@link PropertyCodeGenerator}, used by the {@link ClassFileGenerator}.
+ *
+ * <p>The value and partial types store each property in a final field of the same type as the
+ * builder's, so only the builder's code is property-specific.
+ */
+abstract class PropertyBytecodeGenerator {
+
+  /** Name of the bitmask field tracking which required properties are unset. */
+  static final String UNSET_PROPERTIES = "_unsetProperties";
+
+  /**
+   * Returns the field descriptor of {@code type}, or absent if it is generic, or otherwise cannot
+   * be written without a full signature.
+   */
+  static Optional<String> descriptor(TypeMirror type) {
+    switch (type.getKind()) {
+      case BOOLEAN:
+        return Optional.of("Z");
+      case BYTE:
+        return Optional.of("B");
+      case CHAR:
+        return Optional.of("C");
+      case SHORT:
+        return Optional.of("S");
+      case INT:
+        return Optional.of("I");
+      case LONG:
+        return Optional.of("J");
+      case FLOAT:
+        return Optional.of("F");
+      case DOUBLE:
+        return Optional.of("D");
+      case ARRAY:
+        Optional<String> component = descriptor(((ArrayType) type).getComponentType());
+        return component.isPresent()
+            ? Optional.of("[" + component.get())
+            : Optional.<String>absent();
+      case DECLARED:
+        DeclaredType declaredType = (DeclaredType) type;
+        TypeMirror enclosingType = declaredType.getEnclosingType();
+        if (!declaredType.getTypeArguments().isEmpty()) {
+          return Optional.absent();
+        }
+        if (enclosingType.getKind() != TypeKind.NONE && !descriptor(enclosingType).isPresent()) {
+          return Optional.absent();
+        }
+        return Optional.of(ClassFileBuilder.descriptor(
+            QualifiedName.of((TypeElement) declaredType.asElement())));
+      default:
+        return Optional.absent();
+    }
+  }
+
+  protected final Metadata metadata;
+  protected final Property property;
+  /** Field descriptor of the property's type. */
+  protected final String descriptor;
+  /** The property's bit in {@link #UNSET_PROPERTIES}, or 0 if it is never unset. */
+  protected final int unsetBit;
+  /** Internal name of the generated builder, which declares the property's field. */
+  protected final String generatedBuilder;
+  /** Descriptor of the user-visible builder, returned by chaining methods. */
+  protected final String builderDescriptor;
+
+  PropertyBytecodeGenerator(Metadata metadata, Property property, String descriptor, int unsetBit) {
+    this.metadata = metadata;
+    this.property = property;
+    this.descriptor = descriptor;
+    this.unsetBit = unsetBit;
+    this.generatedBuilder = internalName(metadata.getGeneratedBuilder().getQualifiedName());
+    this.builderDescriptor =
+        ClassFileBuilder.descriptor(metadata.getBuilder().getQualifiedName());
+  }
+
+  /** Returns the field descriptor of the property's type. */
+  String getDescriptor() {
+    return descriptor;
+  }
+
+  /** Returns the property's bit in {@link #UNSET_PROPERTIES}, or 0 if it is never unset. */
+  int getUnsetBit() {
+    return unsetBit;
+  }
+
+  /** Adds the field for the property to the builder. */
+  abstract void addBuilderField(ClassFileBuilder builder);
+
+  /** Adds the accessor methods for the property to the builder. */
+  abstract void addBuilderFieldAccessors(ClassFileBuilder builder);
+
+  /**
+   * Adds a merge of the property from the value in local {@code value}, given a fresh builder in
+   * local {@code defaults}.
+   */
+  abstract void addMergeFromValue(Code code, int value, int defaults);
+
+  /**
+   * Adds a merge of the property from the builder in local {@code template}, given a fresh
+   * builder in local {@code defaults}.
+   */
+  abstract void addMergeFromBuilder(Code code, int template, int defaults);
+
+  /** Adds a reset of the property to its value in the fresh builder in local {@code defaults}. */
+  abstract void addClearField(Code code, int defaults);
+}
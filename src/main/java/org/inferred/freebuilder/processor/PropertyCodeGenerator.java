@@ -55,6 +55,9 @@ public abstract class PropertyCodeGenerator {
     /** The user's Builder type. */
     TypeElement getBuilder();
 
+    /** The methods declared on the user's Builder type, indexed by name. */
+    BuilderMethodIndex getBuilderMethodIndex();
+
     /**
      * A set of methods that are definitely invoked in the builder constructor. This may have false
      * negatives (e.g. if method introspection has not been implemented for the current compiler),
@@ -67,6 +70,15 @@ public abstract class PropertyCodeGenerator {
 
     /** The compiler's {@link Types} implementation. */
     Types getTypes();
+
+    /** Facts about element, key and value types, shared by every property this round. */
+    PropertyTypeCache getPropertyTypeCache();
+
+    /**
+     * Whether the property, or the type declaring it, is annotated &#64;{@link
+     * org.inferred.freebuilder.PersistentCollections PersistentCollections}.
+     */
+    boolean usesPersistentCollections();
   }
 
   /** Factory interface for {@link PropertyCodeGenerator}. */
@@ -80,6 +92,15 @@ public abstract class PropertyCodeGenerator {
     Optional<? extends PropertyCodeGenerator> create(Config config);
   }
 
+  /**
+   * A {@link Factory} that only supports properties whose type erases to one of a fixed set of
+   * types, so it need not be consulted for any other property.
+   */
+  interface TypeSpecificFactory extends Factory {
+    /** Returns the qualified names of the erased property types this factory may support. */
+    Set<String> erasedTypes();
+  }
+
   protected final Metadata metadata;
   protected final Property property;
 
@@ -96,6 +117,14 @@ public abstract class PropertyCodeGenerator {
     return Type.HAS_DEFAULT;
   }
 
+  /**
+   * Returns whether comparing two values of the property may be costly, e.g. because they are
+   * collections. The value type's {@code equals} method compares these properties last.
+   */
+  public boolean isCostlyToCompare() {
+    return false;
+  }
+
   /** Add the field declaration for the property to the value's source code. */
   public void addValueFieldDeclaration(SourceBuilder code, FieldAccess finalField) {
     code.addLine("private final %s %s;", property.getType(), finalField);
@@ -142,6 +171,18 @@ public abstract class PropertyCodeGenerator {
   /** Adds a clear call for the property given a template builder to the builder's source code. */
   public abstract void addClearField(Block code);
 
+  /**
+   * Returns a generator writing the same code as this one directly as bytecode, or absent if the
+   * property is only supported by the source backend.
+   *
+   * @param unsetBit the property's bit in the builder's bitmask of unset properties, if it is
+   *     {@link Type#REQUIRED}
+   */
+  Optional<PropertyBytecodeGenerator> getBytecodeGenerator(
+      @SuppressWarnings("unused") int unsetBit) {
+    return Optional.absent();
+  }
+
   protected void addAccessorAnnotations(SourceBuilder code) {
     for (Excerpt annotation : property.getAccessorAnnotations()) {
       code.add(annotation);
@@ -171,6 +212,20 @@ public abstract class PropertyCodeGenerator {
     return stringHelper.toString();
   }
 
+  /**
+   * Returns a string like {@link #toString()}, but omitting {@link #metadata}, which is shared by
+   * the code generators of every property of a type.
+   */
+  String configurationString() {
+    ToStringHelper stringHelper = MoreObjects.toStringHelper(this);
+    for (Map.Entry<String, Object> fieldValue : fieldValues().entrySet()) {
+      if (!fieldValue.getKey().equals("metadata")) {
+        stringHelper.add(fieldValue.getKey(), fieldValue.getValue());
+      }
+    }
+    return stringHelper.toString();
+  }
+
   private Map<String, Object> fieldValues() {
     ImmutableMap.Builder<String, Object> valuesBuilder = ImmutableMap.builder();
     addFieldValues(getClass(), valuesBuilder);
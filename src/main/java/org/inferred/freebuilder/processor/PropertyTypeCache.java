@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import com.google.common.base.Optional;
+
+import org.inferred.freebuilder.processor.util.ModelUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Memoizes the facts {@link PropertyCodeGenerator.Factory} instances derive from the element, key
+ * and value types of collection properties, so wide types with many properties over the same
+ * types, e.g. {@code List<String>}, only compute them once.
+ *
+ * <p>javac creates a new mirror for each occurrence of a parameterized type, and mirrors compare
+ * by identity, so declared types are keyed on their qualified source form instead. Other types,
+ * e.g. type variables, keep their mirror as key, as their names are not unique.
+ *
+ * <p>Type mirrors are not shared between rounds, so {@link #invalidate()} must be called at the
+ * start of every round. Not thread-safe: analysis runs on the processor thread.
+ */
+class PropertyTypeCache {
+
+  private final Elements elements;
+  private final Types types;
+  private final Map<Object, Optional<TypeMirror>> unboxedTypes =
+      new HashMap<Object, Optional<TypeMirror>>();
+  private final Map<Object, Boolean> needsSafeVarargs = new HashMap<Object, Boolean>();
+  private TypeMirror objectType;
+  private int hits = 0;
+  private int misses = 0;
+
+  PropertyTypeCache(Elements elements, Types types) {
+    this.elements = elements;
+    this.types = types;
+  }
+
+  /**
+   * Returns the upper bound of {@code type}, as {@link Util#upperBound(Elements, TypeMirror)}
+   * does.
+   */
+  TypeMirror upperBound(TypeMirror type) {
+    if (type.getKind() != TypeKind.WILDCARD) {
+      return type;
+    }
+    TypeMirror bound = ((WildcardType) type).getExtendsBound();
+    if (bound != null) {
+      return bound;
+    }
+    if (objectType == null) {
+      objectType = elements.getTypeElement(Object.class.getName()).asType();
+    }
+    return objectType;
+  }
+
+  /** Applies unboxing conversion to {@code type}, if it can be unboxed. */
+  Optional<TypeMirror> unboxedType(TypeMirror type) {
+    Object key = key(type);
+    Optional<TypeMirror> result = unboxedTypes.get(key);
+    if (result != null) {
+      hits++;
+      return result;
+    }
+    misses++;
+    result = ModelUtils.maybeUnbox(type, types);
+    unboxedTypes.put(key, result);
+    return result;
+  }
+
+  /**
+   * Returns true if a method with a variable number of {@code elementType} arguments needs a
+   * {@code &#64;SafeVarargs} annotation to avoid compiler warnings in Java 7+.
+   */
+  boolean needsSafeVarargs(TypeMirror elementType) {
+    Object key = key(elementType);
+    Boolean result = needsSafeVarargs.get(key);
+    if (result != null) {
+      hits++;
+      return result;
+    }
+    misses++;
+    result = ModelUtils.needsSafeVarargs(elementType);
+    needsSafeVarargs.put(key, result);
+    return result;
+  }
+
+  private static Object key(TypeMirror type) {
+    return (type.getKind() == TypeKind.DECLARED) ? type.toString() : type;
+  }
+
+  /** Discards everything cached, as type mirrors are not reused in later rounds. */
+  void invalidate() {
+    unboxedTypes.clear();
+    needsSafeVarargs.clear();
+    objectType = null;
+  }
+
+  /** Returns the number of lookups answered from the cache since it was created. */
+  int hits() {
+    return hits;
+  }
+
+  /** Returns the number of lookups that had to be computed since it was created. */
+  int misses() {
+    return misses;
+  }
+}
@@ -22,16 +22,15 @@ import static org.inferred.freebuilder.processor.BuilderMethods.putAllMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.putMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.removeAllMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.removeMethod;
-import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
-import static org.inferred.freebuilder.processor.Util.upperBound;
+import static org.inferred.freebuilder.processor.Util.erasedName;
+import static org.inferred.freebuilder.processor.Util.unshadedNames;
 import static org.inferred.freebuilder.processor.util.Block.methodBody;
 import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
-import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
-import static org.inferred.freebuilder.processor.util.ModelUtils.overrides;
 import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
@@ -42,11 +41,13 @@ import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.excerpt.CheckedSetMultimap;
 import org.inferred.freebuilder.processor.util.Block;
 import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
 import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.SourceBuilder;
 
 import java.util.Collection;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
@@ -56,19 +57,28 @@ import javax.lang.model.type.TypeMirror;
  */
 class SetMultimapProperty extends PropertyCodeGenerator {
 
-  static class Factory implements PropertyCodeGenerator.Factory {
+  static class Factory implements TypeSpecificFactory {
+
+    private static final ImmutableSet<String> ERASED_TYPES =
+        unshadedNames(SetMultimap.class, ImmutableSetMultimap.class);
+
+    @Override
+    public Set<String> erasedTypes() {
+      return ERASED_TYPES;
+    }
 
     @Override
     public Optional<SetMultimapProperty> create(Config config) {
       DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
-      if (type == null || !erasesToAnyOf(type, SetMultimap.class, ImmutableSetMultimap.class)) {
+      if (type == null || !ERASED_TYPES.contains(erasedName(type))) {
         return Optional.absent();
       }
 
-      TypeMirror keyType = upperBound(config.getElements(), type.getTypeArguments().get(0));
-      TypeMirror valueType = upperBound(config.getElements(), type.getTypeArguments().get(1));
-      Optional<TypeMirror> unboxedKeyType = maybeUnbox(keyType, config.getTypes());
-      Optional<TypeMirror> unboxedValueType = maybeUnbox(valueType, config.getTypes());
+      PropertyTypeCache propertyTypes = config.getPropertyTypeCache();
+      TypeMirror keyType = propertyTypes.upperBound(type.getTypeArguments().get(0));
+      TypeMirror valueType = propertyTypes.upperBound(type.getTypeArguments().get(1));
+      Optional<TypeMirror> unboxedKeyType = propertyTypes.unboxedType(keyType);
+      Optional<TypeMirror> unboxedValueType = propertyTypes.unboxedType(valueType);
       boolean overridesPutMethod =
           hasPutMethodOverride(config, unboxedKeyType.or(keyType), unboxedValueType.or(valueType));
       return Optional.of(new SetMultimapProperty(
@@ -83,9 +93,7 @@ class SetMultimapProperty extends PropertyCodeGenerator {
 
     private static boolean hasPutMethodOverride(
         Config config, TypeMirror keyType, TypeMirror valueType) {
-      return overrides(
-          config.getBuilder(),
-          config.getTypes(),
+      return config.getBuilderMethodIndex().overrides(
           putMethod(config.getProperty()),
           keyType,
           valueType);
@@ -113,10 +121,15 @@ class SetMultimapProperty extends PropertyCodeGenerator {
     this.unboxedValueType = unboxedValueType;
   }
 
+  @Override
+  public boolean isCostlyToCompare() {
+    return true;
+  }
+
   @Override
   public void addBuilderFieldDeclaration(SourceBuilder code) {
-    code.addLine("private final %1$s<%2$s, %3$s> %4$s = %1$s.create();",
-        LinkedHashMultimap.class, keyType, valueType, property.getField());
+    code.addLine("private %s<%s, %s> %s = %s.of();",
+        SetMultimap.class, keyType, valueType, property.getField(), ImmutableSetMultimap.class);
   }
 
   @Override
@@ -166,7 +179,10 @@ class SetMultimapProperty extends PropertyCodeGenerator {
     if (!unboxedValueType.isPresent()) {
       body.addLine("  %s.checkNotNull(value);", Preconditions.class);
     }
-    body.addLine("  %s.put(key, value);", property.getField())
+    body.addLine("  if (%s) {", isShared())
+        .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedHashMultimap.class)
+        .addLine("  }")
+        .addLine("  %s.put(key, value);", property.getField())
         .addLine("  return (%s) this;", metadata.getBuilder());
     code.add(body)
         .addLine("}");
@@ -195,10 +211,11 @@ class SetMultimapProperty extends PropertyCodeGenerator {
             unboxedKeyType.or(keyType),
             Iterable.class,
             valueType)
-        .addLine("  for (%s value : values) {", unboxedValueType.or(valueType))
-        .addLine("    %s(key, value);", putMethod(property))
-        .addLine("  }")
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "key", "values")
+            .addLine("  for (%s value : values) {", unboxedValueType.or(valueType))
+            .addLine("    %s(key, value);", putMethod(property))
+            .addLine("  }")
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -221,13 +238,14 @@ class SetMultimapProperty extends PropertyCodeGenerator {
             Multimap.class,
             keyType,
             valueType)
-        .addLine("  for (%s<? extends %s, ? extends %s<? extends %s>> entry",
-            Entry.class, keyType, Collection.class, valueType)
-        .addLine("      : multimap.asMap().entrySet()) {")
-        .addLine("    %s(entry.getKey(), entry.getValue());",
-            putAllMethod(property), property.getCapitalizedName())
-        .addLine("  }")
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "multimap")
+            .addLine("  for (%s<? extends %s, ? extends %s<? extends %s>> entry",
+                Entry.class, keyType, Collection.class, valueType)
+            .addLine("      : multimap.asMap().entrySet()) {")
+            .addLine("    %s(entry.getKey(), entry.getValue());",
+                putAllMethod(property), property.getCapitalizedName())
+            .addLine("  }")
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -264,7 +282,10 @@ class SetMultimapProperty extends PropertyCodeGenerator {
     if (!unboxedValueType.isPresent()) {
       body.addLine("  %s.checkNotNull(value);", Preconditions.class);
     }
-    body.addLine("  %s.remove(key, value);", property.getField())
+    body.addLine("  if (%s) {", isShared())
+        .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedHashMultimap.class)
+        .addLine("  }")
+        .addLine("  %s.remove(key, value);", property.getField())
         .addLine("  return (%s) this;", metadata.getBuilder());
     code.add(body)
         .addLine("}");
@@ -290,7 +311,10 @@ class SetMultimapProperty extends PropertyCodeGenerator {
     if (!unboxedKeyType.isPresent()) {
       body.addLine("  %s.checkNotNull(key);", Preconditions.class);
     }
-    body.addLine("  %s.removeAll(key);", property.getField())
+    body.addLine("  if (%s) {", isShared())
+        .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedHashMultimap.class)
+        .addLine("  }")
+        .addLine("  %s.removeAll(key);", property.getField())
         .addLine("  return (%s) this;", metadata.getBuilder());
     code.add(body)
         .addLine("}");
@@ -320,6 +344,9 @@ class SetMultimapProperty extends PropertyCodeGenerator {
             keyType,
             valueType);
     Block body = methodBody(code, "mutator");
+    body.addLine("  if (%s) {", isShared())
+        .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedHashMultimap.class)
+        .addLine("  }");
     if (overridesPutMethod) {
       body.addLine("  mutator.accept(new %s<>(%s, this::%s));",
           CheckedSetMultimap.TYPE, property.getField(), putMethod(property));
@@ -342,8 +369,13 @@ class SetMultimapProperty extends PropertyCodeGenerator {
         .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
         .addLine(" */")
         .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
-        .addLine("  %s.clear();", property.getField())
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code)
+            .addLine("  if (%s) {", isShared())
+            .addLine("    %s = %s.of();", property.getField(), ImmutableSetMultimap.class)
+            .addLine("  } else {")
+            .addLine("    %s.clear();", property.getField())
+            .addLine("  }")
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -359,11 +391,23 @@ class SetMultimapProperty extends PropertyCodeGenerator {
             keyType,
             valueType,
             getter(property))
-        .addLine("  return %s.unmodifiableSetMultimap(%s);",
-            Multimaps.class, property.getField())
+        .add(methodBody(code)
+            .addLine("  if (%s) {", isShared())
+            .addLine("    %1$s = %2$s.create(%1$s);", property.getField(), LinkedHashMultimap.class)
+            .addLine("  }")
+            .addLine("  return %s.unmodifiableSetMultimap(%s);",
+                Multimaps.class, property.getField()))
         .addLine("}");
   }
 
+  /**
+   * Returns an excerpt testing whether the builder's multimap may be shared with a value, so must
+   * be copied before it is mutated.
+   */
+  private Excerpt isShared() {
+    return Excerpts.add("%s instanceof %s", property.getField(), ImmutableSetMultimap.class);
+  }
+
   @Override
   public void addFinalFieldAssignment(SourceBuilder code, Excerpt finalField, String builder) {
     code.addLine("%s = %s.copyOf(%s);",
@@ -372,7 +416,18 @@ class SetMultimapProperty extends PropertyCodeGenerator {
 
   @Override
   public void addMergeFromValue(Block code, String value) {
-    code.addLine("%s(%s.%s());", putAllMethod(property), value, property.getGetterName());
+    code.addLine("if (%s instanceof %s && %s == %s.<%s, %s>of()) {",
+            value,
+            metadata.getValueType().getQualifiedName(),
+            property.getField(),
+            ImmutableSetMultimap.class,
+            keyType,
+            valueType)
+        .addLine("  %s = %s.copyOf(%s.%s());",
+            property.getField(), ImmutableSetMultimap.class, value, property.getGetterName())
+        .addLine("} else {")
+        .addLine("  %s(%s.%s());", putAllMethod(property), value, property.getGetterName())
+        .addLine("}");
   }
 
   @Override
@@ -388,6 +443,6 @@ class SetMultimapProperty extends PropertyCodeGenerator {
 
   @Override
   public void addClearField(Block code) {
-    code.addLine("%s.clear();", property.getField());
+    code.addLine("%s();", clearMethod(property));
   }
 }
@@ -21,15 +21,14 @@ import static org.inferred.freebuilder.processor.BuilderMethods.clearMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.getter;
 import static org.inferred.freebuilder.processor.BuilderMethods.mutator;
 import static org.inferred.freebuilder.processor.BuilderMethods.removeMethod;
-import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
-import static org.inferred.freebuilder.processor.Util.upperBound;
+import static org.inferred.freebuilder.processor.Util.erasedName;
+import static org.inferred.freebuilder.processor.Util.unshadedNames;
 import static org.inferred.freebuilder.processor.util.Block.methodBody;
 import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
-import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
-import static org.inferred.freebuilder.processor.util.ModelUtils.needsSafeVarargs;
-import static org.inferred.freebuilder.processor.util.ModelUtils.overrides;
 import static org.inferred.freebuilder.processor.util.PreconditionExcerpts.checkNotNullInline;
 import static org.inferred.freebuilder.processor.util.PreconditionExcerpts.checkNotNullPreamble;
+import static org.inferred.freebuilder.processor.util.Shading.unshadedName;
+import static org.inferred.freebuilder.processor.util.feature.CollectionOwnership.COLLECTION_OWNERSHIP;
 import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
 import static org.inferred.freebuilder.processor.util.feature.GuavaLibrary.GUAVA;
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.SOURCE_LEVEL;
@@ -43,6 +42,7 @@ import org.inferred.freebuilder.processor.excerpt.CheckedSet;
 import org.inferred.freebuilder.processor.util.Block;
 import org.inferred.freebuilder.processor.util.Excerpt;
 import org.inferred.freebuilder.processor.util.Excerpts;
+import org.inferred.freebuilder.processor.util.FieldAccess;
 import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.QualifiedName;
 import org.inferred.freebuilder.processor.util.SourceBuilder;
@@ -61,18 +61,27 @@ import javax.lang.model.type.TypeMirror;
  */
 class SetProperty extends PropertyCodeGenerator {
 
-  static class Factory implements PropertyCodeGenerator.Factory {
+  static class Factory implements TypeSpecificFactory {
+
+    private static final ImmutableSet<String> ERASED_TYPES =
+        unshadedNames(Set.class, ImmutableSet.class);
+
+    @Override
+    public Set<String> erasedTypes() {
+      return ERASED_TYPES;
+    }
 
     @Override
     public Optional<SetProperty> create(Config config) {
       DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
-      if (type == null || !erasesToAnyOf(type, Set.class, ImmutableSet.class)) {
+      if (type == null || !ERASED_TYPES.contains(erasedName(type))) {
         return Optional.absent();
       }
 
-      TypeMirror elementType = upperBound(config.getElements(), type.getTypeArguments().get(0));
-      Optional<TypeMirror> unboxedType = maybeUnbox(elementType, config.getTypes());
-      boolean needsSafeVarargs = needsSafeVarargs(unboxedType.or(elementType));
+      PropertyTypeCache propertyTypes = config.getPropertyTypeCache();
+      TypeMirror elementType = propertyTypes.upperBound(type.getTypeArguments().get(0));
+      Optional<TypeMirror> unboxedType = propertyTypes.unboxedType(elementType);
+      boolean needsSafeVarargs = propertyTypes.needsSafeVarargs(unboxedType.or(elementType));
       boolean overridesAddMethod = hasAddMethodOverride(config, unboxedType.or(elementType));
       boolean overridesVarargsAddMethod =
           hasVarargsAddMethodOverride(config, unboxedType.or(elementType));
@@ -87,17 +96,13 @@ class SetProperty extends PropertyCodeGenerator {
     }
 
     private static boolean hasAddMethodOverride(Config config, TypeMirror elementType) {
-      return overrides(
-          config.getBuilder(),
-          config.getTypes(),
+      return config.getBuilderMethodIndex().overrides(
           addMethod(config.getProperty()),
           elementType);
     }
 
     private static boolean hasVarargsAddMethodOverride(Config config, TypeMirror elementType) {
-      return overrides(
-          config.getBuilder(),
-          config.getTypes(),
+      return config.getBuilderMethodIndex().overrides(
           addMethod(config.getProperty()),
           config.getTypes().getArrayType(elementType));
     }
@@ -107,6 +112,8 @@ class SetProperty extends PropertyCodeGenerator {
       QualifiedName.of(Collection.class).withParameters("E");
   private final TypeMirror elementType;
   private final Optional<TypeMirror> unboxedType;
+  private static final String IMMUTABLE_SET_NAME = unshadedName(ImmutableSet.class.getName());
+
   private final boolean needsSafeVarargs;
   private final boolean overridesAddMethod;
   private final boolean overridesVarargsAddMethod;
@@ -127,14 +134,22 @@ class SetProperty extends PropertyCodeGenerator {
     this.overridesVarargsAddMethod = overridesVarargsAddMethod;
   }
 
+  @Override
+  public boolean isCostlyToCompare() {
+    return true;
+  }
+
   @Override
   public void addBuilderFieldDeclaration(SourceBuilder code) {
     if (code.feature(GUAVA).isAvailable()) {
       code.addLine("private %s<%s> %s = %s.of();",
           Set.class, elementType, property.getField(), ImmutableSet.class);
+      if (transfersOnBuild(code)) {
+        code.addLine("private boolean %s;", escapedField());
+      }
     } else {
-      code.addLine("private final %1$s<%2$s> %3$s = new %1$s%4$s();",
-          LinkedHashSet.class, elementType, property.getField(), diamondOperator(elementType));
+      code.addLine("private %s<%s> %s = %s.emptySet();",
+          Set.class, elementType, property.getField(), Collections.class);
     }
   }
 
@@ -168,12 +183,10 @@ class SetProperty extends PropertyCodeGenerator {
             addMethod(property),
             unboxedType.or(elementType));
     Block body = methodBody(code, "element");
-    if (body.feature(GUAVA).isAvailable()) {
-      body.addLine("  if (%s instanceof %s) {", property.getField(), ImmutableSet.class)
-          .addLine("    %1$s = new %2$s%3$s(%1$s);",
-              property.getField(), LinkedHashSet.class, diamondOperator(elementType))
-          .addLine("  }");
-    }
+    body.addLine("  if (%s) {", isShared(body))
+        .addLine("    %1$s = new %2$s%3$s(%1$s);",
+            property.getField(), LinkedHashSet.class, diamondOperator(elementType))
+        .addLine("  }");
     if (unboxedType.isPresent()) {
       body.addLine("  %s.add(element);", property.getField());
     } else {
@@ -216,17 +229,19 @@ class SetProperty extends PropertyCodeGenerator {
             metadata.getBuilder(),
             addMethod(property),
             unboxedType.or(elementType));
+    Block body = methodBody(code, "elements");
     Optional<Class<?>> arrayUtils = code.feature(GUAVA).arrayUtils(unboxedType.or(elementType));
     if (arrayUtils.isPresent()) {
-      code.addLine("  return %s(%s.asList(elements));", addAllMethod(property), arrayUtils.get());
+      body.addLine("  return %s(%s.asList(elements));", addAllMethod(property), arrayUtils.get());
     } else {
       // Primitive type, Guava not available
-      code.addLine("  for (%s element : elements) {", elementType)
+      body.addLine("  for (%s element : elements) {", elementType)
           .addLine("    %s(element);", addMethod(property))
           .addLine("  }")
           .addLine("  return (%s) this;", metadata.getBuilder());
     }
-    code.addLine("}");
+    code.add(body)
+        .addLine("}");
   }
 
   private void addAddAllMethods(SourceBuilder code, Metadata metadata) {
@@ -245,8 +260,9 @@ class SetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             spliterator,
             elementType)
-        .addLine("  elements.forEachRemaining(this::%s);", addMethod(property))
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "elements")
+            .addLine("  elements.forEachRemaining(this::%s);", addMethod(property))
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -258,7 +274,8 @@ class SetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             baseStream,
             elementType)
-        .addLine("  return %s(elements.spliterator());", addAllMethod(property))
+        .add(methodBody(code, "elements")
+            .addLine("  return %s(elements.spliterator());", addAllMethod(property)))
         .addLine("}");
   }
 
@@ -270,8 +287,9 @@ class SetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             Iterable.class,
             elementType)
-        .add(Excerpts.forEach(unboxedType.or(elementType), "elements", addMethod(property)))
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "elements")
+            .add(Excerpts.forEach(unboxedType.or(elementType), "elements", addMethod(property)))
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -306,12 +324,10 @@ class SetProperty extends PropertyCodeGenerator {
             removeMethod(property),
             unboxedType.or(elementType));
     Block body = methodBody(code, "element");
-    if (body.feature(GUAVA).isAvailable()) {
-      body.addLine("  if (%s instanceof %s) {", property.getField(), ImmutableSet.class)
-          .addLine("    %1$s = new %2$s%3$s(%1$s);",
-              property.getField(), LinkedHashSet.class, diamondOperator(elementType))
-          .addLine("  }");
-    }
+    body.addLine("  if (%s) {", isShared(body))
+        .addLine("    %1$s = new %2$s%3$s(%1$s);",
+            property.getField(), LinkedHashSet.class, diamondOperator(elementType))
+        .addLine("  }");
     if (unboxedType.isPresent()) {
       body.addLine("  %s.remove(element);", property.getField());
     } else {
@@ -348,12 +364,10 @@ class SetProperty extends PropertyCodeGenerator {
             Set.class,
             elementType);
     Block body = methodBody(code, "mutator");
-    if (body.feature(GUAVA).isAvailable()) {
-      body.addLine("  if (%s instanceof %s) {", property.getField(), ImmutableSet.class)
-          .addLine("    %1$s = new %2$s%3$s(%1$s);",
-              property.getField(), LinkedHashSet.class, diamondOperator(elementType))
-          .addLine("  }");
-    }
+    body.addLine("  if (%s) {", isShared(body))
+        .addLine("    %1$s = new %2$s%3$s(%1$s);",
+            property.getField(), LinkedHashSet.class, diamondOperator(elementType))
+        .addLine("  }");
     if (overridesAddMethod) {
       body.addLine("  mutator.accept(new %s<%s>(%s, this::%s));",
               CheckedSet.TYPE, elementType, property.getField(), addMethod(property));
@@ -362,6 +376,9 @@ class SetProperty extends PropertyCodeGenerator {
               addMethod(property))
           .addLine("  mutator.accept(%s);", property.getField());
     }
+    if (transfersOnBuild(code)) {
+      body.addLine("  %s = true;", escapedField());
+    }
     body.addLine("  return (%s) this;", metadata.getBuilder());
     code.add(body)
         .addLine("}");
@@ -376,16 +393,18 @@ class SetProperty extends PropertyCodeGenerator {
         .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
         .addLine(" */")
         .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property));
+    Block body = methodBody(code);
+    body.addLine("if (%s) {", isShared(body));
     if (code.feature(GUAVA).isAvailable()) {
-      code.addLine("if (%s instanceof %s) {", property.getField(), ImmutableSet.class)
-          .addLine("  %s = %s.of();", property.getField(), ImmutableSet.class)
-          .addLine("} else {");
-    }
-    code.addLine("%s.clear();", property.getField());
-    if (code.feature(GUAVA).isAvailable()) {
-      code.addLine("}");
+      body.addLine("  %s = %s.of();", property.getField(), ImmutableSet.class);
+    } else {
+      body.addLine("  %s = %s.emptySet();", property.getField(), Collections.class);
     }
-    code.addLine("  return (%s) this;", metadata.getBuilder())
+    body.addLine("} else {")
+        .addLine("%s.clear();", property.getField())
+        .addLine("}")
+        .addLine("  return (%s) this;", metadata.getBuilder());
+    code.add(body)
         .addLine("}");
   }
 
@@ -397,18 +416,67 @@ class SetProperty extends PropertyCodeGenerator {
         .addLine(" * Changes to this builder will be reflected in the view.")
         .addLine(" */")
         .addLine("public %s<%s> %s() {", Set.class, elementType, getter(property));
-    if (code.feature(GUAVA).isAvailable()) {
-      code.addLine("  if (%s instanceof %s) {", property.getField(), ImmutableSet.class)
-          .addLine("    %1$s = new %2$s%3$s(%1$s);",
-              property.getField(), LinkedHashSet.class, diamondOperator(elementType))
-          .addLine("  }");
+    Block body = methodBody(code);
+    body.addLine("  if (%s) {", isShared(body))
+        .addLine("    %1$s = new %2$s%3$s(%1$s);",
+            property.getField(), LinkedHashSet.class, diamondOperator(elementType))
+        .addLine("  }");
+    if (transfersOnBuild(code)) {
+      body.addLine("  %s = true;", escapedField());
     }
-    code.addLine("  return %s.unmodifiableSet(%s);", Collections.class, property.getField())
+    body.addLine("  return %s.unmodifiableSet(%s);", Collections.class, property.getField());
+    code.add(body)
         .addLine("}");
   }
 
+  /**
+   * Returns an excerpt testing whether the builder's set may be shared, so must be copied
+   * before it is mutated.
+   */
+  private Excerpt isShared(SourceBuilder code) {
+    if (code.feature(GUAVA).isAvailable()
+        && !code.feature(COLLECTION_OWNERSHIP).transfersOnBuild()) {
+      return Excerpts.add("%s instanceof %s", property.getField(), ImmutableSet.class);
+    }
+    // The builder's set may be a value's, or have been handed to a value behind a view
+    return Excerpts.add("!(%s instanceof %s)", property.getField(), LinkedHashSet.class);
+  }
+
+  /**
+   * Returns whether {@code build()} should transfer the builder's set to the value. Properties
+   * declared as {@link ImmutableSet} must still be copied into one.
+   */
+  private boolean transfersOnBuild(SourceBuilder code) {
+    return code.feature(GUAVA).isAvailable()
+        && code.feature(COLLECTION_OWNERSHIP).transfersOnBuild()
+        && !erasedName((DeclaredType) property.getType()).equals(IMMUTABLE_SET_NAME);
+  }
+
+  /**
+   * Returns the builder field recording that the set has been handed out by the mutate method
+   * or the getter, so {@code build()} must copy it rather than transfer it.
+   */
+  private FieldAccess escapedField() {
+    return new FieldAccess("_" + property.getName() + "Escaped");
+  }
+
   @Override
   public void addFinalFieldAssignment(SourceBuilder code, Excerpt finalField, String builder) {
+    if (transfersOnBuild(code)) {
+      code.addLine("if (%s) {", escapedField().on(builder))
+          .addLine("  // The set may still be reachable from outside the builder, so copy it")
+          .addLine("  %s = %s.copyOf(%s);",
+              finalField, ImmutableSet.class, property.getField().on(builder))
+          .addLine("} else {")
+          .addLine("  // Hand the builder's set to the value, rather than copying it")
+          .addLine("  %s = %s = %s(%s);",
+              finalField,
+              property.getField().on(builder),
+              TransferredSetMethod.REFERENCE,
+              property.getField().on(builder))
+          .addLine("}");
+      return;
+    }
     Excerpt immutableSetMethod;
     if (code.feature(GUAVA).isAvailable()) {
       immutableSetMethod = Excerpts.add("%s.copyOf", ImmutableSet.class);
@@ -420,19 +488,29 @@ class SetProperty extends PropertyCodeGenerator {
 
   @Override
   public void addMergeFromValue(Block code, String value) {
-    if (code.feature(GUAVA).isAvailable()) {
-      code.addLine("if (%s instanceof %s && %s == %s.<%s>of()) {",
+    boolean guava = code.feature(GUAVA).isAvailable();
+    // Generic values are merged from as wildcard types, so their sets cannot be shared as-is
+    boolean sharesSet = (!guava || transfersOnBuild(code))
+        && !metadata.getType().isParameterized();
+    if (guava || sharesSet) {
+      code.addLine("if (%s instanceof %s && %s == %s.<%s>%s()) {",
               value,
               metadata.getValueType().getQualifiedName(),
               property.getField(),
-              ImmutableSet.class,
-              elementType)
-          .addLine("  %s = %s.copyOf(%s.%s());",
-              property.getField(), ImmutableSet.class, value, property.getGetterName())
-          .addLine("} else {");
+              guava ? ImmutableSet.class : Collections.class,
+              elementType,
+              guava ? "of" : "emptySet");
+      if (sharesSet) {
+        // Values' sets are never mutated, even if transferred from a builder, so can be shared
+        code.addLine("  %s = %s.%s();", property.getField(), value, property.getGetterName());
+      } else {
+        code.addLine("  %s = %s.copyOf(%s.%s());",
+            property.getField(), ImmutableSet.class, value, property.getGetterName());
+      }
+      code.addLine("} else {");
     }
     code.addLine("%s(%s.%s());", addAllMethod(property), value, property.getGetterName());
-    if (code.feature(GUAVA).isAvailable()) {
+    if (guava || sharesSet) {
       code.addLine("}");
     }
   }
@@ -453,6 +531,35 @@ class SetProperty extends PropertyCodeGenerator {
     code.addLine("%s();", clearMethod(property));
   }
 
+  private static class TransferredSetMethod extends Excerpt {
+
+    static final LazyName REFERENCE =
+        new LazyName("transferredSet", new TransferredSetMethod());
+
+    private TransferredSetMethod() {}
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Returns an immutable set of a builder's {@code elements}, which the")
+          .addLine(" * builder must copy rather than mutate from now on.")
+          .addLine(" */")
+          .addLine("private static <E> %1$s<E> %2$s(%1$s<E> elements) {", Set.class, REFERENCE)
+          .addLine("  if (!(elements instanceof %s)) {", LinkedHashSet.class)
+          .addLine("    // Already immutable, or already transferred to another value")
+          .addLine("    return elements;")
+          .addLine("  } else if (elements.isEmpty()) {")
+          .addLine("    return %s.of();", ImmutableSet.class)
+          .addLine("  }")
+          .addLine("  return %s.unmodifiableSet(elements);", Collections.class)
+          .addLine("}");
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {}
+  }
+
   private static class ImmutableSetMethod extends Excerpt {
 
     static final LazyName REFERENCE = new LazyName("immutableSet", new ImmutableSetMethod());
@@ -463,6 +570,10 @@ class SetProperty extends PropertyCodeGenerator {
     public void addTo(SourceBuilder code) {
       code.addLine("")
           .addLine("private static <E> %1$s<E> %2$s(%1$s<E> elements) {", Set.class, REFERENCE)
+          .addLine("  if (!(elements instanceof %s)) {", LinkedHashSet.class)
+          .addLine("    // Already immutable, having been shared from a value")
+          .addLine("    return elements;")
+          .addLine("  }")
           .addLine("  switch (elements.size()) {")
           .addLine("  case 0:")
           .addLine("    return %s.emptySet();", Collections.class)
@@ -22,13 +22,10 @@ import static org.inferred.freebuilder.processor.BuilderMethods.getter;
 import static org.inferred.freebuilder.processor.BuilderMethods.mutator;
 import static org.inferred.freebuilder.processor.BuilderMethods.removeMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.setComparatorMethod;
-import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
-import static org.inferred.freebuilder.processor.Util.upperBound;
+import static org.inferred.freebuilder.processor.Util.erasedName;
+import static org.inferred.freebuilder.processor.Util.unshadedNames;
 import static org.inferred.freebuilder.processor.util.Block.methodBody;
 import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
-import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
-import static org.inferred.freebuilder.processor.util.ModelUtils.needsSafeVarargs;
-import static org.inferred.freebuilder.processor.util.ModelUtils.overrides;
 import static org.inferred.freebuilder.processor.util.PreconditionExcerpts.checkNotNullInline;
 import static org.inferred.freebuilder.processor.util.PreconditionExcerpts.checkNotNullPreamble;
 import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
@@ -38,6 +35,7 @@ import static org.inferred.freebuilder.processor.util.feature.SourceLevel.diamon
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.nestedDiamondOperator;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 
 import org.inferred.freebuilder.processor.Metadata.Property;
@@ -54,6 +52,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.NavigableSet;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -65,18 +64,27 @@ import javax.lang.model.type.TypeMirror;
  */
 class SortedSetProperty extends PropertyCodeGenerator {
 
-  static class Factory implements PropertyCodeGenerator.Factory {
+  static class Factory implements TypeSpecificFactory {
+
+    private static final ImmutableSet<String> ERASED_TYPES =
+        unshadedNames(SortedSet.class, ImmutableSortedSet.class);
+
+    @Override
+    public Set<String> erasedTypes() {
+      return ERASED_TYPES;
+    }
 
     @Override
     public Optional<SortedSetProperty> create(Config config) {
       DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
-      if (type == null || !erasesToAnyOf(type, SortedSet.class, ImmutableSortedSet.class)) {
+      if (type == null || !ERASED_TYPES.contains(erasedName(type))) {
         return Optional.absent();
       }
 
-      TypeMirror elementType = upperBound(config.getElements(), type.getTypeArguments().get(0));
-      Optional<TypeMirror> unboxedType = maybeUnbox(elementType, config.getTypes());
-      boolean needsSafeVarargs = needsSafeVarargs(unboxedType.or(elementType));
+      PropertyTypeCache propertyTypes = config.getPropertyTypeCache();
+      TypeMirror elementType = propertyTypes.upperBound(type.getTypeArguments().get(0));
+      Optional<TypeMirror> unboxedType = propertyTypes.unboxedType(elementType);
+      boolean needsSafeVarargs = propertyTypes.needsSafeVarargs(unboxedType.or(elementType));
       boolean overridesAddMethod = hasAddMethodOverride(config, unboxedType.or(elementType));
       boolean overridesVarargsAddMethod =
           hasVarargsAddMethodOverride(config, unboxedType.or(elementType));
@@ -91,17 +99,13 @@ class SortedSetProperty extends PropertyCodeGenerator {
     }
 
     private static boolean hasAddMethodOverride(Config config, TypeMirror elementType) {
-      return overrides(
-          config.getBuilder(),
-          config.getTypes(),
+      return config.getBuilderMethodIndex().overrides(
           addMethod(config.getProperty()),
           elementType);
     }
 
     private static boolean hasVarargsAddMethodOverride(Config config, TypeMirror elementType) {
-      return overrides(
-          config.getBuilder(),
-          config.getTypes(),
+      return config.getBuilderMethodIndex().overrides(
           addMethod(config.getProperty()),
           config.getTypes().getArrayType(elementType));
     }
@@ -131,6 +135,11 @@ class SortedSetProperty extends PropertyCodeGenerator {
     this.overridesVarargsAddMethod = overridesVarargsAddMethod;
   }
 
+  @Override
+  public boolean isCostlyToCompare() {
+    return true;
+  }
+
   @Override
   public void addBuilderFieldDeclaration(SourceBuilder code) {
     code.addLine("private %s<%s> %s = null;", NavigableSet.class, elementType, property.getField());
@@ -269,17 +278,19 @@ class SortedSetProperty extends PropertyCodeGenerator {
             metadata.getBuilder(),
             addMethod(property),
             unboxedType.or(elementType));
+    Block body = methodBody(code, "elements");
     Optional<Class<?>> arrayUtils = code.feature(GUAVA).arrayUtils(unboxedType.or(elementType));
     if (arrayUtils.isPresent()) {
-      code.addLine("  return %s(%s.asList(elements));", addAllMethod(property), arrayUtils.get());
+      body.addLine("  return %s(%s.asList(elements));", addAllMethod(property), arrayUtils.get());
     } else {
       // Primitive type, Guava not available
-      code.addLine("  for (%s element : elements) {", elementType)
+      body.addLine("  for (%s element : elements) {", elementType)
           .addLine("    %s(element);", addMethod(property))
           .addLine("  }")
           .addLine("  return (%s) this;", metadata.getBuilder());
     }
-    code.addLine("}");
+    code.add(body)
+        .addLine("}");
   }
 
   private void addAddAllMethods(SourceBuilder code, Metadata metadata) {
@@ -298,8 +309,9 @@ class SortedSetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             spliterator,
             elementType)
-        .addLine("  elements.forEachRemaining(this::%s);", addMethod(property))
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "elements")
+            .addLine("  elements.forEachRemaining(this::%s);", addMethod(property))
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -311,7 +323,8 @@ class SortedSetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             baseStream,
             elementType)
-        .addLine("  return %s(elements.spliterator());", addAllMethod(property))
+        .add(methodBody(code, "elements")
+            .addLine("  return %s(elements.spliterator());", addAllMethod(property)))
         .addLine("}");
   }
 
@@ -323,8 +336,9 @@ class SortedSetProperty extends PropertyCodeGenerator {
             addAllMethod(property),
             Iterable.class,
             elementType)
-        .add(Excerpts.forEach(unboxedType.or(elementType), "elements", addMethod(property)))
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .add(methodBody(code, "elements")
+            .add(Excerpts.forEach(unboxedType.or(elementType), "elements", addMethod(property)))
+            .addLine("  return (%s) this;", metadata.getBuilder()))
         .addLine("}");
   }
 
@@ -419,8 +433,9 @@ class SortedSetProperty extends PropertyCodeGenerator {
         .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
         .addLine(" */")
         .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property));
+    Block body = methodBody(code);
     if (code.feature(GUAVA).isAvailable()) {
-      code.addLine("  if (%s instanceof %s) {", property.getField(), ImmutableSortedSet.class)
+      body.addLine("  if (%s instanceof %s) {", property.getField(), ImmutableSortedSet.class)
           .addLine("    if (%s.isEmpty()) {", property.getField())
           .addLine("       // Do nothing")
           .addLine("    } else if (%s.comparator() != null) {", property.getField())
@@ -431,10 +446,11 @@ class SortedSetProperty extends PropertyCodeGenerator {
           .addLine("    }")
           .add("  } else ");
     }
-    code.addLine("  if (%s != null) {", property.getField())
+    body.addLine("  if (%s != null) {", property.getField())
         .addLine("    %s.clear();", property.getField())
         .addLine("  }")
-        .addLine("  return (%s) this;", metadata.getBuilder())
+        .addLine("  return (%s) this;", metadata.getBuilder());
+    code.add(body)
         .addLine("}");
   }
 
@@ -446,8 +462,10 @@ class SortedSetProperty extends PropertyCodeGenerator {
         .addLine(" * Changes to this builder will be reflected in the view.")
         .addLine(" */")
         .addLine("public %s<%s> %s() {", SortedSet.class, elementType, getter(property));
-    addConvertToTreeSet(code);
-    code.addLine("  return %s.unmodifiableSortedSet(%s);", Collections.class, property.getField())
+    Block body = methodBody(code);
+    addConvertToTreeSet(body);
+    body.addLine("  return %s.unmodifiableSortedSet(%s);", Collections.class, property.getField());
+    code.add(body)
         .addLine("}");
   }
 
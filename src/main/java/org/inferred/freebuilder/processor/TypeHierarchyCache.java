@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static javax.lang.model.util.ElementFilter.methodsIn;
+import static javax.lang.model.util.ElementFilter.typesIn;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeAsTypeElement;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeType;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.inferred.freebuilder.processor.Analyser.CannotGenerateCodeException;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Memoizes facts about the type hierarchy that are looked up for every &#64;FreeBuilder type, so
+ * types sharing supertypes or enclosing types only have them walked once.
+ *
+ * <p>Elements can gain members between rounds (for instance, once a generated superclass exists),
+ * so {@link #invalidate()} must be called at the start of every round. Not thread-safe: analysis
+ * runs on the processor thread.
+ */
+class TypeHierarchyCache {
+
+  private final Map<TypeElement, ImmutableSet<TypeElement>> supertypes =
+      new HashMap<TypeElement, ImmutableSet<TypeElement>>();
+  private final Map<TypeElement, ImmutableList<ExecutableElement>> declaredMethods =
+      new HashMap<TypeElement, ImmutableList<ExecutableElement>>();
+  private final Map<TypeElement, ImmutableSet<QualifiedName>> visibleNestedTypes =
+      new HashMap<TypeElement, ImmutableSet<QualifiedName>>();
+  private int hits = 0;
+  private int misses = 0;
+
+  /**
+   * Returns {@code type} and all its supertypes, each type following its own supertypes.
+   *
+   * @throws CannotGenerateCodeException if a supertype cannot be resolved
+   */
+  ImmutableSet<TypeElement> supertypes(TypeElement type) throws CannotGenerateCodeException {
+    ImmutableSet<TypeElement> result = supertypes.get(type);
+    if (result != null) {
+      hits++;
+      return result;
+    }
+    misses++;
+    Set<TypeElement> closure = new LinkedHashSet<TypeElement>();
+    for (TypeMirror iface : type.getInterfaces()) {
+      closure.addAll(supertypes(asTypeElement(iface)));
+    }
+    if (type.getSuperclass().getKind() != TypeKind.NONE) {
+      closure.addAll(supertypes(asTypeElement(type.getSuperclass())));
+    }
+    closure.add(type);
+    result = ImmutableSet.copyOf(closure);
+    supertypes.put(type, result);
+    return result;
+  }
+
+  /** Returns the methods declared directly on {@code type}. */
+  ImmutableList<ExecutableElement> declaredMethods(TypeElement type) {
+    ImmutableList<ExecutableElement> result = declaredMethods.get(type);
+    if (result != null) {
+      hits++;
+      return result;
+    }
+    misses++;
+    result = ImmutableList.copyOf(methodsIn(type.getEnclosedElements()));
+    declaredMethods.put(type, result);
+    return result;
+  }
+
+  /**
+   * Returns the types nested in {@code type}, its enclosing types and its superclasses, all of
+   * which can be referred to by simple name in a subclass of {@code type}.
+   */
+  ImmutableSet<QualifiedName> visibleNestedTypes(TypeElement type) {
+    ImmutableSet<QualifiedName> result = visibleNestedTypes.get(type);
+    if (result != null) {
+      hits++;
+      return result;
+    }
+    misses++;
+    ImmutableSet.Builder<QualifiedName> visibleTypes = ImmutableSet.builder();
+    for (TypeElement nestedType : typesIn(type.getEnclosedElements())) {
+      visibleTypes.add(QualifiedName.of(nestedType));
+    }
+    visibleTypes.addAll(visibleNestedTypes(maybeType(type.getEnclosingElement())));
+    visibleTypes.addAll(visibleNestedTypes(maybeAsTypeElement(type.getSuperclass())));
+    result = visibleTypes.build();
+    visibleNestedTypes.put(type, result);
+    return result;
+  }
+
+  /** Discards everything cached, as types may have changed since it was computed. */
+  void invalidate() {
+    supertypes.clear();
+    declaredMethods.clear();
+    visibleNestedTypes.clear();
+  }
+
+  /** Returns the number of lookups answered from the cache since it was created. */
+  int hits() {
+    return hits;
+  }
+
+  /** Returns the number of lookups that had to walk the type hierarchy since it was created. */
+  int misses() {
+    return misses;
+  }
+
+  private ImmutableSet<QualifiedName> visibleNestedTypes(Optional<TypeElement> type) {
+    if (!type.isPresent()) {
+      return ImmutableSet.of();
+    } else {
+      return visibleNestedTypes(type.get());
+    }
+  }
+
+  private static TypeElement asTypeElement(TypeMirror iface) throws CannotGenerateCodeException {
+    if (iface.getKind() != TypeKind.DECLARED) {
+      throw new CannotGenerateCodeException();
+    }
+    Element element = ((DeclaredType) iface).asElement();
+    if (!(element.getKind().isClass() || element.getKind().isInterface())) {
+      throw new CannotGenerateCodeException();
+    }
+    return (TypeElement) element;
+  }
+}
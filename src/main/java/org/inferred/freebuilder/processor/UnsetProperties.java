@@ -0,0 +1,245 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.Type;
+import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
+import org.inferred.freebuilder.processor.util.FieldAccess;
+import org.inferred.freebuilder.processor.util.Scope;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Code generation for the bitmask tracking which required properties of a builder are unset.
+ *
+ * <p>Required properties are numbered in declaration order. Up to 32 are tracked in an
+ * {@code int}, up to 64 in a {@code long}, and any more in several {@code long} fields. Property
+ * names are only decoded from the mask when {@code build()} fails, by the property enum.
+ *
+ * <p>The numbering is computed once per generated builder by {@link #declare}, and found by
+ * property code generators through the file's {@link Scope}.
+ */
+class UnsetProperties {
+
+  private static final String FIELD_NAME = "_unsetProperties";
+
+  private static final Scope.Element<UnsetProperties> SCOPE_KEY =
+      new Scope.Element<UnsetProperties>() {
+        @Override
+        public Scope.Level level() {
+          return Scope.Level.FILE;
+        }
+      };
+
+  /**
+   * Numbers the required properties of {@code metadata}, whose code generators must all be known,
+   * for the rest of the file being written to {@code code}.
+   */
+  static UnsetProperties declare(SourceBuilder code, Metadata metadata) {
+    UnsetProperties unsetProperties = new UnsetProperties(metadata);
+    UnsetProperties existing = code.scope().putIfAbsent(SCOPE_KEY, unsetProperties);
+    return (existing != null) ? existing : unsetProperties;
+  }
+
+  /** Returns the numbering previously {@link #declare declared} for the file. */
+  static UnsetProperties in(SourceBuilder code) {
+    UnsetProperties unsetProperties = code.scope().get(SCOPE_KEY);
+    checkState(unsetProperties != null, "Unset properties not declared");
+    return unsetProperties;
+  }
+
+  private final Metadata metadata;
+  private final ImmutableMap<String, Integer> bitIndices;
+  private final int bitsPerWord;
+  private final List<FieldAccess> words;
+
+  private UnsetProperties(Metadata metadata) {
+    this.metadata = metadata;
+    ImmutableMap.Builder<String, Integer> bitIndices = ImmutableMap.builder();
+    int requiredCount = 0;
+    for (Property property : metadata.getProperties()) {
+      if (property.getCodeGenerator().getType() == Type.REQUIRED) {
+        bitIndices.put(property.getName(), requiredCount++);
+      }
+    }
+    this.bitIndices = bitIndices.build();
+    bitsPerWord = (requiredCount <= 32) ? 32 : 64;
+    int wordCount = Math.max(1, (requiredCount + bitsPerWord - 1) / bitsPerWord);
+    ImmutableList.Builder<FieldAccess> words = ImmutableList.builder();
+    if (wordCount == 1) {
+      words.add(new FieldAccess(FIELD_NAME));
+    } else {
+      for (int i = 0; i < wordCount; i++) {
+        words.add(new FieldAccess(FIELD_NAME + i));
+      }
+    }
+    this.words = words.build();
+  }
+
+  /** Returns the mask fields, for hashing. */
+  List<FieldAccess> getFields() {
+    return words;
+  }
+
+  /** Returns the position of required {@code property}'s bit in the mask. */
+  int bitIndex(Property property) {
+    Integer index = bitIndices.get(property.getName());
+    checkArgument(index != null, "%s is not a required property of %s",
+        property.getName(), metadata.getType());
+    return index;
+  }
+
+  /** Adds the builder's mask fields, with every required property initially unset. */
+  void addBuilderFieldDeclarations(SourceBuilder code) {
+    long[] masks = new long[words.size()];
+    for (int index = 0; index < bitIndices.size(); index++) {
+      masks[index / bitsPerWord] |= 1L << (index % bitsPerWord);
+    }
+    for (int i = 0; i < words.size(); i++) {
+      code.addLine("private %s %s = %s;", wordType(), words.get(i), literal(masks[i]));
+    }
+  }
+
+  /** Adds final mask fields to a value type, to be copied from the builder's. */
+  void addFinalFieldDeclarations(SourceBuilder code) {
+    for (FieldAccess word : words) {
+      code.addLine("  private final %s %s;", wordType(), word);
+    }
+  }
+
+  /** Adds statements copying each mask field from {@code source}. */
+  void addCopyFrom(SourceBuilder code, String indent, Object source) {
+    for (FieldAccess word : words) {
+      code.addLine("%s%s = %s;", indent, word, word.on(source));
+    }
+  }
+
+  /** Adds statements copying each mask field from {@code source} to {@code target}. */
+  void addCopy(SourceBuilder code, String indent, Object target, Object source) {
+    for (FieldAccess word : words) {
+      code.addLine("%s%s = %s;", indent, word.on(target), word.on(source));
+    }
+  }
+
+  /** Returns an expression that is true if {@code property} is unset in this builder. */
+  Excerpt isUnset(Property property) {
+    return Excerpts.add("(%s & %s) != 0", word(property), literal(bit(property)));
+  }
+
+  /** Returns an expression that is true if {@code property} is unset in {@code builder}. */
+  Excerpt isUnset(Property property, Object builder) {
+    return Excerpts.add("(%s & %s) != 0", word(property).on(builder), literal(bit(property)));
+  }
+
+  /** Returns an expression that is true if {@code property} is set in this builder. */
+  Excerpt isSet(Property property) {
+    return Excerpts.add("(%s & %s) == 0", word(property), literal(bit(property)));
+  }
+
+  /** Returns an expression that is true if {@code property} is set in {@code builder}. */
+  Excerpt isSet(Property property, Object builder) {
+    return Excerpts.add("(%s & %s) == 0", word(property).on(builder), literal(bit(property)));
+  }
+
+  /** Returns a statement, without the trailing semicolon, marking {@code property} set. */
+  Excerpt markSet(Property property) {
+    return Excerpts.add("%s &= ~%s", word(property), literal(bit(property)));
+  }
+
+  /** Returns an expression that is true if any property is unset. */
+  Excerpt anyUnset() {
+    List<Excerpt> conditions = new ArrayList<Excerpt>();
+    for (FieldAccess word : words) {
+      conditions.add(Excerpts.add("%s != 0", word));
+    }
+    return Excerpts.add("%s", Excerpts.join(" || ", conditions));
+  }
+
+  /** Returns an expression that is true if {@code other} has the same properties unset. */
+  Excerpt equalTo(Object other) {
+    List<Excerpt> conditions = new ArrayList<Excerpt>();
+    for (FieldAccess word : words) {
+      conditions.add(Excerpts.add("%s == %s", word, word.on(other)));
+    }
+    return Excerpts.add("%s", Excerpts.join(" && ", conditions));
+  }
+
+  /**
+   * Returns an expression listing the names of the unset properties, for error messages. Decodes
+   * the mask, so should only be evaluated on failure paths.
+   */
+  Excerpt names() {
+    return Excerpts.add("%s.unset(%s)", metadata.getPropertyEnum(), Excerpts.join(", ", words));
+  }
+
+  /**
+   * Adds the method used by {@link #names()} to the property enum, whose constants must have a
+   * {@code bit} field holding their {@link #bitIndex bit index}.
+   */
+  void addDecodeMethod(SourceBuilder code) {
+    String enumName = metadata.getPropertyEnum().getSimpleName();
+    code.addLine("")
+        .addLine("  private static %s<%s> unset(%s) {",
+            EnumSet.class,
+            enumName,
+            (words.size() == 1) ? wordType() + " mask" : "long... masks")
+        .addLine("    %1$s<%2$s> unset = %1$s.noneOf(%2$s.class);", EnumSet.class, enumName)
+        .addLine("    for (%s property : values()) {", enumName);
+    if (words.size() > 1) {
+      code.addLine("      long mask = masks[property.bit / 64];")
+          .addLine("      if ((mask & (1L << (property.bit %% 64))) != 0) {");
+    } else if (bitsPerWord == 64) {
+      code.addLine("      if ((mask & (1L << property.bit)) != 0) {");
+    } else {
+      code.addLine("      if ((mask & (1 << property.bit)) != 0) {");
+    }
+    code.addLine("        unset.add(property);")
+        .addLine("      }")
+        .addLine("    }")
+        .addLine("    return unset;")
+        .addLine("  }");
+  }
+
+  private FieldAccess word(Property property) {
+    return words.get(bitIndex(property) / bitsPerWord);
+  }
+
+  private long bit(Property property) {
+    return 1L << (bitIndex(property) % bitsPerWord);
+  }
+
+  private String wordType() {
+    return (bitsPerWord == 32) ? "int" : "long";
+  }
+
+  private String literal(long mask) {
+    if (bitsPerWord == 32) {
+      return "0x" + Integer.toHexString((int) mask);
+    }
+    return "0x" + Long.toHexString(mask) + "L";
+  }
+}
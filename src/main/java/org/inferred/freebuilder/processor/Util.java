@@ -17,6 +17,8 @@ package org.inferred.freebuilder.processor;
 
 import static org.inferred.freebuilder.processor.util.Shading.unshadedName;
 
+import com.google.common.collect.ImmutableSet;
+
 import org.inferred.freebuilder.processor.util.QualifiedName;
 
 import javax.lang.model.type.DeclaredType;
@@ -72,6 +74,20 @@ public class Util {
     return false;
   }
 
+  /** Returns the qualified name of the type {@code type} erases to. */
+  static String erasedName(DeclaredType type) {
+    return new TypeToStringVisitor().visit(type);
+  }
+
+  /** Returns the qualified names of {@code classes}, as they appear in user code. */
+  static ImmutableSet<String> unshadedNames(Class<?>... classes) {
+    ImmutableSet.Builder<String> names = ImmutableSet.builder();
+    for (Class<?> cls : classes) {
+      names.add(unshadedName(cls.getName()));
+    }
+    return names.build();
+  }
+
   private static final class TypeToStringVisitor extends SimpleTypeVisitor6<String, Object> {
     @Override
     public String visitDeclared(DeclaredType t, Object p) {
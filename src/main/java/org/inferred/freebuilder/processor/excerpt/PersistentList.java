@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.excerpt;
+
+import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.LazyName;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Excerpts defining an immutable list that shares structure with the lists it was appended to,
+ * so appending to a list taken from a value does not copy it.
+ */
+public class PersistentList extends Excerpt {
+
+  public static final LazyName TYPE = new LazyName("PersistentList", new PersistentList());
+
+  private PersistentList() {}
+
+  @Override
+  public void addTo(SourceBuilder code) {
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * An immutable list that shares structure with the lists it was appended to.")
+        .addLine(" * Full blocks of 32 elements are stored in a 32-way trie, and the last block")
+        .addLine(" * in a separate tail, so appending and indexing take logarithmic time.")
+        .addLine(" */")
+        .addLine("private static final class %s<E> extends %s<E>", TYPE, AbstractList.class)
+        .addLine("    implements %s, %s {", RandomAccess.class, Serializable.class)
+        .addLine("")
+        .addLine("  private static final %s<Object> EMPTY =", TYPE)
+        .addLine("      new %s<Object>(0, 5, new Object[32], new Object[0]);", TYPE)
+        .addLine("")
+        .addLine("  @%s(\"unchecked\")", SuppressWarnings.class)
+        .addLine("  static <E> %1$s<E> of() {", TYPE)
+        .addLine("    return (%s<E>) EMPTY;", TYPE)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /** Returns {@code elements} if already persistent, or a copy otherwise. */")
+        .addLine("  @%s(\"unchecked\")", SuppressWarnings.class)
+        .addLine("  static <E> %1$s<E> copyOf(%2$s<? extends E> elements) {",
+            TYPE, Collection.class)
+        .addLine("    if (elements instanceof %s) {", TYPE)
+        .addLine("      // Immutable, so can safely be upcast")
+        .addLine("      return (%s<E>) elements;", TYPE)
+        .addLine("    }")
+        .addLine("    if (elements.isEmpty()) {")
+        .addLine("      return of();")
+        .addLine("    }")
+        .addLine("    // Build the trie bottom-up from full leaves, not by appending each element")
+        .addLine("    Object[] array = elements.toArray(new Object[elements.size()]);")
+        .addLine("    int tailOffset = ((array.length - 1) >>> 5) << 5;")
+        .addLine("    Object[] nodes = new Object[tailOffset >>> 5];")
+        .addLine("    for (int i = 0; i < nodes.length; i++) {")
+        .addLine("      nodes[i] = %s.copyOfRange(array, i << 5, (i + 1) << 5);", Arrays.class)
+        .addLine("    }")
+        .addLine("    int shift = 5;")
+        .addLine("    while (nodes.length > 32) {")
+        .addLine("      Object[] parents = new Object[(nodes.length + 31) >>> 5];")
+        .addLine("      for (int i = 0; i < parents.length; i++) {")
+        .addLine("        parents[i] = %s.copyOfRange(nodes, i << 5, (i + 1) << 5);",
+            Arrays.class)
+        .addLine("      }")
+        .addLine("      nodes = parents;")
+        .addLine("      shift += 5;")
+        .addLine("    }")
+        .addLine("    return new %s<E>(array.length, shift, %s.copyOf(nodes, 32),",
+            TYPE, Arrays.class)
+        .addLine("        %s.copyOfRange(array, tailOffset, array.length));", Arrays.class)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  private final int size;")
+        .addLine("  private final int shift;")
+        .addLine("  private final Object[] root;")
+        .addLine("  private final Object[] tail;")
+        .addLine("")
+        .addLine("  private %s(int size, int shift, Object[] root, Object[] tail) {", TYPE)
+        .addLine("    this.size = size;")
+        .addLine("    this.shift = shift;")
+        .addLine("    this.root = root;")
+        .addLine("    this.tail = tail;")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  @Override public int size() {")
+        .addLine("    return size;")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  @%s(\"unchecked\")", SuppressWarnings.class)
+        .addLine("  @Override public E get(int index) {")
+        .addLine("    if (index < 0 || index >= size) {")
+        .addLine("      throw new %s(\"Index: \" + index + \", Size: \" + size);",
+            IndexOutOfBoundsException.class)
+        .addLine("    }")
+        .addLine("    Object[] node = tail;")
+        .addLine("    if (index < tailOffset()) {")
+        .addLine("      node = root;")
+        .addLine("      for (int level = shift; level > 0; level -= 5) {")
+        .addLine("        node = (Object[]) node[(index >>> level) & 31];")
+        .addLine("      }")
+        .addLine("    }")
+        .addLine("    return (E) node[index & 31];")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /** Returns this list with {@code element} appended, sharing its nodes. */")
+        .addLine("  %s<E> plus(E element) {", TYPE)
+        .addLine("    int tailSize = size - tailOffset();")
+        .addLine("    if (tailSize < 32) {")
+        .addLine("      Object[] newTail = %s.copyOf(tail, tailSize + 1);", Arrays.class)
+        .addLine("      newTail[tailSize] = element;")
+        .addLine("      return new %s<E>(size + 1, shift, root, newTail);", TYPE)
+        .addLine("    }")
+        .addLine("    Object[] newRoot;")
+        .addLine("    int newShift = shift;")
+        .addLine("    if ((size >>> 5) > (1 << shift)) {")
+        .addLine("      // The trie is full, so add a level above it")
+        .addLine("      newRoot = new Object[32];")
+        .addLine("      newRoot[0] = root;")
+        .addLine("      newRoot[1] = newPath(shift, tail);")
+        .addLine("      newShift += 5;")
+        .addLine("    } else {")
+        .addLine("      newRoot = pushTail(shift, root);")
+        .addLine("    }")
+        .addLine("    return new %s<E>(size + 1, newShift, newRoot, new Object[] { element });",
+            TYPE)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  private int tailOffset() {")
+        .addLine("    return (size < 32) ? 0 : ((size - 1) >>> 5) << 5;")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  /** Returns a copy of {@code node} with the tail appended as a leaf. */")
+        .addLine("  private Object[] pushTail(int level, Object[] node) {")
+        .addLine("    Object[] result = node.clone();")
+        .addLine("    int subIndex = ((size - 1) >>> level) & 31;")
+        .addLine("    if (level == 5) {")
+        .addLine("      result[subIndex] = tail;")
+        .addLine("    } else {")
+        .addLine("      Object[] child = (Object[]) node[subIndex];")
+        .addLine("      result[subIndex] = (child != null)")
+        .addLine("          ? pushTail(level - 5, child) : newPath(level - 5, tail);")
+        .addLine("    }")
+        .addLine("    return result;")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  private static Object[] newPath(int level, Object[] leaf) {")
+        .addLine("    if (level == 0) {")
+        .addLine("      return leaf;")
+        .addLine("    }")
+        .addLine("    Object[] node = new Object[32];")
+        .addLine("    node[0] = newPath(level - 5, leaf);")
+        .addLine("    return node;")
+        .addLine("  }")
+        .addLine("}");
+  }
+
+  @Override
+  protected void addFields(FieldReceiver fields) {}
+}
@@ -3,13 +3,19 @@ package org.inferred.freebuilder.processor.util;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Maps.newLinkedHashMap;
 
+import static org.inferred.freebuilder.processor.util.feature.GenerationMode.GENERATION_MODE;
+
 import org.inferred.freebuilder.processor.util.feature.Feature;
 import org.inferred.freebuilder.processor.util.feature.FeatureType;
+import org.inferred.freebuilder.processor.util.feature.GenerationMode;
 
 import java.util.Map;
 
 /**
  * A Block contains a preamble of lazily-added declarations followed by a body.
+ *
+ * <p>When only the API is being generated ({@link GenerationMode#ABI_ONLY}), a block discards
+ * everything added to it, and writes a {@code throw new UnsupportedOperationException()} instead.
  */
 public class Block extends Excerpt implements SourceBuilder {
 
@@ -25,15 +31,18 @@ public class Block extends Excerpt implements SourceBuilder {
   private final Map<String, Excerpt> declarations = newLinkedHashMap();
   private final SourceStringBuilder declarationsBlock;
   private final SourceStringBuilder body;
+  private final boolean stub;
 
   public Block(SourceBuilder parent) {
     declarationsBlock = parent.subBuilder();
     body = parent.subBuilder();
+    stub = parent.feature(GENERATION_MODE).isAbiOnly();
   }
 
   private Block(SourceBuilder parent, Scope newScope) {
     declarationsBlock = parent.subScope(newScope);
     body = parent.subScope(newScope);
+    stub = parent.feature(GENERATION_MODE).isAbiOnly();
   }
 
   /**
@@ -45,6 +54,9 @@ public class Block extends Excerpt implements SourceBuilder {
    *     with a different declaration
    */
   public Excerpt declare(Excerpt typeAndPreamble, String preferredName, Excerpt value) {
+    if (stub) {
+      return Excerpts.add("%s", preferredName);
+    }
     String name;
     if (variableNames.containsKey(preferredName)) {
       name = variableNames.get(preferredName);
@@ -95,19 +107,25 @@ public class Block extends Excerpt implements SourceBuilder {
 
   @Override
   public Block add(String fmt, Object... args) {
-    body.add(fmt, args);
+    if (!stub) {
+      body.add(fmt, args);
+    }
     return this;
   }
 
   @Override
   public Block addLine(String fmt, Object... args) {
-    body.addLine(fmt, args);
+    if (!stub) {
+      body.addLine(fmt, args);
+    }
     return this;
   }
 
   @Override
   public Block add(Excerpt excerpt) {
-    body.add(excerpt);
+    if (!stub) {
+      body.add(excerpt);
+    }
     return this;
   }
 
@@ -133,7 +151,11 @@ public class Block extends Excerpt implements SourceBuilder {
 
   @Override
   public void addTo(SourceBuilder source) {
-    source.add("%s%s", declarationsBlock, body);
+    if (stub) {
+      source.addLine("  throw new %s();", UnsupportedOperationException.class);
+    } else {
+      source.add("%s%s", declarationsBlock, body);
+    }
   }
 
   @Override
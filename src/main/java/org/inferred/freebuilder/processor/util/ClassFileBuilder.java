@@ -0,0 +1,691 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.base.Joiner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assembles a class file, for generating classes without a round trip through javac.
+ *
+ * <p>Only what builders need is supported. Class files are written in the Java 5 format, so
+ * methods need no stack map frames, but the classes they reference must be loadable in whatever
+ * JVM runs the code.
+ */
+public class ClassFileBuilder {
+
+  public static final int ACC_PUBLIC = 0x0001;
+  public static final int ACC_PRIVATE = 0x0002;
+  public static final int ACC_STATIC = 0x0008;
+  public static final int ACC_FINAL = 0x0010;
+  public static final int ACC_SUPER = 0x0020;
+  public static final int ACC_ABSTRACT = 0x0400;
+
+  /** Class file major version of Java 5, the last that does not require stack map frames. */
+  private static final int MAJOR_VERSION = 49;
+
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_FIELDREF = 9;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+  /** Returns the internal name of {@code type}, e.g. {@code com/example/DataType$Builder}. */
+  public static String internalName(QualifiedName type) {
+    String binaryName = Joiner.on('$').join(type.getSimpleNames());
+    return type.getPackage().isEmpty()
+        ? binaryName
+        : type.getPackage().replace('.', '/') + "/" + binaryName;
+  }
+
+  /** Returns the field descriptor of {@code type}, e.g. {@code Lcom/example/DataType;}. */
+  public static String descriptor(QualifiedName type) {
+    return "L" + internalName(type) + ";";
+  }
+
+  private final ByteArrayOutputStream constantBytes = new ByteArrayOutputStream();
+  private final DataOutputStream constants = new DataOutputStream(constantBytes);
+  private final Map<String, Integer> constantIndices = new HashMap<String, Integer>();
+  private int constantCount = 1;
+
+  private final int access;
+  private final QualifiedName thisClass;
+  private final QualifiedName superClass;
+  private final List<QualifiedName> interfaces;
+  private final List<byte[]> fields = new ArrayList<byte[]>();
+  private final List<Code> methods = new ArrayList<Code>();
+  /** Nested classes referenced by this class, with their access flags. */
+  private final Map<QualifiedName, Integer> nestedClasses =
+      new LinkedHashMap<QualifiedName, Integer>();
+
+  public ClassFileBuilder(
+      int access, QualifiedName thisClass, QualifiedName superClass, QualifiedName... interfaces) {
+    this.access = access | ACC_SUPER;
+    this.thisClass = thisClass;
+    this.superClass = superClass;
+    this.interfaces = Arrays.asList(interfaces);
+    classRef(thisClass);
+    classRef(superClass);
+    for (QualifiedName type : interfaces) {
+      classRef(type);
+    }
+  }
+
+  /**
+   * Records the access flags of a class nested in this one, for the {@code InnerClasses}
+   * attribute. Other nested classes are recorded as public and static.
+   */
+  public ClassFileBuilder addNestedClass(QualifiedName nestedClass, int access) {
+    nestedClasses.put(nestedClass, access);
+    return this;
+  }
+
+  /** Returns the internal name of {@code type}, recording it in the class if it is nested. */
+  public String classRef(QualifiedName type) {
+    QualifiedName nested = type;
+    while (!nested.isTopLevel()) {
+      if (!nestedClasses.containsKey(nested)) {
+        nestedClasses.put(nested, ACC_PUBLIC | ACC_STATIC);
+      }
+      nested = nested.getEnclosingType();
+    }
+    return internalName(type);
+  }
+
+  public ClassFileBuilder addField(int access, String name, String descriptor) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream field = new DataOutputStream(bytes);
+    try {
+      field.writeShort(access);
+      field.writeShort(utf8(name));
+      field.writeShort(utf8(descriptor));
+      field.writeShort(0);
+    } catch (IOException e) {
+      throw new AssertionError(e);  // ByteArrayOutputStream does not throw IOException
+    }
+    fields.add(bytes.toByteArray());
+    return this;
+  }
+
+  /** Adds a method, returning a {@link Code} to write its body to. */
+  public Code addMethod(int access, String name, String descriptor) {
+    return addMethod(access, name, descriptor, null);
+  }
+
+  /**
+   * Adds a method with a generic {@code signature}, returning a {@link Code} to write its body
+   * to.
+   */
+  public Code addMethod(int access, String name, String descriptor, String signature) {
+    Code code = new Code(access, name, descriptor, signature);
+    methods.add(code);
+    return code;
+  }
+
+  /** Returns the complete class file. */
+  public byte[] toByteArray() {
+    try {
+      // Assemble everything after the constant pool first, as it may add constants
+      ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+      DataOutputStream body = new DataOutputStream(bodyBytes);
+      body.writeShort(access);
+      body.writeShort(classConstant(thisClass));
+      body.writeShort(classConstant(superClass));
+      body.writeShort(interfaces.size());
+      for (QualifiedName type : interfaces) {
+        body.writeShort(classConstant(type));
+      }
+      body.writeShort(fields.size());
+      for (byte[] field : fields) {
+        body.write(field);
+      }
+      body.writeShort(methods.size());
+      for (Code method : methods) {
+        method.writeTo(body);
+      }
+      if (nestedClasses.isEmpty()) {
+        body.writeShort(0);
+      } else {
+        body.writeShort(1);
+        body.writeShort(utf8("InnerClasses"));
+        body.writeInt(2 + 8 * nestedClasses.size());
+        body.writeShort(nestedClasses.size());
+        for (Map.Entry<QualifiedName, Integer> nested : nestedClasses.entrySet()) {
+          body.writeShort(classConstant(nested.getKey()));
+          body.writeShort(classConstant(nested.getKey().getEnclosingType()));
+          body.writeShort(utf8(nested.getKey().getSimpleName()));
+          body.writeShort(nested.getValue());
+        }
+      }
+
+      ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+      DataOutputStream classFile = new DataOutputStream(classBytes);
+      classFile.writeInt(0xCAFEBABE);
+      classFile.writeShort(0);
+      classFile.writeShort(MAJOR_VERSION);
+      classFile.writeShort(constantCount);
+      constantBytes.writeTo(classFile);
+      bodyBytes.writeTo(classFile);
+      return classBytes.toByteArray();
+    } catch (IOException e) {
+      throw new AssertionError(e);  // ByteArrayOutputStream does not throw IOException
+    }
+  }
+
+  private int utf8(String value) {
+    Integer index = constantIndices.get("U" + value);
+    if (index == null) {
+      index = addConstant("U" + value);
+      write(CONSTANT_UTF8);
+      try {
+        constants.writeUTF(value);
+      } catch (IOException e) {
+        throw new AssertionError(e);  // ByteArrayOutputStream does not throw IOException
+      }
+    }
+    return index;
+  }
+
+  private int classConstant(QualifiedName type) {
+    return classConstant(internalName(type));
+  }
+
+  private int classConstant(String internalName) {
+    Integer index = constantIndices.get("C" + internalName);
+    if (index == null) {
+      int name = utf8(internalName);
+      index = addConstant("C" + internalName);
+      write(CONSTANT_CLASS, name);
+    }
+    return index;
+  }
+
+  private int stringConstant(String value) {
+    Integer index = constantIndices.get("S" + value);
+    if (index == null) {
+      int utf8 = utf8(value);
+      index = addConstant("S" + value);
+      write(CONSTANT_STRING, utf8);
+    }
+    return index;
+  }
+
+  private int intConstant(int value) {
+    Integer index = constantIndices.get("I" + value);
+    if (index == null) {
+      index = addConstant("I" + value);
+      write(CONSTANT_INTEGER);
+      try {
+        constants.writeInt(value);
+      } catch (IOException e) {
+        throw new AssertionError(e);  // ByteArrayOutputStream does not throw IOException
+      }
+    }
+    return index;
+  }
+
+  private int memberConstant(int tag, String owner, String name, String descriptor) {
+    String key = tag + owner + "." + name + ":" + descriptor;
+    Integer index = constantIndices.get(key);
+    if (index == null) {
+      int ownerIndex = classConstant(owner);
+      String nameAndTypeKey = "N" + name + ":" + descriptor;
+      Integer nameAndType = constantIndices.get(nameAndTypeKey);
+      if (nameAndType == null) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        nameAndType = addConstant(nameAndTypeKey);
+        write(CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+      }
+      index = addConstant(key);
+      write(tag, ownerIndex, nameAndType);
+    }
+    return index;
+  }
+
+  private int addConstant(String key) {
+    int index = constantCount++;
+    checkState(index <= 0xFFFF, "Too many constants in %s", thisClass);
+    constantIndices.put(key, index);
+    return index;
+  }
+
+  private void write(int tag, int... shorts) {
+    try {
+      constants.writeByte(tag);
+      for (int value : shorts) {
+        constants.writeShort(value);
+      }
+    } catch (IOException e) {
+      throw new AssertionError(e);  // ByteArrayOutputStream does not throw IOException
+    }
+  }
+
+  /** A branch target in a {@link Code} block. */
+  public static final class Label {
+    private int offset = -1;
+    private int stackDepth = -1;
+    private final List<Integer> references = new ArrayList<Integer>();
+  }
+
+  /**
+   * The body of a method, written one instruction at a time. Tracks the operand stack depth as it
+   * goes, so instructions must leave the stack at the same depth on every path to a label.
+   */
+  public final class Code {
+
+    public static final int ICONST_0 = 0x03;
+    public static final int POP = 0x57;
+    public static final int DUP = 0x59;
+    public static final int IAND = 0x7E;
+    public static final int IOR = 0x80;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9A;
+    public static final int IFNONNULL = 0xC7;
+    public static final int GOTO = 0xA7;
+    public static final int ARETURN = 0xB0;
+    public static final int RETURN = 0xB1;
+    public static final int ATHROW = 0xBF;
+
+    private static final int ILOAD = 0x15;
+    private static final int ISTORE = 0x36;
+    private static final int IRETURN = 0xAC;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int GETFIELD = 0xB4;
+    private static final int PUTFIELD = 0xB5;
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESPECIAL = 0xB7;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int INVOKEINTERFACE = 0xB9;
+    private static final int NEW = 0xBB;
+    private static final int ANEWARRAY = 0xBD;
+    private static final int CHECKCAST = 0xC0;
+    private static final int INSTANCEOF = 0xC1;
+    private static final int AASTORE = 0x53;
+
+    private final int access;
+    private final String name;
+    private final String descriptor;
+    private final String signature;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final List<Label> labels = new ArrayList<Label>();
+    private int maxLocals;
+    private int stackDepth = 0;
+    private int maxStack = 0;
+
+    private Code(int access, String name, String descriptor, String signature) {
+      this.access = access;
+      this.name = name;
+      this.descriptor = descriptor;
+      this.signature = signature;
+      this.maxLocals = (((access & ACC_STATIC) == 0) ? 1 : 0) + argumentSlots(descriptor);
+    }
+
+    /** Returns a new local variable slot, wide enough for a value of type {@code descriptor}. */
+    public int newLocal(String descriptor) {
+      int slot = maxLocals;
+      maxLocals += slots(descriptor);
+      return slot;
+    }
+
+    /**
+     * Appends an instruction with no operands, which changes the stack depth by
+     * {@code stackDelta}.
+     */
+    public Code op(int opcode, int stackDelta) {
+      bytes.write(opcode);
+      adjustStack(stackDelta);
+      if (opcode == ATHROW || opcode == GOTO || (opcode >= IRETURN && opcode <= RETURN)) {
+        stackDepth = 0;
+      }
+      return this;
+    }
+
+    /** Loads a value of type {@code descriptor} from local variable {@code slot}. */
+    public Code load(String descriptor, int slot) {
+      return localOp(ILOAD + typeOffset(descriptor), slot, slots(descriptor));
+    }
+
+    /** Stores a value of type {@code descriptor} to local variable {@code slot}. */
+    public Code store(String descriptor, int slot) {
+      return localOp(ISTORE + typeOffset(descriptor), slot, -slots(descriptor));
+    }
+
+    /** Returns a value of type {@code descriptor}, or nothing if it is {@code V}. */
+    public Code returnValue(String descriptor) {
+      if (descriptor.equals("V")) {
+        return op(RETURN, 0);
+      }
+      return op(IRETURN + typeOffset(descriptor), -slots(descriptor));
+    }
+
+    public Code pushInt(int value) {
+      if (value >= -1 && value <= 5) {
+        return op(ICONST_0 + value, 1);
+      } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+        bytes.write(BIPUSH);
+        bytes.write(value);
+      } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+        bytes.write(SIPUSH);
+        writeShort(value);
+      } else {
+        writeConstant(intConstant(value));
+        return this;
+      }
+      adjustStack(1);
+      return this;
+    }
+
+    public Code pushString(String value) {
+      writeConstant(stringConstant(value));
+      return this;
+    }
+
+    public Code getField(String owner, String name, String descriptor) {
+      bytes.write(GETFIELD);
+      writeShort(memberConstant(CONSTANT_FIELDREF, owner, name, descriptor));
+      adjustStack(slots(descriptor) - 1);
+      return this;
+    }
+
+    public Code putField(String owner, String name, String descriptor) {
+      bytes.write(PUTFIELD);
+      writeShort(memberConstant(CONSTANT_FIELDREF, owner, name, descriptor));
+      adjustStack(-slots(descriptor) - 1);
+      return this;
+    }
+
+    public Code invokeVirtual(String owner, String name, String descriptor) {
+      return invoke(INVOKEVIRTUAL, CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    public Code invokeSpecial(String owner, String name, String descriptor) {
+      return invoke(INVOKESPECIAL, CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    public Code invokeStatic(String owner, String name, String descriptor) {
+      return invoke(INVOKESTATIC, CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    public Code invokeInterface(String owner, String name, String descriptor) {
+      invoke(INVOKEINTERFACE, CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+      bytes.write(1 + argumentSlots(descriptor));
+      bytes.write(0);
+      return this;
+    }
+
+    /** Creates a new, uninitialized instance of {@code type}. */
+    public Code newInstance(String type) {
+      return classOp(NEW, type, 1);
+    }
+
+    /** Creates a new array of {@code componentType}, its length popped from the stack. */
+    public Code newArray(String componentType) {
+      return classOp(ANEWARRAY, componentType, 0);
+    }
+
+    /** Stores a reference in an array: pops the array, index and value. */
+    public Code storeArrayElement() {
+      return op(AASTORE, -3);
+    }
+
+    public Code checkCast(String type) {
+      return classOp(CHECKCAST, type, 0);
+    }
+
+    public Code instanceOf(String type) {
+      return classOp(INSTANCEOF, type, 0);
+    }
+
+    /** Throws a new {@code exceptionType}, constructed with {@code message}. */
+    public Code throwNew(String exceptionType, String message) {
+      return newInstance(exceptionType)
+          .op(DUP, 1)
+          .pushString(message)
+          .invokeSpecial(exceptionType, "<init>", "(Ljava/lang/String;)V")
+          .op(ATHROW, -1);
+    }
+
+    /** Creates a new {@link Label}, to be bound later with {@link #bind}. */
+    public Label newLabel() {
+      Label label = new Label();
+      labels.add(label);
+      return label;
+    }
+
+    /** Appends a conditional or unconditional branch to {@code target}. */
+    public Code jump(int opcode, Label target) {
+      int instruction = bytes.size();
+      bytes.write(opcode);
+      writeShort(0);
+      target.references.add(instruction);
+      if (opcode != GOTO) {
+        adjustStack(-1);
+      }
+      target.stackDepth = stackDepth;
+      if (opcode == GOTO) {
+        stackDepth = 0;
+      }
+      return this;
+    }
+
+    /** Binds {@code label} to the next instruction. */
+    public Code bind(Label label) {
+      checkState(label.offset < 0, "Label bound twice");
+      label.offset = bytes.size();
+      if (label.stackDepth >= 0) {
+        stackDepth = label.stackDepth;
+      }
+      return this;
+    }
+
+    /**
+     * Boxes the value of type {@code descriptor} on the top of the stack, if it is primitive, as
+     * autoboxing would.
+     */
+    public Code box(String descriptor) {
+      String boxed = boxedType(descriptor);
+      if (boxed != null) {
+        invokeStatic(boxed, "valueOf", "(" + descriptor + ")L" + boxed + ";");
+      }
+      return this;
+    }
+
+    /**
+     * Unboxes the reference of type {@code Object} on the top of the stack, if
+     * {@code descriptor} is primitive, as a cast and auto-unboxing would; otherwise, casts it.
+     */
+    public Code castAndUnbox(String descriptor) {
+      String boxed = boxedType(descriptor);
+      if (boxed == null) {
+        return descriptor.startsWith("[")
+            ? checkCast(descriptor)
+            : checkCast(descriptor.substring(1, descriptor.length() - 1));
+      }
+      String primitiveName = PRIMITIVE_NAMES.get(descriptor);
+      checkCast(boxed);
+      return invokeVirtual(boxed, primitiveName + "Value", "()" + descriptor);
+    }
+
+    private Code invoke(int opcode, int tag, String owner, String name, String descriptor) {
+      bytes.write(opcode);
+      writeShort(memberConstant(tag, owner, name, descriptor));
+      int receiver = (opcode == INVOKESTATIC) ? 0 : 1;
+      String returnType = descriptor.substring(descriptor.indexOf(')') + 1);
+      adjustStack(-argumentSlots(descriptor) - receiver + slots(returnType));
+      return this;
+    }
+
+    private Code classOp(int opcode, String type, int stackDelta) {
+      bytes.write(opcode);
+      writeShort(classConstant(type));
+      adjustStack(stackDelta);
+      return this;
+    }
+
+    private Code localOp(int opcode, int slot, int stackDelta) {
+      checkState(slot <= 0xFF, "Too many local variables in %s", name);
+      bytes.write(opcode);
+      bytes.write(slot);
+      adjustStack(stackDelta);
+      return this;
+    }
+
+    private void writeConstant(int index) {
+      if (index <= 0xFF) {
+        bytes.write(LDC);
+        bytes.write(index);
+      } else {
+        bytes.write(LDC_W);
+        writeShort(index);
+      }
+      adjustStack(1);
+    }
+
+    private void writeShort(int value) {
+      bytes.write((value >> 8) & 0xFF);
+      bytes.write(value & 0xFF);
+    }
+
+    private void adjustStack(int delta) {
+      stackDepth += delta;
+      checkState(stackDepth >= 0, "Stack underflow in %s", name);
+      maxStack = Math.max(maxStack, stackDepth);
+    }
+
+    private void writeTo(DataOutputStream out) throws IOException {
+      out.writeShort(access);
+      out.writeShort(utf8(name));
+      out.writeShort(utf8(descriptor));
+      int attributeCount = ((access & ACC_ABSTRACT) == 0 ? 1 : 0) + (signature != null ? 1 : 0);
+      out.writeShort(attributeCount);
+      if ((access & ACC_ABSTRACT) == 0) {
+        byte[] code = bytes.toByteArray();
+        checkState(code.length > 0 && code.length < 0x8000, "Bad code size in %s", name);
+        // Patch branch offsets, now every label is bound
+        for (Label label : labels) {
+          checkState(label.offset >= 0, "Unbound label in %s", name);
+          for (int instruction : label.references) {
+            int offset = label.offset - instruction;
+            code[instruction + 1] = (byte) (offset >> 8);
+            code[instruction + 2] = (byte) offset;
+          }
+        }
+        out.writeShort(utf8("Code"));
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);  // Exception table length
+        out.writeShort(0);  // Attribute count
+      }
+      if (signature != null) {
+        out.writeShort(utf8("Signature"));
+        out.writeInt(2);
+        out.writeShort(utf8(signature));
+      }
+    }
+  }
+
+  private static final Map<String, String> PRIMITIVE_NAMES = new HashMap<String, String>();
+  private static final Map<String, String> BOXED_TYPES = new HashMap<String, String>();
+
+  static {
+    String[][] primitives = {
+        {"Z", "boolean", "java/lang/Boolean"},
+        {"B", "byte", "java/lang/Byte"},
+        {"C", "char", "java/lang/Character"},
+        {"S", "short", "java/lang/Short"},
+        {"I", "int", "java/lang/Integer"},
+        {"J", "long", "java/lang/Long"},
+        {"F", "float", "java/lang/Float"},
+        {"D", "double", "java/lang/Double"}};
+    for (String[] primitive : primitives) {
+      PRIMITIVE_NAMES.put(primitive[0], primitive[1]);
+      BOXED_TYPES.put(primitive[0], primitive[2]);
+    }
+  }
+
+  /**
+   * Returns the internal name of the boxed type of {@code descriptor}, or null if it is not
+   * primitive.
+   */
+  public static String boxedType(String descriptor) {
+    return BOXED_TYPES.get(descriptor);
+  }
+
+  /** Returns the number of local variable or stack slots a value of {@code descriptor} takes. */
+  public static int slots(String descriptor) {
+    if (descriptor.equals("V")) {
+      return 0;
+    }
+    return (descriptor.equals("J") || descriptor.equals("D")) ? 2 : 1;
+  }
+
+  /** Returns the offset of a typed load, store or return opcode from its int variant. */
+  private static int typeOffset(String descriptor) {
+    switch (descriptor.charAt(0)) {
+      case 'J':
+        return 1;
+      case 'F':
+        return 2;
+      case 'D':
+        return 3;
+      case 'L':
+      case '[':
+        return 4;
+      default:
+        return 0;
+    }
+  }
+
+  /** Returns the number of local variable slots taken by the arguments of a method descriptor. */
+  private static int argumentSlots(String methodDescriptor) {
+    int slots = 0;
+    int i = 1;
+    while (methodDescriptor.charAt(i) != ')') {
+      char c = methodDescriptor.charAt(i);
+      int start = i;
+      while (methodDescriptor.charAt(i) == '[') {
+        i++;
+      }
+      if (methodDescriptor.charAt(i) == 'L') {
+        i = methodDescriptor.indexOf(';', i);
+      }
+      i++;
+      slots += (start == i - 1 && (c == 'J' || c == 'D')) ? 2 : 1;
+    }
+    return slots;
+  }
+}
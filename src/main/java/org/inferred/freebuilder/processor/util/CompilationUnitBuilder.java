@@ -15,26 +15,36 @@
  */
 package org.inferred.freebuilder.processor.util;
 
+import static org.inferred.freebuilder.processor.util.feature.FormatStyle.FORMAT_STYLE;
+import static org.inferred.freebuilder.processor.util.feature.GenerationMode.GENERATION_MODE;
+
 import com.google.common.annotations.VisibleForTesting;
 import com.google.googlejavaformat.java.Formatter;
+import com.google.googlejavaformat.java.FormatterException;
 
 import org.inferred.freebuilder.processor.util.Scope.FileScope;
 import org.inferred.freebuilder.processor.util.feature.Feature;
 import org.inferred.freebuilder.processor.util.feature.FeatureSet;
 import org.inferred.freebuilder.processor.util.feature.FeatureType;
+import org.inferred.freebuilder.processor.util.feature.FormatStyle;
+import org.inferred.freebuilder.processor.util.feature.GenerationMode;
 
+import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.Collection;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.PackageElement;
-import javax.lang.model.element.TypeElement;
-import javax.lang.model.util.ElementFilter;
 
 /** {@code SourceBuilder} which also handles package declaration and imports. */
 public class CompilationUnitBuilder implements SourceBuilder {
 
+  private static final int CHUNK_SIZE = 8192;
+
   private final ImportManager importManager;
-  private final SourceBuilder source;
+  private final MemoizingTypeShortener shortener;
+  private final long importManagerNanos;
+  private final SourceStringBuilder source;
   private final QualifiedName classToWrite;
 
   /**
@@ -47,20 +57,42 @@ public class CompilationUnitBuilder implements SourceBuilder {
       QualifiedName classToWrite,
       Collection<QualifiedName> nestedClasses,
       FeatureSet features) {
+    this(env, classToWrite, nestedClasses, features, new QualifiedNameCache());
+  }
+
+  /**
+   * Returns a {@link CompilationUnitBuilder} for {@code classToWrite} using {@code features},
+   * sharing {@code qualifiedNames} with other compilation units generated in the same round.
+   */
+  public CompilationUnitBuilder(
+      ProcessingEnvironment env,
+      QualifiedName classToWrite,
+      Collection<QualifiedName> nestedClasses,
+      FeatureSet features,
+      QualifiedNameCache qualifiedNames) {
+    long start = System.nanoTime();
     this.classToWrite = classToWrite;
     // Write the source code into an intermediate SourceStringBuilder, as the imports need to be
     // written first, but aren't known yet.
     ImportManager.Builder importManagerBuilder = new ImportManager.Builder();
     importManagerBuilder.addImplicitImport(classToWrite);
     PackageElement pkg = env.getElementUtils().getPackageElement(classToWrite.getPackage());
-    for (TypeElement sibling : ElementFilter.typesIn(pkg.getEnclosedElements())) {
-      importManagerBuilder.addImplicitImport(QualifiedName.of(sibling));
-    }
+    importManagerBuilder.addPackageSiblings(qualifiedNames.siblings(pkg));
     for (QualifiedName nestedClass : nestedClasses) {
       importManagerBuilder.addImplicitImport(nestedClass);
     }
     importManager = importManagerBuilder.build();
-    source = new SourceStringBuilder(importManager, features, new FileScope());
+    importManagerNanos = System.nanoTime() - start;
+    shortener = new MemoizingTypeShortener(importManager, qualifiedNames);
+    source = new SourceStringBuilder(shortener, features, new FileScope());
+  }
+
+  /**
+   * Returns the time spent so far on import resolution, in nanoseconds: finding potential import
+   * collisions, and shortening the types written.
+   */
+  public long importResolutionNanos() {
+    return importManagerNanos + shortener.delegateNanos();
   }
 
   @Override
@@ -101,26 +133,100 @@ public class CompilationUnitBuilder implements SourceBuilder {
     return source.scope();
   }
 
-  @Override
-  public String toString() {
-    StringBuilder unit = new StringBuilder();
-    unit.append("// Autogenerated code. Do not modify.\n")
-        .append("package ").append(classToWrite.getPackage()).append(";\n")
-        .append("\n");
+  /**
+   * Writes the compilation unit to {@code out}: the package declaration and imports, then the
+   * source added so far, formatted according to the {@link FormatStyle} feature.
+   *
+   * <p>This does not stream generation: imports are only known once all source has been added,
+   * so the whole body is held in memory until then. It only saves copying that buffer again, by
+   * appending it to {@code out} in chunks rather than building a whole-file string around it.
+   * {@link FormatStyle#FULL} formatting still makes a formatted copy, as google-java-format works
+   * on strings. {@link GenerationMode#ABI_ONLY} stubs are laid out with
+   * {@link FormatStyle#FAST} instead, as nothing reads them but the compiler.
+   */
+  public void writeTo(Appendable out) throws IOException {
+    FormatStyle requestedStyle = source.feature(FORMAT_STYLE);
+    FormatStyle formatStyle =
+        (requestedStyle == FormatStyle.FULL && source.feature(GENERATION_MODE).isAbiOnly())
+            ? FormatStyle.FAST
+            : requestedStyle;
+    // Format before writing anything, so a formatter failure does not leave a partial file.
+    String formattedSource =
+        (formatStyle == FormatStyle.FULL) ? formatSource(source.toString()) : null;
+    // Appends are not chained, as EJC's Writer returns the wrong object from append.
+    out.append("// Autogenerated code. Do not modify.\n");
+    out.append("package ");
+    out.append(classToWrite.getPackage());
+    out.append(";\n\n");
     if (!importManager.getClassImports().isEmpty()) {
       for (String classImport : importManager.getClassImports()) {
-        unit.append("import ").append(classImport).append(";\n");
+        out.append("import ");
+        out.append(classImport);
+        out.append(";\n");
       }
-      unit.append("\n");
+      out.append("\n");
+    }
+    switch (formatStyle) {
+      case NONE:
+        appendInChunks(out, source.contents());
+        break;
+      case FAST:
+        FastFormatter.format(source.contents(), out);
+        break;
+      default:
+        appendInChunks(out, formattedSource);
+        break;
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder unit = new StringBuilder(source.contents().length() + 1024);
+    try {
+      writeTo(unit);
+    } catch (IOException e) {
+      throw new AssertionError(e);  // StringBuilder does not throw IOException
     }
-    unit.append(formatSource(source.toString()));
     return unit.toString();
   }
 
+  /**
+   * Appends {@code text} to {@code out} a chunk at a time, as {@link java.io.Writer} copies any
+   * {@link CharSequence} appended to it into a new string first.
+   */
+  private static void appendInChunks(Appendable out, CharSequence text) throws IOException {
+    for (int start = 0; start < text.length(); start += CHUNK_SIZE) {
+      out.append(text, start, Math.min(start + CHUNK_SIZE, text.length()));
+    }
+  }
+
+  /**
+   * Holds the formatter shared by every compilation in the JVM, e.g. across builds in a Gradle
+   * daemon. Only this class refers to google-java-format, so neither it nor its javac fork are
+   * loaded unless something is actually formatted with {@link FormatStyle#FULL}.
+   *
+   * <p>Formatters are immutable, so concurrent compilations can share one; it is softly
+   * referenced so it can be reclaimed under memory pressure.
+   */
+  private static final class SharedFormatter {
+    private static volatile SoftReference<Formatter> instance =
+        new SoftReference<Formatter>(null);
+
+    static String formatSource(String source) throws FormatterException {
+      Formatter shared = instance.get();
+      if (shared == null) {
+        // Racing threads may each create a formatter; any of them can be kept.
+        shared = new Formatter();
+        instance = new SoftReference<Formatter>(shared);
+      }
+      return shared.formatSource(source);
+    }
+  }
+
   @VisibleForTesting
   public static String formatSource(String source) {
     try {
-      return new Formatter().formatSource(source);
+      return SharedFormatter.formatSource(source);
     } catch (UnsupportedClassVersionError e) {
       // Formatter requires Java 7+; do no formatting in Java 6.
       return source;
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Lays out generated source in a single linear pass, as a cheap alternative to
+ * google-java-format.
+ *
+ * <p>Code generators write each line with the right indentation relative to its enclosing
+ * member, but do not know how deeply that member is nested. This pass derives indentation from
+ * brace depth instead, indents continuation lines and switch cases, moves code following an
+ * unclosed open brace onto a new line, and collapses runs of spaces and blank lines. It does not
+ * rewrap long lines or reflow javadoc.
+ */
+final class FastFormatter {
+
+  private static final int INDENT = 2;
+  private static final int CONTINUATION_INDENT = 4;
+
+  /** Returns {@code source}, re-indented. */
+  static String format(String source) {
+    StringBuilder out = new StringBuilder(source.length() + source.length() / 4);
+    try {
+      FastFormatter.format(source, out);
+    } catch (IOException e) {
+      throw new AssertionError(e);  // StringBuilder does not throw IOException
+    }
+    return out.toString();
+  }
+
+  /** Writes {@code source} to {@code out}, re-indented, a line at a time. */
+  static void format(CharSequence source, Appendable out) throws IOException {
+    FastFormatter fastFormatter = new FastFormatter(out);
+    int lineStart = 0;
+    for (int i = 0; i < source.length(); i++) {
+      if (source.charAt(i) == '\n') {
+        fastFormatter.addLine(source.subSequence(lineStart, i).toString());
+        lineStart = i + 1;
+      }
+    }
+    fastFormatter.addLine(source.subSequence(lineStart, source.length()).toString());
+  }
+
+  private final Appendable out;
+  /** The line being laid out, flushed to {@link #out} once complete. */
+  private final StringBuilder lineBuffer = new StringBuilder();
+  /** Depths at which a switch statement's case labels have been seen. */
+  private final BitSet caseBodies = new BitSet();
+  private int caseBodyCount = 0;
+  private int depth = 0;
+  private int parenDepth = 0;
+  private boolean inBlockComment = false;
+  private boolean continuation = false;
+  private boolean pendingBlankLine = false;
+  private boolean wroteLine = false;
+
+  private FastFormatter(Appendable out) {
+    this.out = out;
+  }
+
+  private void addLine(String line) throws IOException {
+    String text = line.trim();
+    if (text.isEmpty()) {
+      pendingBlankLine = wroteLine;
+      return;
+    }
+    int split = findSplit(text);
+    while (split != -1) {
+      layOut(text.substring(0, split));
+      text = text.substring(split).trim();
+      split = findSplit(text);
+    }
+    layOut(text);
+  }
+
+  /**
+   * Returns the index just after the first open brace in {@code text} that is still unclosed at
+   * the end of the line, if further code follows it, or -1 otherwise.
+   */
+  private int findSplit(String text) {
+    boolean inComment = inBlockComment;
+    int openBraces = 0;
+    int firstUnclosed = -1;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (inComment) {
+        if (c == '*' && next(text, i) == '/') {
+          inComment = false;
+          i++;
+        }
+      } else if (c == '"' || c == '\'') {
+        i = endOfLiteral(text, i);
+      } else if (c == '/' && next(text, i) == '/') {
+        break;
+      } else if (c == '/' && next(text, i) == '*') {
+        inComment = true;
+        i++;
+      } else if (c == '{') {
+        if (openBraces == 0) {
+          firstUnclosed = i;
+        }
+        openBraces++;
+      } else if (c == '}' && openBraces > 0) {
+        openBraces--;
+      }
+    }
+    if (openBraces == 0) {
+      return -1;
+    }
+    String rest = text.substring(firstUnclosed + 1).trim();
+    if (rest.isEmpty() || rest.startsWith("//") || rest.startsWith("/*")) {
+      return -1;
+    }
+    return firstUnclosed + 1;
+  }
+
+  private void layOut(String text) throws IOException {
+    boolean startsInComment = inBlockComment;
+    int leadingClosers = 0;
+    if (!startsInComment) {
+      while (leadingClosers < text.length() && text.charAt(leadingClosers) == '}') {
+        leadingClosers++;
+      }
+    }
+    int lineDepth = Math.max(depth - leadingClosers, 0);
+    int caseIndents = caseBodyCount;
+    for (int d = lineDepth + 1; d <= depth; d++) {
+      if (caseBodies.get(d)) {
+        caseIndents--;
+      }
+    }
+    boolean caseLabel = !startsInComment
+        && (text.startsWith("case ") || text.startsWith("default:")
+            || text.startsWith("default :"));
+    int indent;
+    if (startsInComment) {
+      indent = INDENT * (lineDepth + caseIndents) + (text.startsWith("*") ? 1 : 0);
+    } else if (caseLabel) {
+      if (!caseBodies.get(lineDepth)) {
+        caseBodies.set(lineDepth);
+        caseBodyCount++;
+      } else {
+        caseIndents--;
+      }
+      indent = INDENT * (lineDepth + caseIndents);
+    } else {
+      indent = INDENT * (lineDepth + caseIndents);
+      if (continuation && leadingClosers == 0) {
+        indent += CONTINUATION_INDENT;
+      }
+    }
+
+    lineBuffer.setLength(0);
+    if (pendingBlankLine) {
+      lineBuffer.append('\n');
+      pendingBlankLine = false;
+    }
+    for (int i = 0; i < indent; i++) {
+      lineBuffer.append(' ');
+    }
+
+    boolean sawCode = false;
+    boolean topLevelSpace = false;
+    int lineParens = 0;
+    char lastCode = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (inBlockComment) {
+        lineBuffer.append(c);
+        if (c == '*' && next(text, i) == '/') {
+          lineBuffer.append('/');
+          inBlockComment = false;
+          i++;
+        }
+      } else if (c == '/' && next(text, i) == '/') {
+        lineBuffer.append(text, i, text.length());
+        break;
+      } else if (c == '/' && next(text, i) == '*') {
+        lineBuffer.append("/*");
+        inBlockComment = true;
+        i++;
+      } else if (c == ' ' || c == '\t') {
+        if (lineBuffer.length() > 0 && lineBuffer.charAt(lineBuffer.length() - 1) != ' ') {
+          lineBuffer.append(' ');
+        }
+        if (lineParens == 0) {
+          topLevelSpace = true;
+        }
+      } else {
+        sawCode = true;
+        lastCode = c;
+        if (c == '"' || c == '\'') {
+          int end = endOfLiteral(text, i);
+          lineBuffer.append(text, i, end + 1);
+          i = end;
+          continue;
+        } else if (c == '{') {
+          depth++;
+        } else if (c == '}') {
+          closeBrace();
+        } else if (c == '(') {
+          parenDepth++;
+          lineParens++;
+        } else if (c == ')') {
+          parenDepth = Math.max(parenDepth - 1, 0);
+          lineParens--;
+        }
+        lineBuffer.append(c);
+      }
+    }
+    lineBuffer.append('\n');
+    out.append(lineBuffer);
+    wroteLine = true;
+
+    if (sawCode) {
+      boolean annotationOnly = text.startsWith("@") && !topLevelSpace;
+      boolean endsStatement = lastCode == ';' || lastCode == '{' || lastCode == '}'
+          || lastCode == ',' || (caseLabel && lastCode == ':');
+      continuation = (parenDepth > 0) || !(endsStatement || annotationOnly);
+    }
+  }
+
+  private void closeBrace() {
+    if (depth == 0) {
+      return;
+    }
+    if (caseBodies.get(depth)) {
+      caseBodies.clear(depth);
+      caseBodyCount--;
+    }
+    depth--;
+  }
+
+  private static char next(String text, int index) {
+    return (index + 1 < text.length()) ? text.charAt(index + 1) : 0;
+  }
+
+  /** Returns the index of the quote closing the literal starting at {@code start}. */
+  private static int endOfLiteral(String text, int start) {
+    char quote = text.charAt(start);
+    for (int i = start + 1; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == quote) {
+        return i;
+      }
+    }
+    return text.length() - 1;
+  }
+}
@@ -17,7 +17,9 @@ package org.inferred.freebuilder.processor.util;
 
 import com.google.common.base.Throwables;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.lang.reflect.Method;
 
@@ -38,12 +40,62 @@ public class FilerUtils {
       Filer filer,
       QualifiedName classToWrite,
       Element originatingElement,
-      String source) throws IOException {
+      final String source) throws IOException {
+    write(filer, classToWrite, originatingElement, new Content() {
+      @Override
+      public void writeTo(Writer writer) throws IOException {
+        writer.append(source);
+      }
+    });
+  }
+
+  /**
+   * Writes {@code unit} to the correct file for {@code classToWrite}, streaming it to the file's
+   * writer rather than first rendering the whole file to a string.
+   */
+  public static void writeCompilationUnit(
+      Filer filer,
+      QualifiedName classToWrite,
+      Element originatingElement,
+      final CompilationUnitBuilder unit) throws IOException {
+    write(filer, classToWrite, originatingElement, new Content() {
+      @Override
+      public void writeTo(Writer writer) throws IOException {
+        Writer bufferedWriter = new BufferedWriter(writer, BUFFER_SIZE);
+        unit.writeTo(bufferedWriter);
+        bufferedWriter.flush();
+      }
+    });
+  }
+
+  /** Writes {@code classFile} to the correct file for the class with binary name {@code name}. */
+  public static void writeClassFile(
+      Filer filer,
+      String name,
+      Element originatingElement,
+      byte[] classFile) throws IOException {
+    OutputStream out = filer.createClassFile(name, originatingElement).openOutputStream();
+    try {
+      out.write(classFile);
+    } finally {
+      out.close();
+    }
+  }
+
+  private interface Content {
+    void writeTo(Writer writer) throws IOException;
+  }
+
+  private static void write(
+      Filer filer,
+      QualifiedName classToWrite,
+      Element originatingElement,
+      Content content) throws IOException {
     Writer writer = filer
         .createSourceFile(classToWrite.toString(), originatingElement)
         .openWriter();
     try {
-      writer.append(source);
+      content.writeTo(writer);
     } catch (Throwable e) {
       try {
         writer.close();
@@ -64,6 +116,7 @@ public class FilerUtils {
     writer.close();
   }
 
+  private static final int BUFFER_SIZE = 8192;
   private static final Method ADD_SUPPRESSED;
 
   static {
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.List;
+import java.util.MissingFormatArgumentException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link SourceBuilder} format string, parsed once and cached.
+ *
+ * <p>Supports the subset of {@link String#format} syntax used by code generators: {@code %s},
+ * explicitly indexed {@code %1$s}, {@code %n} and {@code %%}. Format strings using anything else
+ * are passed to {@link String#format} unparsed.
+ *
+ * <p>Parsed templates are shared by every compilation in the JVM, and softly referenced so they
+ * can be reclaimed under memory pressure.
+ */
+final class FormatTemplate {
+
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+  private static final int MAX_CACHED_TEMPLATES = 10000;
+
+  /**
+   * Parsed templates, keyed by format string. A plain map rather than a Guava cache, as this class
+   * is loaded by every compilation, and Guava's cache package is not otherwise needed; the map is
+   * simply emptied if a pathological number of format strings is seen.
+   */
+  private static final ConcurrentMap<String, SoftReference<FormatTemplate>> TEMPLATES =
+      new ConcurrentHashMap<String, SoftReference<FormatTemplate>>();
+
+  /** Returns the parsed form of {@code fmt}. */
+  static FormatTemplate of(String fmt) {
+    SoftReference<FormatTemplate> reference = TEMPLATES.get(fmt);
+    FormatTemplate template = (reference == null) ? null : reference.get();
+    if (template == null) {
+      // Racing threads may each parse the template; any of them can be kept.
+      template = parse(fmt);
+      if (TEMPLATES.size() >= MAX_CACHED_TEMPLATES) {
+        TEMPLATES.clear();
+      }
+      TEMPLATES.put(fmt, new SoftReference<FormatTemplate>(template));
+    }
+    return template;
+  }
+
+  private final String fmt;
+  /** Whether {@link #fmt} only uses supported syntax; if false, the fields below are unused. */
+  private final boolean parsed;
+  /** Literal text; {@code literals[i]} precedes argument {@code argumentIndices[i]}. */
+  private final String[] literals;
+  private final int[] argumentIndices;
+  /**
+   * The number of arguments, if the template uses each exactly once and in order; otherwise -1.
+   */
+  private final int sequentialArguments;
+
+  private FormatTemplate(String fmt, boolean parsed, String[] literals, int[] argumentIndices) {
+    this.fmt = fmt;
+    this.parsed = parsed;
+    this.literals = literals;
+    this.argumentIndices = argumentIndices;
+    this.sequentialArguments = sequentialArguments(parsed, argumentIndices);
+  }
+
+  /**
+   * Returns true if this template substitutes each of {@code argumentCount} arguments exactly
+   * once, in order, meaning arguments can be written directly into the destination as they are
+   * reached, with the same result as substituting them all first.
+   */
+  boolean isSequential(int argumentCount) {
+    return sequentialArguments == argumentCount;
+  }
+
+  /** Returns the literal text preceding argument {@code index} of a sequential template. */
+  String literalBefore(int index) {
+    return literals[index];
+  }
+
+  /** Returns the literal text following the last argument of a sequential template. */
+  String trailingLiteral() {
+    return literals[literals.length - 1];
+  }
+
+  /**
+   * Appends this template to {@code destination}, substituting {@code args}, exactly as
+   * {@code destination.append(String.format(fmt, args))} would.
+   */
+  void appendTo(StringBuilder destination, Object[] args) {
+    if (!parsed) {
+      destination.append(String.format(fmt, args));
+      return;
+    }
+    for (int index : argumentIndices) {
+      if (index >= args.length) {
+        throw new MissingFormatArgumentException("%" + (index + 1) + "$s");
+      }
+    }
+    for (int i = 0; i < argumentIndices.length; i++) {
+      destination.append(literals[i]);
+      appendValue(destination, args[argumentIndices[i]]);
+    }
+    destination.append(trailingLiteral());
+  }
+
+  /** Appends {@code value} to {@code destination}, as {@code %s} would. */
+  static void appendValue(StringBuilder destination, Object value) {
+    if (value instanceof CharSequence) {
+      destination.append((CharSequence) value);
+    } else if (value instanceof Formattable) {
+      destination.append(String.format("%s", value));
+    } else {
+      destination.append(value);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return fmt;
+  }
+
+  private static FormatTemplate parse(String fmt) {
+    List<String> literals = new ArrayList<String>();
+    List<Integer> argumentIndices = new ArrayList<Integer>();
+    StringBuilder literal = new StringBuilder();
+    int nextOrdinaryIndex = 0;
+    int i = 0;
+    while (i < fmt.length()) {
+      char c = fmt.charAt(i);
+      if (c != '%') {
+        literal.append(c);
+        i++;
+        continue;
+      }
+      int conversion = i + 1;
+      int explicitIndex = 0;
+      int digitsEnd = conversion;
+      while (digitsEnd < fmt.length() && Character.isDigit(fmt.charAt(digitsEnd))) {
+        digitsEnd++;
+      }
+      if (digitsEnd > conversion && digitsEnd < fmt.length() && fmt.charAt(digitsEnd) == '$') {
+        explicitIndex = Integer.parseInt(fmt.substring(conversion, digitsEnd));
+        conversion = digitsEnd + 1;
+      }
+      char type = (conversion < fmt.length()) ? fmt.charAt(conversion) : 0;
+      if (type == 's' && explicitIndex > 0) {
+        literals.add(literal.toString());
+        literal.setLength(0);
+        argumentIndices.add(explicitIndex - 1);
+      } else if (type == 's' && conversion == i + 1) {
+        literals.add(literal.toString());
+        literal.setLength(0);
+        argumentIndices.add(nextOrdinaryIndex++);
+      } else if (type == 'n' && conversion == i + 1) {
+        literal.append(LINE_SEPARATOR);
+      } else if (type == '%' && conversion == i + 1) {
+        literal.append('%');
+      } else {
+        // Flags, widths, other conversions and malformed specifiers: leave to String.format
+        return new FormatTemplate(fmt, false, null, null);
+      }
+      i = conversion + 1;
+    }
+    literals.add(literal.toString());
+    int[] indices = new int[argumentIndices.size()];
+    for (int j = 0; j < indices.length; j++) {
+      indices[j] = argumentIndices.get(j);
+    }
+    return new FormatTemplate(fmt, true, literals.toArray(new String[literals.size()]), indices);
+  }
+
+  private static int sequentialArguments(boolean parsed, int[] argumentIndices) {
+    if (!parsed) {
+      return -1;
+    }
+    for (int i = 0; i < argumentIndices.length; i++) {
+      if (argumentIndices[i] != i) {
+        return -1;
+      }
+    }
+    return argumentIndices.length;
+  }
+}
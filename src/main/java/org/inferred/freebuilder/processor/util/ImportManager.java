@@ -15,6 +15,7 @@
  */
 package org.inferred.freebuilder.processor.util;
 
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.addAll;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static org.inferred.freebuilder.processor.util.Shading.unshadedName;
@@ -24,8 +25,8 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 
 import java.util.Collections;
 import java.util.HashSet;
@@ -67,6 +68,7 @@ class ImportManager extends SimpleTypeVisitor6<String, Void>
      * use, null otherwise.
      */
     private final SetMultimap<String, QualifiedName> implicitImports = LinkedHashMultimap.create();
+    private PackageSiblings siblings = PackageSiblings.NONE;
 
     /**
      * Adds a type which is implicitly imported into the current compilation unit.
@@ -76,27 +78,57 @@ class ImportManager extends SimpleTypeVisitor6<String, Void>
       return this;
     }
 
+    /**
+     * Adds the types in the current compilation unit's package, which are all implicitly imported.
+     *
+     * <p>The index is used as-is rather than copied, so building is proportional to the number of
+     * types added with {@link #addImplicitImport}, not the size of the package.
+     */
+    Builder addPackageSiblings(PackageSiblings siblings) {
+      checkState(this.siblings == PackageSiblings.NONE, "Package siblings already added");
+      this.siblings = siblings;
+      return this;
+    }
+
     public ImportManager build() {
       Set<String> nonConflictingImports = new LinkedHashSet<String>();
-      for (Set<QualifiedName> importGroup : Multimaps.asMap(implicitImports).values()) {
+      Set<String> shadowedSiblings = new HashSet<String>();
+      for (String simpleName : implicitImports.keySet()) {
+        Set<QualifiedName> siblingGroup = siblings.withSimpleName(simpleName);
+        Set<QualifiedName> importGroup =
+            Sets.union(implicitImports.get(simpleName), siblingGroup);
         if (importGroup.size() == 1) {
           QualifiedName implicitImport = getOnlyElement(importGroup);
           if (implicitImport.isTopLevel()) {
             nonConflictingImports.add(implicitImport.toString());
           }
+        } else {
+          for (QualifiedName sibling : siblingGroup) {
+            shadowedSiblings.add(sibling.toString());
+          }
         }
       }
-      return new ImportManager(implicitImports.keySet(), nonConflictingImports);
+      return new ImportManager(
+          siblings, implicitImports.keySet(), nonConflictingImports, shadowedSiblings);
     }
   }
 
+  private final PackageSiblings siblings;
   private final Set<String> visibleSimpleNames = new HashSet<String>();
   private final ImmutableSet<String> implicitImports;
+  /** Siblings which would otherwise be implicit imports, but conflict with another import. */
+  private final ImmutableSet<String> shadowedSiblings;
   private final Set<String> explicitImports = new TreeSet<String>();
 
-  private ImportManager(Iterable<String> visibleSimpleNames, Iterable<String> implicitImports) {
+  private ImportManager(
+      PackageSiblings siblings,
+      Iterable<String> visibleSimpleNames,
+      Iterable<String> implicitImports,
+      Iterable<String> shadowedSiblings) {
+    this.siblings = siblings;
     addAll(this.visibleSimpleNames, visibleSimpleNames);
     this.implicitImports = ImmutableSet.copyOf(implicitImports);
+    this.shadowedSiblings = ImmutableSet.copyOf(shadowedSiblings);
   }
 
   public Set<String> getClassImports() {
@@ -150,9 +182,9 @@ class ImportManager extends SimpleTypeVisitor6<String, Void>
     }
     pkg = unshadedName(pkg);
     String qualifiedName = pkg + "." + name;
-    if (implicitImports.contains(qualifiedName) || explicitImports.contains(qualifiedName)) {
+    if (isImplicitImport(qualifiedName) || explicitImports.contains(qualifiedName)) {
       return "";
-    } else if (visibleSimpleNames.contains(name.toString())) {
+    } else if (isVisible(name.toString())) {
       return pkg + ".";
     } else if (pkg.equals(JAVA_LANG_PACKAGE)) {
       return "";
@@ -163,6 +195,15 @@ class ImportManager extends SimpleTypeVisitor6<String, Void>
     }
   }
 
+  private boolean isImplicitImport(String qualifiedName) {
+    return implicitImports.contains(qualifiedName)
+        || (siblings.isImplicitImport(qualifiedName) && !shadowedSiblings.contains(qualifiedName));
+  }
+
+  private boolean isVisible(String simpleName) {
+    return visibleSimpleNames.contains(simpleName) || siblings.hasSimpleName(simpleName);
+  }
+
   @Override
   protected String defaultAction(TypeMirror mirror, Void p) {
     return mirror.toString();
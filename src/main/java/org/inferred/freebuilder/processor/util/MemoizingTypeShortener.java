@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Memoizes how a {@link TypeShortener} renders each type in a compilation unit, and that each
+ * {@link DeclaredType} rendered is valid.
+ *
+ * <p>A type shortener renders any given type the same way every time: once a type has been
+ * imported, or found to conflict with one that has, that decision is never revisited. The same
+ * handful of types are written thousands of times per file, so each is visited only once.
+ */
+class MemoizingTypeShortener implements TypeShortener {
+
+  private final TypeShortener delegate;
+  private final QualifiedNameCache qualifiedNames;
+  private final Map<TypeMirror, String> mirrors = new IdentityHashMap<TypeMirror, String>();
+  private final Map<QualifiedName, String> names = new HashMap<QualifiedName, String>();
+  private final Map<Class<?>, String> classes = new IdentityHashMap<Class<?>, String>();
+  private final Map<TypeElement, String> types = new IdentityHashMap<TypeElement, String>();
+  private long delegateNanos = 0;
+
+  MemoizingTypeShortener(TypeShortener delegate, QualifiedNameCache qualifiedNames) {
+    this.delegate = delegate;
+    this.qualifiedNames = qualifiedNames;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalArgumentException if {@code mirror} is a {@link DeclaredType} that cannot be
+   *     written, e.g. because one of its type arguments is an error type
+   */
+  @Override
+  public String shorten(TypeMirror mirror) {
+    String shortened = mirrors.get(mirror);
+    if (shortened == null) {
+      if (mirror.getKind() == TypeKind.DECLARED) {
+        checkArgument(
+            !new IsInvalidTypeVisitor().visit(mirror), "Cannot write unknown type %s", mirror);
+      }
+      long start = System.nanoTime();
+      shortened = delegate.shorten(mirror);
+      delegateNanos += System.nanoTime() - start;
+      mirrors.put(mirror, shortened);
+    }
+    return shortened;
+  }
+
+  @Override
+  public String shorten(QualifiedName type) {
+    String shortened = names.get(type);
+    if (shortened == null) {
+      long start = System.nanoTime();
+      shortened = delegate.shorten(type);
+      delegateNanos += System.nanoTime() - start;
+      names.put(type, shortened);
+    }
+    return shortened;
+  }
+
+  /** Returns {@code shorten(QualifiedName.of(cls))}. */
+  public String shorten(Class<?> cls) {
+    String shortened = classes.get(cls);
+    if (shortened == null) {
+      shortened = shorten(qualifiedNames.of(cls));
+      classes.put(cls, shortened);
+    }
+    return shortened;
+  }
+
+  /** Returns {@code shorten(QualifiedName.of(type))}. */
+  public String shorten(TypeElement type) {
+    String shortened = types.get(type);
+    if (shortened == null) {
+      shortened = shorten(qualifiedNames.of(type));
+      types.put(type, shortened);
+    }
+    return shortened;
+  }
+
+  /** Returns the time spent in the delegate, i.e. resolving imports, in nanoseconds. */
+  long delegateNanos() {
+    return delegateNanos;
+  }
+}
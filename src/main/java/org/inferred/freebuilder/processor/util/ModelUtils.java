@@ -15,8 +15,6 @@
  */
 package org.inferred.freebuilder.processor.util;
 
-import static javax.lang.model.util.ElementFilter.methodsIn;
-
 import com.google.common.base.Optional;
 
 import java.lang.annotation.Annotation;
@@ -124,17 +122,6 @@ public class ModelUtils {
     }
   }
 
-  /** Returns whether {@code type} overrides method {@code methodName(params)}. */
-  public static boolean overrides(
-      TypeElement type, Types types, String methodName, TypeMirror... params) {
-    for (ExecutableElement method : methodsIn(type.getEnclosedElements())) {
-      if (signatureMatches(method, types, methodName, params)) {
-        return true;
-      }
-    }
-    return false;
-  }
-
   /**
    * Returns true if a method with a variable number of {@code elementType} arguments needs a
    * {@code &#64;SafeVarargs} annotation to avoid compiler warnings in Java 7+.
@@ -188,24 +175,6 @@ public class ModelUtils {
     }, null);
   }
 
-  private static boolean signatureMatches(
-      ExecutableElement method, Types types, String name, TypeMirror... params) {
-    if (!method.getSimpleName().contentEquals(name)) {
-      return false;
-    }
-    if (method.getParameters().size() != params.length) {
-      return false;
-    }
-    for (int i = 0; i < params.length; ++i) {
-      TypeMirror expected = types.erasure(params[i]);
-      TypeMirror actual = types.erasure(method.getParameters().get(i).asType());
-      if (!types.isSameType(expected, actual)) {
-        return false;
-      }
-    }
-    return true;
-  }
-
   private static final SimpleElementVisitor6<Optional<TypeElement>, ?> TYPE_ELEMENT_VISITOR =
       new SimpleElementVisitor6<Optional<TypeElement>, Void>() {
 
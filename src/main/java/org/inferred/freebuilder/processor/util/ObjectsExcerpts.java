@@ -1,5 +1,6 @@
 package org.inferred.freebuilder.processor.util;
 
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.JAVA_8;
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.SOURCE_LEVEL;
 
 import javax.lang.model.type.TypeKind;
@@ -34,6 +35,15 @@ public class ObjectsExcerpts {
     return new EqualsExcerpt(false, a, b, kind, nullability);
   }
 
+  /**
+   * Returns an Excerpt equivalent to {@code Objects.hashCode(value)}, without boxing primitives.
+   *
+   * <p>{@code kind} and {@code nullability} are needed to generate the most idiomatic equivalent.
+   */
+  public static Excerpt hashCode(Object value, TypeKind kind, Nullability nullability) {
+    return new HashCodeExcerpt(value, kind, nullability);
+  }
+
   private static class EqualsExcerpt extends Excerpt {
 
     private final boolean areEqual;
@@ -92,7 +102,93 @@ public class ObjectsExcerpts {
 
   }
 
+  private static class HashCodeExcerpt extends Excerpt {
+
+    private final Object value;
+    private final TypeKind kind;
+    private final Nullability nullability;
+
+    HashCodeExcerpt(Object value, TypeKind kind, Nullability nullability) {
+      this.value = value;
+      this.kind = kind;
+      this.nullability = nullability;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      if (kind.isPrimitive()) {
+        if (code.feature(SOURCE_LEVEL).compareTo(JAVA_8) >= 0) {
+          code.add("%s.hashCode(%s)", boxedType(kind), value);
+        } else {
+          addPrimitiveHashCode(code);
+        }
+      } else if (nullability.isNullable()) {
+        QualifiedName javaUtilObjects = code.feature(SOURCE_LEVEL).javaUtilObjects().orNull();
+        if (javaUtilObjects != null) {
+          code.add("%s.hashCode(%s)", javaUtilObjects, value);
+        } else {
+          code.add("(%1$s == null ? 0 : %1$s.hashCode())", value);
+        }
+      } else {
+        code.add("%s.hashCode()", value);
+      }
+    }
+
+    /** Adds the hash code of the boxed primitive, as calculated before Java 8. */
+    private void addPrimitiveHashCode(SourceBuilder code) {
+      switch (kind) {
+        case BOOLEAN:
+          code.add("(%s ? 1231 : 1237)", value);
+          break;
+
+        case LONG:
+          code.add("(int) (%1$s ^ (%1$s >>> 32))", value);
+          break;
+
+        case FLOAT:
+          code.add("%s.floatToIntBits(%s)", Float.class, value);
+          break;
+
+        case DOUBLE:
+          code.add("(int) (%1$s.doubleToLongBits(%2$s) ^ (%1$s.doubleToLongBits(%2$s) >>> 32))",
+              Double.class, value);
+          break;
 
+        default:
+          code.add("%s", value);
+      }
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("value", value);
+      fields.add("kind", kind);
+      fields.add("nullable", nullability);
+    }
+  }
+
+  private static Class<?> boxedType(TypeKind kind) {
+    switch (kind) {
+      case BOOLEAN:
+        return Boolean.class;
+      case BYTE:
+        return Byte.class;
+      case SHORT:
+        return Short.class;
+      case INT:
+        return Integer.class;
+      case LONG:
+        return Long.class;
+      case CHAR:
+        return Character.class;
+      case FLOAT:
+        return Float.class;
+      case DOUBLE:
+        return Double.class;
+      default:
+        throw new IllegalArgumentException("Not a primitive type: " + kind);
+    }
+  }
 
   private ObjectsExcerpts() {}
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util;
+
+import static com.google.common.collect.Iterables.getOnlyElement;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+
+import java.util.Collection;
+
+/**
+ * The types in a package, indexed by simple name, which every compilation unit generated into that
+ * package implicitly imports.
+ *
+ * <p>Immutable, so one index can be shared by every compilation unit generated into the package in
+ * a round, rather than each of them scanning the package again.
+ */
+final class PackageSiblings {
+
+  static final PackageSiblings NONE = new PackageSiblings(ImmutableSet.<QualifiedName>of());
+
+  private final ImmutableSet<QualifiedName> types;
+  private final ImmutableSetMultimap<String, QualifiedName> typesBySimpleName;
+  /** Qualified names of the top-level types whose simple name no other sibling shares. */
+  private final ImmutableSet<String> implicitImports;
+
+  PackageSiblings(ImmutableSet<QualifiedName> types) {
+    this.types = types;
+    ImmutableSetMultimap.Builder<String, QualifiedName> typesBySimpleName =
+        ImmutableSetMultimap.builder();
+    for (QualifiedName type : types) {
+      typesBySimpleName.put(type.getSimpleName(), type);
+    }
+    this.typesBySimpleName = typesBySimpleName.build();
+    ImmutableSet.Builder<String> implicitImports = ImmutableSet.builder();
+    for (Collection<QualifiedName> group : this.typesBySimpleName.asMap().values()) {
+      if (group.size() == 1) {
+        QualifiedName type = getOnlyElement(group);
+        if (type.isTopLevel()) {
+          implicitImports.add(type.toString());
+        }
+      }
+    }
+    this.implicitImports = implicitImports.build();
+  }
+
+  /** Returns every type in the package. */
+  ImmutableSet<QualifiedName> types() {
+    return types;
+  }
+
+  /** Returns the types in the package named {@code simpleName}. */
+  ImmutableSet<QualifiedName> withSimpleName(String simpleName) {
+    return typesBySimpleName.get(simpleName);
+  }
+
+  /** Returns true if a type in the package is named {@code simpleName}. */
+  boolean hasSimpleName(String simpleName) {
+    return typesBySimpleName.containsKey(simpleName);
+  }
+
+  /**
+   * Returns true if {@code qualifiedName} is a top-level type in the package whose simple name is
+   * not shared by any other type in the package.
+   */
+  boolean isImplicitImport(String qualifiedName) {
+    return implicitImports.contains(qualifiedName);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+
+/**
+ * Memoizes {@link QualifiedName#of(Class)}, {@link QualifiedName#of(TypeElement)} and the types
+ * in each package, so the compilation units generated in a processing round can share the results.
+ *
+ * <p>Package contents only change between rounds, so a new cache must be used for each round.
+ *
+ * <p>Not thread-safe: source is generated on the processor thread.
+ */
+public class QualifiedNameCache {
+
+  private final Map<Class<?>, QualifiedName> classes =
+      new IdentityHashMap<Class<?>, QualifiedName>();
+  private final Map<TypeElement, QualifiedName> types =
+      new IdentityHashMap<TypeElement, QualifiedName>();
+  private final Map<PackageElement, PackageSiblings> packages =
+      new IdentityHashMap<PackageElement, PackageSiblings>();
+
+  /** Returns {@code QualifiedName.of(cls)}, computed once per class. */
+  public QualifiedName of(Class<?> cls) {
+    QualifiedName name = classes.get(cls);
+    if (name == null) {
+      name = QualifiedName.of(cls);
+      classes.put(cls, name);
+    }
+    return name;
+  }
+
+  /** Returns {@code QualifiedName.of(type)}, computed once per type. */
+  public QualifiedName of(TypeElement type) {
+    QualifiedName name = types.get(type);
+    if (name == null) {
+      name = QualifiedName.of(type);
+      types.put(type, name);
+    }
+    return name;
+  }
+
+  /** Returns the types in {@code pkg}, indexed by simple name, scanning the package only once. */
+  PackageSiblings siblings(PackageElement pkg) {
+    PackageSiblings siblings = packages.get(pkg);
+    if (siblings == null) {
+      ImmutableSet.Builder<QualifiedName> types = ImmutableSet.builder();
+      for (TypeElement type : ElementFilter.typesIn(pkg.getEnclosedElements())) {
+        types.add(of(type));
+      }
+      siblings = new PackageSiblings(types.build());
+      packages.put(pkg, siblings);
+    }
+    return siblings;
+  }
+}
@@ -26,11 +26,11 @@ import java.util.Set;
 
 public abstract class Scope {
 
-  enum Level {
+  public enum Level {
     FILE, METHOD;
   }
 
-  interface Element<T> {
+  public interface Element<T> {
     Level level();
   }
 
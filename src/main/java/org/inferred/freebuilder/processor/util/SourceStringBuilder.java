@@ -15,7 +15,6 @@
  */
 package org.inferred.freebuilder.processor.util;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static org.inferred.freebuilder.processor.util.AnnotationSource.addSource;
 
 import org.inferred.freebuilder.processor.util.Scope.FileScope;
@@ -29,7 +28,6 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
-import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 
@@ -38,7 +36,7 @@ import javax.lang.model.type.TypeMirror;
  */
 public class SourceStringBuilder implements SourceBuilder {
 
-  private final TypeShortener shortener;
+  private final MemoizingTypeShortener shortener;
   private final StringBuilder destination = new StringBuilder();
   private final FeatureSet features;
   private final Scope scope;
@@ -61,6 +59,10 @@ public class SourceStringBuilder implements SourceBuilder {
   }
 
   SourceStringBuilder(TypeShortener shortener, FeatureSet features, Scope scope) {
+    this(new MemoizingTypeShortener(shortener, new QualifiedNameCache()), features, scope);
+  }
+
+  SourceStringBuilder(MemoizingTypeShortener shortener, FeatureSet features, Scope scope) {
     this.shortener = shortener;
     this.features = features;
     this.scope = scope;
@@ -74,17 +76,30 @@ public class SourceStringBuilder implements SourceBuilder {
 
   @Override
   public SourceStringBuilder add(String fmt, Object... args) {
-    Object[] substituteArgs = new Object[args.length];
-    for (int i = 0; i < args.length; i++) {
-      substituteArgs[i] = substitute(args[i]);
+    FormatTemplate template = FormatTemplate.of(fmt);
+    if (template.isSequential(args.length)) {
+      // Write each argument straight into the destination. As they are written in order, each
+      // exactly once, types are shortened in the same order as if substituted up front.
+      for (int i = 0; i < args.length; i++) {
+        destination.append(template.literalBefore(i));
+        append(args[i]);
+      }
+      destination.append(template.trailingLiteral());
+    } else {
+      Object[] substituteArgs = new Object[args.length];
+      for (int i = 0; i < args.length; i++) {
+        substituteArgs[i] = substitute(args[i]);
+      }
+      template.appendTo(destination, substituteArgs);
     }
-    destination.append(String.format(fmt, substituteArgs));
     return this;
   }
 
   @Override
   public SourceStringBuilder addLine(String fmt, Object... args) {
-    return add(fmt + "\n", args);
+    add(fmt, args);
+    destination.append('\n');
+    return this;
   }
 
   @Override
@@ -107,12 +122,33 @@ public class SourceStringBuilder implements SourceBuilder {
     return scope;
   }
 
+  /**
+   * Returns a live view of the source code written so far, without copying it. The view must not
+   * be used once further source is added.
+   */
+  CharSequence contents() {
+    return destination;
+  }
+
   /** Returns the source code written so far. */
   @Override
   public String toString() {
     return destination.toString();
   }
 
+  /** Appends {@code arg} as {@link #add} would substitute it, without intermediate strings. */
+  private void append(Object arg) {
+    if (arg instanceof Excerpt) {
+      ((Excerpt) arg).addTo(this);
+    } else if (arg instanceof AnnotationMirror) {
+      addSource(this, (AnnotationMirror) arg);
+    } else if (arg instanceof SourceStringBuilder) {
+      destination.append(((SourceStringBuilder) arg).destination);
+    } else {
+      FormatTemplate.appendValue(destination, substitute(arg));
+    }
+  }
+
   private Object substitute(Object arg) {
     if (arg instanceof Excerpt) {
       SourceBuilder excerptBuilder = subBuilder();
@@ -125,16 +161,14 @@ public class SourceStringBuilder implements SourceBuilder {
       if (kind == ElementKind.PACKAGE) {
         return ((PackageElement) arg).getQualifiedName();
       } else if (kind.isClass() || kind.isInterface()) {
-        return shortener.shorten(QualifiedName.of((TypeElement) arg));
+        return shortener.shorten((TypeElement) arg);
       } else {
         return arg;
       }
     } else if (arg instanceof Class<?>) {
-      return shortener.shorten(QualifiedName.of((Class<?>) arg));
+      return shortener.shorten((Class<?>) arg);
     } else if ((arg instanceof TypeMirror) && (((TypeMirror) arg).getKind() == TypeKind.DECLARED)) {
-      DeclaredType mirror = (DeclaredType) arg;
-      checkArgument(isLegalType(mirror), "Cannot write unknown type %s", mirror);
-      return shortener.shorten(mirror);
+      return shortener.shorten((TypeMirror) arg);
     } else if (arg instanceof QualifiedName) {
       return shortener.shorten((QualifiedName) arg);
     } else if (arg instanceof AnnotationMirror) {
@@ -145,8 +179,4 @@ public class SourceStringBuilder implements SourceBuilder {
       return arg;
     }
   }
-
-  private static boolean isLegalType(TypeMirror mirror) {
-    return !(new IsInvalidTypeVisitor().visit(mirror));
-  }
 }
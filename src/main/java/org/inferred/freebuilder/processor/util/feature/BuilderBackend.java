@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util.feature;
+
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+
+import java.util.Locale;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * How builders are emitted, configured with the {@code -Afreebuilder.backend} processor option.
+ * Defaults to {@link #SOURCE}.
+ */
+public enum BuilderBackend implements Feature<BuilderBackend> {
+
+  /** Builders are written as Java source, for javac to compile. */
+  SOURCE("Source builders"),
+  /**
+   * Experimental: builders are written directly as class files, skipping source rendering,
+   * formatting and compilation. Requires javac 9 or later. Only simple types are supported;
+   * builders for any other type are still written as source.
+   */
+  CLASS_FILE("Class file builders");
+
+  /**
+   * Name of the processor option that selects the backend: {@code source} or
+   * {@code classfile}.
+   */
+  public static final String OPTION = "freebuilder.backend";
+
+  /**
+   * Constant to pass to {@link SourceBuilder#feature(FeatureType)} to get the current
+   * {@link BuilderBackend}.
+   */
+  public static final FeatureType<BuilderBackend> BUILDER_BACKEND =
+      new FeatureType<BuilderBackend>() {
+
+        @Override
+        protected BuilderBackend testDefault(FeatureSet features) {
+          return SOURCE;
+        }
+
+        @Override
+        protected BuilderBackend forEnvironment(ProcessingEnvironment env, FeatureSet features) {
+          String option = env.getOptions().get(OPTION);
+          if (option == null) {
+            return SOURCE;
+          }
+          String value = option.trim().toLowerCase(Locale.ENGLISH);
+          if (value.equals("source")) {
+            return SOURCE;
+          } else if (value.equals("classfile")) {
+            if (!loadsGeneratedClassFiles()) {
+              env.getMessager().printMessage(
+                  Kind.WARNING,
+                  "-A" + OPTION + "=classfile requires javac 9 or later; generating source");
+              return SOURCE;
+            }
+            return CLASS_FILE;
+          }
+          env.getMessager().printMessage(
+              Kind.WARNING,
+              "Unrecognized value for -A" + OPTION + ": '" + option
+                  + "' (expected source or classfile); generating source");
+          return SOURCE;
+        }
+      };
+
+  /**
+   * Returns whether the compiler can resolve source references to class files written by a
+   * processor. javac 8 and earlier enter them in later rounds, but not in the scope of their
+   * package, so the user's {@code Builder} cannot extend one.
+   */
+  private static boolean loadsGeneratedClassFiles() {
+    return SourceVersion.latestSupported().ordinal() > 8;
+  }
+
+  private final String humanReadableFormat;
+
+  BuilderBackend(String humanReadableFormat) {
+    this.humanReadableFormat = humanReadableFormat;
+  }
+
+  @Override
+  public String toString() {
+    return humanReadableFormat;
+  }
+}
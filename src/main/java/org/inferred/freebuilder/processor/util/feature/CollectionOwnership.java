@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util.feature;
+
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+
+import java.util.Locale;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Whether {@code build()} copies a builder's collections into the value, or transfers them,
+ * configured with the {@code -Afreebuilder.transferCollections} processor option. Defaults to
+ * {@link #COPY_ON_BUILD}.
+ *
+ * <p>Transferring suits builders that are filled with many elements, built once, and discarded,
+ * where the copy is pure overhead.
+ */
+public enum CollectionOwnership implements Feature<CollectionOwnership> {
+
+  /** {@code build()} copies each collection into a new immutable collection. */
+  COPY_ON_BUILD("Collections copied on build"),
+  /**
+   * {@code build()} hands each mutable {@code List} and {@code Set} to the value behind an
+   * unmodifiable view, and the builder copies it before its next mutation. Values may then hold
+   * spare capacity. Collections declared with an immutable type are still copied, as are all
+   * collections if Guava is unavailable.
+   */
+  TRANSFER_ON_BUILD("Collections transferred on build");
+
+  /**
+   * Name of the processor option that selects {@link #TRANSFER_ON_BUILD}. Setting it with no
+   * value, or to {@code true}, enables it.
+   */
+  public static final String OPTION = "freebuilder.transferCollections";
+
+  /**
+   * Constant to pass to {@link SourceBuilder#feature(FeatureType)} to get the current
+   * {@link CollectionOwnership}.
+   */
+  public static final FeatureType<CollectionOwnership> COLLECTION_OWNERSHIP =
+      new FeatureType<CollectionOwnership>() {
+
+        @Override
+        protected CollectionOwnership testDefault(FeatureSet features) {
+          return COPY_ON_BUILD;
+        }
+
+        @Override
+        protected CollectionOwnership forEnvironment(
+            ProcessingEnvironment env, FeatureSet features) {
+          if (!env.getOptions().containsKey(OPTION)) {
+            return COPY_ON_BUILD;
+          }
+          String option = env.getOptions().get(OPTION);
+          String value = (option == null) ? "" : option.trim().toLowerCase(Locale.ENGLISH);
+          if (value.isEmpty() || value.equals("true")) {
+            return TRANSFER_ON_BUILD;
+          } else if (value.equals("false")) {
+            return COPY_ON_BUILD;
+          }
+          env.getMessager().printMessage(
+              Kind.WARNING,
+              "Unrecognized value for -A" + OPTION + ": '" + option
+                  + "' (expected true or false); copying collections on build");
+          return COPY_ON_BUILD;
+        }
+      };
+
+  private final String humanReadableFormat;
+
+  CollectionOwnership(String humanReadableFormat) {
+    this.humanReadableFormat = humanReadableFormat;
+  }
+
+  public boolean transfersOnBuild() {
+    return this == TRANSFER_ON_BUILD;
+  }
+
+  @Override
+  public String toString() {
+    return humanReadableFormat;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util.feature;
+
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+
+import java.util.Locale;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * How generated source is laid out before being written, configured with the
+ * {@code -Afreebuilder.format=none|fast|full} processor option. Defaults to {@link #FULL}.
+ */
+public enum FormatStyle implements Feature<FormatStyle> {
+
+  /** Source is written exactly as generated. */
+  NONE("none"),
+  /** Source is re-indented in a single linear pass; lines are not rewrapped. */
+  FAST("fast"),
+  /** Source is formatted with google-java-format. */
+  FULL("full");
+
+  /** Name of the processor option that selects the format style. */
+  public static final String OPTION = "freebuilder.format";
+
+  /**
+   * Constant to pass to {@link SourceBuilder#feature(FeatureType)} to get the current
+   * {@link FormatStyle}.
+   */
+  public static final FeatureType<FormatStyle> FORMAT_STYLE = new FeatureType<FormatStyle>() {
+
+    @Override
+    protected FormatStyle testDefault(FeatureSet features) {
+      return FULL;
+    }
+
+    @Override
+    protected FormatStyle forEnvironment(ProcessingEnvironment env, FeatureSet features) {
+      String option = env.getOptions().get(OPTION);
+      if (option == null) {
+        return FULL;
+      }
+      String value = option.trim().toLowerCase(Locale.ENGLISH);
+      for (FormatStyle style : FormatStyle.values()) {
+        if (style.optionValue.equals(value)) {
+          return style;
+        }
+      }
+      env.getMessager().printMessage(
+          Kind.WARNING,
+          "Unrecognized value for -A" + OPTION + ": '" + option
+              + "' (expected none, fast or full); using full");
+      return FULL;
+    }
+  };
+
+  private final String optionValue;
+
+  FormatStyle(String optionValue) {
+    this.optionValue = optionValue;
+  }
+
+  @Override
+  public String toString() {
+    return "Format " + optionValue;
+  }
+}
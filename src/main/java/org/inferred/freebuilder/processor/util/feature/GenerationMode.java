@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util.feature;
+
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+
+import java.util.Locale;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Whether complete builders are generated, or only their API, configured with the
+ * {@code -Afreebuilder.abiOnly} processor option. Defaults to {@link #FULL}.
+ *
+ * <p>API-only builders suit header compilation, where downstream code is compiled against the
+ * signatures of a module's classes before their implementations exist.
+ */
+public enum GenerationMode implements Feature<GenerationMode> {
+
+  /** Builders are generated in full. */
+  FULL("Full builders"),
+  /**
+   * Builders keep every method signature, but every method throws
+   * {@link UnsupportedOperationException}, and fields and nested types, including the value types,
+   * are omitted.
+   */
+  ABI_ONLY("ABI-only builders");
+
+  /**
+   * Name of the processor option that selects {@link #ABI_ONLY} generation. Setting it with no
+   * value, or to {@code true}, enables it.
+   */
+  public static final String OPTION = "freebuilder.abiOnly";
+
+  /**
+   * Constant to pass to {@link SourceBuilder#feature(FeatureType)} to get the current
+   * {@link GenerationMode}.
+   */
+  public static final FeatureType<GenerationMode> GENERATION_MODE =
+      new FeatureType<GenerationMode>() {
+
+        @Override
+        protected GenerationMode testDefault(FeatureSet features) {
+          return FULL;
+        }
+
+        @Override
+        protected GenerationMode forEnvironment(ProcessingEnvironment env, FeatureSet features) {
+          if (!env.getOptions().containsKey(OPTION)) {
+            return FULL;
+          }
+          String option = env.getOptions().get(OPTION);
+          String value = (option == null) ? "" : option.trim().toLowerCase(Locale.ENGLISH);
+          if (value.isEmpty() || value.equals("true")) {
+            return ABI_ONLY;
+          } else if (value.equals("false")) {
+            return FULL;
+          }
+          env.getMessager().printMessage(
+              Kind.WARNING,
+              "Unrecognized value for -A" + OPTION + ": '" + option
+                  + "' (expected true or false); generating full builders");
+          return FULL;
+        }
+      };
+
+  private final String humanReadableFormat;
+
+  GenerationMode(String humanReadableFormat) {
+    this.humanReadableFormat = humanReadableFormat;
+  }
+
+  public boolean isAbiOnly() {
+    return this == ABI_ONLY;
+  }
+
+  @Override
+  public String toString() {
+    return humanReadableFormat;
+  }
+}
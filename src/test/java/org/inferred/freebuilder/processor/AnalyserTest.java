@@ -950,6 +950,134 @@ public class AnalyserTest {
     assertThat(messager.getMessagesByElement().asMap()).isEmpty();
   }
 
+  @Test
+  public void memoizedHashCodeAndToString() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract String getName();",
+        "  @org.inferred.freebuilder.Memoized @Override public abstract int hashCode();",
+        "  @org.inferred.freebuilder.Memoized @Override public abstract String toString();",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertThat(metadata.getMemoizedMethods())
+        .containsExactly(StandardMethod.HASH_CODE, StandardMethod.TO_STRING);
+    assertThat(metadata.getStandardMethodUnderrides()).isEmpty();
+    assertThat(messager.getMessagesByElement().asMap()).isEmpty();
+  }
+
+  @Test
+  public void memoizedEquals() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  @org.inferred.freebuilder.Memoized @Override",
+        "  public abstract boolean equals(Object obj);",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertThat(metadata.getMemoizedMethods()).isEmpty();
+    assertThat(messager.getMessagesByElement().asMap())
+        .containsEntry("equals", ImmutableList.of(
+            "[ERROR] @Memoized can only be applied to hashCode and toString"));
+  }
+
+  @Test
+  public void memoizedUnderriddenHashCode() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  @Override public boolean equals(Object obj) {",
+        "    return (obj instanceof DataType);",
+        "  }",
+        "  @org.inferred.freebuilder.Memoized @Override public int hashCode() {",
+        "    return DataType.class.hashCode();",
+        "  }",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertThat(metadata.getMemoizedMethods()).isEmpty();
+    assertThat(messager.getMessagesByElement().asMap())
+        .containsEntry("hashCode", ImmutableList.of(
+            "[ERROR] @Memoized methods must be abstract, to be implemented by FreeBuilder"));
+  }
+
+  @Test
+  public void interned() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "@org.inferred.freebuilder.Interned",
+        "public interface DataType {",
+        "  String getName();",
+        "  class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertTrue(metadata.isInterned());
+    assertThat(messager.getMessagesByElement().asMap()).isEmpty();
+  }
+
+  @Test
+  public void internedGwtCompatibleType() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "@org.inferred.freebuilder.Interned",
+        "@" + GwtCompatible.class.getName(),
+        "public interface DataType {",
+        "  String getName();",
+        "  class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertFalse(metadata.isInterned());
+    assertThat(messager.getMessagesByElement().asMap())
+        .containsEntry("DataType", ImmutableList.of(
+            "[ERROR] @Interned types cannot be @GwtCompatible"));
+  }
+
+  @Test
+  public void persistentCollectionsOnSetProperty() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public interface DataType {",
+        "  @org.inferred.freebuilder.PersistentCollections java.util.Set<String> getNames();",
+        "  class Builder extends DataType_Builder {}",
+        "}");
+
+    analyser.analyse(dataType);
+
+    assertThat(messager.getMessagesByElement().asMap())
+        .containsEntry("getNames", ImmutableList.of(
+            "[ERROR] @PersistentCollections is only supported on List and Collection properties"));
+  }
+
+  @Test
+  public void persistentCollectionsGwtCompatibleType() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "@org.inferred.freebuilder.PersistentCollections",
+        "@" + GwtCompatible.class.getName(),
+        "public interface DataType {",
+        "  java.util.List<String> getNames();",
+        "  class Builder extends DataType_Builder {}",
+        "}");
+
+    analyser.analyse(dataType);
+
+    assertThat(messager.getMessagesByElement().asMap())
+        .containsEntry("DataType", ImmutableList.of(
+            "[ERROR] @PersistentCollections cannot be used on @GwtCompatible types"));
+  }
+
   @Test
   public void privateNestedType() {
     TypeElement privateType = (TypeElement) model.newElementWithMarker(
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.reflect.TypeToken;
+
+import org.inferred.freebuilder.processor.util.testing.ModelRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+@RunWith(JUnit4.class)
+public class BuilderMethodIndexTest {
+
+  @ClassRule public static ModelRule model = new ModelRule();
+
+  @Test
+  public void testOverrides() {
+    TypeElement builder = model.newType(
+        "package com.example;",
+        "public class Builder {",
+        "  public Builder addNames(String element) { return this; }",
+        "  public Builder addNames(String... elements) { return this; }",
+        "  public Builder putValues(Integer key, java.util.List<String> value) { return this; }",
+        "  public Builder clear() { return this; }",
+        "}");
+    Types types = model.typeUtils();
+    BuilderMethodIndex builderMethodIndex = BuilderMethodIndex.of(builder, types);
+    TypeMirror string = model.typeMirror(String.class);
+    TypeMirror integer = model.typeMirror(Integer.class);
+
+    assertThat(builderMethodIndex.overrides("addNames", string)).isTrue();
+    assertThat(builderMethodIndex.overrides("addNames", types.getArrayType(string))).isTrue();
+    assertThat(builderMethodIndex.overrides("addNames", integer)).isFalse();
+    assertThat(builderMethodIndex.overrides("addNames")).isFalse();
+    assertThat(builderMethodIndex.overrides("putValues", integer,
+        model.typeMirror(new TypeToken<List<Integer>>() {}))).isTrue();
+    assertThat(builderMethodIndex.overrides("putValues", string, model.typeMirror(List.class)))
+        .isFalse();
+    assertThat(builderMethodIndex.overrides("clear")).isTrue();
+    assertThat(builderMethodIndex.overrides("build")).isFalse();
+  }
+}
@@ -171,22 +171,22 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      if (age != other.age) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return age == other.age && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -375,16 +375,22 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return age == other.age && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -566,22 +572,22 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      if (age != other.age) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return age == other.age && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -715,27 +721,38 @@ public class DefaultedPropertiesSourceTest {
         "  }",
         "",
         "  private enum Property {",
-        "    NAME(\"name\"),",
-        "    SHOE_SIZE(\"shoeSize\"),",
+        "    NAME(\"name\", 0),",
+        "    SHOE_SIZE(\"shoeSize\", 1),",
         "    ;",
         "",
         "    private final String name;",
+        "    private final int bit;",
         "",
-        "    private Property(String name) {",
+        "    private Property(String name, int bit) {",
         "      this.name = name;",
+        "      this.bit = bit;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    private static EnumSet<Property> unset(int mask) {",
+        "      EnumSet<Property> unset = EnumSet.noneOf(Property.class);",
+        "      for (Property property : values()) {",
+        "        if ((mask & (1 << property.bit)) != 0) {",
+        "          unset.add(property);",
+        "        }",
+        "      }",
+        "      return unset;",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
         "  private int shoeSize;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -748,7 +765,7 @@ public class DefaultedPropertiesSourceTest {
         "      throw new NullPointerException();",
         "    }",
         "    this.name = name;",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -758,10 +775,9 @@ public class DefaultedPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String getName() {",
-        "    if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "    if ((_unsetProperties & 0x1) != 0) {",
         "      throw new IllegalStateException(\"name not set\");",
         "    }",
-
         "    return name;",
         "  }",
         "",
@@ -787,7 +803,7 @@ public class DefaultedPropertiesSourceTest {
         "   */",
         "  public Person.Builder setShoeSize(int shoeSize) {",
         "    this.shoeSize = shoeSize;",
-        "    _unsetProperties.remove(Person_Builder.Property.SHOE_SIZE);",
+        "    _unsetProperties &= ~0x2;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -797,7 +813,7 @@ public class DefaultedPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int getShoeSize() {",
-        "    if (_unsetProperties.contains(Person_Builder.Property.SHOE_SIZE)) {",
+        "    if ((_unsetProperties & 0x2) != 0) {",
         "      throw new IllegalStateException(\"shoeSize not set\");",
         "    }",
         "    return shoeSize;",
@@ -806,15 +822,15 @@ public class DefaultedPropertiesSourceTest {
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
         "    if (value.getAge() != _defaults.getAge()) {",
         "      setAge(value.getAge());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.SHOE_SIZE)",
-        "        || value.getShoeSize() != _defaults.getShoeSize()) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || value.getShoeSize() != "
+            + "_defaults.getShoeSize()) {",
         "      setShoeSize(value.getShoeSize());",
         "    }",
         "    return (Person.Builder) this;",
@@ -829,16 +845,16 @@ public class DefaultedPropertiesSourceTest {
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
         "    if (template.getAge() != _defaults.getAge()) {",
         "      setAge(template.getAge());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.SHOE_SIZE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.SHOE_SIZE)",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0",
         "            || template.getShoeSize() != _defaults.getShoeSize())) {",
         "      setShoeSize(template.getShoeSize());",
         "    }",
@@ -851,8 +867,7 @@ public class DefaultedPropertiesSourceTest {
         "    name = _defaults.name;",
         "    age = _defaults.age;",
         "    shoeSize = _defaults.shoeSize;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -862,8 +877,9 @@ public class DefaultedPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    if (!_unsetProperties.isEmpty()) {",
-        "      throw new IllegalStateException(\"Not set: \" + _unsetProperties);",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.unset(_unsetProperties));",
         "    }",
         "    return new Person_Builder.Value(this);",
         "  }",
@@ -914,25 +930,23 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      if (age != other.age) {",
-        "        return false;",
-        "      }",
-        "      if (shoeSize != other.shoeSize) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return age == other.age && shoeSize == other.shoeSize && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age, shoeSize});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      result = 31 * result + shoeSize;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -946,18 +960,18 @@ public class DefaultedPropertiesSourceTest {
         "    private final String name;",
         "    private final int age;",
         "    private final int shoeSize;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
         "      this.shoeSize = builder.shoeSize;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -970,7 +984,7 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public int getShoeSize() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.SHOE_SIZE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"shoeSize not set\");",
         "      }",
         "      return shoeSize;",
@@ -991,7 +1005,7 @@ public class DefaultedPropertiesSourceTest {
         "      if (shoeSize != other.shoeSize) {",
         "        return false;",
         "      }",
-        "      return _unsetProperties.equals(other._unsetProperties);",
+        "      return _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
@@ -1002,12 +1016,12 @@ public class DefaultedPropertiesSourceTest {
         "    @Override",
         "    public String toString() {",
         "      StringBuilder result = new StringBuilder(\"partial Person{\");",
-        "      if (!_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) == 0) {",
         "        result.append(\"name=\").append(name);",
         "        result.append(\", \");",
         "      }",
         "      result.append(\"age=\").append(age);",
-        "      if (!_unsetProperties.contains(Person_Builder.Property.SHOE_SIZE)) {",
+        "      if ((_unsetProperties & 0x2) == 0) {",
         "        result.append(\", \");",
         "        result.append(\"shoeSize=\").append(shoeSize);",
         "      }",
@@ -1173,16 +1187,22 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return age == other.age && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + Integer.hashCode(age);",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1393,16 +1413,22 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return age == other.age && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + Integer.hashCode(age);",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1599,22 +1625,22 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      if (age != other.age) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return age == other.age && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -6,6 +6,7 @@ import static org.inferred.freebuilder.processor.util.feature.SourceLevel.JAVA_8
 
 import com.google.common.collect.ImmutableList;
 
+import org.inferred.freebuilder.processor.util.feature.CollectionOwnership;
 import org.inferred.freebuilder.processor.util.feature.FeatureSet;
 import org.inferred.freebuilder.processor.util.feature.GuavaLibrary;
 import org.inferred.freebuilder.processor.util.feature.StaticFeatureSet;
@@ -23,11 +24,26 @@ public final class FeatureSets {
       new StaticFeatureSet(JAVA_7, GuavaLibrary.AVAILABLE),
       new StaticFeatureSet(JAVA_8, GuavaLibrary.AVAILABLE));
 
+  /** For collection tests, which should also pass when build() transfers collections. */
+  public static final List<FeatureSet> ALL_AND_TRANSFERRING = ImmutableList.<FeatureSet>builder()
+      .addAll(ALL)
+      .add(new StaticFeatureSet(
+          JAVA_8, GuavaLibrary.AVAILABLE, CollectionOwnership.TRANSFER_ON_BUILD))
+      .build();
+
   /** For mapper and mutate method tests. */
   public static final List<FeatureSet> WITH_LAMBDAS = ImmutableList.of(
       new StaticFeatureSet(JAVA_8),
       new StaticFeatureSet(JAVA_8, GuavaLibrary.AVAILABLE));
 
+  /** For collection mutate method tests, which should also pass when build() transfers. */
+  public static final List<FeatureSet> WITH_LAMBDAS_AND_TRANSFERRING =
+      ImmutableList.<FeatureSet>builder()
+          .addAll(WITH_LAMBDAS)
+          .add(new StaticFeatureSet(
+              JAVA_8, GuavaLibrary.AVAILABLE, CollectionOwnership.TRANSFER_ON_BUILD))
+          .build();
+
   /** For tests using Guava types. */
   public static final List<FeatureSet> WITH_GUAVA = ImmutableList.of(
       new StaticFeatureSet(JAVA_6, GuavaLibrary.AVAILABLE),
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static javax.tools.ToolProvider.getSystemJavaCompiler;
+
+import com.google.common.annotations.GwtCompatible;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TempJavaFileManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.StandardLocation;
+
+/** Tests for the {@value GenerationCache#DIRECTORY_OPTION} processor option. */
+@RunWith(JUnit4.class)
+public class GenerationCacheTest {
+
+  private static final int TYPE_COUNT = 4;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void cachedOutputMatchesUncachedOutput() throws IOException {
+    String cacheDir = "-A" + GenerationCache.DIRECTORY_OPTION + "=" + temporaryFolder.getRoot();
+    Map<String, String> uncached = compile(new DiagnosticCollector<JavaFileObject>(), false);
+
+    DiagnosticCollector<JavaFileObject> firstRun = new DiagnosticCollector<JavaFileObject>();
+    assertThat(compile(firstRun, false, cacheDir)).isEqualTo(uncached);
+    assertThat(notes(firstRun)).contains("FreeBuilder generation cache: 0 hits, 5 misses");
+
+    DiagnosticCollector<JavaFileObject> secondRun = new DiagnosticCollector<JavaFileObject>();
+    assertThat(compile(secondRun, false, cacheDir)).isEqualTo(uncached);
+    assertThat(notes(secondRun)).contains("FreeBuilder generation cache: 5 hits, 0 misses");
+  }
+
+  @Test
+  public void changedTypeMissesCache() throws IOException {
+    String cacheDir = "-A" + GenerationCache.DIRECTORY_OPTION + "=" + temporaryFolder.getRoot();
+    compile(new DiagnosticCollector<JavaFileObject>(), false, cacheDir);
+
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    Map<String, String> sources = compile(diagnostics, true, cacheDir);
+    assertThat(sources.get("com.example.DataType0_Builder")).contains("getExtra()");
+    assertThat(notes(diagnostics)).contains("FreeBuilder generation cache: 4 hits, 1 miss");
+  }
+
+  @Test
+  public void leastRecentlyUsedEntriesAreEvicted() throws IOException {
+    File cacheDir = temporaryFolder.getRoot();
+    compile(
+        new DiagnosticCollector<JavaFileObject>(),
+        false,
+        "-A" + GenerationCache.DIRECTORY_OPTION + "=" + cacheDir,
+        "-A" + GenerationCache.SIZE_OPTION + "=2");
+    assertThat(cacheDir.list()).hasLength(2);
+  }
+
+  @Test
+  public void invalidSizeIsReportedAndIgnored() throws IOException {
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    compile(
+        diagnostics,
+        false,
+        "-A" + GenerationCache.DIRECTORY_OPTION + "=" + temporaryFolder.getRoot(),
+        "-A" + GenerationCache.SIZE_OPTION + "=big");
+    ImmutableList.Builder<String> warnings = ImmutableList.builder();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.WARNING) {
+        warnings.add(diagnostic.getMessage(null));
+      }
+    }
+    assertThat(warnings.build()).contains("Invalid value for -Afreebuilder.cacheSize: 'big' "
+        + "(expected a positive integer); using 1000");
+  }
+
+  private static List<String> notes(DiagnosticCollector<JavaFileObject> diagnostics) {
+    ImmutableList.Builder<String> notes = ImmutableList.builder();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.NOTE) {
+        notes.add(diagnostic.getMessage(null));
+      }
+    }
+    return notes.build();
+  }
+
+  private static Map<String, String> compile(
+      DiagnosticCollector<JavaFileObject> diagnostics,
+      boolean extraProperty,
+      String... options) throws IOException {
+    ImmutableList.Builder<JavaFileObject> compilationUnits = ImmutableList.builder();
+    for (int i = 0; i < TYPE_COUNT; i++) {
+      SourceBuilder type = new SourceBuilder()
+          .addLine("package com.example;")
+          .addLine("@%s", FreeBuilder.class)
+          .addLine("public interface DataType%s {", i)
+          .addLine("  String getName();")
+          .addLine("  %s<Integer> getValues();", List.class);
+      if (extraProperty && i == 0) {
+        type.addLine("  int getExtra();");
+      }
+      compilationUnits.add(type
+          .addLine("")
+          .addLine("  class Builder extends DataType%s_Builder {}", i)
+          .addLine("}")
+          .build());
+    }
+    compilationUnits.add(new SourceBuilder()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("@%s(serializable = true)", GwtCompatible.class)
+        .addLine("public interface GwtType {")
+        .addLine("  String getName();")
+        .addLine("")
+        .addLine("  class Builder extends GwtType_Builder {}")
+        .addLine("}")
+        .build());
+    TempJavaFileManager fileManager = TempJavaFileManager.newTempFileManager(null, null, null);
+    CompilationTask task = getSystemJavaCompiler().getTask(
+        null, fileManager, diagnostics, ImmutableList.copyOf(options), null,
+        compilationUnits.build());
+    task.setProcessors(ImmutableList.of(new Processor()));
+    assertThat(task.call()).isTrue();
+    ImmutableMap.Builder<String, String> sources = ImmutableMap.builder();
+    for (int i = 0; i < TYPE_COUNT; i++) {
+      sources.put("com.example.DataType" + i + "_Builder", read(fileManager, "DataType" + i));
+    }
+    sources.put("com.example.GwtType_Builder", read(fileManager, "GwtType"));
+    return sources.build();
+  }
+
+  private static String read(TempJavaFileManager fileManager, String type) throws IOException {
+    JavaFileObject source = fileManager.getJavaFileForInput(
+        StandardLocation.SOURCE_OUTPUT, "com.example." + type + "_Builder", Kind.SOURCE);
+    return source.getCharContent(false).toString();
+  }
+}
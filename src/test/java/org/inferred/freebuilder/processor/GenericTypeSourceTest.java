@@ -57,26 +57,37 @@ public class GenericTypeSourceTest {
         "  private static final Joiner COMMA_JOINER = Joiner.on(\", \").skipNulls();",
         "",
         "  private enum Property {",
-        "    NAME(\"name\"),",
-        "    AGE(\"age\"),",
+        "    NAME(\"name\", 0),",
+        "    AGE(\"age\", 1),",
         "    ;",
         "",
         "    private final String name;",
+        "    private final int bit;",
         "",
-        "    private Property(String name) {",
+        "    private Property(String name, int bit) {",
         "      this.name = name;",
+        "      this.bit = bit;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    private static EnumSet<Property> unset(int mask) {",
+        "      EnumSet<Property> unset = EnumSet.noneOf(Property.class);",
+        "      for (Property property : values()) {",
+        "        if ((mask & (1 << property.bit)) != 0) {",
+        "          unset.add(property);",
+        "        }",
+        "      }",
+        "      return unset;",
+        "    }",
         "  }",
         "",
         "  private A name;",
         "  private B age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -86,7 +97,7 @@ public class GenericTypeSourceTest {
         "   */",
         "  public Person.Builder<A, B> setName(A name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -96,8 +107,9 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public A getName() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    if ((_unsetProperties & 0x1) != 0) {",
+        "      throw new IllegalStateException(\"name not set\");",
+        "    }",
         "    return name;",
         "  }",
         "",
@@ -109,7 +121,7 @@ public class GenericTypeSourceTest {
         "   */",
         "  public Person.Builder<A, B> setAge(B age) {",
         "    this.age = Preconditions.checkNotNull(age);",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -119,20 +131,21 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public B getAge() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    if ((_unsetProperties & 0x2) != 0) {",
+        "      throw new IllegalStateException(\"age not set\");",
+        "    }",
         "    return age;",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder<A, B> mergeFrom(Person<A, B> value) {",
         "    Person_Builder<A, B> _defaults = new Person.Builder<A, B>();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || !value.getAge().equals(_defaults.getAge())) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || "
+            + "!value.getAge().equals(_defaults.getAge())) {",
         "      setAge(value.getAge());",
         "    }",
         "    return (Person.Builder<A, B>) this;",
@@ -147,13 +160,13 @@ public class GenericTypeSourceTest {
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder<A, B> base = template;",
         "    Person_Builder<A, B> _defaults = new Person.Builder<A, B>();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0",
         "            || !template.getAge().equals(_defaults.getAge()))) {",
         "      setAge(template.getAge());",
         "    }",
@@ -165,8 +178,7 @@ public class GenericTypeSourceTest {
         "    Person_Builder<A, B> _defaults = new Person.Builder<A, B>();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -176,8 +188,10 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person<A, B> build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.unset(_unsetProperties));",
+        "    }",
         "    return new Person_Builder.Value<A, B>(this);",
         "  }",
         "",
@@ -221,22 +235,22 @@ public class GenericTypeSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value<?, ?> other = (Person_Builder.Value<?, ?>) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      if (!age.equals(other.age)) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return name.equals(other.name) && age.equals(other.age);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -248,17 +262,17 @@ public class GenericTypeSourceTest {
         "  private static final class Partial<A, B> extends Person<A, B> {",
         "    private final A name;",
         "    private final B age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder<A, B> builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public A getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -266,7 +280,7 @@ public class GenericTypeSourceTest {
         "",
         "    @Override",
         "    public B getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -284,7 +298,7 @@ public class GenericTypeSourceTest {
         "      if (age != other.age && (age == null || !age.equals(other.age))) {",
         "        return false;",
         "      }",
-        "      return _unsetProperties.equals(other._unsetProperties);",
+        "      return _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
@@ -296,10 +310,8 @@ public class GenericTypeSourceTest {
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -325,26 +337,37 @@ public class GenericTypeSourceTest {
         "  private static final Joiner COMMA_JOINER = Joiner.on(\", \").skipNulls();",
         "",
         "  private enum Property {",
-        "    NAME(\"name\"),",
-        "    AGE(\"age\"),",
+        "    NAME(\"name\", 0),",
+        "    AGE(\"age\", 1),",
         "    ;",
         "",
         "    private final String name;",
+        "    private final int bit;",
         "",
-        "    private Property(String name) {",
+        "    private Property(String name, int bit) {",
         "      this.name = name;",
+        "      this.bit = bit;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    private static EnumSet<Property> unset(int mask) {",
+        "      EnumSet<Property> unset = EnumSet.noneOf(Property.class);",
+        "      for (Property property : values()) {",
+        "        if ((mask & (1 << property.bit)) != 0) {",
+        "          unset.add(property);",
+        "        }",
+        "      }",
+        "      return unset;",
+        "    }",
         "  }",
         "",
         "  private A name;",
         "  private B age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -354,7 +377,7 @@ public class GenericTypeSourceTest {
         "   */",
         "  public Person.Builder<A, B> setName(A name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -364,8 +387,9 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public A getName() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    if ((_unsetProperties & 0x1) != 0) {",
+        "      throw new IllegalStateException(\"name not set\");",
+        "    }",
         "    return name;",
         "  }",
         "",
@@ -377,7 +401,7 @@ public class GenericTypeSourceTest {
         "   */",
         "  public Person.Builder<A, B> setAge(B age) {",
         "    this.age = Preconditions.checkNotNull(age);",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -387,19 +411,20 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public B getAge() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    if ((_unsetProperties & 0x2) != 0) {",
+        "      throw new IllegalStateException(\"age not set\");",
+        "    }",
         "    return age;",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder<A, B> mergeFrom(Person<A, B> value) {",
         "    Person_Builder<A, B> _defaults = new Person.Builder<>();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((_defaults._unsetProperties & 0x1) != 0",
         "        || !Objects.equals(value.getName(), _defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((_defaults._unsetProperties & 0x2) != 0",
         "        || !Objects.equals(value.getAge(), _defaults.getAge())) {",
         "      setAge(value.getAge());",
         "    }",
@@ -415,13 +440,13 @@ public class GenericTypeSourceTest {
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder<A, B> base = template;",
         "    Person_Builder<A, B> _defaults = new Person.Builder<>();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !Objects.equals(template.getName(), _defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0",
         "            || !Objects.equals(template.getAge(), _defaults.getAge()))) {",
         "      setAge(template.getAge());",
         "    }",
@@ -433,8 +458,7 @@ public class GenericTypeSourceTest {
         "    Person_Builder<A, B> _defaults = new Person.Builder<>();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -444,8 +468,10 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person<A, B> build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.unset(_unsetProperties));",
+        "    }",
         "    return new Person_Builder.Value<>(this);",
         "  }",
         "",
@@ -489,16 +515,22 @@ public class GenericTypeSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value<?, ?> other = (Person_Builder.Value<?, ?>) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return name.equals(other.name) && age.equals(other.age);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -510,17 +542,17 @@ public class GenericTypeSourceTest {
         "  private static final class Partial<A, B> extends Person<A, B> {",
         "    private final A name;",
         "    private final B age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder<A, B> builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public A getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -528,7 +560,7 @@ public class GenericTypeSourceTest {
         "",
         "    @Override",
         "    public B getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -542,7 +574,7 @@ public class GenericTypeSourceTest {
         "      Person_Builder.Partial<?, ?> other = (Person_Builder.Partial<?, ?>) obj;",
         "      return Objects.equals(name, other.name)",
         "          && Objects.equals(age, other.age)",
-        "          && Objects.equals(_unsetProperties, other._unsetProperties);",
+        "          && _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
@@ -554,10 +586,8 @@ public class GenericTypeSourceTest {
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -582,26 +612,37 @@ public class GenericTypeSourceTest {
         "  private static final Joiner COMMA_JOINER = Joiner.on(\", \").skipNulls();",
         "",
         "  private enum Property {",
-        "    NAME(\"name\"),",
-        "    AGE(\"age\"),",
+        "    NAME(\"name\", 0),",
+        "    AGE(\"age\", 1),",
         "    ;",
         "",
         "    private final String name;",
+        "    private final int bit;",
         "",
-        "    private Property(String name) {",
+        "    private Property(String name, int bit) {",
         "      this.name = name;",
+        "      this.bit = bit;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    private static EnumSet<Property> unset(int mask) {",
+        "      EnumSet<Property> unset = EnumSet.noneOf(Property.class);",
+        "      for (Property property : values()) {",
+        "        if ((mask & (1 << property.bit)) != 0) {",
+        "          unset.add(property);",
+        "        }",
+        "      }",
+        "      return unset;",
+        "    }",
         "  }",
         "",
         "  private A name;",
         "  private B age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -611,7 +652,7 @@ public class GenericTypeSourceTest {
         "   */",
         "  public Person.Builder<A, B> setName(A name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -635,8 +676,9 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public A getName() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    if ((_unsetProperties & 0x1) != 0) {",
+        "      throw new IllegalStateException(\"name not set\");",
+        "    }",
         "    return name;",
         "  }",
         "",
@@ -648,7 +690,7 @@ public class GenericTypeSourceTest {
         "   */",
         "  public Person.Builder<A, B> setAge(B age) {",
         "    this.age = Preconditions.checkNotNull(age);",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -672,19 +714,20 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public B getAge() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    if ((_unsetProperties & 0x2) != 0) {",
+        "      throw new IllegalStateException(\"age not set\");",
+        "    }",
         "    return age;",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder<A, B> mergeFrom(Person<A, B> value) {",
         "    Person_Builder<A, B> _defaults = new Person.Builder<>();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((_defaults._unsetProperties & 0x1) != 0",
         "        || !Objects.equals(value.getName(), _defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((_defaults._unsetProperties & 0x2) != 0",
         "        || !Objects.equals(value.getAge(), _defaults.getAge())) {",
         "      setAge(value.getAge());",
         "    }",
@@ -700,13 +743,13 @@ public class GenericTypeSourceTest {
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder<A, B> base = template;",
         "    Person_Builder<A, B> _defaults = new Person.Builder<>();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !Objects.equals(template.getName(), _defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0",
         "            || !Objects.equals(template.getAge(), _defaults.getAge()))) {",
         "      setAge(template.getAge());",
         "    }",
@@ -718,8 +761,7 @@ public class GenericTypeSourceTest {
         "    Person_Builder<A, B> _defaults = new Person.Builder<>();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -729,8 +771,10 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person<A, B> build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.unset(_unsetProperties));",
+        "    }",
         "    return new Person_Builder.Value<>(this);",
         "  }",
         "",
@@ -774,16 +818,22 @@ public class GenericTypeSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value<?, ?> other = (Person_Builder.Value<?, ?>) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return name.equals(other.name) && age.equals(other.age);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -795,17 +845,17 @@ public class GenericTypeSourceTest {
         "  private static final class Partial<A, B> extends Person<A, B> {",
         "    private final A name;",
         "    private final B age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder<A, B> builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public A getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -813,7 +863,7 @@ public class GenericTypeSourceTest {
         "",
         "    @Override",
         "    public B getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -827,7 +877,7 @@ public class GenericTypeSourceTest {
         "      Person_Builder.Partial<?, ?> other = (Person_Builder.Partial<?, ?>) obj;",
         "      return Objects.equals(name, other.name)",
         "          && Objects.equals(age, other.age)",
-        "          && Objects.equals(_unsetProperties, other._unsetProperties);",
+        "          && _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
@@ -839,10 +889,8 @@ public class GenericTypeSourceTest {
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -261,22 +261,23 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (name != other.name && (name == null || !name.equals(other.name))) {",
-        "        return false;",
-        "      }",
-        "      if (age != other.age && (age == null || !age.equals(other.age))) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return (name == other.name || (name != null && name.equals(other.name)))",
+        "          && (age == other.age || (age != null && age.equals(other.age)));",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -563,6 +564,9 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
@@ -572,7 +576,10 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + Objects.hashCode(name);",
+        "      result = 31 * result + Objects.hashCode(age);",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -890,6 +897,9 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
@@ -899,7 +909,10 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + Objects.hashCode(name);",
+        "      result = 31 * result + Objects.hashCode(age);",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1178,22 +1191,23 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (name != other.name && (name == null || !name.equals(other.name))) {",
-        "        return false;",
-        "      }",
-        "      if (age != other.age && (age == null || !age.equals(other.age))) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return (name == other.name || (name != null && name.equals(other.name)))",
+        "          && (age == other.age || (age != null && age.equals(other.age)));",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
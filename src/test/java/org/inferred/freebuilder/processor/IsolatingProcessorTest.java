@@ -0,0 +1,245 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.tools.ToolProvider.getSystemJavaCompiler;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.io.Resources;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TempJavaFileManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.FileObject;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileManager.Location;
+import javax.tools.JavaFileObject;
+
+/**
+ * Tests that {@link Processor} meets the contract of a Gradle isolating annotation processor:
+ * every generated file has exactly one originating element, the annotated type it was generated
+ * from, so Gradle can regenerate only the builders of types that were touched.
+ */
+@RunWith(JUnit4.class)
+public class IsolatingProcessorTest {
+
+  private static final JavaFileObject ITEM_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface Item {")
+      .addLine("  String getName();")
+      .addLine("")
+      .addLine("  class Builder extends Item_Builder {}")
+      .addLine("}")
+      .build();
+
+  private static final JavaFileObject DATA_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface DataType {")
+      .addLine("  Item getItem();")
+      .addLine("  Nested getNested();")
+      .addLine("")
+      .addLine("  @%s", FreeBuilder.class)
+      .addLine("  interface Nested {")
+      .addLine("    int getValue();")
+      .addLine("")
+      .addLine("    class Builder extends DataType_Nested_Builder {}")
+      .addLine("  }")
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  @Test
+  public void registeredAsIsolatingProcessor() throws IOException {
+    URL registration = Processor.class.getClassLoader()
+        .getResource("META-INF/gradle/incremental.annotation.processors");
+    assertThat(registration).isNotNull();
+    assertThat(Resources.toString(registration, UTF_8).trim())
+        .isEqualTo(Processor.class.getName() + ",isolating");
+  }
+
+  @Test
+  public void eachBuilderHasExactlyOneOriginatingElement() {
+    RecordingProcessor processor = new RecordingProcessor();
+    TempJavaFileManager fileManager = TempJavaFileManager.newTempFileManager(null, null, null);
+    CompilationTask task = getSystemJavaCompiler()
+        .getTask(null, fileManager, null, null, null, ImmutableList.of(ITEM_TYPE, DATA_TYPE));
+    task.setProcessors(ImmutableList.of(processor));
+    assertThat(task.call()).isTrue();
+
+    assertThat(processor.originatingElements.keySet()).containsExactly(
+        "com.example.Item_Builder",
+        "com.example.DataType_Builder",
+        "com.example.DataType_Nested_Builder");
+    assertThat(originatingNames(processor, "com.example.Item_Builder"))
+        .containsExactly("com.example.Item");
+    assertThat(originatingNames(processor, "com.example.DataType_Builder"))
+        .containsExactly("com.example.DataType");
+    assertThat(originatingNames(processor, "com.example.DataType_Nested_Builder"))
+        .containsExactly("com.example.DataType.Nested");
+  }
+
+  private static ImmutableList<String> originatingNames(
+      RecordingProcessor processor, String generatedFile) {
+    ImmutableList.Builder<String> names = ImmutableList.builder();
+    for (Element element : processor.originatingElements.get(generatedFile)) {
+      names.add(((TypeElement) element).getQualifiedName().toString());
+    }
+    return names.build();
+  }
+
+  /** Runs {@link Processor}, recording the originating elements of every file it creates. */
+  private static class RecordingProcessor extends AbstractProcessor {
+
+    private final Processor delegate = new Processor();
+    final ListMultimap<String, Element> originatingElements = LinkedListMultimap.create();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+      return delegate.getSupportedAnnotationTypes();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+      return delegate.getSupportedSourceVersion();
+    }
+
+    @Override
+    public synchronized void init(ProcessingEnvironment env) {
+      super.init(env);
+      delegate.init(new RecordingEnvironment(env));
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+      return delegate.process(annotations, roundEnv);
+    }
+
+    private class RecordingEnvironment implements ProcessingEnvironment {
+      private final ProcessingEnvironment env;
+      private final Filer filer;
+
+      RecordingEnvironment(ProcessingEnvironment env) {
+        this.env = env;
+        this.filer = new RecordingFiler(env.getFiler());
+      }
+
+      @Override
+      public Map<String, String> getOptions() {
+        return env.getOptions();
+      }
+
+      @Override
+      public Messager getMessager() {
+        return env.getMessager();
+      }
+
+      @Override
+      public Filer getFiler() {
+        return filer;
+      }
+
+      @Override
+      public Elements getElementUtils() {
+        return env.getElementUtils();
+      }
+
+      @Override
+      public Types getTypeUtils() {
+        return env.getTypeUtils();
+      }
+
+      @Override
+      public SourceVersion getSourceVersion() {
+        return env.getSourceVersion();
+      }
+
+      @Override
+      public Locale getLocale() {
+        return env.getLocale();
+      }
+    }
+
+    private class RecordingFiler implements Filer {
+      private final Filer filer;
+
+      RecordingFiler(Filer filer) {
+        this.filer = filer;
+      }
+
+      @Override
+      public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements)
+          throws IOException {
+        RecordingProcessor.this.originatingElements
+            .putAll(name.toString(), ImmutableList.copyOf(originatingElements));
+        return filer.createSourceFile(name, originatingElements);
+      }
+
+      @Override
+      public JavaFileObject createClassFile(CharSequence name, Element... originatingElements)
+          throws IOException {
+        RecordingProcessor.this.originatingElements
+            .putAll(name.toString(), ImmutableList.copyOf(originatingElements));
+        return filer.createClassFile(name, originatingElements);
+      }
+
+      @Override
+      public FileObject createResource(
+          Location location,
+          CharSequence pkg,
+          CharSequence relativeName,
+          Element... originatingElements) throws IOException {
+        RecordingProcessor.this.originatingElements
+            .putAll(pkg + "/" + relativeName, ImmutableList.copyOf(originatingElements));
+        return filer.createResource(location, pkg, relativeName, originatingElements);
+      }
+
+      @Override
+      public FileObject getResource(
+          Location location,
+          CharSequence pkg,
+          CharSequence relativeName) throws IOException {
+        return filer.getResource(location, pkg, relativeName);
+      }
+    }
+  }
+}
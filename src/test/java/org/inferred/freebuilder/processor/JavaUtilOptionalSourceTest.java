@@ -279,6 +279,9 @@ public class JavaUtilOptionalSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
@@ -288,7 +291,10 @@ public class JavaUtilOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + Objects.hashCode(name);",
+        "      result = 31 * result + Objects.hashCode(age);",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -584,6 +590,9 @@ public class JavaUtilOptionalSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
@@ -593,7 +602,10 @@ public class JavaUtilOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + Objects.hashCode(name);",
+        "      result = 31 * result + Objects.hashCode(age);",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -906,6 +918,9 @@ public class JavaUtilOptionalSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
@@ -915,7 +930,10 @@ public class JavaUtilOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + Objects.hashCode(name);",
+        "      result = 31 * result + Objects.hashCode(age);",
+        "      return result;",
         "    }",
         "",
         "    @Override",
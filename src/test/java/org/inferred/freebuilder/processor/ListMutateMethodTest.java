@@ -37,6 +37,7 @@ import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 import org.junit.runners.Parameterized.UseParametersRunnerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -52,7 +53,7 @@ public class ListMutateMethodTest {
     List<ElementFactory> elements = Arrays.asList(ElementFactory.values());
     List<Boolean> checked = ImmutableList.of(false, true);
     List<NamingConvention> conventions = Arrays.asList(NamingConvention.values());
-    List<FeatureSet> features = FeatureSets.WITH_LAMBDAS;
+    List<FeatureSet> features = FeatureSets.WITH_LAMBDAS_AND_TRANSFERRING;
     return () -> Lists
         .cartesianProduct(elements, checked, conventions, features)
         .stream()
@@ -166,6 +167,26 @@ public class ListMutateMethodTest {
         .runTest();
   }
 
+  @Test
+  public void mutatedListHeldPastBuildDoesNotModifyValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("%1$s<%1$s<%2$s>> mutatorLists = new %3$s<>();",
+                List.class, elements.type(), ArrayList.class)
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.examples(0, 1))
+            .addLine("    .mutateItems(mutatorLists::add)")
+            .addLine("    .build();")
+            .addLine("mutatorLists.get(0).clear();")
+            .addLine("mutatorLists.get(0).add(%s);", elements.example(2))
+            .addLine("assertThat(value.%s).containsExactly(%s).inOrder();",
+                convention.getter(), elements.examples(0, 1))
+            .build())
+        .runTest();
+  }
+
   @Test
   public void mutateAndAddChecksArguments() {
     if (checked) {
@@ -63,7 +63,7 @@ public class ListPropertyTest {
   public static Iterable<Object[]> parameters() {
     List<ElementFactory> elements = Arrays.asList(ElementFactory.values());
     List<NamingConvention> conventions = Arrays.asList(NamingConvention.values());
-    List<FeatureSet> features = FeatureSets.ALL;
+    List<FeatureSet> features = FeatureSets.ALL_AND_TRANSFERRING;
     return () -> Lists
         .cartesianProduct(elements, conventions, features)
         .stream()
@@ -375,6 +375,26 @@ public class ListPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testGetter_returnsLiveViewAcrossBuild() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("%s<%s> itemsView = builder.%s;",
+                List.class, elements.type(), convention.getter())
+            .addLine("builder.addItems(%s);", elements.examples(0, 1))
+            .addLine("DataType value = builder.build();")
+            .addLine("builder.addItems(%s);", elements.example(2))
+            .addLine("assertThat(itemsView).containsExactly(%s).inOrder();",
+                elements.examples(0, 1, 2))
+            .addLine("assertThat(value.%s).containsExactly(%s).inOrder();",
+                convention.getter(), elements.examples(0, 1))
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testGetter_returnsUnmodifiableList() {
     thrown.expect(UnsupportedOperationException.class);
@@ -459,6 +479,30 @@ public class ListPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testBuilderModifiedAfterBuild() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .addItems(%s);", elements.examples(0, 1))
+            .addLine("DataType value = builder.build();")
+            .addLine("DataType sameValue = builder.build();")
+            .addLine("builder.addItems(%s);", elements.example(2))
+            .addLine("DataType biggerValue = builder.build();")
+            .addLine("builder.clearItems();")
+            .addLine("assertThat(value.%s).containsExactly(%s).inOrder();",
+                convention.getter(), elements.examples(0, 1))
+            .addLine("assertThat(sameValue.%s).containsExactly(%s).inOrder();",
+                convention.getter(), elements.examples(0, 1))
+            .addLine("assertThat(biggerValue.%s).containsExactly(%s).inOrder();",
+                convention.getter(), elements.examples(0, 1, 2))
+            .addLine("assertThat(builder.build().%s).isEmpty();", convention.getter())
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testBuilderClear_noBuilderFactory() {
     behaviorTester
@@ -520,7 +564,6 @@ public class ListPropertyTest {
 
   @Test
   public void testInstanceReuse() {
-    assumeGuavaAvailable();
     behaviorTester
         .with(new Processor(features))
         .with(listPropertyType)
@@ -536,7 +579,6 @@ public class ListPropertyTest {
 
   @Test
   public void testFromReusesImmutableListInstance() {
-    assumeGuavaAvailable();
     behaviorTester
         .with(new Processor(features))
         .with(listPropertyType)
@@ -554,7 +596,6 @@ public class ListPropertyTest {
 
   @Test
   public void testMergeFromReusesImmutableListInstance() {
-    assumeGuavaAvailable();
     behaviorTester
         .with(new Processor(features))
         .with(listPropertyType)
@@ -572,7 +613,6 @@ public class ListPropertyTest {
 
   @Test
   public void testMergeFromEmptyListDoesNotPreventReuseOfImmutableListInstance() {
-    assumeGuavaAvailable();
     behaviorTester
         .with(new Processor(features))
         .with(listPropertyType)
@@ -288,22 +288,22 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      if (!age.equals(other.age)) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return name.equals(other.name) && age.equals(other.age);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -606,16 +606,22 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return name.equals(other.name) && age.equals(other.age);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -993,16 +999,22 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return name.equals(other.name) && age.equals(other.age);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1068,8 +1080,8 @@ public class ListSourceTest {
         "    return new Person.Builder().mergeFrom(value);",
         "  }",
         "",
-        "  private final ArrayList<String> name = new ArrayList<String>();",
-        "  private final ArrayList<Integer> age = new ArrayList<Integer>();",
+        "  private List<String> name = Collections.emptyList();",
+        "  private List<Integer> age = Collections.emptyList();",
         "",
         "  /**",
         "   * Adds {@code element} to the list to be returned from {@link Person#getName()}.",
@@ -1078,6 +1090,9 @@ public class ListSourceTest {
         "   * @throws NullPointerException if {@code element} is null",
         "   */",
         "  public Person.Builder addName(String element) {",
+        "    if (!(name instanceof ArrayList)) {",
+        "      name = new ArrayList<String>(name);",
+        "    }",
         "    if (element == null) {",
         "      throw new NullPointerException();",
         "    }",
@@ -1106,7 +1121,12 @@ public class ListSourceTest {
         "  public Person.Builder addAllName(Iterable<? extends String> elements) {",
         "    if (elements instanceof Collection) {",
         "      int elementsSize = ((Collection<?>) elements).size();",
-        "      name.ensureCapacity(name.size() + elementsSize);",
+        "      if (elementsSize != 0) {",
+        "        if (!(name instanceof ArrayList)) {",
+        "          name = new ArrayList<String>(name);",
+        "        }",
+        "        ((ArrayList<?>) name).ensureCapacity(name.size() + elementsSize);",
+        "      }",
         "    }",
         "    for (String element : elements) {",
         "      addName(element);",
@@ -1120,7 +1140,11 @@ public class ListSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearName() {",
-        "    name.clear();",
+        "    if (!(name instanceof ArrayList)) {",
+        "      name = Collections.emptyList();",
+        "    } else {",
+        "      name.clear();",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1130,6 +1154,9 @@ public class ListSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public List<String> getName() {",
+        "    if (!(name instanceof ArrayList)) {",
+        "      name = new ArrayList<String>(name);",
+        "    }",
         "    return Collections.unmodifiableList(name);",
         "  }",
         "",
@@ -1139,6 +1166,9 @@ public class ListSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder addAge(int element) {",
+        "    if (!(age instanceof ArrayList)) {",
+        "      age = new ArrayList<Integer>(age);",
+        "    }",
         "    age.add(element);",
         "    return (Person.Builder) this;",
         "  }",
@@ -1150,7 +1180,10 @@ public class ListSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder addAge(int... elements) {",
-        "    age.ensureCapacity(age.size() + elements.length);",
+        "    if (!(age instanceof ArrayList)) {",
+        "      age = new ArrayList<Integer>(age);",
+        "    }",
+        "    ((ArrayList<?>) age).ensureCapacity(age.size() + elements.length);",
         "    for (int element : elements) {",
         "      addAge(element);",
         "    }",
@@ -1167,7 +1200,12 @@ public class ListSourceTest {
         "  public Person.Builder addAllAge(Iterable<? extends Integer> elements) {",
         "    if (elements instanceof Collection) {",
         "      int elementsSize = ((Collection<?>) elements).size();",
-        "      age.ensureCapacity(age.size() + elementsSize);",
+        "      if (elementsSize != 0) {",
+        "        if (!(age instanceof ArrayList)) {",
+        "          age = new ArrayList<Integer>(age);",
+        "        }",
+        "        ((ArrayList<?>) age).ensureCapacity(age.size() + elementsSize);",
+        "      }",
         "    }",
         "    for (int element : elements) {",
         "      addAge(element);",
@@ -1181,7 +1219,11 @@ public class ListSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearAge() {",
-        "    age.clear();",
+        "    if (!(age instanceof ArrayList)) {",
+        "      age = Collections.emptyList();",
+        "    } else {",
+        "      age.clear();",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1191,13 +1233,26 @@ public class ListSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public List<Integer> getAge() {",
+        "    if (!(age instanceof ArrayList)) {",
+        "      age = new ArrayList<Integer>(age);",
+        "    }",
         "    return Collections.unmodifiableList(age);",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
-        "    addAllName(value.getName());",
-        "    addAllAge(value.getAge());",
+        "    if (value instanceof Person_Builder.Value && name == "
+            + "Collections.<String>emptyList()) {",
+        "      name = value.getName();",
+        "    } else {",
+        "      addAllName(value.getName());",
+        "    }",
+        "    if (value instanceof Person_Builder.Value && age == "
+            + "Collections.<Integer>emptyList()) {",
+        "      age = value.getAge();",
+        "    } else {",
+        "      addAllAge(value.getAge());",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1264,22 +1319,22 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      if (!age.equals(other.age)) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return name.equals(other.name) && age.equals(other.age);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1340,6 +1395,10 @@ public class ListSourceTest {
         "",
         "  @SuppressWarnings(\"unchecked\")",
         "  private static <E> List<E> immutableList(List<E> elements) {",
+        "    if (!(elements instanceof ArrayList)) {",
+        "      // Already immutable, having been shared from a value",
+        "      return elements;",
+        "    }",
         "    switch (elements.size()) {",
         "      case 0:",
         "        return Collections.emptyList();",
@@ -1368,8 +1427,8 @@ public class ListSourceTest {
         "    return new Person.Builder().mergeFrom(value);",
         "  }",
         "",
-        "  private final ArrayList<String> name = new ArrayList<>();",
-        "  private final ArrayList<Integer> age = new ArrayList<>();",
+        "  private List<String> name = Collections.emptyList();",
+        "  private List<Integer> age = Collections.emptyList();",
         "",
         "  /**",
         "   * Adds {@code element} to the list to be returned from {@link Person#getName()}.",
@@ -1378,6 +1437,9 @@ public class ListSourceTest {
         "   * @throws NullPointerException if {@code element} is null",
         "   */",
         "  public Person.Builder addName(String element) {",
+        "    if (!(name instanceof ArrayList)) {",
+        "      name = new ArrayList<>(name);",
+        "    }",
         "    name.add(Objects.requireNonNull(element));",
         "    return (Person.Builder) this;",
         "  }",
@@ -1403,7 +1465,12 @@ public class ListSourceTest {
         "  public Person.Builder addAllName(Iterable<? extends String> elements) {",
         "    if (elements instanceof Collection) {",
         "      int elementsSize = ((Collection<?>) elements).size();",
-        "      name.ensureCapacity(name.size() + elementsSize);",
+        "      if (elementsSize != 0) {",
+        "        if (!(name instanceof ArrayList)) {",
+        "          name = new ArrayList<>(name);",
+        "        }",
+        "        ((ArrayList<?>) name).ensureCapacity(name.size() + elementsSize);",
+        "      }",
         "    }",
         "    for (String element : elements) {",
         "      addName(element);",
@@ -1417,7 +1484,11 @@ public class ListSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearName() {",
-        "    name.clear();",
+        "    if (!(name instanceof ArrayList)) {",
+        "      name = Collections.emptyList();",
+        "    } else {",
+        "      name.clear();",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1427,6 +1498,9 @@ public class ListSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public List<String> getName() {",
+        "    if (!(name instanceof ArrayList)) {",
+        "      name = new ArrayList<>(name);",
+        "    }",
         "    return Collections.unmodifiableList(name);",
         "  }",
         "",
@@ -1436,6 +1510,9 @@ public class ListSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder addAge(int element) {",
+        "    if (!(age instanceof ArrayList)) {",
+        "      age = new ArrayList<>(age);",
+        "    }",
         "    age.add(element);",
         "    return (Person.Builder) this;",
         "  }",
@@ -1447,7 +1524,10 @@ public class ListSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder addAge(int... elements) {",
-        "    age.ensureCapacity(age.size() + elements.length);",
+        "    if (!(age instanceof ArrayList)) {",
+        "      age = new ArrayList<>(age);",
+        "    }",
+        "    ((ArrayList<?>) age).ensureCapacity(age.size() + elements.length);",
         "    for (int element : elements) {",
         "      addAge(element);",
         "    }",
@@ -1464,7 +1544,12 @@ public class ListSourceTest {
         "  public Person.Builder addAllAge(Iterable<? extends Integer> elements) {",
         "    if (elements instanceof Collection) {",
         "      int elementsSize = ((Collection<?>) elements).size();",
-        "      age.ensureCapacity(age.size() + elementsSize);",
+        "      if (elementsSize != 0) {",
+        "        if (!(age instanceof ArrayList)) {",
+        "          age = new ArrayList<>(age);",
+        "        }",
+        "        ((ArrayList<?>) age).ensureCapacity(age.size() + elementsSize);",
+        "      }",
         "    }",
         "    for (int element : elements) {",
         "      addAge(element);",
@@ -1478,7 +1563,11 @@ public class ListSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearAge() {",
-        "    age.clear();",
+        "    if (!(age instanceof ArrayList)) {",
+        "      age = Collections.emptyList();",
+        "    } else {",
+        "      age.clear();",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1488,13 +1577,26 @@ public class ListSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public List<Integer> getAge() {",
+        "    if (!(age instanceof ArrayList)) {",
+        "      age = new ArrayList<>(age);",
+        "    }",
         "    return Collections.unmodifiableList(age);",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
-        "    addAllName(value.getName());",
-        "    addAllAge(value.getAge());",
+        "    if (value instanceof Person_Builder.Value && name == "
+            + "Collections.<String>emptyList()) {",
+        "      name = value.getName();",
+        "    } else {",
+        "      addAllName(value.getName());",
+        "    }",
+        "    if (value instanceof Person_Builder.Value && age == "
+            + "Collections.<Integer>emptyList()) {",
+        "      age = value.getAge();",
+        "    } else {",
+        "      addAllAge(value.getAge());",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1561,16 +1663,22 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return name.equals(other.name) && age.equals(other.age);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1625,6 +1733,10 @@ public class ListSourceTest {
         "",
         "  @SuppressWarnings(\"unchecked\")",
         "  private static <E> List<E> immutableList(List<E> elements) {",
+        "    if (!(elements instanceof ArrayList)) {",
+        "      // Already immutable, having been shared from a value",
+        "      return elements;",
+        "    }",
         "    switch (elements.size()) {",
         "      case 0:",
         "        return Collections.emptyList();",
@@ -1883,22 +1995,22 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      if (!age.equals(other.age)) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return name.equals(other.name) && age.equals(other.age);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -2009,11 +2121,13 @@ public class ListSourceTest {
         .clearProperties()
         .addProperties(name.toBuilder()
             .setCodeGenerator(new ListProperty(
-                metadata, name, false, false, false, string, Optional.<TypeMirror>absent()))
+                metadata, name, false, false, false, string, Optional.<TypeMirror>absent(),
+                false))
             .build())
         .addProperties(age.toBuilder()
             .setCodeGenerator(new ListProperty(
-                metadata, age, false, false, false, integer, Optional.<TypeMirror>of(INT)))
+                metadata, age, false, false, false, integer, Optional.<TypeMirror>of(INT),
+                false))
             .build())
         .build();
   }
@@ -480,6 +480,48 @@ public class MapPrefixlessPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testMergeFrom_valueInstance_reusesMapInstance() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(MAP_PROPERTY_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType template = new com.example.DataType.Builder()")
+            .addLine("    .putItems(\"bar\", \"baz\")")
+            .addLine("    .putItems(\"three\", 3)")
+            .addLine("    .build();")
+            .addLine("com.example.DataType value = new com.example.DataType.Builder()")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.items()).isSameAs(template.items());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom_valueInstance_thenModified() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(MAP_PROPERTY_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType template = new com.example.DataType.Builder()")
+            .addLine("    .putItems(\"bar\", \"baz\")")
+            .addLine("    .putItems(\"three\", 3)")
+            .addLine("    .build();")
+            .addLine("com.example.DataType value = new com.example.DataType.Builder()")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .removeItems(\"bar\")")
+            .addLine("    .putItems(\"four\", 4)")
+            .addLine("    .build();")
+            .addLine("assertThat(template.items())")
+            .addLine("    .isEqualTo(%s.of(\"bar\", \"baz\", \"three\", 3));",
+                ImmutableMap.class)
+            .addLine("assertThat(value.items())")
+            .addLine("    .isEqualTo(%s.of(\"three\", 3, \"four\", 4));", ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testMergeFrom_builder() {
     behaviorTester
@@ -57,8 +57,7 @@ public class MapSourceTest {
         "    return new Person.Builder().mergeFrom(value);",
         "  }",
         "",
-        "  private final LinkedHashMap<Integer, String> name = "
-            + "new LinkedHashMap<Integer, String>();",
+        "  private Map<Integer, String> name = ImmutableMap.of();",
         "",
         "  /**",
         "   * Associates {@code key} with {@code value} in the map to be returned from {@link",
@@ -71,6 +70,9 @@ public class MapSourceTest {
         "   */",
         "  public Person.Builder putName(int key, String value) {",
         "    Preconditions.checkNotNull(value);",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    name.put(key, value);",
         "    return (Person.Builder) this;",
         "  }",
@@ -97,6 +99,9 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder removeName(int key) {",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    name.remove(key);",
         "    return (Person.Builder) this;",
         "  }",
@@ -108,7 +113,11 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearName() {",
-        "    name.clear();",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = ImmutableMap.of();",
+        "    } else {",
+        "      name.clear();",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -118,12 +127,20 @@ public class MapSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public Map<Integer, String> getName() {",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    return Collections.unmodifiableMap(name);",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
-        "    putAllName(value.getName());",
+        "    if (value instanceof Person_Builder.Value && name == ImmutableMap.<Integer, "
+            + "String>of()) {",
+        "      name = ImmutableMap.copyOf(value.getName());",
+        "    } else {",
+        "      putAllName(value.getName());",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -141,7 +158,7 @@ public class MapSourceTest {
         "",
         "  /** Resets the state of this builder. */",
         "  public Person.Builder clear() {",
-        "    name.clear();",
+        "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -182,19 +199,21 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -256,7 +275,7 @@ public class MapSourceTest {
         "    return new Person.Builder().mergeFrom(value);",
         "  }",
         "",
-        "  private final LinkedHashMap<Integer, String> name = new LinkedHashMap<>();",
+        "  private Map<Integer, String> name = ImmutableMap.of();",
         "",
         "  /**",
         "   * Associates {@code key} with {@code value} in the map to be returned from {@link",
@@ -269,6 +288,9 @@ public class MapSourceTest {
         "   */",
         "  public Person.Builder putName(int key, String value) {",
         "    Preconditions.checkNotNull(value);",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<>(name);",
+        "    }",
         "    name.put(key, value);",
         "    return (Person.Builder) this;",
         "  }",
@@ -295,6 +317,9 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder removeName(int key) {",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<>(name);",
+        "    }",
         "    name.remove(key);",
         "    return (Person.Builder) this;",
         "  }",
@@ -306,7 +331,11 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearName() {",
-        "    name.clear();",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = ImmutableMap.of();",
+        "    } else {",
+        "      name.clear();",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -316,12 +345,20 @@ public class MapSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public Map<Integer, String> getName() {",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<>(name);",
+        "    }",
         "    return Collections.unmodifiableMap(name);",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
-        "    putAllName(value.getName());",
+        "    if (value instanceof Person_Builder.Value && name == ImmutableMap.<Integer, "
+            + "String>of()) {",
+        "      name = ImmutableMap.copyOf(value.getName());",
+        "    } else {",
+        "      putAllName(value.getName());",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -339,7 +376,7 @@ public class MapSourceTest {
         "",
         "  /** Resets the state of this builder. */",
         "  public Person.Builder clear() {",
-        "    name.clear();",
+        "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -380,16 +417,21 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name);",
+        "      return name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -447,8 +489,7 @@ public class MapSourceTest {
         "    return new Person.Builder().mergeFrom(value);",
         "  }",
         "",
-        "  private final LinkedHashMap<Integer, String> name = "
-            + "new LinkedHashMap<Integer, String>();",
+        "  private Map<Integer, String> name = Collections.emptyMap();",
         "",
         "  /**",
         "   * Associates {@code key} with {@code value} in the map to be returned from {@link",
@@ -463,6 +504,9 @@ public class MapSourceTest {
         "    if (value == null) {",
         "      throw new NullPointerException();",
         "    }",
+        "    if (!(name instanceof LinkedHashMap)) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    name.put(key, value);",
         "    return (Person.Builder) this;",
         "  }",
@@ -489,6 +533,9 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder removeName(int key) {",
+        "    if (!(name instanceof LinkedHashMap)) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    name.remove(key);",
         "    return (Person.Builder) this;",
         "  }",
@@ -500,7 +547,11 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearName() {",
-        "    name.clear();",
+        "    if (!(name instanceof LinkedHashMap)) {",
+        "      name = Collections.emptyMap();",
+        "    } else {",
+        "      name.clear();",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -510,12 +561,20 @@ public class MapSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public Map<Integer, String> getName() {",
+        "    if (!(name instanceof LinkedHashMap)) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    return Collections.unmodifiableMap(name);",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
-        "    putAllName(value.getName());",
+        "    if (value instanceof Person_Builder.Value && name == Collections.<Integer, "
+            + "String>emptyMap()) {",
+        "      name = value.getName();",
+        "    } else {",
+        "      putAllName(value.getName());",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -533,7 +592,7 @@ public class MapSourceTest {
         "",
         "  /** Resets the state of this builder. */",
         "  public Person.Builder clear() {",
-        "    name.clear();",
+        "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -573,19 +632,21 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -630,6 +691,10 @@ public class MapSourceTest {
         "  }",
         "",
         "  private static <K, V> Map<K, V> immutableMap(Map<K, V> entries) {",
+        "    if (!(entries instanceof LinkedHashMap)) {",
+        "      // Already immutable, having been shared from a value",
+        "      return entries;",
+        "    }",
         "    switch (entries.size()) {",
         "      case 0:",
         "        return Collections.emptyMap();",
@@ -658,7 +723,7 @@ public class MapSourceTest {
         "    return new Person.Builder().mergeFrom(value);",
         "  }",
         "",
-        "  private final LinkedHashMap<Integer, String> name = new LinkedHashMap<>();",
+        "  private Map<Integer, String> name = Collections.emptyMap();",
         "",
         "  /**",
         "   * Associates {@code key} with {@code value} in the map to be returned from {@link",
@@ -671,6 +736,9 @@ public class MapSourceTest {
         "   */",
         "  public Person.Builder putName(int key, String value) {",
         "    Objects.requireNonNull(value);",
+        "    if (!(name instanceof LinkedHashMap)) {",
+        "      name = new LinkedHashMap<>(name);",
+        "    }",
         "    name.put(key, value);",
         "    return (Person.Builder) this;",
         "  }",
@@ -697,6 +765,9 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder removeName(int key) {",
+        "    if (!(name instanceof LinkedHashMap)) {",
+        "      name = new LinkedHashMap<>(name);",
+        "    }",
         "    name.remove(key);",
         "    return (Person.Builder) this;",
         "  }",
@@ -708,7 +779,11 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearName() {",
-        "    name.clear();",
+        "    if (!(name instanceof LinkedHashMap)) {",
+        "      name = Collections.emptyMap();",
+        "    } else {",
+        "      name.clear();",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -718,12 +793,20 @@ public class MapSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public Map<Integer, String> getName() {",
+        "    if (!(name instanceof LinkedHashMap)) {",
+        "      name = new LinkedHashMap<>(name);",
+        "    }",
         "    return Collections.unmodifiableMap(name);",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
-        "    putAllName(value.getName());",
+        "    if (value instanceof Person_Builder.Value && name == Collections.<Integer, "
+            + "String>emptyMap()) {",
+        "      name = value.getName();",
+        "    } else {",
+        "      putAllName(value.getName());",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -741,7 +824,7 @@ public class MapSourceTest {
         "",
         "  /** Resets the state of this builder. */",
         "  public Person.Builder clear() {",
-        "    name.clear();",
+        "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -781,16 +864,21 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name);",
+        "      return name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -832,6 +920,10 @@ public class MapSourceTest {
         "  }",
         "",
         "  private static <K, V> Map<K, V> immutableMap(Map<K, V> entries) {",
+        "    if (!(entries instanceof LinkedHashMap)) {",
+        "      // Already immutable, having been shared from a value",
+        "      return entries;",
+        "    }",
         "    switch (entries.size()) {",
         "      case 0:",
         "        return Collections.emptyMap();",
@@ -860,8 +952,7 @@ public class MapSourceTest {
         "    return new Person.Builder().mergeFrom(value);",
         "  }",
         "",
-        "  private final LinkedHashMap<Integer, String> name = "
-            + "new LinkedHashMap<Integer, String>();",
+        "  private Map<Integer, String> name = ImmutableMap.of();",
         "",
         "  /**",
         "   * Associates {@code key} with {@code value} in the map to be returned from "
@@ -875,6 +966,9 @@ public class MapSourceTest {
         "   */",
         "  public Person.Builder putName(int key, String value) {",
         "    Preconditions.checkNotNull(value);",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    name.put(key, value);",
         "    return (Person.Builder) this;",
         "  }",
@@ -901,6 +995,9 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder removeName(int key) {",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    name.remove(key);",
         "    return (Person.Builder) this;",
         "  }",
@@ -911,7 +1008,11 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearName() {",
-        "    name.clear();",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = ImmutableMap.of();",
+        "    } else {",
+        "      name.clear();",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -921,12 +1022,20 @@ public class MapSourceTest {
         "   * to this builder will be reflected in the view.",
         "   */",
         "  public Map<Integer, String> name() {",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    return Collections.unmodifiableMap(name);",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
-        "    putAllName(value.name());",
+        "    if (value instanceof Person_Builder.Value && name == ImmutableMap.<Integer, "
+            + "String>of()) {",
+        "      name = ImmutableMap.copyOf(value.name());",
+        "    } else {",
+        "      putAllName(value.name());",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -944,7 +1053,7 @@ public class MapSourceTest {
         "",
         "  /** Resets the state of this builder. */",
         "  public Person.Builder clear() {",
-        "    name.clear();",
+        "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -985,19 +1094,21 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
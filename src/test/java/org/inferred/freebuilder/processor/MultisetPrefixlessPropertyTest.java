@@ -750,6 +750,42 @@ public class MultisetPrefixlessPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testMergeFrom_valueInstance_reusesMultisetInstance() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(MULTISET_PROPERTY_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = DataType.builder()")
+            .addLine("    .addItems(\"one\", \"two\")")
+            .addLine("    .build();")
+            .addLine("DataType copy = DataType.builder()")
+            .addLine("    .mergeFrom(value)")
+            .addLine("    .build();")
+            .addLine("assertThat(copy.items()).isSameAs(value.items());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom_valueInstance_thenModified() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(MULTISET_PROPERTY_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = DataType.builder()")
+            .addLine("    .addItems(\"one\", \"two\")")
+            .addLine("    .build();")
+            .addLine("DataType copy = DataType.builder()")
+            .addLine("    .mergeFrom(value)")
+            .addLine("    .addItems(\"one\")")
+            .addLine("    .build();")
+            .addLine("assertThat(value.items()).iteratesAs(\"one\", \"two\");")
+            .addLine("assertThat(copy.items()).iteratesAs(\"one\", \"one\", \"two\");")
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testMergeFrom_builder() {
     behaviorTester
@@ -178,22 +178,23 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (name != other.name && (name == null || !name.equals(other.name))) {",
-        "        return false;",
-        "      }",
-        "      if (age != other.age && (age == null || !age.equals(other.age))) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return (name == other.name || (name != null && name.equals(other.name)))",
+        "          && (age == other.age || (age != null && age.equals(other.age)));",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -392,6 +393,9 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
@@ -401,7 +405,10 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + Objects.hashCode(name);",
+        "      result = 31 * result + Objects.hashCode(age);",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -627,6 +634,9 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
@@ -636,7 +646,10 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + Objects.hashCode(name);",
+        "      result = 31 * result + Objects.hashCode(age);",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -833,22 +846,23 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (name != other.name && (name == null || !name.equals(other.name))) {",
-        "        return false;",
-        "      }",
-        "      if (age != other.age && (age == null || !age.equals(other.age))) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return (name == other.name || (name != null && name.equals(other.name)))",
+        "          && (age == other.age || (age != null && age.equals(other.age)));",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -0,0 +1,631 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.ElementFactory.INTEGERS;
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+import static org.inferred.freebuilder.processor.util.feature.GuavaLibrary.GUAVA;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.testing.EqualsTester;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.PersistentCollections;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.util.testing.ParameterizedBehaviorTestFactory.Shared;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TestBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import javax.tools.JavaFileObject;
+
+/** Behavioral tests for &#64;{@link PersistentCollections} {@code List<?>} properties. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class PersistentListPropertyTest {
+
+  @SuppressWarnings("unchecked")
+  @Parameters(name = "List<{0}>, {1}")
+  public static Iterable<Object[]> parameters() {
+    List<ElementFactory> elements = Arrays.asList(ElementFactory.values());
+    List<FeatureSet> features = FeatureSets.ALL;
+    return () -> Lists
+        .cartesianProduct(elements, features)
+        .stream()
+        .map(List::toArray)
+        .iterator();
+  }
+
+  /** Enough elements to fill the tail, then the first trie level, then a second level. */
+  private static final int MANY_ELEMENTS = 33 * 32 + 100;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  private final ElementFactory elements;
+  private final FeatureSet features;
+
+  private final JavaFileObject listPropertyType;
+  private final JavaFileObject validatedType;
+
+  public PersistentListPropertyTest(ElementFactory elements, FeatureSet features) {
+    this.elements = elements;
+    this.features = features;
+
+    listPropertyType = new SourceBuilder()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("public abstract class DataType {")
+        .addLine("  @%s", PersistentCollections.class)
+        .addLine("  public abstract %s<%s> getItems();", List.class, elements.type())
+        .addLine("")
+        .addLine("  public static class Builder extends DataType_Builder {}")
+        .addLine("  public abstract Builder toBuilder();")
+        .addLine("}")
+        .build();
+
+    validatedType = new SourceBuilder()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("public abstract class DataType {")
+        .addLine("  @%s", PersistentCollections.class)
+        .addLine("  public abstract %s<%s> getItems();", List.class, elements.type())
+        .addLine("")
+        .addLine("  public static class Builder extends DataType_Builder {")
+        .addLine("    @Override public Builder addItems(%s element) {", elements.unwrappedType())
+        .addLine("      if (!(%s)) {", elements.validation())
+        .addLine("        throw new IllegalArgumentException(\"%s\");", elements.errorMessage())
+        .addLine("      }")
+        .addLine("      return super.addItems(element);")
+        .addLine("    }")
+        .addLine("  }")
+        .addLine("}")
+        .build();
+  }
+
+  @Before
+  public void setUp() {
+    behaviorTester.withPermittedPackage(elements.type().getPackage());
+  }
+
+  @Test
+  public void testDefaultEmpty() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().build();")
+            .addLine("assertThat(value.getItems()).isEmpty();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddSingleElement() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.example(0))
+            .addLine("    .addItems(%s)", elements.example(1))
+            .addLine("    .build();")
+            .addLine("assertThat(value.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 1))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddSingleElement_null() {
+    thrown.expect(NullPointerException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("new DataType.Builder()")
+            .addLine("    .addItems((%s) null);", elements.type())
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddVarargs() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.examples(0, 1))
+            .addLine("    .build();")
+            .addLine("assertThat(value.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 1))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddAllIterable() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addAllItems(%s.of(%s))", ImmutableList.class, elements.examples(0, 1))
+            .addLine("    .build();")
+            .addLine("assertThat(value.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 1))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddManyElements() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("%s<%s> expected = new %s<%s>();",
+                List.class, elements.type(), ArrayList.class, elements.type())
+            .addLine("for (int i = 0; i < %s; i++) {", MANY_ELEMENTS)
+            .addLine("  %s element = (i %% 3 == 0) ? %s : (i %% 3 == 1) ? %s : %s;",
+                elements.type(), elements.example(0), elements.example(1), elements.example(2))
+            .addLine("  builder.addItems(element);")
+            .addLine("  expected.add(element);")
+            .addLine("}")
+            .addLine("DataType value = builder.build();")
+            .addLine("assertThat(value.getItems()).containsExactlyElementsIn(expected).inOrder();")
+            .addLine("for (int i = 0; i < %s; i++) {", MANY_ELEMENTS)
+            .addLine("  assertThat(value.getItems().get(i)).isEqualTo(expected.get(i));")
+            .addLine("}")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testToBuilder_appendsDoNotAffectEachOther() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("for (int i = 0; i < %s; i++) {", MANY_ELEMENTS)
+            .addLine("  builder.addItems(%s);", elements.example(0))
+            .addLine("}")
+            .addLine("DataType value = builder.build();")
+            .addLine("DataType value1 = value.toBuilder().addItems(%s).build();",
+                elements.example(1))
+            .addLine("DataType value2 = value.toBuilder().addItems(%s).build();",
+                elements.example(2))
+            .addLine("assertThat(value.getItems()).hasSize(%s);", MANY_ELEMENTS)
+            .addLine("assertThat(value1.getItems()).hasSize(%s);", MANY_ELEMENTS + 1)
+            .addLine("assertThat(value1.getItems().get(%s)).isEqualTo(%s);",
+                MANY_ELEMENTS, elements.example(1))
+            .addLine("assertThat(value2.getItems()).hasSize(%s);", MANY_ELEMENTS + 1)
+            .addLine("assertThat(value2.getItems().get(%s)).isEqualTo(%s);",
+                MANY_ELEMENTS, elements.example(2))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testToBuilder_appendsManyElementsToLargeList() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("%s<%s> expected = new %s<%s>();",
+                List.class, elements.type(), ArrayList.class, elements.type())
+            .addLine("for (int i = 0; i < %s; i++) {", MANY_ELEMENTS)
+            .addLine("  %s element = (i %% 3 == 0) ? %s : (i %% 3 == 1) ? %s : %s;",
+                elements.type(), elements.example(0), elements.example(1), elements.example(2))
+            .addLine("  builder.addItems(element);")
+            .addLine("  expected.add(element);")
+            .addLine("}")
+            .addLine("DataType.Builder appended = builder.build().toBuilder();")
+            .addLine("for (int i = 0; i < %s; i++) {", MANY_ELEMENTS)
+            .addLine("  %s element = (i %% 2 == 0) ? %s : %s;",
+                elements.type(), elements.example(3), elements.example(4))
+            .addLine("  appended.addItems(element);")
+            .addLine("  expected.add(element);")
+            .addLine("}")
+            .addLine("DataType value = appended.build();")
+            .addLine("assertThat(value.getItems()).containsExactlyElementsIn(expected).inOrder();")
+            .addLine("for (int i = 0; i < %s; i++) {", 2 * MANY_ELEMENTS)
+            .addLine("  assertThat(value.getItems().get(i)).isEqualTo(expected.get(i));")
+            .addLine("}")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom_valueInstance_reusesListInstance() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.examples(0, 1))
+            .addLine("    .build();")
+            .addLine("DataType copy = DataType.Builder.from(value).build();")
+            .addLine("assertThat(copy.getItems()).isSameAs(value.getItems());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom_valueInstance_appendsToNonEmptyList() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.examples(1, 2))
+            .addLine("    .build();")
+            .addLine("DataType merged = new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.example(0))
+            .addLine("    .mergeFrom(value)")
+            .addLine("    .build();")
+            .addLine("assertThat(merged.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 1, 2))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom_builder() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType.Builder template = new DataType.Builder()")
+            .addLine("    .addItems(%s);", elements.examples(0, 1))
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .mergeFrom(template);")
+            .addLine("assertThat(builder.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 1))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMutate_doesNotModifyValue() {
+    assumeConsumersAvailable();
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.examples(0, 1, 2))
+            .addLine("    .build();")
+            .addLine("DataType mutated = value.toBuilder()")
+            .addLine("    .mutateItems(items -> items.remove(1))")
+            .addLine("    .addItems(%s)", elements.example(3))
+            .addLine("    .build();")
+            .addLine("assertThat(value.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 1, 2))
+            .addLine("assertThat(mutated.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 2, 3))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMutate_appendsAfterBuild() {
+    assumeConsumersAvailable();
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.examples(0, 1))
+            .addLine("    .mutateItems(items -> items.set(0, %s));", elements.example(2))
+            .addLine("DataType value = builder.build();")
+            .addLine("builder.addItems(%s);", elements.example(3))
+            .addLine("DataType biggerValue = builder.build();")
+            .addLine("assertThat(value.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(2, 1))
+            .addLine("assertThat(biggerValue.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(2, 1, 3))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testClear() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.examples(0, 1))
+            .addLine("    .clearItems()")
+            .addLine("    .addItems(%s)", elements.examples(2, 3))
+            .addLine("    .build();")
+            .addLine("assertThat(value.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(2, 3))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGetter_returnsLiveView() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("%s<%s> itemsView = builder.getItems();", List.class, elements.type())
+            .addLine("assertThat(itemsView).isEmpty();")
+            .addLine("builder.addItems(%s);", elements.examples(0, 1))
+            .addLine("assertThat(itemsView).containsExactly(%s).inOrder();",
+                elements.examples(0, 1))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGetter_returnsLiveViewAcrossBuild() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("%s<%s> itemsView = builder.getItems();", List.class, elements.type())
+            .addLine("builder.addItems(%s);", elements.examples(0, 1))
+            .addLine("DataType value = builder.build();")
+            .addLine("builder.addItems(%s);", elements.example(2))
+            .addLine("assertThat(itemsView).containsExactly(%s).inOrder();",
+                elements.examples(0, 1, 2))
+            .addLine("assertThat(value.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 1))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGetter_liveViewSeesMergedValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.examples(0, 1))
+            .addLine("    .build();")
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("%s<%s> itemsView = builder.getItems();", List.class, elements.type())
+            .addLine("builder.mergeFrom(value);")
+            .addLine("assertThat(itemsView).containsExactly(%s).inOrder();",
+                elements.examples(0, 1))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuilderModifiedAfterBuild() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .addItems(%s);", elements.examples(0, 1))
+            .addLine("DataType value = builder.build();")
+            .addLine("builder.addItems(%s);", elements.example(2))
+            .addLine("DataType biggerValue = builder.build();")
+            .addLine("builder.clearItems();")
+            .addLine("assertThat(value.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 1))
+            .addLine("assertThat(biggerValue.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 1, 2))
+            .addLine("assertThat(builder.build().getItems()).isEmpty();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testEquality() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .with(testBuilder()
+            .addLine("new %s()", EqualsTester.class)
+            .addLine("    .addEqualityGroup(")
+            .addLine("        new DataType.Builder().build(),")
+            .addLine("        new DataType.Builder().build())")
+            .addLine("    .addEqualityGroup(")
+            .addLine("        new DataType.Builder()")
+            .addLine("            .addItems(%s)", elements.examples(0, 1))
+            .addLine("            .build(),")
+            .addLine("        new DataType.Builder()")
+            .addLine("            .addItems(%s)", elements.example(0))
+            .addLine("            .build()")
+            .addLine("            .toBuilder()")
+            .addLine("            .addItems(%s)", elements.example(1))
+            .addLine("            .build())")
+            .addLine("    .testEquals();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testValidation_add() {
+    thrown.expectMessage(elements.errorMessage());
+    behaviorTester
+        .with(new Processor(features))
+        .with(validatedType)
+        .with(testBuilder()
+            .addLine("new DataType.Builder().addItems(%s, %s);",
+                elements.example(0), elements.invalidExample())
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testValidation_mutate() {
+    assumeConsumersAvailable();
+    thrown.expectMessage(elements.errorMessage());
+    behaviorTester
+        .with(new Processor(features))
+        .with(validatedType)
+        .with(testBuilder()
+            .addLine("new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.example(0))
+            .addLine("    .mutateItems(items -> items.add(%s));", elements.invalidExample())
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testCollectionProperty() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  @%s", PersistentCollections.class)
+            .addLine("  %s<%s> getItems();", Collection.class, elements.type())
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.examples(0, 1))
+            .addLine("    .build();")
+            .addLine("DataType copy = DataType.Builder.from(value)")
+            .addLine("    .addItems(%s)", elements.example(2))
+            .addLine("    .build();")
+            .addLine("assertThat(value.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 1))
+            .addLine("assertThat(copy.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 1, 2))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testTypeAnnotation() {
+    assumeGuavaAvailable();  // For the ImmutableList property
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", PersistentCollections.class)
+            .addLine("public interface DataType {")
+            .addLine("  %s<%s> getItems();", List.class, elements.type())
+            .addLine("  %s<%s> getOthers();", ImmutableList.class, elements.type())
+            .addLine("  %s<%s> getKeys();", Set.class, elements.type())
+            .addLine("")
+            .addLine("  Builder toBuilder();")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addItems(%s)", elements.examples(0, 1))
+            .addLine("    .addOthers(%s)", elements.examples(2, 3))
+            .addLine("    .addKeys(%s)", elements.examples(4, 5))
+            .addLine("    .build();")
+            .addLine("DataType copy = value.toBuilder()")
+            .addLine("    .addItems(%s)", elements.example(6))
+            .addLine("    .build();")
+            .addLine("assertThat(copy.getItems()).containsExactly(%s).inOrder();",
+                elements.examples(0, 1, 6))
+            .addLine("assertThat(copy.getOthers()).containsExactly(%s).inOrder();",
+                elements.examples(2, 3))
+            .addLine("assertThat(copy.getKeys()).containsExactly(%s).inOrder();",
+                elements.examples(4, 5))
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testSerialization() {
+    assumeTrue(elements == INTEGERS);
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType extends %s {", Serializable.class)
+            .addLine("  @%s", PersistentCollections.class)
+            .addLine("  %s<%s> getItems();", List.class, elements.type())
+            .addLine("")
+            .addLine("  Builder toBuilder();")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("for (int i = 0; i < %s; i++) {", MANY_ELEMENTS)
+            .addLine("  builder.addItems(i);")
+            .addLine("}")
+            .addLine("DataType value = builder.build();")
+            .addLine("DataType copy = %s.reserialize(value);", ProcessorTest.class)
+            .addLine("assertThat(copy).isEqualTo(value);")
+            .addLine("assertThat(copy.toBuilder().addItems(-1).build().getItems())")
+            .addLine("    .containsExactlyElementsIn(%s.concat(value.getItems(), %s.of(-1)))",
+                Iterables.class, ImmutableList.class)
+            .addLine("    .inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testCompilesWithoutWarnings() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(listPropertyType)
+        .compiles()
+        .withNoWarnings();
+  }
+
+  private void assumeGuavaAvailable() {
+    assumeTrue("Guava available", features.get(GUAVA).isAvailable());
+  }
+
+  private void assumeConsumersAvailable() {
+    assumeTrue("Consumers available", features.get(FUNCTION_PACKAGE).consumer().isPresent());
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static javax.tools.ToolProvider.getSystemJavaCompiler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TempJavaFileManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+
+/** Tests for the {@value ProcessingStatistics#OPTION} processor option. */
+@RunWith(JUnit4.class)
+public class ProcessingStatisticsTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void reportsEachType() throws IOException {
+    File report = new File(temporaryFolder.getRoot(), "reports/stats.json");
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    compile(diagnostics, "-A" + ProcessingStatistics.OPTION + "=" + report);
+
+    JsonNode rounds = new ObjectMapper().readTree(report).get("rounds");
+    assertThat(rounds.size()).isEqualTo(1);
+    JsonNode types = rounds.get(0).get("types");
+    assertThat(types.size()).isEqualTo(2);
+    JsonNode dataType = types.get(0);
+    assertThat(dataType.get("type").asText()).isEqualTo("com.example.DataType");
+    assertThat(dataType.get("analyseNanos").asLong()).isGreaterThan(0L);
+    assertThat(dataType.get("generateNanos").asLong()).isGreaterThan(0L);
+    assertThat(dataType.get("importNanos").asLong()).isGreaterThan(0L);
+    assertThat(dataType.get("formatNanos").asLong()).isGreaterThan(0L);
+    assertThat(dataType.get("writeNanos").asLong()).isGreaterThan(0L);
+    assertThat(dataType.get("cached").asBoolean()).isFalse();
+    assertThat(dataType.get("sourceChars").asInt()).isGreaterThan(1000);
+    assertThat(dataType.get("properties").get("DefaultProperty").asInt()).isEqualTo(2);
+    assertThat(dataType.get("properties").get("ListProperty").asInt()).isEqualTo(1);
+    assertThat(types.get(1).get("type").asText()).isEqualTo("com.example.OtherType");
+
+    List<String> notes = notes(diagnostics);
+    assertThat(notes).hasSize(1);
+    assertThat(notes.get(0)).startsWith("FreeBuilder round 1: 2 types in ");
+    assertThat(notes.get(0)).contains("com.example.DataType");
+    assertThat(notes.get(0)).contains("com.example.OtherType");
+  }
+
+  @Test
+  public void disabledByDefault() throws IOException {
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    compile(diagnostics);
+    assertThat(notes(diagnostics)).isEmpty();
+  }
+
+  private static List<String> notes(DiagnosticCollector<JavaFileObject> diagnostics) {
+    ImmutableList.Builder<String> notes = ImmutableList.builder();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.NOTE) {
+        notes.add(diagnostic.getMessage(null));
+      }
+    }
+    return notes.build();
+  }
+
+  private static void compile(DiagnosticCollector<JavaFileObject> diagnostics, String... options)
+      throws IOException {
+    JavaFileObject dataType = new SourceBuilder()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("public interface DataType {")
+        .addLine("  String getName();")
+        .addLine("  int getAge();")
+        .addLine("  %s<Integer> getValues();", List.class)
+        .addLine("")
+        .addLine("  class Builder extends DataType_Builder {}")
+        .addLine("}")
+        .build();
+    JavaFileObject otherType = new SourceBuilder()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("public interface OtherType {")
+        .addLine("  String getName();")
+        .addLine("")
+        .addLine("  class Builder extends OtherType_Builder {}")
+        .addLine("}")
+        .build();
+    TempJavaFileManager fileManager = TempJavaFileManager.newTempFileManager(null, null, null);
+    CompilationTask task = getSystemJavaCompiler().getTask(
+        null, fileManager, diagnostics, ImmutableList.copyOf(options), null,
+        ImmutableList.of(dataType, otherType));
+    task.setProcessors(ImmutableList.of(new Processor()));
+    assertThat(task.call()).isTrue();
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static javax.tools.ToolProvider.getSystemJavaCompiler;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.SetMultimap;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.feature.GenerationMode;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TempJavaFileManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+import javax.annotation.Nullable;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.StandardLocation;
+
+/** Tests for the {@value GenerationMode#OPTION} processor option. */
+@RunWith(JUnit4.class)
+public class ProcessorAbiOnlyTest {
+
+  private static final String BUILDER = "com.example.DataType_Builder";
+
+  private static final JavaFileObject DATA_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface DataType {")
+      .addLine("  String getName();")
+      .addLine("  int getCount();")
+      .addLine("  %s<Integer> getValues();", List.class)
+      .addLine("  %s<String, Integer> getScores();", Map.class)
+      .addLine("  %s<String, Integer> getTags();", SetMultimap.class)
+      .addLine("  %s<String> getDescription();", Optional.class)
+      .addLine("  %s<String> getLabels();", Set.class)
+      .addLine("  %s<String> getSortedLabels();", SortedSet.class)
+      .addLine("  %s<String> getVotes();", Multiset.class)
+      .addLine("  %s<String, Integer> getRanks();", ListMultimap.class)
+      .addLine("  @%s String getNickname();", Nullable.class)
+      .addLine("  Item getItem();")
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("")
+      .addLine("  @%s", FreeBuilder.class)
+      .addLine("  interface Item {")
+      .addLine("    String getLabel();")
+      .addLine("")
+      .addLine("    class Builder extends DataType_Item_Builder {}")
+      .addLine("  }")
+      .addLine("}")
+      .build();
+
+  @Test
+  public void abiOnlyBuilderHasSameApiAsFullBuilder() throws Exception {
+    Class<?> full = compile().loadClass(BUILDER);
+    Class<?> abiOnly = compile("-A" + GenerationMode.OPTION).loadClass(BUILDER);
+    assertThat(api(abiOnly)).isEqualTo(api(full));
+  }
+
+  @Test
+  public void abiOnlyBuilderHasNoImplementation() throws IOException {
+    TempJavaFileManager fileManager = TempJavaFileManager.newTempFileManager(null, null, null);
+    compile(fileManager, "-A" + GenerationMode.OPTION + "=true");
+    String source = fileManager
+        .getJavaFileForInput(StandardLocation.SOURCE_OUTPUT, BUILDER, Kind.SOURCE)
+        .getCharContent(false)
+        .toString();
+    assertThat(source).contains("throw new UnsupportedOperationException();");
+    assertThat(source).doesNotContain("class Value");
+    assertThat(source).doesNotContain("class Partial");
+    assertThat(source).doesNotContain("private ");
+  }
+
+  @Test
+  public void abiOnlyBuilderMethodsThrow() throws Exception {
+    Class<?> builderType =
+        compile("-A" + GenerationMode.OPTION).loadClass("com.example.DataType$Builder");
+    Object builder = builderType.getConstructor().newInstance();
+    Method setName = builderType.getMethod("setName", String.class);
+    try {
+      setName.invoke(builder, "Alice");
+      throw new AssertionError("Expected UnsupportedOperationException");
+    } catch (InvocationTargetException e) {
+      assertThat(e.getCause()).isInstanceOf(UnsupportedOperationException.class);
+    }
+  }
+
+  private static ClassLoader compile(String... options) throws IOException {
+    TempJavaFileManager fileManager = TempJavaFileManager.newTempFileManager(null, null, null);
+    compile(fileManager, options);
+    return fileManager.getClassLoader(StandardLocation.CLASS_OUTPUT);
+  }
+
+  private static void compile(TempJavaFileManager fileManager, String... options) {
+    CompilationTask task = getSystemJavaCompiler().getTask(
+        null, fileManager, null, ImmutableList.copyOf(options), null, ImmutableList.of(DATA_TYPE));
+    task.setProcessors(ImmutableList.of(new Processor()));
+    assertThat(task.call()).isTrue();
+  }
+
+  /** Returns the signature of every non-private method, constructor and nested type. */
+  private static Set<String> api(Class<?> type) {
+    ImmutableSet.Builder<String> api = ImmutableSet.builder();
+    for (Method method : type.getDeclaredMethods()) {
+      if (!method.isSynthetic() && !Modifier.isPrivate(method.getModifiers())) {
+        api.add(method.toGenericString());
+      }
+    }
+    for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+      if (!Modifier.isPrivate(constructor.getModifiers())) {
+        api.add(constructor.toGenericString());
+      }
+    }
+    for (Class<?> nestedType : type.getDeclaredClasses()) {
+      if (!Modifier.isPrivate(nestedType.getModifiers())) {
+        api.add(nestedType.toString());
+      }
+    }
+    return api.build();
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static javax.tools.ToolProvider.getSystemJavaCompiler;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.feature.BuilderBackend;
+import org.inferred.freebuilder.processor.util.feature.SourceLevel;
+import org.inferred.freebuilder.processor.util.feature.StaticFeatureSet;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TempJavaFileManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.Set;
+
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * Tests that builders written by the {@link BuilderBackend#CLASS_FILE} backend behave like the
+ * ones compiled from source.
+ *
+ * <p>javac 8 cannot resolve class files generated by a processor, so these tests compile in two
+ * steps: the processor runs alone, then the sources are compiled against its class files.
+ */
+@RunWith(JUnit4.class)
+public class ProcessorClassFileBackendTest {
+
+  private static final JavaFileObject DATA_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface DataType {")
+      .addLine("  String getName();")
+      .addLine("  int getCount();")
+      .addLine("  long getSize();")
+      .addLine("  double getRatio();")
+      .addLine("  boolean isActive();")
+      .addLine("  int[] getCodes();")
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {")
+      .addLine("    public Builder() {")
+      .addLine("      setActive(true);")
+      .addLine("      setCodes(new int[0]);")
+      .addLine("    }")
+      .addLine("  }")
+      .addLine("}")
+      .build();
+
+  private static final JavaFileObject ABSTRACT_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public abstract class AbstractType {")
+      .addLine("  public abstract %s getName();", String.class)
+      .addLine("  protected abstract short getAge();")
+      .addLine("")
+      .addLine("  public static class Builder extends AbstractType_Builder {}")
+      .addLine("}")
+      .build();
+
+  private static final JavaFileObject SCENARIO = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("import %s;", ImmutableList.class)
+      .addLine("public class Scenario {")
+      .addLine("  public static %s<String> run() {", List.class)
+      .addLine("    ImmutableList.Builder<String> log = ImmutableList.builder();")
+      .addLine("    DataType.Builder builder = new DataType.Builder().setName(\"Alice\");")
+      .addLine("    log.add(str(builder.buildPartial()));")
+      .addLine("    log.add(\"\" + builder.buildPartial().equals(")
+      .addLine("        new DataType.Builder().setName(\"Alice\").buildPartial()));")
+      .addLine("    try {")
+      .addLine("      builder.build();")
+      .addLine("    } catch (IllegalStateException e) {")
+      .addLine("      log.add(e.getMessage());")
+      .addLine("    }")
+      .addLine("    try {")
+      .addLine("      builder.getCount();")
+      .addLine("    } catch (IllegalStateException e) {")
+      .addLine("      log.add(e.getMessage());")
+      .addLine("    }")
+      .addLine("    try {")
+      .addLine("      builder.buildPartial().getSize();")
+      .addLine("    } catch (UnsupportedOperationException e) {")
+      .addLine("      log.add(e.getMessage());")
+      .addLine("    }")
+      .addLine("    try {")
+      .addLine("      builder.setName(null);")
+      .addLine("    } catch (NullPointerException e) {")
+      .addLine("      log.add(\"NullPointerException\");")
+      .addLine("    }")
+      .addLine("    DataType value = builder")
+      .addLine("        .setCount(3)")
+      .addLine("        .setSize(1L << 40)")
+      .addLine("        .setRatio(0.5)")
+      .addLine("        .mapCount(count -> count * 2)")
+      .addLine("        .mapName(String::toUpperCase)")
+      .addLine("        .build();")
+      .addLine("    log.add(value.getName() + value.getCount() + value.getSize()")
+      .addLine("        + value.getRatio());")
+      .addLine("    log.add(str(value));")
+      .addLine("    log.add(\"\" + value.equals(DataType.Builder.from(value).build()));")
+      .addLine("    log.add(\"\" + value.equals(")
+      .addLine("        DataType.Builder.from(value).setRatio(2).build()));")
+      .addLine("    log.add(\"\" + value.equals(new DataType.Builder().mergeFrom(value).build()));")
+      .addLine("    log.add(str(new DataType.Builder()")
+      .addLine("        .mergeFrom(new DataType.Builder().setSize(7).setActive(false))")
+      .addLine("        .buildPartial()));")
+      .addLine("    log.add(\"\" + new DataType.Builder().mergeFrom(value).clear().isActive());")
+      .addLine("    try {")
+      .addLine("      new DataType.Builder().mergeFrom(value).clear().getName();")
+      .addLine("    } catch (IllegalStateException e) {")
+      .addLine("      log.add(e.getMessage());")
+      .addLine("    }")
+      .addLine("    AbstractType abstractValue = new AbstractType.Builder()")
+      .addLine("        .setName(\"Bob\")")
+      .addLine("        .setAge((short) 42)")
+      .addLine("        .build();")
+      .addLine("    log.add(abstractValue.toString());")
+      .addLine("    log.add(\"\" + abstractValue.hashCode());")
+      .addLine("    log.add(new AbstractType.Builder()")
+      .addLine("        .setAge((short) 1)")
+      .addLine("        .buildPartial()")
+      .addLine("        .toString());")
+      .addLine("    return log.build();")
+      .addLine("  }")
+      .addLine("")
+      .addLine("  /** Returns {@code value} as a string, without array hash codes. */")
+      .addLine("  private static String str(Object value) {")
+      .addLine("    return String.valueOf(value).replaceAll(\"\\\\[I@[0-9a-f]+\", \"[I\");")
+      .addLine("  }")
+      .addLine("}")
+      .build();
+
+  private static final JavaFileObject UNSUPPORTED_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface UnsupportedType {")
+      .addLine("  %s<String> getNames();", List.class)
+      .addLine("")
+      .addLine("  class Builder extends UnsupportedType_Builder {}")
+      .addLine("}")
+      .build();
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void classFileBuildersBehaveLikeSourceBuilders() throws Exception {
+    List<String> fromSource = runScenario(compileFromSource());
+    List<String> fromClassFiles = runScenario(compileWithClassFiles(DATA_TYPE, ABSTRACT_TYPE));
+    assertThat(fromClassFiles).containsExactlyElementsIn(fromSource).inOrder();
+    assertThat(fromClassFiles).contains("Not set: [count, size, ratio]");
+    assertThat(fromClassFiles).contains("partial AbstractType{age=1}");
+  }
+
+  @Test
+  public void classFileBuilderHasSameApiAsSourceBuilder() throws Exception {
+    Class<?> fromSource = compileFromSource().loadClass("com.example.DataType_Builder");
+    Class<?> fromClassFiles = compileWithClassFiles(DATA_TYPE, ABSTRACT_TYPE)
+        .loadClass("com.example.DataType_Builder");
+    assertThat(publicMethods(fromClassFiles)).isEqualTo(publicMethods(fromSource));
+    assertThat(Modifier.isAbstract(fromClassFiles.getModifiers())).isTrue();
+  }
+
+  @Test
+  public void unsupportedTypesFallBackToSource() throws Exception {
+    compileWithClassFiles(UNSUPPORTED_TYPE);
+    assertThat(new File(temporaryFolder.getRoot(), "com/example/UnsupportedType_Builder.java")
+        .exists()).isTrue();
+  }
+
+  private static ClassLoader compileFromSource() {
+    TempJavaFileManager fileManager = TempJavaFileManager.newTempFileManager(null, null, null);
+    CompilationTask task = getSystemJavaCompiler().getTask(
+        null,
+        fileManager,
+        null,
+        null,
+        null,
+        ImmutableList.of(DATA_TYPE, ABSTRACT_TYPE, SCENARIO));
+    task.setProcessors(ImmutableList.of(
+        new Processor(new StaticFeatureSet(SourceLevel.JAVA_8))));
+    assertThat(task.call()).isTrue();
+    return fileManager.getClassLoader(StandardLocation.CLASS_OUTPUT);
+  }
+
+  /**
+   * Runs the processor alone over {@code types}, asserting that it wrote their builders as class
+   * files if they are supported, then compiles the {@link #SCENARIO} against them.
+   */
+  private ClassLoader compileWithClassFiles(JavaFileObject... types) throws IOException {
+    File output = temporaryFolder.getRoot();
+    String classpath = output + File.pathSeparator + System.getProperty("java.class.path");
+    List<String> options =
+        ImmutableList.of("-d", output.toString(), "-s", output.toString(), "-cp", classpath);
+    StandardJavaFileManager fileManager =
+        getSystemJavaCompiler().getStandardFileManager(null, null, null);
+    CompilationTask processing = getSystemJavaCompiler().getTask(
+        null,
+        fileManager,
+        null,
+        ImmutableList.<String>builder().addAll(options).add("-proc:only").build(),
+        null,
+        ImmutableList.copyOf(types));
+    processing.setProcessors(ImmutableList.of(new Processor(
+        new StaticFeatureSet(SourceLevel.JAVA_8, BuilderBackend.CLASS_FILE))));
+    assertThat(processing.call()).isTrue();
+    if (types[0] == DATA_TYPE) {
+      assertThat(new File(output, "com/example/DataType_Builder.class").exists()).isTrue();
+      assertThat(new File(output, "com/example/DataType_Builder.java").exists()).isFalse();
+    }
+
+    ImmutableList.Builder<JavaFileObject> sources = ImmutableList.builder();
+    sources.add(types);
+    for (File generatedSource : new File(output, "com/example").listFiles()) {
+      if (generatedSource.getName().endsWith(".java")) {
+        sources.addAll(fileManager.getJavaFileObjects(generatedSource));
+      }
+    }
+    if (types[0] == DATA_TYPE) {
+      sources.add(SCENARIO);
+    }
+    CompilationTask compilation = getSystemJavaCompiler().getTask(
+        null,
+        fileManager,
+        null,
+        ImmutableList.<String>builder().addAll(options).add("-proc:none").build(),
+        null,
+        sources.build());
+    assertThat(compilation.call()).isTrue();
+    fileManager.close();
+    return new URLClassLoader(new URL[] {output.toURI().toURL()}, getClass().getClassLoader());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String> runScenario(ClassLoader classLoader) throws Exception {
+    Method run = classLoader.loadClass("com.example.Scenario").getMethod("run");
+    return (List<String>) run.invoke(null);
+  }
+
+  private static Set<String> publicMethods(Class<?> type) {
+    ImmutableSortedSet.Builder<String> methods = ImmutableSortedSet.naturalOrder();
+    for (Method method : type.getDeclaredMethods()) {
+      if (Modifier.isPublic(method.getModifiers())) {
+        methods.add(method.toGenericString());
+      }
+    }
+    return methods.build();
+  }
+}
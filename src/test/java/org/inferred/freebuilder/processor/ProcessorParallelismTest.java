@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static javax.tools.ToolProvider.getSystemJavaCompiler;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TempJavaFileManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.StandardLocation;
+
+/** Tests for the {@value Processor#PARALLELISM_OPTION} processor option. */
+@RunWith(JUnit4.class)
+public class ProcessorParallelismTest {
+
+  private static final int TYPE_COUNT = 12;
+
+  @Test
+  public void parallelOutputMatchesSerialOutput() throws IOException {
+    Map<String, String> serial = compile("-A" + Processor.PARALLELISM_OPTION + "=1");
+    Map<String, String> parallel = compile("-A" + Processor.PARALLELISM_OPTION + "=4");
+    assertThat(serial).hasSize(TYPE_COUNT);
+    assertThat(parallel).isEqualTo(serial);
+  }
+
+  @Test
+  public void invalidParallelismIsReportedAndIgnored() throws IOException {
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    Map<String, String> sources =
+        compile(diagnostics, "-A" + Processor.PARALLELISM_OPTION + "=lots");
+    assertThat(sources).hasSize(TYPE_COUNT);
+    ImmutableList.Builder<String> warnings = ImmutableList.builder();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.WARNING) {
+        warnings.add(diagnostic.getMessage(null));
+      }
+    }
+    assertThat(warnings.build()).contains("Invalid value for -Afreebuilder.parallelism: 'lots' "
+        + "(expected a positive integer); formatting serially");
+  }
+
+  private static Map<String, String> compile(String... options) throws IOException {
+    return compile(new DiagnosticCollector<JavaFileObject>(), options);
+  }
+
+  private static Map<String, String> compile(
+      DiagnosticCollector<JavaFileObject> diagnostics, String... options) throws IOException {
+    ImmutableList.Builder<JavaFileObject> compilationUnits = ImmutableList.builder();
+    for (int i = 0; i < TYPE_COUNT; i++) {
+      compilationUnits.add(new SourceBuilder()
+          .addLine("package com.example;")
+          .addLine("@%s", FreeBuilder.class)
+          .addLine("public interface DataType%s {", i)
+          .addLine("  String getName();")
+          .addLine("  %s<Integer> getValues();", List.class)
+          .addLine("")
+          .addLine("  class Builder extends DataType%s_Builder {}", i)
+          .addLine("}")
+          .build());
+    }
+    TempJavaFileManager fileManager = TempJavaFileManager.newTempFileManager(null, null, null);
+    CompilationTask task = getSystemJavaCompiler().getTask(
+        null, fileManager, diagnostics, ImmutableList.copyOf(options), null,
+        compilationUnits.build());
+    task.setProcessors(ImmutableList.of(new Processor()));
+    assertThat(task.call()).isTrue();
+    ImmutableMap.Builder<String, String> sources = ImmutableMap.builder();
+    for (int i = 0; i < TYPE_COUNT; i++) {
+      String name = "com.example.DataType" + i + "_Builder";
+      JavaFileObject source =
+          fileManager.getJavaFileForInput(StandardLocation.SOURCE_OUTPUT, name, Kind.SOURCE);
+      sources.put(name, source.getCharContent(false).toString());
+    }
+    return sources.build();
+  }
+}
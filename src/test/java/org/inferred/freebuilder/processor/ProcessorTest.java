@@ -24,6 +24,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.Interned;
+import org.inferred.freebuilder.Memoized;
 import org.inferred.freebuilder.processor.util.feature.FeatureSet;
 import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
 import org.inferred.freebuilder.processor.util.testing.ParameterizedBehaviorTestFactory;
@@ -47,6 +49,7 @@ import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.annotation.Nullable;
@@ -544,6 +547,191 @@ public class ProcessorTest {
         .runTest();
   }
 
+  @Test
+  public void testHashCode_matchesArraysHashCode() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public enum Colour { RED, GREEN }")
+            .addLine("")
+            .addLine("  public abstract %s<String> getNames();", List.class)
+            .addLine("  public abstract boolean isFlag();")
+            .addLine("  public abstract byte getTiny();")
+            .addLine("  public abstract short getSmall();")
+            .addLine("  public abstract char getLetter();")
+            .addLine("  public abstract int getCount();")
+            .addLine("  public abstract long getSize();")
+            .addLine("  public abstract float getRatio();")
+            .addLine("  public abstract double getWeight();")
+            .addLine("  public abstract Colour getColour();")
+            .addLine("  @%s public abstract String getNickname();", Nullable.class)
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType value = new com.example.DataType.Builder()")
+            .addLine("    .addNames(\"a\", \"b\")")
+            .addLine("    .setFlag(true)")
+            .addLine("    .setTiny((byte) -3)")
+            .addLine("    .setSmall((short) 300)")
+            .addLine("    .setLetter('x')")
+            .addLine("    .setCount(-42)")
+            .addLine("    .setSize(1L << 40 | 7)")
+            .addLine("    .setRatio(1.5f)")
+            .addLine("    .setWeight(-0.25)")
+            .addLine("    .setColour(com.example.DataType.Colour.GREEN)")
+            .addLine("    .build();")
+            .addLine("assertEquals(%s.hashCode(new Object[] {", Arrays.class)
+            .addLine("        value.getNames(), true, (byte) -3, (short) 300, 'x', -42,")
+            .addLine("        1L << 40 | 7, 1.5f, -0.25, com.example.DataType.Colour.GREEN,")
+            .addLine("        null}),")
+            .addLine("    value.hashCode());")
+            .addLine("com.example.DataType.Builder builder =")
+            .addLine("    com.example.DataType.Builder.from(value);")
+            .addLine("new %s()", EqualsTester.class)
+            .addLine("    .addEqualityGroup(value, builder.build())")
+            .addLine("    .addEqualityGroup(builder.setNickname(\"Al\").build())")
+            .addLine("    .addEqualityGroup(")
+            .addLine("        builder.setColour(com.example.DataType.Colour.RED).build())")
+            .addLine("    .addEqualityGroup(")
+            .addLine("        builder.setRatio(Float.NaN).build(),")
+            .addLine("        builder.build())")
+            .addLine("    .addEqualityGroup(builder.clearNames().build())")
+            .addLine("    .testEquals();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMemoizedHashCodeAndToString() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface DataType {")
+            .addLine("  %s<String> getNames();", List.class)
+            .addLine("  int getResult();")
+            .addLine("")
+            .addLine("  @%s @Override int hashCode();", Memoized.class)
+            .addLine("  @%s @Override String toString();", Memoized.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType.Builder builder = new com.example.DataType.Builder()")
+            .addLine("    .addNames(\"a\", \"b\")")
+            .addLine("    .setResult(3);")
+            .addLine("com.example.DataType value = builder.build();")
+            .addLine("com.example.DataType copy = builder.build();")
+            .addLine("assertEquals(%s.hashCode(new Object[] {value.getNames(), 3}),", Arrays.class)
+            .addLine("    value.hashCode());")
+            .addLine("assertEquals(value.hashCode(), value.hashCode());")
+            .addLine("assertEquals(value, copy);")
+            .addLine("assertEquals(copy, value);")
+            .addLine("assertEquals(\"DataType{names=[a, b], result=3}\", value.toString());")
+            .addLine("assertSame(value.toString(), value.toString());")
+            .addLine("com.example.DataType partial = builder.buildPartial();")
+            .addLine("assertEquals(\"partial DataType{names=[a, b], result=3}\",")
+            .addLine("    partial.toString());")
+            .addLine("assertNotSame(partial.toString(), partial.toString());")
+            .addLine("new %s()", EqualsTester.class)
+            .addLine("    .addEqualityGroup(value, copy, builder.build())")
+            .addLine("    .addEqualityGroup(builder.setResult(4).build())")
+            .addLine("    .addEqualityGroup(builder.clearNames().build())")
+            .addLine("    .testEquals();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuildInterned() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", Interned.class)
+            .addLine("public interface DataType {")
+            .addLine("  String getName();")
+            .addLine("  %s<Integer> getCounts();", List.class)
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType.Builder builder = new com.example.DataType.Builder()")
+            .addLine("    .setName(new String(\"name\"))")
+            .addLine("    .addCounts(1, 2);")
+            .addLine("com.example.DataType value = builder.buildInterned();")
+            .addLine("assertEquals(builder.build(), value);")
+            .addLine("assertNotSame(builder.build(), value);")
+            .addLine("assertSame(value, builder.buildInterned());")
+            .addLine("assertSame(value, new com.example.DataType.Builder()")
+            .addLine("    .setName(\"name\")")
+            .addLine("    .addCounts(1, 2)")
+            .addLine("    .buildInterned());")
+            .addLine("com.example.DataType other = builder.addCounts(3).buildInterned();")
+            .addLine("assertFalse(value.equals(other));")
+            .addLine("assertSame(other, builder.buildInterned());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuildInterned_genericType() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", Interned.class)
+            .addLine("public interface DataType<T> {")
+            .addLine("  T getItem();")
+            .addLine("")
+            .addLine("  class Builder<T> extends DataType_Builder<T> {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType<String> value =")
+            .addLine("    new com.example.DataType.Builder<String>()")
+            .addLine("        .setItem(\"item\")")
+            .addLine("        .buildInterned();")
+            .addLine("assertSame(value, new com.example.DataType.Builder<String>()")
+            .addLine("    .setItem(new String(\"item\"))")
+            .addLine("    .buildInterned());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testInterned_deserialization() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", Interned.class)
+            .addLine("public interface DataType extends %s {", Serializable.class)
+            .addLine("  int getCount();")
+            .addLine("")
+            .addLine("  class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType value = new com.example.DataType.Builder()")
+            .addLine("    .setCount(5)")
+            .addLine("    .buildInterned();")
+            .addLine("assertSame(value, %s.reserialize(value));", ProcessorTest.class)
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testToString_noProperties() {
     behaviorTester
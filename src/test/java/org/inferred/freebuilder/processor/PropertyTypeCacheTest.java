@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static javax.lang.model.util.ElementFilter.methodsIn;
+
+import org.inferred.freebuilder.processor.util.testing.ModelRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+@RunWith(JUnit4.class)
+public class PropertyTypeCacheTest {
+
+  @ClassRule public static ModelRule model = new ModelRule();
+
+  @Test
+  public void testUpperBound() {
+    List<TypeMirror> typeArguments = firstTypeArguments(model.newType(
+        "package com.example.bounds;",
+        "public interface DataType {",
+        "  java.util.List<String> getPlain();",
+        "  java.util.List<? extends Number> getExtends();",
+        "  java.util.List<? super Integer> getSuper();",
+        "  java.util.List<?> getWildcard();",
+        "}"));
+    PropertyTypeCache propertyTypes = newPropertyTypeCache();
+
+    assertThat(propertyTypes.upperBound(typeArguments.get(0)).toString())
+        .isEqualTo("java.lang.String");
+    assertThat(propertyTypes.upperBound(typeArguments.get(1)).toString())
+        .isEqualTo("java.lang.Number");
+    assertThat(propertyTypes.upperBound(typeArguments.get(2)).toString())
+        .isEqualTo("java.lang.Object");
+    assertThat(propertyTypes.upperBound(typeArguments.get(3)).toString())
+        .isEqualTo("java.lang.Object");
+  }
+
+  @Test
+  public void testElementTypeFactsAreSharedBetweenProperties() {
+    List<TypeMirror> typeArguments = firstTypeArguments(model.newType(
+        "package com.example.shared;",
+        "public interface DataType {",
+        "  java.util.List<Integer> getFirst();",
+        "  java.util.Set<Integer> getSecond();",
+        "  java.util.List<String> getThird();",
+        "  java.util.Set<String> getFourth();",
+        "}"));
+    PropertyTypeCache propertyTypes = newPropertyTypeCache();
+
+    for (TypeMirror typeArgument : typeArguments) {
+      TypeMirror elementType = propertyTypes.upperBound(typeArgument);
+      boolean isInteger = elementType.toString().equals("java.lang.Integer");
+      assertThat(propertyTypes.unboxedType(elementType).isPresent()).isEqualTo(isInteger);
+      assertThat(propertyTypes.needsSafeVarargs(elementType)).isFalse();
+    }
+    assertThat(propertyTypes.unboxedType(typeArguments.get(0)).get().getKind())
+        .isEqualTo(TypeKind.INT);
+    // Integer and String are each computed once, for both lookups
+    assertThat(propertyTypes.misses()).isEqualTo(4);
+    assertThat(propertyTypes.hits()).isEqualTo(5);
+  }
+
+  @Test
+  public void testParameterizedTypeFactsAreSharedBetweenProperties() {
+    List<TypeMirror> typeArguments = firstTypeArguments(model.newType(
+        "package com.example.parameterized;",
+        "public interface DataType {",
+        "  java.util.List<java.util.List<String>> getFirst();",
+        "  java.util.Set<java.util.List<String>> getSecond();",
+        "  java.util.List<java.util.List<Integer>> getThird();",
+        "}"));
+    PropertyTypeCache propertyTypes = newPropertyTypeCache();
+
+    for (TypeMirror typeArgument : typeArguments) {
+      assertThat(propertyTypes.needsSafeVarargs(typeArgument)).isTrue();
+    }
+    // Each occurrence of List<String> is a distinct mirror, but they share an entry
+    assertThat(propertyTypes.misses()).isEqualTo(2);
+    assertThat(propertyTypes.hits()).isEqualTo(1);
+  }
+
+  @Test
+  public void testTypeVariablesWithTheSameNameAreNotShared() {
+    List<TypeMirror> first = firstTypeArguments(model.newType(
+        "package com.example.variables;",
+        "public interface First<T extends Integer> {",
+        "  java.util.List<T> getValues();",
+        "}"));
+    List<TypeMirror> second = firstTypeArguments(model.newType(
+        "package com.example.variables;",
+        "public interface Second<T> {",
+        "  java.util.List<T> getValues();",
+        "}"));
+    PropertyTypeCache propertyTypes = newPropertyTypeCache();
+
+    propertyTypes.needsSafeVarargs(first.get(0));
+    propertyTypes.needsSafeVarargs(second.get(0));
+    assertThat(propertyTypes.misses()).isEqualTo(2);
+    assertThat(propertyTypes.hits()).isEqualTo(0);
+  }
+
+  @Test
+  public void testNeedsSafeVarargs() {
+    List<TypeMirror> typeArguments = firstTypeArguments(model.newType(
+        "package com.example.varargs;",
+        "public interface DataType<T> {",
+        "  java.util.List<T> getVariable();",
+        "  java.util.List<java.util.List<String>> getGeneric();",
+        "  java.util.List<java.util.List<?>> getWildcard();",
+        "}"));
+    PropertyTypeCache propertyTypes = newPropertyTypeCache();
+
+    assertThat(propertyTypes.needsSafeVarargs(typeArguments.get(0))).isTrue();
+    assertThat(propertyTypes.needsSafeVarargs(typeArguments.get(1))).isTrue();
+    assertThat(propertyTypes.needsSafeVarargs(typeArguments.get(2))).isFalse();
+  }
+
+  @Test
+  public void testInvalidate() {
+    List<TypeMirror> typeArguments = firstTypeArguments(model.newType(
+        "package com.example.invalidate;",
+        "public interface DataType {",
+        "  java.util.List<Integer> getValues();",
+        "}"));
+    PropertyTypeCache propertyTypes = newPropertyTypeCache();
+    propertyTypes.unboxedType(typeArguments.get(0));
+    propertyTypes.invalidate();
+    propertyTypes.unboxedType(typeArguments.get(0));
+    assertThat(propertyTypes.hits()).isEqualTo(0);
+    assertThat(propertyTypes.misses()).isEqualTo(2);
+  }
+
+  private static PropertyTypeCache newPropertyTypeCache() {
+    return new PropertyTypeCache(model.elementUtils(), model.typeUtils());
+  }
+
+  /** Returns the first type argument of each method's return type, in declaration order. */
+  private static List<TypeMirror> firstTypeArguments(TypeElement type) {
+    List<TypeMirror> typeArguments = new ArrayList<TypeMirror>();
+    for (ExecutableElement method : methodsIn(type.getEnclosedElements())) {
+      typeArguments.add(((DeclaredType) method.getReturnType()).getTypeArguments().get(0));
+    }
+    return typeArguments;
+  }
+}
@@ -303,6 +303,113 @@ public class RequiredBeanPropertiesTest {
         .runTest();
   }
 
+  @Test
+  public void testCantBuildWithUnsetPropertiesInLongMask() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Not set: [property5, property37]");
+    TestBuilder testBuilder = testBuilder().addLine("new DataType.Builder()");
+    for (int i = 0; i < 40; i++) {
+      if (i != 5 && i != 37) {
+        testBuilder.addLine("    .setProperty%s(%s)", i, i);
+      }
+    }
+    behaviorTester
+        .with(new Processor(features))
+        .with(manyPropertiesType(40))
+        .with(testBuilder
+            .addLine("    .build();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testCantBuildWithUnsetPropertiesInSeveralMaskFields() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Not set: [property3, property64, property69]");
+    TestBuilder testBuilder = testBuilder().addLine("new DataType.Builder()");
+    for (int i = 0; i < 70; i++) {
+      if (i != 3 && i != 64 && i != 69) {
+        testBuilder.addLine("    .setProperty%s(%s)", i, i);
+      }
+    }
+    behaviorTester
+        .with(new Processor(features))
+        .with(manyPropertiesType(70))
+        .with(testBuilder
+            .addLine("    .build();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom_builderWithSeveralMaskFields() {
+    TestBuilder testBuilder = testBuilder()
+        .addLine("DataType.Builder template = new DataType.Builder();");
+    for (int i = 0; i < 70; i++) {
+      if (i != 66) {
+        testBuilder.addLine("template.setProperty%s(%s);", i, i);
+      }
+    }
+    behaviorTester
+        .with(new Processor(features))
+        .with(manyPropertiesType(70))
+        .with(testBuilder
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .setProperty66(-1)")
+            .addLine("    .setProperty67(-1)")
+            .addLine("    .mergeFrom(template);")
+            .addLine("DataType value = builder.build();")
+            .addLine("assertEquals(65, value.getProperty65());")
+            .addLine("assertEquals(-1, value.getProperty66());")
+            .addLine("assertEquals(67, value.getProperty67());")
+            .addLine("assertEquals(\"partial DataType{property66=-1}\",")
+            .addLine("    builder.clear().setProperty66(-1).buildPartial().toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testOnlyRequiredPropertiesAreCountedInMask() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Not set: [required]");
+    SourceBuilder type = new SourceBuilder()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("public abstract class DataType {");
+    for (int i = 0; i < 70; i++) {
+      type.addLine("  public abstract %s<Integer> getProperty%s();", List.class, i);
+    }
+    behaviorTester
+        .with(new Processor(features))
+        .with(type
+            .addLine("  public abstract int getRequired();")
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(testBuilder()
+            .addLine("assertEquals(int.class, DataType.Builder.class.getSuperclass()")
+            .addLine("    .getDeclaredField(\"_unsetProperties\").getType());")
+            .addLine("new DataType.Builder().addProperty69(69).build();")
+            .build())
+        .runTest();
+  }
+
+  private static JavaFileObject manyPropertiesType(int propertyCount) {
+    SourceBuilder type = new SourceBuilder()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("public abstract class DataType {");
+    for (int i = 0; i < propertyCount; i++) {
+      type.addLine("  public abstract int getProperty%s();", i);
+    }
+    return type
+        .addLine("")
+        .addLine("  public static class Builder extends DataType_Builder {}")
+        .addLine("}")
+        .build();
+  }
+
   private static TestBuilder testBuilder() {
     return new TestBuilder().addImport("com.example.DataType");
   }
@@ -58,26 +58,37 @@ public class RequiredPropertiesSourceTest {
         "  private static final Joiner COMMA_JOINER = Joiner.on(\", \").skipNulls();",
         "",
         "  private enum Property {",
-        "    NAME(\"name\"),",
-        "    AGE(\"age\"),",
+        "    NAME(\"name\", 0),",
+        "    AGE(\"age\", 1),",
         "    ;",
         "",
         "    private final String name;",
+        "    private final int bit;",
         "",
-        "    private Property(String name) {",
+        "    private Property(String name, int bit) {",
         "      this.name = name;",
+        "      this.bit = bit;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    private static EnumSet<Property> unset(int mask) {",
+        "      EnumSet<Property> unset = EnumSet.noneOf(Property.class);",
+        "      for (Property property : values()) {",
+        "        if ((mask & (1 << property.bit)) != 0) {",
+        "          unset.add(property);",
+        "        }",
+        "      }",
+        "      return unset;",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -87,7 +98,7 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -97,8 +108,9 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String getName() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    if ((_unsetProperties & 0x1) != 0) {",
+        "      throw new IllegalStateException(\"name not set\");",
+        "    }",
         "    return name;",
         "  }",
         "",
@@ -109,7 +121,7 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -119,20 +131,21 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int getAge() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    if ((_unsetProperties & 0x2) != 0) {",
+        "      throw new IllegalStateException(\"age not set\");",
+        "    }",
         "    return age;",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || value.getAge() != _defaults.getAge()) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || value.getAge() != _defaults.getAge()) "
+            + "{",
         "      setAge(value.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -147,14 +160,14 @@ public class RequiredPropertiesSourceTest {
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "            || template.getAge() != _defaults.getAge())) {",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0 || template.getAge() != "
+            + "_defaults.getAge())) {",
         "      setAge(template.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -165,8 +178,7 @@ public class RequiredPropertiesSourceTest {
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -176,8 +188,10 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.unset(_unsetProperties));",
+        "    }",
         "    return new Person_Builder.Value(this);",
         "  }",
         "",
@@ -221,22 +235,22 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      if (age != other.age) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return age == other.age && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -248,17 +262,17 @@ public class RequiredPropertiesSourceTest {
         "  private static final class Partial extends Person {",
         "    private final String name;",
         "    private final int age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -266,7 +280,7 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -284,7 +298,7 @@ public class RequiredPropertiesSourceTest {
         "      if (age != other.age) {",
         "        return false;",
         "      }",
-        "      return _unsetProperties.equals(other._unsetProperties);",
+        "      return _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
@@ -296,10 +310,8 @@ public class RequiredPropertiesSourceTest {
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -325,26 +337,37 @@ public class RequiredPropertiesSourceTest {
         "  private static final Joiner COMMA_JOINER = Joiner.on(\", \").skipNulls();",
         "",
         "  private enum Property {",
-        "    NAME(\"name\"),",
-        "    AGE(\"age\"),",
+        "    NAME(\"name\", 0),",
+        "    AGE(\"age\", 1),",
         "    ;",
         "",
         "    private final String name;",
+        "    private final int bit;",
         "",
-        "    private Property(String name) {",
+        "    private Property(String name, int bit) {",
         "      this.name = name;",
+        "      this.bit = bit;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    private static EnumSet<Property> unset(int mask) {",
+        "      EnumSet<Property> unset = EnumSet.noneOf(Property.class);",
+        "      for (Property property : values()) {",
+        "        if ((mask & (1 << property.bit)) != 0) {",
+        "          unset.add(property);",
+        "        }",
+        "      }",
+        "      return unset;",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -354,7 +377,7 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -364,8 +387,9 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String getName() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    if ((_unsetProperties & 0x1) != 0) {",
+        "      throw new IllegalStateException(\"name not set\");",
+        "    }",
         "    return name;",
         "  }",
         "",
@@ -376,7 +400,7 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -386,19 +410,20 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int getAge() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    if ((_unsetProperties & 0x2) != 0) {",
+        "      throw new IllegalStateException(\"age not set\");",
+        "    }",
         "    return age;",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((_defaults._unsetProperties & 0x1) != 0",
         "        || !Objects.equals(value.getName(), _defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((_defaults._unsetProperties & 0x2) != 0",
         "        || !Objects.equals(value.getAge(), _defaults.getAge())) {",
         "      setAge(value.getAge());",
         "    }",
@@ -414,13 +439,13 @@ public class RequiredPropertiesSourceTest {
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !Objects.equals(template.getName(), _defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0",
         "            || !Objects.equals(template.getAge(), _defaults.getAge()))) {",
         "      setAge(template.getAge());",
         "    }",
@@ -432,8 +457,7 @@ public class RequiredPropertiesSourceTest {
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -443,8 +467,10 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.unset(_unsetProperties));",
+        "    }",
         "    return new Person_Builder.Value(this);",
         "  }",
         "",
@@ -488,16 +514,22 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return age == other.age && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -509,17 +541,17 @@ public class RequiredPropertiesSourceTest {
         "  private static final class Partial extends Person {",
         "    private final String name;",
         "    private final int age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -527,7 +559,7 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -541,7 +573,7 @@ public class RequiredPropertiesSourceTest {
         "      Person_Builder.Partial other = (Person_Builder.Partial) obj;",
         "      return Objects.equals(name, other.name)",
         "          && Objects.equals(age, other.age)",
-        "          && Objects.equals(_unsetProperties, other._unsetProperties);",
+        "          && _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
@@ -553,10 +585,8 @@ public class RequiredPropertiesSourceTest {
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -579,26 +609,37 @@ public class RequiredPropertiesSourceTest {
         "  }",
         "",
         "  private enum Property {",
-        "    NAME(\"name\"),",
-        "    AGE(\"age\"),",
+        "    NAME(\"name\", 0),",
+        "    AGE(\"age\", 1),",
         "    ;",
         "",
         "    private final String name;",
+        "    private final int bit;",
         "",
-        "    private Property(String name) {",
+        "    private Property(String name, int bit) {",
         "      this.name = name;",
+        "      this.bit = bit;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    private static EnumSet<Property> unset(int mask) {",
+        "      EnumSet<Property> unset = EnumSet.noneOf(Property.class);",
+        "      for (Property property : values()) {",
+        "        if ((mask & (1 << property.bit)) != 0) {",
+        "          unset.add(property);",
+        "        }",
+        "      }",
+        "      return unset;",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -611,7 +652,7 @@ public class RequiredPropertiesSourceTest {
         "      throw new NullPointerException();",
         "    }",
         "    this.name = name;",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -621,7 +662,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String getName() {",
-        "    if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "    if ((_unsetProperties & 0x1) != 0) {",
         "      throw new IllegalStateException(\"name not set\");",
         "    }",
         "    return name;",
@@ -634,7 +675,7 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -644,7 +685,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int getAge() {",
-        "    if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "    if ((_unsetProperties & 0x2) != 0) {",
         "      throw new IllegalStateException(\"age not set\");",
         "    }",
         "    return age;",
@@ -653,12 +694,12 @@ public class RequiredPropertiesSourceTest {
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || value.getAge() != _defaults.getAge()) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || value.getAge() != _defaults.getAge()) "
+            + "{",
         "      setAge(value.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -673,14 +714,14 @@ public class RequiredPropertiesSourceTest {
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "            || template.getAge() != _defaults.getAge())) {",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0 || template.getAge() != "
+            + "_defaults.getAge())) {",
         "      setAge(template.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -691,8 +732,7 @@ public class RequiredPropertiesSourceTest {
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -702,8 +742,9 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    if (!_unsetProperties.isEmpty()) {",
-        "      throw new IllegalStateException(\"Not set: \" + _unsetProperties);",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.unset(_unsetProperties));",
         "    }",
         "    return new Person_Builder.Value(this);",
         "  }",
@@ -747,22 +788,22 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      if (age != other.age) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return age == other.age && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -774,17 +815,17 @@ public class RequiredPropertiesSourceTest {
         "  private static final class Partial extends Person {",
         "    private final String name;",
         "    private final int age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -792,7 +833,7 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -810,7 +851,7 @@ public class RequiredPropertiesSourceTest {
         "      if (age != other.age) {",
         "        return false;",
         "      }",
-        "      return _unsetProperties.equals(other._unsetProperties);",
+        "      return _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
@@ -822,11 +863,11 @@ public class RequiredPropertiesSourceTest {
         "    public String toString() {",
         "      StringBuilder result = new StringBuilder(\"partial Person{\");",
         "      String separator = \"\";",
-        "      if (!_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) == 0) {",
         "        result.append(\"name=\").append(name);",
         "        separator = \", \";",
         "      }",
-        "      if (!_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) == 0) {",
         "        result.append(separator);",
         "        result.append(\"age=\").append(age);",
         "      }",
@@ -853,26 +894,37 @@ public class RequiredPropertiesSourceTest {
         "  }",
         "",
         "  private enum Property {",
-        "    NAME(\"name\"),",
-        "    AGE(\"age\"),",
+        "    NAME(\"name\", 0),",
+        "    AGE(\"age\", 1),",
         "    ;",
         "",
         "    private final String name;",
+        "    private final int bit;",
         "",
-        "    private Property(String name) {",
+        "    private Property(String name, int bit) {",
         "      this.name = name;",
+        "      this.bit = bit;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    private static EnumSet<Property> unset(int mask) {",
+        "      EnumSet<Property> unset = EnumSet.noneOf(Property.class);",
+        "      for (Property property : values()) {",
+        "        if ((mask & (1 << property.bit)) != 0) {",
+        "          unset.add(property);",
+        "        }",
+        "      }",
+        "      return unset;",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -882,7 +934,7 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Objects.requireNonNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -892,7 +944,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String getName() {",
-        "    if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "    if ((_unsetProperties & 0x1) != 0) {",
         "      throw new IllegalStateException(\"name not set\");",
         "    }",
         "    return name;",
@@ -905,7 +957,7 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -915,7 +967,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int getAge() {",
-        "    if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "    if ((_unsetProperties & 0x2) != 0) {",
         "      throw new IllegalStateException(\"age not set\");",
         "    }",
         "    return age;",
@@ -924,11 +976,11 @@ public class RequiredPropertiesSourceTest {
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((_defaults._unsetProperties & 0x1) != 0",
         "        || !Objects.equals(value.getName(), _defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((_defaults._unsetProperties & 0x2) != 0",
         "        || !Objects.equals(value.getAge(), _defaults.getAge())) {",
         "      setAge(value.getAge());",
         "    }",
@@ -944,13 +996,13 @@ public class RequiredPropertiesSourceTest {
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !Objects.equals(template.getName(), _defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0",
         "            || !Objects.equals(template.getAge(), _defaults.getAge()))) {",
         "      setAge(template.getAge());",
         "    }",
@@ -962,8 +1014,7 @@ public class RequiredPropertiesSourceTest {
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -973,8 +1024,9 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    if (!_unsetProperties.isEmpty()) {",
-        "      throw new IllegalStateException(\"Not set: \" + _unsetProperties);",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.unset(_unsetProperties));",
         "    }",
         "    return new Person_Builder.Value(this);",
         "  }",
@@ -1018,16 +1070,22 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return age == other.age && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1039,17 +1097,17 @@ public class RequiredPropertiesSourceTest {
         "  private static final class Partial extends Person {",
         "    private final String name;",
         "    private final int age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -1057,7 +1115,7 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -1071,7 +1129,7 @@ public class RequiredPropertiesSourceTest {
         "      Person_Builder.Partial other = (Person_Builder.Partial) obj;",
         "      return Objects.equals(name, other.name)",
         "          && Objects.equals(age, other.age)",
-        "          && Objects.equals(_unsetProperties, other._unsetProperties);",
+        "          && _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
@@ -1083,11 +1141,11 @@ public class RequiredPropertiesSourceTest {
         "    public String toString() {",
         "      StringBuilder result = new StringBuilder(\"partial Person{\");",
         "      String separator = \"\";",
-        "      if (!_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) == 0) {",
         "        result.append(\"name=\").append(name);",
         "        separator = \", \";",
         "      }",
-        "      if (!_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) == 0) {",
         "        result.append(separator);",
         "        result.append(\"age=\").append(age);",
         "      }",
@@ -1116,26 +1174,37 @@ public class RequiredPropertiesSourceTest {
         "  private static final Joiner COMMA_JOINER = Joiner.on(\", \").skipNulls();",
         "",
         "  private enum Property {",
-        "    NAME(\"name\"),",
-        "    AGE(\"age\"),",
+        "    NAME(\"name\", 0),",
+        "    AGE(\"age\", 1),",
         "    ;",
         "",
         "    private final String name;",
+        "    private final int bit;",
         "",
-        "    private Property(String name) {",
+        "    private Property(String name, int bit) {",
         "      this.name = name;",
+        "      this.bit = bit;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    private static EnumSet<Property> unset(int mask) {",
+        "      EnumSet<Property> unset = EnumSet.noneOf(Property.class);",
+        "      for (Property property : values()) {",
+        "        if ((mask & (1 << property.bit)) != 0) {",
+        "          unset.add(property);",
+        "        }",
+        "      }",
+        "      return unset;",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -1145,7 +1214,7 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1169,8 +1238,9 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String getName() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    if ((_unsetProperties & 0x1) != 0) {",
+        "      throw new IllegalStateException(\"name not set\");",
+        "    }",
         "    return name;",
         "  }",
         "",
@@ -1181,7 +1251,7 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1205,19 +1275,20 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int getAge() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    if ((_unsetProperties & 0x2) != 0) {",
+        "      throw new IllegalStateException(\"age not set\");",
+        "    }",
         "    return age;",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((_defaults._unsetProperties & 0x1) != 0",
         "        || !Objects.equals(value.getName(), _defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((_defaults._unsetProperties & 0x2) != 0",
         "        || !Objects.equals(value.getAge(), _defaults.getAge())) {",
         "      setAge(value.getAge());",
         "    }",
@@ -1233,13 +1304,13 @@ public class RequiredPropertiesSourceTest {
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !Objects.equals(template.getName(), _defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0",
         "            || !Objects.equals(template.getAge(), _defaults.getAge()))) {",
         "      setAge(template.getAge());",
         "    }",
@@ -1251,8 +1322,7 @@ public class RequiredPropertiesSourceTest {
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1262,8 +1332,10 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.unset(_unsetProperties));",
+        "    }",
         "    return new Person_Builder.Value(this);",
         "  }",
         "",
@@ -1307,16 +1379,22 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return age == other.age && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + Integer.hashCode(age);",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1328,17 +1406,17 @@ public class RequiredPropertiesSourceTest {
         "  private static final class Partial extends Person {",
         "    private final String name;",
         "    private final int age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -1346,7 +1424,7 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -1360,7 +1438,7 @@ public class RequiredPropertiesSourceTest {
         "      Person_Builder.Partial other = (Person_Builder.Partial) obj;",
         "      return Objects.equals(name, other.name)",
         "          && Objects.equals(age, other.age)",
-        "          && Objects.equals(_unsetProperties, other._unsetProperties);",
+        "          && _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
@@ -1372,10 +1450,8 @@ public class RequiredPropertiesSourceTest {
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -1400,26 +1476,37 @@ public class RequiredPropertiesSourceTest {
         "  private static final Joiner COMMA_JOINER = Joiner.on(\", \").skipNulls();",
         "",
         "  private enum Property {",
-        "    NAME(\"name\"),",
-        "    AGE(\"age\"),",
+        "    NAME(\"name\", 0),",
+        "    AGE(\"age\", 1),",
         "    ;",
         "",
         "    private final String name;",
+        "    private final int bit;",
         "",
-        "    private Property(String name) {",
+        "    private Property(String name, int bit) {",
         "      this.name = name;",
+        "      this.bit = bit;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    private static EnumSet<Property> unset(int mask) {",
+        "      EnumSet<Property> unset = EnumSet.noneOf(Property.class);",
+        "      for (Property property : values()) {",
+        "        if ((mask & (1 << property.bit)) != 0) {",
+        "          unset.add(property);",
+        "        }",
+        "      }",
+        "      return unset;",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#name()}.",
@@ -1429,7 +1516,7 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder name(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1439,8 +1526,9 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String name() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    if ((_unsetProperties & 0x1) != 0) {",
+        "      throw new IllegalStateException(\"name not set\");",
+        "    }",
         "    return name;",
         "  }",
         "",
@@ -1451,7 +1539,7 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder age(int age) {",
         "    this.age = age;",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1461,20 +1549,20 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int age() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    if ((_unsetProperties & 0x2) != 0) {",
+        "      throw new IllegalStateException(\"age not set\");",
+        "    }",
         "    return age;",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.name().equals(_defaults.name())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.name().equals(_defaults.name())) {",
         "      name(value.name());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || value.age() != _defaults.age()) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || value.age() != _defaults.age()) {",
         "      age(value.age());",
         "    }",
         "    return (Person.Builder) this;",
@@ -1489,14 +1577,14 @@ public class RequiredPropertiesSourceTest {
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "            || !template.name().equals(_defaults.name()))) {",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!template.name().equals(_defaults.name()))) {",
         "      name(template.name());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "            || template.age() != _defaults.age())) {",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0 || template.age() != "
+            + "_defaults.age())) {",
         "      age(template.age());",
         "    }",
         "    return (Person.Builder) this;",
@@ -1507,8 +1595,7 @@ public class RequiredPropertiesSourceTest {
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1518,8 +1605,10 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.unset(_unsetProperties));",
+        "    }",
         "    return new Person_Builder.Value(this);",
         "  }",
         "",
@@ -1563,22 +1652,22 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      if (age != other.age) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return age == other.age && name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1590,17 +1679,17 @@ public class RequiredPropertiesSourceTest {
         "  private static final class Partial extends Person {",
         "    private final String name;",
         "    private final int age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String name() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -1608,7 +1697,7 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int age() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -1626,7 +1715,7 @@ public class RequiredPropertiesSourceTest {
         "      if (age != other.age) {",
         "        return false;",
         "      }",
-        "      return _unsetProperties.equals(other._unsetProperties);",
+        "      return _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
@@ -1638,10 +1727,8 @@ public class RequiredPropertiesSourceTest {
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
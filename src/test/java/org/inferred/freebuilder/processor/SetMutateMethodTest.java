@@ -36,6 +36,7 @@ import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
 import org.junit.runners.Parameterized.UseParametersRunnerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -72,7 +73,7 @@ public class SetMutateMethodTest {
   public static Iterable<Object[]> featureSets() {
     List<SetType> sets = Arrays.asList(SetType.values());
     List<TestConvention> conventions = Arrays.asList(TestConvention.values());
-    List<FeatureSet> features = FeatureSets.WITH_LAMBDAS;
+    List<FeatureSet> features = FeatureSets.WITH_LAMBDAS_AND_TRANSFERRING;
     return () -> Lists
         .cartesianProduct(sets, conventions, features)
         .stream()
@@ -139,6 +140,26 @@ public class SetMutateMethodTest {
         .runTest();
   }
 
+  @Test
+  public void mutatedSetHeldPastBuildDoesNotModifyValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(uncheckedSetProperty)
+        .with(testBuilder()
+            .addLine("%s<%s<Integer>> mutatorSets = new %s<>();",
+                List.class, set.type(), ArrayList.class)
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addProperties(11, 5)")
+            .addLine("    .mutateProperties(mutatorSets::add)")
+            .addLine("    .build();")
+            .addLine("mutatorSets.get(0).clear();")
+            .addLine("mutatorSets.get(0).add(3);")
+            .addLine("assertThat(value.%s).containsExactly(%s).inOrder();",
+                convention.getter(), set.intsInOrder(11, 5))
+            .build())
+        .runTest();
+  }
+
   @Test
   public void mutateAndSizeReturnsSize() {
     behaviorTester
@@ -211,19 +211,21 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -439,16 +441,21 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name);",
+        "      return name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -704,16 +711,21 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name);",
+        "      return name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -771,7 +783,7 @@ public class SetSourceTest {
         "    return new Person.Builder().mergeFrom(value);",
         "  }",
         "",
-        "  private final LinkedHashSet<String> name = new LinkedHashSet<String>();",
+        "  private Set<String> name = Collections.emptySet();",
         "",
         "  /**",
         "   * Adds {@code element} to the set to be returned from {@link Person#getName()}. "
@@ -784,6 +796,9 @@ public class SetSourceTest {
         "   * @throws NullPointerException if {@code element} is null",
         "   */",
         "  public Person.Builder addName(String element) {",
+        "    if (!(name instanceof LinkedHashSet)) {",
+        "      name = new LinkedHashSet<String>(name);",
+        "    }",
         "    if (element == null) {",
         "      throw new NullPointerException();",
         "    }",
@@ -827,6 +842,9 @@ public class SetSourceTest {
         "   * @throws NullPointerException if {@code element} is null",
         "   */",
         "  public Person.Builder removeName(String element) {",
+        "    if (!(name instanceof LinkedHashSet)) {",
+        "      name = new LinkedHashSet<String>(name);",
+        "    }",
         "    if (element == null) {",
         "      throw new NullPointerException();",
         "    }",
@@ -840,7 +858,11 @@ public class SetSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearName() {",
-        "    name.clear();",
+        "    if (!(name instanceof LinkedHashSet)) {",
+        "      name = Collections.emptySet();",
+        "    } else {",
+        "      name.clear();",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -850,12 +872,20 @@ public class SetSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public Set<String> getName() {",
+        "    if (!(name instanceof LinkedHashSet)) {",
+        "      name = new LinkedHashSet<String>(name);",
+        "    }",
         "    return Collections.unmodifiableSet(name);",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
-        "    addAllName(value.getName());",
+        "    if (value instanceof Person_Builder.Value && name == Collections.<String>emptySet()) "
+            + "{",
+        "      name = value.getName();",
+        "    } else {",
+        "      addAllName(value.getName());",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -913,19 +943,21 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -970,6 +1002,10 @@ public class SetSourceTest {
         "  }",
         "",
         "  private static <E> Set<E> immutableSet(Set<E> elements) {",
+        "    if (!(elements instanceof LinkedHashSet)) {",
+        "      // Already immutable, having been shared from a value",
+        "      return elements;",
+        "    }",
         "    switch (elements.size()) {",
         "      case 0:",
         "        return Collections.emptySet();",
@@ -997,7 +1033,7 @@ public class SetSourceTest {
         "    return new Person.Builder().mergeFrom(value);",
         "  }",
         "",
-        "  private final LinkedHashSet<String> name = new LinkedHashSet<>();",
+        "  private Set<String> name = Collections.emptySet();",
         "",
         "  /**",
         "   * Adds {@code element} to the set to be returned from {@link Person#getName()}. "
@@ -1010,6 +1046,9 @@ public class SetSourceTest {
         "   * @throws NullPointerException if {@code element} is null",
         "   */",
         "  public Person.Builder addName(String element) {",
+        "    if (!(name instanceof LinkedHashSet)) {",
+        "      name = new LinkedHashSet<>(name);",
+        "    }",
         "    name.add(Objects.requireNonNull(element));",
         "    return (Person.Builder) this;",
         "  }",
@@ -1050,6 +1089,9 @@ public class SetSourceTest {
         "   * @throws NullPointerException if {@code element} is null",
         "   */",
         "  public Person.Builder removeName(String element) {",
+        "    if (!(name instanceof LinkedHashSet)) {",
+        "      name = new LinkedHashSet<>(name);",
+        "    }",
         "    name.remove(Objects.requireNonNull(element));",
         "    return (Person.Builder) this;",
         "  }",
@@ -1060,7 +1102,11 @@ public class SetSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearName() {",
-        "    name.clear();",
+        "    if (!(name instanceof LinkedHashSet)) {",
+        "      name = Collections.emptySet();",
+        "    } else {",
+        "      name.clear();",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1070,12 +1116,20 @@ public class SetSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public Set<String> getName() {",
+        "    if (!(name instanceof LinkedHashSet)) {",
+        "      name = new LinkedHashSet<>(name);",
+        "    }",
         "    return Collections.unmodifiableSet(name);",
         "  }",
         "",
         "  /** Sets all property values using the given {@code Person} as a template. */",
         "  public Person.Builder mergeFrom(Person value) {",
-        "    addAllName(value.getName());",
+        "    if (value instanceof Person_Builder.Value && name == Collections.<String>emptySet()) "
+            + "{",
+        "      name = value.getName();",
+        "    } else {",
+        "      addAllName(value.getName());",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1133,16 +1187,21 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name);",
+        "      return name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1184,6 +1243,10 @@ public class SetSourceTest {
         "  }",
         "",
         "  private static <E> Set<E> immutableSet(Set<E> elements) {",
+        "    if (!(elements instanceof LinkedHashSet)) {",
+        "      // Already immutable, having been shared from a value",
+        "      return elements;",
+        "    }",
         "    switch (elements.size()) {",
         "      case 0:",
         "        return Collections.emptySet();",
@@ -1365,19 +1428,21 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public boolean equals(Object obj) {",
+        "      if (obj == this) {",
+        "        return true;",
+        "      }",
         "      if (!(obj instanceof Person_Builder.Value)) {",
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
-        "      return true;",
+        "      return name.equals(other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static javax.lang.model.util.ElementFilter.typesIn;
+
+import org.inferred.freebuilder.processor.Analyser.CannotGenerateCodeException;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+import org.inferred.freebuilder.processor.util.testing.ModelRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.lang.model.element.TypeElement;
+
+@RunWith(JUnit4.class)
+public class TypeHierarchyCacheTest {
+
+  private static final int TYPE_COUNT = 10;
+
+  @ClassRule public static ModelRule model = new ModelRule();
+
+  @Test
+  public void testSharedSupertypesAreOnlyWalkedOnce() throws CannotGenerateCodeException {
+    // Declare every type in one compilation unit, so they share supertype elements
+    StringBuilder code = new StringBuilder()
+        .append("package com.example.hierarchy;\n")
+        .append("interface Timestamped { long getTimestamp(); }\n")
+        .append("interface Auditable extends Timestamped { String getAuthor(); }\n")
+        .append("interface Identifiable { int getId(); }\n");
+    for (int i = 0; i < TYPE_COUNT; i++) {
+      code.append("interface DataType" + i + " extends Identifiable, Auditable {\n")
+          .append("  String getName();\n")
+          .append("}\n");
+    }
+    model.newType(code.toString());
+    TypeHierarchyCache typeHierarchy = new TypeHierarchyCache();
+    for (int i = 0; i < TYPE_COUNT; i++) {
+      TypeElement type = model.typeElement("com.example.hierarchy.DataType" + i);
+      assertThat(MethodFinder.methodsOn(type, model.elementUtils(), typeHierarchy))
+          .containsExactlyElementsIn(MethodFinder.methodsOn(type, model.elementUtils()))
+          .inOrder();
+    }
+    // The first type walks all four types; later ones only walk themselves, saving the
+    // supertype closures of Identifiable and Auditable and the methods of all three supertypes.
+    assertThat(typeHierarchy.misses()).isEqualTo(8 + (TYPE_COUNT - 1) * 2);
+    assertThat(typeHierarchy.hits()).isEqualTo((TYPE_COUNT - 1) * 5);
+  }
+
+  @Test
+  public void testVisibleNestedTypes() {
+    TypeElement outer = model.newType(
+        "package com.example.nested;",
+        "public class Outer {",
+        "  public interface Shared {}",
+        "  public abstract static class First { public interface A {} }",
+        "  public abstract static class Second extends First { public interface B {} }",
+        "}");
+    TypeElement first = typesIn(outer.getEnclosedElements()).get(1);
+    TypeElement second = typesIn(outer.getEnclosedElements()).get(2);
+    TypeHierarchyCache typeHierarchy = new TypeHierarchyCache();
+
+    assertThat(typeHierarchy.visibleNestedTypes(first)).containsExactly(
+        QualifiedName.of("com.example.nested", "Outer", "First", "A"),
+        QualifiedName.of("com.example.nested", "Outer", "Shared"),
+        QualifiedName.of("com.example.nested", "Outer", "First"),
+        QualifiedName.of("com.example.nested", "Outer", "Second"));
+    // Object is both First's and Outer's superclass
+    assertThat(typeHierarchy.hits()).isEqualTo(1);
+    assertThat(typeHierarchy.visibleNestedTypes(second)).containsExactly(
+        QualifiedName.of("com.example.nested", "Outer", "Second", "B"),
+        QualifiedName.of("com.example.nested", "Outer", "First", "A"),
+        QualifiedName.of("com.example.nested", "Outer", "Shared"),
+        QualifiedName.of("com.example.nested", "Outer", "First"),
+        QualifiedName.of("com.example.nested", "Outer", "Second"));
+    // Outer (as Second's enclosing type) and First (as its superclass) are both cached
+    assertThat(typeHierarchy.hits()).isEqualTo(3);
+  }
+
+  @Test
+  public void testInvalidate() throws CannotGenerateCodeException {
+    TypeElement type = model.newType(
+        "package com.example.invalidate;",
+        "public interface DataType {",
+        "  String getName();",
+        "}");
+    TypeHierarchyCache typeHierarchy = new TypeHierarchyCache();
+    typeHierarchy.supertypes(type);
+    typeHierarchy.invalidate();
+    typeHierarchy.supertypes(type);
+    assertThat(typeHierarchy.hits()).isEqualTo(0);
+    assertThat(typeHierarchy.misses()).isEqualTo(2);
+  }
+}
@@ -19,6 +19,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.inferred.freebuilder.processor.util.Block.methodBody;
 import static org.junit.rules.ExpectedException.none;
 
+import org.inferred.freebuilder.processor.util.feature.GenerationMode;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -119,4 +120,16 @@ public class BlockTest {
     code.add(block);
     assertThat(code.toString()).isEqualTo("int foo = this.foo;\n");
   }
+
+  @Test
+  public void testAbiOnlyBodyThrows() {
+    SourceBuilder abiCode = SourceStringBuilder.simple(GenerationMode.ABI_ONLY);
+    Block abiBlock = methodBody(abiCode, "param");
+    abiBlock.addLine("foo();");
+    Excerpt reference = abiBlock.declare(Excerpts.add("int"), "bar", Excerpts.add("baz()"));
+    abiBlock.addLine("foobar(%s);", reference);
+    abiCode.add(abiBlock);
+    assertThat(abiCode.toString())
+        .isEqualTo("  throw new UnsupportedOperationException();\n");
+  }
 }
@@ -26,6 +26,8 @@ import static org.mockito.Mockito.when;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.feature.FormatStyle;
 import org.inferred.freebuilder.processor.util.feature.StaticFeatureSet;
 import org.inferred.freebuilder.processor.util.testing.ModelRule;
 import org.junit.Before;
@@ -92,6 +94,56 @@ public class CompilationUnitBuilderTest {
         source.toString());
   }
 
+  @Test
+  public void testFormatStyleNone() {
+    CompilationUnitBuilder source =
+        newSourceWriter("com.example", "Bar", new StaticFeatureSet(FormatStyle.NONE));
+    source
+        .addLine("public class Bar {")
+        .addLine("public  int  baz;")
+        .addLine("}");
+    assertEquals(
+        "// Autogenerated code. Do not modify.\n"
+            + "package com.example;\n\n"
+            + "public class Bar {\n"
+            + "public  int  baz;\n"
+            + "}\n",
+        source.toString());
+  }
+
+  @Test
+  public void testFormatStyleFast() {
+    CompilationUnitBuilder source =
+        newSourceWriter("com.example", "Bar", new StaticFeatureSet(FormatStyle.FAST));
+    source
+        .addLine("public class Bar {")
+        .addLine("public  int  baz;")
+        .addLine("}");
+    assertEquals(
+        "// Autogenerated code. Do not modify.\n"
+            + "package com.example;\n\n"
+            + "public class Bar {\n"
+            + "  public int baz;\n"
+            + "}\n",
+        source.toString());
+  }
+
+  @Test
+  public void testWriteTo_matchesToString() throws IOException {
+    for (FormatStyle formatStyle : FormatStyle.values()) {
+      CompilationUnitBuilder source =
+          newSourceWriter("com.example", "Bar", new StaticFeatureSet(formatStyle));
+      source.addLine("public class Bar {");
+      for (int i = 0; i < 1000; i++) {
+        source.addLine("public  %s  baz%s;", ImmutableList.class, i);
+      }
+      source.addLine("}");
+      StringWriter writer = new StringWriter();
+      source.writeTo(writer);
+      assertEquals(source.toString(), writer.toString());
+    }
+  }
+
   @Test
   public void testAddLine_typeInSamePackage() {
     CompilationUnitBuilder source = newSourceWriter("com.example", "Bar");
@@ -207,12 +259,17 @@ public class CompilationUnitBuilderTest {
   }
 
   private CompilationUnitBuilder newSourceWriter(String pkg, String simpleName) {
+    return newSourceWriter(pkg, simpleName, new StaticFeatureSet());
+  }
+
+  private CompilationUnitBuilder newSourceWriter(
+      String pkg, String simpleName, FeatureSet features) {
     ProcessingEnvironment environment = Mockito.spy(model.environment());
     doReturn(filer).when(environment).getFiler();
     return new CompilationUnitBuilder(
         environment,
         QualifiedName.of(pkg, simpleName),
         ImmutableSet.<QualifiedName>of(),
-        new StaticFeatureSet());
+        features);
   }
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Joiner;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FastFormatterTest {
+
+  @Test
+  public void testIndentsNestedMembers() {
+    assertThat(format(
+        "class Foo {",
+        "private int bar;",
+        "private static class Baz {",
+        "public int qux() {",
+        "  return 1;",
+        "}",
+        "}",
+        "}"))
+        .isEqualTo(lines(
+            "class Foo {",
+            "  private int bar;",
+            "  private static class Baz {",
+            "    public int qux() {",
+            "      return 1;",
+            "    }",
+            "  }",
+            "}"));
+  }
+
+  @Test
+  public void testIndentsContinuationLines() {
+    assertThat(format(
+        "class Foo {",
+        "private final Set<String> bar =",
+        "    new HashSet<String>();",
+        "boolean baz(Object a,",
+        "Object b) {",
+        "return a.equals(b)",
+        "&& b.equals(a);",
+        "}",
+        "}"))
+        .isEqualTo(lines(
+            "class Foo {",
+            "  private final Set<String> bar =",
+            "      new HashSet<String>();",
+            "  boolean baz(Object a,",
+            "      Object b) {",
+            "    return a.equals(b)",
+            "        && b.equals(a);",
+            "  }",
+            "}"));
+  }
+
+  @Test
+  public void testDoesNotIndentAfterAnnotationsOrEnumConstants() {
+    assertThat(format(
+        "enum Foo {",
+        "BAR(\"bar\"),",
+        "BAZ(\"baz\"),",
+        ";",
+        "@Override",
+        "@SuppressWarnings(\"a, b\")",
+        "public String toString() {",
+        "return name();",
+        "}",
+        "}"))
+        .isEqualTo(lines(
+            "enum Foo {",
+            "  BAR(\"bar\"),",
+            "  BAZ(\"baz\"),",
+            "  ;",
+            "  @Override",
+            "  @SuppressWarnings(\"a, b\")",
+            "  public String toString() {",
+            "    return name();",
+            "  }",
+            "}"));
+  }
+
+  @Test
+  public void testIndentsSwitchCases() {
+    assertThat(format(
+        "int foo(int x) {",
+        "switch (x) {",
+        "case 0:",
+        "return 1;",
+        "case 1: {",
+        "return 2;",
+        "}",
+        "default:",
+        "if (x > 0) {",
+        "return 3;",
+        "}",
+        "return 4;",
+        "}",
+        "}"))
+        .isEqualTo(lines(
+            "int foo(int x) {",
+            "  switch (x) {",
+            "    case 0:",
+            "      return 1;",
+            "    case 1: {",
+            "        return 2;",
+            "      }",
+            "    default:",
+            "      if (x > 0) {",
+            "        return 3;",
+            "      }",
+            "      return 4;",
+            "  }",
+            "}"));
+  }
+
+  @Test
+  public void testSplitsCodeAfterUnclosedBrace() {
+    assertThat(format(
+        "void foo(Object x) {checkNotNull(x);",
+        "bar(new Object[] {x});",
+        "}"))
+        .isEqualTo(lines(
+            "void foo(Object x) {",
+            "  checkNotNull(x);",
+            "  bar(new Object[] {x});",
+            "}"));
+  }
+
+  @Test
+  public void testIgnoresBracesInLiteralsAndComments() {
+    assertThat(format(
+        "void foo() {",
+        "bar(\"{\", '{'); // {",
+        "/* { */",
+        "/**",
+        " * {@link Foo}",
+        " */",
+        "}",
+        "int baz;"))
+        .isEqualTo(lines(
+            "void foo() {",
+            "  bar(\"{\", '{'); // {",
+            "  /* { */",
+            "  /**",
+            "   * {@link Foo}",
+            "   */",
+            "}",
+            "int baz;"));
+  }
+
+  @Test
+  public void testCollapsesWhitespaceOutsideLiterals() {
+    assertThat(format(
+        "public static  Foo   bar() {",
+        "",
+        "",
+        "return \"a  b\";   ",
+        "}",
+        ""))
+        .isEqualTo(lines(
+            "public static Foo bar() {",
+            "",
+            "  return \"a  b\";",
+            "}"));
+  }
+
+  private static String format(String... lines) {
+    return FastFormatter.format(Joiner.on('\n').join(lines));
+  }
+
+  private static String lines(String... lines) {
+    return Joiner.on('\n').join(lines) + "\n";
+  }
+}
@@ -25,9 +25,12 @@ import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.ImmutableSet;
+
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
+import org.inferred.freebuilder.processor.util.feature.StaticFeatureSet;
 import org.inferred.freebuilder.processor.util.testing.ModelRule;
 import org.junit.Before;
 import org.junit.Rule;
@@ -76,6 +79,18 @@ public class FilerUtilsTest {
     assertEquals("Hello!", source.toString());
   }
 
+  @Test
+  public void testStreamsCompilationUnit() throws IOException {
+    CompilationUnitBuilder unit = new CompilationUnitBuilder(
+        model.environment(),
+        CLASS_TO_WRITE,
+        ImmutableSet.<QualifiedName>of(),
+        new StaticFeatureSet());
+    unit.addLine("class bar {}");
+    FilerUtils.writeCompilationUnit(filer, CLASS_TO_WRITE, originatingElement, unit);
+    assertEquals(unit.toString(), source.toString());
+  }
+
   @Test
   public void testConstructor_avoidsEclipseWriterBug() throws IOException {
     // Due to a bug in Eclipse, we *must* call close on the object returned from openWriter().
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.MissingFormatArgumentException;
+
+@RunWith(JUnit4.class)
+public class FormatTemplateTest {
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void testMatchesStringFormat() {
+    assertMatchesStringFormat("no arguments");
+    assertMatchesStringFormat("%s and %s", "a", "b");
+    assertMatchesStringFormat("%2$s %1$s %2$s", "a", "b");
+    assertMatchesStringFormat("%s %1$s %s", "a", "b");
+    assertMatchesStringFormat("100%% %s%n", "done");
+    assertMatchesStringFormat("%s", (Object) null);
+    assertMatchesStringFormat("%s, %s", 1, 'c');
+    assertMatchesStringFormat("%d%%", 42);
+    assertMatchesStringFormat("%-5s|", "a");
+    assertMatchesStringFormat("unused %s", "a", "b");
+  }
+
+  @Test
+  public void testIsSequential() {
+    assertThat(FormatTemplate.of("%s, %s").isSequential(2)).isTrue();
+    assertThat(FormatTemplate.of("%1$s, %2$s%n").isSequential(2)).isTrue();
+    assertThat(FormatTemplate.of("%s, %s").isSequential(3)).isFalse();
+    assertThat(FormatTemplate.of("%2$s, %1$s").isSequential(2)).isFalse();
+    assertThat(FormatTemplate.of("%1$s, %1$s").isSequential(1)).isFalse();
+    assertThat(FormatTemplate.of("%d").isSequential(1)).isFalse();
+  }
+
+  @Test
+  public void testLiterals() {
+    FormatTemplate template = FormatTemplate.of("a %s b %s%%c");
+    assertThat(template.literalBefore(0)).isEqualTo("a ");
+    assertThat(template.literalBefore(1)).isEqualTo(" b ");
+    assertThat(template.trailingLiteral()).isEqualTo("%c");
+  }
+
+  @Test
+  public void testMissingArgument() {
+    thrown.expect(MissingFormatArgumentException.class);
+    FormatTemplate.of("%s %s").appendTo(new StringBuilder(), new Object[] {"a"});
+  }
+
+  private static void assertMatchesStringFormat(String fmt, Object... args) {
+    StringBuilder destination = new StringBuilder();
+    FormatTemplate.of(fmt).appendTo(destination, args);
+    assertThat(destination.toString()).isEqualTo(String.format(fmt, args));
+  }
+}
@@ -20,6 +20,7 @@ import static org.inferred.freebuilder.processor.util.ClassTypeImpl.newNestedCla
 import static org.inferred.freebuilder.processor.util.ClassTypeImpl.newTopLevelClass;
 import static org.junit.Assert.assertEquals;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.reflect.TypeToken;
 
 import org.inferred.freebuilder.processor.util.ClassTypeImpl.ClassElementImpl;
@@ -158,6 +159,37 @@ public class ImportManagerTest {
     assertThat(manager.getClassImports()).containsExactly("java.util.Map");
   }
 
+  @Test
+  public void testPackageSiblingShortening() {
+    PackageSiblings siblings = new PackageSiblings(ImmutableSet.of(
+        QualifiedName.of("org.example", "List"),
+        QualifiedName.of("org.example", "Map"),
+        QualifiedName.of("org.example", "Other", "Map")));
+    ImportManager manager = new ImportManager.Builder().addPackageSiblings(siblings).build();
+    assertEquals("List", manager.shorten(QualifiedName.of("org.example", "List")));
+    assertEquals("java.util.List", manager.shorten(QualifiedName.of("java.util", "List")));
+    assertEquals("org.example.Map", manager.shorten(QualifiedName.of("org.example", "Map")));
+    assertEquals("java.util.Map", manager.shorten(QualifiedName.of("java.util", "Map")));
+    assertThat(manager.getClassImports()).isEmpty();
+  }
+
+  @Test
+  public void testPackageSiblingShortening_conflictsWithImplicitImport() {
+    PackageSiblings siblings = new PackageSiblings(ImmutableSet.of(
+        QualifiedName.of("org.example", "List"),
+        QualifiedName.of("org.example", "Set")));
+    ImportManager manager = new ImportManager.Builder()
+        .addPackageSiblings(siblings)
+        .addImplicitImport(QualifiedName.of("org.example", "DataType_Builder", "List"))
+        .addImplicitImport(QualifiedName.of("org.example", "Set"))
+        .build();
+    assertEquals("org.example.List", manager.shorten(QualifiedName.of("org.example", "List")));
+    assertEquals("DataType_Builder.List",
+        manager.shorten(QualifiedName.of("org.example", "DataType_Builder", "List")));
+    assertEquals("Set", manager.shorten(QualifiedName.of("org.example", "Set")));
+    assertThat(manager.getClassImports()).containsExactly("org.example.DataType_Builder");
+  }
+
   private static class OuterClass<T> {
     private class InnerClass { }
   }
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.reflect.TypeToken;
+
+import org.inferred.freebuilder.processor.util.testing.ModelRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.List;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MemoizingTypeShortenerTest {
+
+  private static final QualifiedName LIST = QualifiedName.of(List.class);
+
+  @Rule public final ModelRule model = new ModelRule();
+  @Mock private TypeShortener delegate;
+
+  @Test
+  public void testShortensEachMirrorOnce() {
+    TypeMirror listOfStrings = model.typeMirror(new TypeToken<List<String>>() {});
+    when(delegate.shorten(listOfStrings)).thenReturn("List<String>");
+    MemoizingTypeShortener shortener =
+        new MemoizingTypeShortener(delegate, new QualifiedNameCache());
+
+    assertThat(shortener.shorten(listOfStrings)).isEqualTo("List<String>");
+    assertThat(shortener.shorten(listOfStrings)).isEqualTo("List<String>");
+    verify(delegate, times(1)).shorten(listOfStrings);
+  }
+
+  @Test
+  public void testShortensEachQualifiedNameOnce() {
+    when(delegate.shorten(LIST)).thenReturn("List");
+    MemoizingTypeShortener shortener =
+        new MemoizingTypeShortener(delegate, new QualifiedNameCache());
+
+    assertThat(shortener.shorten(QualifiedName.of("java.util", "List"))).isEqualTo("List");
+    assertThat(shortener.shorten(List.class)).isEqualTo("List");
+    assertThat(shortener.shorten(model.typeElement(List.class))).isEqualTo("List");
+    verify(delegate, times(1)).shorten(LIST);
+  }
+
+  @Test
+  public void testQualifiedNameCacheSharesResults() {
+    QualifiedNameCache qualifiedNames = new QualifiedNameCache();
+    TypeElement listElement = model.typeElement(List.class);
+
+    assertThat(qualifiedNames.of(List.class)).isEqualTo(LIST);
+    assertThat(qualifiedNames.of(List.class)).isSameAs(qualifiedNames.of(List.class));
+    assertThat(qualifiedNames.of(listElement)).isEqualTo(LIST);
+    assertThat(qualifiedNames.of(listElement)).isSameAs(qualifiedNames.of(listElement));
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util.feature;
+
+import static org.inferred.freebuilder.processor.util.feature.CollectionOwnership.COLLECTION_OWNERSHIP;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic.Kind;
+
+@RunWith(JUnit4.class)
+public class CollectionOwnershipTest {
+
+  private final Messager messager = mock(Messager.class);
+
+  @Test
+  public void defaultsToCopyOnBuild() {
+    assertEquals(CollectionOwnership.COPY_ON_BUILD,
+        collectionOwnershipFrom(ImmutableMap.<String, String>of()));
+    verifyZeroInteractions(messager);
+  }
+
+  @Test
+  public void optionWithoutValueEnablesTransferOnBuild() {
+    Map<String, String> options = new HashMap<String, String>();
+    options.put(CollectionOwnership.OPTION, null);
+    assertEquals(CollectionOwnership.TRANSFER_ON_BUILD, collectionOwnershipFrom(options));
+  }
+
+  @Test
+  public void transferOnBuild() {
+    assertEquals(CollectionOwnership.TRANSFER_ON_BUILD,
+        collectionOwnershipFrom(ImmutableMap.of(CollectionOwnership.OPTION, "TRUE")));
+  }
+
+  @Test
+  public void copyOnBuild() {
+    assertEquals(CollectionOwnership.COPY_ON_BUILD,
+        collectionOwnershipFrom(ImmutableMap.of(CollectionOwnership.OPTION, "false")));
+    verifyZeroInteractions(messager);
+  }
+
+  @Test
+  public void unrecognizedValueWarnsAndDefaultsToCopyOnBuild() {
+    assertEquals(CollectionOwnership.COPY_ON_BUILD,
+        collectionOwnershipFrom(ImmutableMap.of(CollectionOwnership.OPTION, "always")));
+    verify(messager).printMessage(eq(Kind.WARNING), anyString());
+  }
+
+  private CollectionOwnership collectionOwnershipFrom(Map<String, String> options) {
+    ProcessingEnvironment env = mock(ProcessingEnvironment.class);
+    when(env.getOptions()).thenReturn(options);
+    when(env.getMessager()).thenReturn(messager);
+    return COLLECTION_OWNERSHIP.forEnvironment(env, null);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util.feature;
+
+import static org.inferred.freebuilder.processor.util.feature.GenerationMode.GENERATION_MODE;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic.Kind;
+
+@RunWith(JUnit4.class)
+public class GenerationModeTest {
+
+  private final Messager messager = mock(Messager.class);
+
+  @Test
+  public void defaultsToFull() {
+    assertEquals(GenerationMode.FULL, generationModeFrom(ImmutableMap.<String, String>of()));
+    verifyZeroInteractions(messager);
+  }
+
+  @Test
+  public void optionWithoutValueEnablesAbiOnly() {
+    Map<String, String> options = new HashMap<String, String>();
+    options.put(GenerationMode.OPTION, null);
+    assertEquals(GenerationMode.ABI_ONLY, generationModeFrom(options));
+  }
+
+  @Test
+  public void abiOnly() {
+    assertEquals(GenerationMode.ABI_ONLY,
+        generationModeFrom(ImmutableMap.of(GenerationMode.OPTION, "TRUE")));
+  }
+
+  @Test
+  public void full() {
+    assertEquals(GenerationMode.FULL,
+        generationModeFrom(ImmutableMap.of(GenerationMode.OPTION, "false")));
+    verifyZeroInteractions(messager);
+  }
+
+  @Test
+  public void unrecognizedValueWarnsAndDefaultsToFull() {
+    assertEquals(GenerationMode.FULL,
+        generationModeFrom(ImmutableMap.of(GenerationMode.OPTION, "headers")));
+    verify(messager).printMessage(eq(Kind.WARNING), anyString());
+  }
+
+  private GenerationMode generationModeFrom(Map<String, String> options) {
+    ProcessingEnvironment env = mock(ProcessingEnvironment.class);
+    when(env.getOptions()).thenReturn(options);
+    when(env.getMessager()).thenReturn(messager);
+    return GENERATION_MODE.forEnvironment(env, null);
+  }
+}